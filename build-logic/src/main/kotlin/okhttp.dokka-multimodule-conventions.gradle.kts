@@ -7,6 +7,7 @@ if (okhttpDokka?.toBoolean() == true) {
     add("dokka", project(":okhttp-brotli"))
     add("dokka", project(":okhttp-coroutines"))
     add("dokka", project(":okhttp-dnsoverhttps"))
+    add("dokka", project(":okhttp-download"))
     add("dokka", project(":okhttp-java-net-cookiejar"))
     add("dokka", project(":logging-interceptor"))
     add("dokka", project(":okhttp-sse"))
@@ -0,0 +1,24 @@
+plugins {
+  kotlin("jvm")
+  id("okhttp.publish-conventions")
+  id("okhttp.jvm-conventions")
+  id("okhttp.quality-conventions")
+  id("okhttp.testing-conventions")
+}
+
+project.applyOsgi(
+  "Export-Package: okhttp3.download",
+  "Automatic-Module-Name: okhttp3.download",
+  "Bundle-SymbolicName: com.squareup.okhttp3.download",
+)
+
+dependencies {
+  api(projects.okhttp)
+
+  testImplementation(projects.okhttpTestingSupport)
+  testImplementation(projects.mockwebserver3)
+  testImplementation(projects.mockwebserver3Junit5)
+  testImplementation(libs.kotlin.test.common)
+  testImplementation(libs.kotlin.test.junit)
+  testImplementation(libs.assertk)
+}
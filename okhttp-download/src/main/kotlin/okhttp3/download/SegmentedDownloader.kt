@@ -0,0 +1,386 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.download
+
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.io.RandomAccessFile
+import java.net.HttpURLConnection.HTTP_CLIENT_TIMEOUT
+import java.net.HttpURLConnection.HTTP_OK
+import java.net.HttpURLConnection.HTTP_PARTIAL
+import java.net.ProtocolException
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.Response
+import okio.Path
+
+private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+private const val HTTP_TOO_MANY_REQUESTS = 429
+private const val INITIAL_CONCURRENCY = 2
+
+/** Concurrency grows when it improves throughput by at least this factor. */
+private const val CONCURRENCY_GAIN = 1.1
+
+/**
+ * Downloads large files with concurrent `Range` requests that each fetch one segment of the file.
+ * This is faster than a single request when the throughput of one connection is limited, such as
+ * on links with high latency or packet loss.
+ *
+ * Each download starts by requesting the first segment. If the server doesn't support ranges, that
+ * response has the complete file and the download proceeds with a single request. Otherwise the
+ * file is allocated at its full size and the remaining segments are requested concurrently. Each
+ * segment is written directly to its place in the file.
+ *
+ * Segment requests carry an `If-Range` header with the first response's `ETag` or `Last-Modified`
+ * date. If the file changes on the server during the download, the download fails rather than
+ * writing a mix of old and new content. Servers that return neither header can't be checked for
+ * changes.
+ *
+ * Segments that fail with an I/O error or a server error are retried individually, up to
+ * [maxAttempts] times each.
+ *
+ * Concurrency starts at 2 and adapts to the observed throughput. It grows while more concurrent
+ * requests increase throughput, up to [maxConcurrency], and it is halved when a segment fails.
+ * Requests are executed by the client's [dispatcher][okhttp3.Dispatcher], whose
+ * [maxRequestsPerHost][okhttp3.Dispatcher.maxRequestsPerHost] also limits concurrency. On HTTP/2
+ * the segments are concurrent streams on a shared connection.
+ */
+class SegmentedDownloader internal constructor(
+  @get:JvmName("client") val client: OkHttpClient,
+  @get:JvmName("segmentSize") val segmentSize: Long,
+  @get:JvmName("maxConcurrency") val maxConcurrency: Int,
+  @get:JvmName("maxAttempts") val maxAttempts: Int,
+) {
+  /**
+   * Downloads the response body of [request] to [path] on the system file system, replacing its
+   * content if it exists. Returns the size of the downloaded file.
+   *
+   * This blocks until the download completes. If the calling thread is interrupted, the download
+   * is canceled and this throws an [InterruptedIOException].
+   */
+  @Throws(IOException::class)
+  fun download(
+    request: Request,
+    path: Path,
+  ): Long = Download(request, path).run()
+
+  private inner class Download(
+    private val request: Request,
+    private val path: Path,
+  ) {
+    private val lock = ReentrantLock()
+    private val condition = lock.newCondition()
+
+    // All of the following state is guarded by lock.
+    private val pending = ArrayDeque<Segment>()
+    private val calls = mutableSetOf<Call>()
+    private var concurrency = minOf(INITIAL_CONCURRENCY, maxConcurrency)
+    private var failure: IOException? = null
+    private var bytesDownloaded = 0L
+    private var bestBytesPerSecond = 0.0
+    private var startNanos = 0L
+
+    /** The first response's `ETag` or `Last-Modified` date, used to detect changes. */
+    private var validator: String? = null
+    private var size = -1L
+
+    fun run(): Long {
+      val first = Segment(0L, segmentSize - 1L)
+      client.newCall(segmentRequest(first)).execute().use { response ->
+        when (response.code) {
+          HTTP_OK -> {
+            // The server doesn't support ranges. Download everything with this response.
+            return response.body.writeTo(path)
+          }
+
+          HTTP_PARTIAL -> {
+            val contentRange = response.contentRange()
+            if (contentRange == null || contentRange.start != 0L || contentRange.size == -1L) {
+              throw ProtocolException(
+                "unexpected Content-Range: ${response.header("Content-Range")}",
+              )
+            }
+            size = contentRange.size
+            // Weak ETags can't be used with If-Range.
+            validator =
+              response.header("ETag")?.takeUnless { it.startsWith("W/") }
+                ?: response.header("Last-Modified")
+
+            RandomAccessFile(path.toFile(), "rw").use { it.setLength(size) }
+            writeSegment(response, Segment(0L, contentRange.end))
+
+            var start = contentRange.end + 1L
+            while (start < size) {
+              val end = minOf(start + segmentSize, size) - 1L
+              pending += Segment(start, end)
+              start = end + 1L
+            }
+          }
+
+          HTTP_RANGE_NOT_SATISFIABLE -> {
+            // The only unsatisfiable first range is in an empty file.
+            if (response.header("Content-Range") != "bytes */0") {
+              throw ProtocolException("unexpected response: ${response.code}")
+            }
+            RandomAccessFile(path.toFile(), "rw").use { it.setLength(0L) }
+            return 0L
+          }
+
+          else -> {
+            throw IOException("unexpected response: ${response.code}")
+          }
+        }
+      }
+
+      downloadSegments()
+      return size
+    }
+
+    private fun downloadSegments() {
+      lock.withLock {
+        startNanos = System.nanoTime()
+        try {
+          while (true) {
+            failure?.let { throw it }
+            while (pending.isNotEmpty() && calls.size < concurrency) {
+              start(pending.removeFirst())
+            }
+            if (pending.isEmpty() && calls.isEmpty()) return
+            condition.await()
+          }
+        } catch (_: InterruptedException) {
+          Thread.currentThread().interrupt() // Retain interrupted status.
+          throw InterruptedIOException()
+        } finally {
+          // Don't return while segments are still being written.
+          for (call in calls) call.cancel()
+          while (calls.isNotEmpty()) condition.awaitUninterruptibly()
+        }
+      }
+    }
+
+    private fun start(segment: Segment) {
+      segment.attempts++
+      val call = client.newCall(segmentRequest(segment))
+      calls += call
+      call.enqueue(
+        object : Callback {
+          override fun onResponse(
+            call: Call,
+            response: Response,
+          ) {
+            val e =
+              try {
+                response.use { writeSegment(it, segment) }
+                null
+              } catch (e: IOException) {
+                e
+              }
+            finished(call, segment, e)
+          }
+
+          override fun onFailure(
+            call: Call,
+            e: IOException,
+          ) {
+            finished(call, segment, e)
+          }
+        },
+      )
+    }
+
+    private fun finished(
+      call: Call,
+      segment: Segment,
+      e: IOException?,
+    ) {
+      lock.withLock {
+        calls -= call
+        when {
+          e == null -> {
+            bytesDownloaded += segment.byteCount
+            adjustConcurrency()
+          }
+
+          failure != null -> {
+            // Already failed. This is probably a call we canceled.
+          }
+
+          (e as? SegmentException)?.retryable != false && segment.attempts < maxAttempts -> {
+            pending.addFirst(segment)
+            concurrency = maxOf(1, concurrency / 2)
+          }
+
+          else -> {
+            failure = e
+          }
+        }
+        condition.signalAll()
+      }
+    }
+
+    /** Adds a request if throughput improved since the last one was added. */
+    private fun adjustConcurrency() {
+      val elapsedNanos = System.nanoTime() - startNanos
+      if (elapsedNanos <= 0L) return
+      val bytesPerSecond = bytesDownloaded * 1e9 / elapsedNanos
+      if (bytesPerSecond > bestBytesPerSecond * CONCURRENCY_GAIN && concurrency < maxConcurrency) {
+        concurrency++
+      }
+      bestBytesPerSecond = maxOf(bestBytesPerSecond, bytesPerSecond)
+    }
+
+    private fun segmentRequest(segment: Segment): Request =
+      request
+        .newBuilder()
+        .header("Range", "bytes=${segment.start}-${segment.end}")
+        .apply {
+          val validator = validator
+          if (validator != null) header("If-Range", validator)
+        }.build()
+
+    /** Writes the body of [response] to [segment] of the file. */
+    private fun writeSegment(
+      response: Response,
+      segment: Segment,
+    ) {
+      when (response.code) {
+        HTTP_PARTIAL -> {
+        }
+
+        HTTP_OK -> {
+          throw SegmentException("resource changed during download", retryable = false)
+        }
+
+        HTTP_CLIENT_TIMEOUT, HTTP_TOO_MANY_REQUESTS, in 500..599 -> {
+          throw SegmentException("unexpected response: ${response.code}", retryable = true)
+        }
+
+        else -> {
+          throw SegmentException("unexpected response: ${response.code}", retryable = false)
+        }
+      }
+
+      val contentRange = response.contentRange()
+      if (contentRange == null ||
+        contentRange.start != segment.start ||
+        contentRange.end != segment.end ||
+        (size != -1L && contentRange.size != size)
+      ) {
+        throw SegmentException(
+          "unexpected Content-Range: ${response.header("Content-Range")}",
+          retryable = false,
+        )
+      }
+
+      val etag = response.header("ETag")
+      if (validator?.startsWith("\"") == true && etag != null && etag != validator) {
+        throw SegmentException("resource changed during download", retryable = false)
+      }
+
+      RandomAccessFile(path.toFile(), "rw").use { file ->
+        file.channel.position(segment.start)
+        val byteCount = response.body.writeTo(file.channel)
+        if (byteCount != segment.byteCount) {
+          throw ProtocolException("expected ${segment.byteCount} bytes but was $byteCount")
+        }
+      }
+    }
+  }
+
+  private class Segment(
+    val start: Long,
+    /** The offset of the segment's last byte. */
+    val end: Long,
+  ) {
+    val byteCount: Long
+      get() = end - start + 1L
+
+    var attempts = 0
+  }
+
+  private class ContentRange(
+    val start: Long,
+    val end: Long,
+    /** The size of the complete file, or -1 if the server didn't say. */
+    val size: Long,
+  )
+
+  private class SegmentException(
+    message: String,
+    val retryable: Boolean,
+  ) : IOException(message)
+
+  class Builder {
+    internal var client: OkHttpClient? = null
+    internal var segmentSize = 8L * 1024L * 1024L
+    internal var maxConcurrency = 8
+    internal var maxAttempts = 3
+
+    fun build(): SegmentedDownloader {
+      val client = this.client ?: throw NullPointerException("client not set")
+      return SegmentedDownloader(client, segmentSize, maxConcurrency, maxAttempts)
+    }
+
+    fun client(client: OkHttpClient) =
+      apply {
+        this.client = client
+      }
+
+    /** Sets the number of bytes fetched by each request. Defaults to 8 MiB. */
+    fun segmentSize(byteCount: Long) =
+      apply {
+        require(byteCount > 0L) { "byteCount <= 0: $byteCount" }
+        this.segmentSize = byteCount
+      }
+
+    /** Sets the most segments to request concurrently. Defaults to 8. */
+    fun maxConcurrency(maxConcurrency: Int) =
+      apply {
+        require(maxConcurrency >= 1) { "maxConcurrency < 1: $maxConcurrency" }
+        this.maxConcurrency = maxConcurrency
+      }
+
+    /** Sets the most times to request each segment before the download fails. Defaults to 3. */
+    fun maxAttempts(maxAttempts: Int) =
+      apply {
+        require(maxAttempts >= 1) { "maxAttempts < 1: $maxAttempts" }
+        this.maxAttempts = maxAttempts
+      }
+  }
+
+  private companion object {
+    val CONTENT_RANGE = Regex("""bytes (\d+)-(\d+)/(\d+|\*)""", RegexOption.IGNORE_CASE)
+
+    fun Response.contentRange(): ContentRange? {
+      val match = CONTENT_RANGE.matchEntire(header("Content-Range")?.trim() ?: return null)
+      val (start, end, size) = match?.destructured ?: return null
+      val result =
+        ContentRange(
+          start = start.toLongOrNull() ?: return null,
+          end = end.toLongOrNull() ?: return null,
+          size = if (size == "*") -1L else size.toLongOrNull() ?: return null,
+        )
+      if (result.end < result.start) return null
+      if (result.size != -1L && result.end >= result.size) return null
+      return result
+    }
+  }
+}
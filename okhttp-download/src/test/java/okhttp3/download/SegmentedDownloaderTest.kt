@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.download
+
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.hasMessage
+import assertk.assertions.isEqualTo
+import java.io.File
+import java.io.IOException
+import java.util.Collections
+import kotlin.test.assertFailsWith
+import mockwebserver3.Dispatcher
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import mockwebserver3.RecordedRequest
+import mockwebserver3.junit5.StartStop
+import okhttp3.OkHttpClientTestRule
+import okhttp3.Request
+import okio.Buffer
+import okio.ByteString.Companion.toByteString
+import okio.Path.Companion.toOkioPath
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.RegisterExtension
+import org.junit.jupiter.api.io.TempDir
+
+class SegmentedDownloaderTest {
+  @JvmField @RegisterExtension
+  val clientTestRule = OkHttpClientTestRule()
+
+  @StartStop
+  private val server = MockWebServer()
+
+  @TempDir
+  lateinit var tempDir: File
+
+  private val content = ByteArray(1_000_003) { (it % 251).toByte() }.toByteString()
+  private val downloader =
+    SegmentedDownloader
+      .Builder()
+      .client(clientTestRule.newClient())
+      .segmentSize(100_000L)
+      .build()
+
+  /** Ranges requested by the client, like `0-99999`, or `*` for requests without a range. */
+  private val requestedRanges = Collections.synchronizedList(mutableListOf<String>())
+
+  /** The first request of each of these ranges fails. */
+  private val failingRanges = Collections.synchronizedSet(mutableSetOf<String>())
+
+  private var etag = "\"v1\""
+  private var supportsRanges = true
+
+  @Test
+  fun downloadInSegments() {
+    server.dispatcher = RangeDispatcher()
+    val file = tempDir.resolve("download.bin")
+
+    assertThat(download(file)).isEqualTo(content.size.toLong())
+    assertThat(file.readBytes().toByteString()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactlyInAnyOrder(
+      "0-99999",
+      "100000-199999",
+      "200000-299999",
+      "300000-399999",
+      "400000-499999",
+      "500000-599999",
+      "600000-699999",
+      "700000-799999",
+      "800000-899999",
+      "900000-999999",
+      "1000000-1000002",
+    )
+  }
+
+  @Test
+  fun existingFileIsReplaced() {
+    server.dispatcher = RangeDispatcher()
+    val file = tempDir.resolve("download.bin")
+    file.writeBytes(ByteArray(2_000_000))
+
+    assertThat(download(file)).isEqualTo(content.size.toLong())
+    assertThat(file.readBytes().toByteString()).isEqualTo(content)
+  }
+
+  @Test
+  fun serverWithoutRangeSupport() {
+    supportsRanges = false
+    server.dispatcher = RangeDispatcher()
+    val file = tempDir.resolve("download.bin")
+
+    assertThat(download(file)).isEqualTo(content.size.toLong())
+    assertThat(file.readBytes().toByteString()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactlyInAnyOrder("0-99999")
+  }
+
+  @Test
+  fun failedSegmentsAreRetried() {
+    failingRanges += "300000-399999"
+    failingRanges += "700000-799999"
+    server.dispatcher = RangeDispatcher()
+    val file = tempDir.resolve("download.bin")
+
+    assertThat(download(file)).isEqualTo(content.size.toLong())
+    assertThat(file.readBytes().toByteString()).isEqualTo(content)
+    assertThat(requestedRanges.count { it == "300000-399999" }).isEqualTo(2)
+    assertThat(requestedRanges.count { it == "700000-799999" }).isEqualTo(2)
+  }
+
+  @Test
+  fun changedResourceFailsDownload() {
+    server.dispatcher =
+      object : RangeDispatcher() {
+        override fun dispatch(request: RecordedRequest): MockResponse {
+          if (requestedRanges.size == 3) etag = "\"v2\""
+          return super.dispatch(request)
+        }
+      }
+    val file = tempDir.resolve("download.bin")
+
+    assertFailsWith<IOException> {
+      download(file)
+    }.also { expected ->
+      assertThat(expected).hasMessage("resource changed during download")
+    }
+  }
+
+  @Test
+  fun emptyFile() {
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .code(416)
+        .addHeader("Content-Range", "bytes */0")
+        .build(),
+    )
+    val file = tempDir.resolve("download.bin")
+    file.writeText("stale")
+
+    assertThat(download(file)).isEqualTo(0L)
+    assertThat(file.length()).isEqualTo(0L)
+  }
+
+  private fun download(file: File): Long =
+    downloader.download(Request(server.url("/file")), file.toOkioPath())
+
+  /** Serves [content] with support for `Range` and `If-Range` requests. */
+  private open inner class RangeDispatcher : Dispatcher() {
+    override fun dispatch(request: RecordedRequest): MockResponse {
+      val range = request.headers["Range"]?.removePrefix("bytes=") ?: "*"
+      requestedRanges += range
+
+      if (failingRanges.remove(range)) {
+        return MockResponse(code = 503)
+      }
+
+      val ifRange = request.headers["If-Range"]
+      if (!supportsRanges || range == "*" || (ifRange != null && ifRange != etag)) {
+        return MockResponse
+          .Builder()
+          .addHeader("ETag", etag)
+          .body(Buffer().write(content))
+          .build()
+      }
+
+      val start = range.substringBefore('-').toInt()
+      val end = minOf(range.substringAfter('-').toInt(), content.size - 1)
+      return MockResponse
+        .Builder()
+        .code(206)
+        .addHeader("ETag", etag)
+        .addHeader("Content-Range", "bytes $start-$end/${content.size}")
+        .body(Buffer().write(content.substring(start, end + 1)))
+        .build()
+    }
+  }
+}
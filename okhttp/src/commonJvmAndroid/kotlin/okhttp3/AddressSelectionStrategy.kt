@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.random.Random
+
+/**
+ * Spreads load across the IP addresses of a host.
+ *
+ * When a hostname resolves to several IP addresses, OkHttp connects to the first address that
+ * works. Many clients that receive the same DNS response will all connect to the same server. This
+ * strategy lets a client choose a different address to try first, and a different pooled connection
+ * to use when several can carry a call.
+ *
+ * The strategy is consulted in two places:
+ *
+ *  * **When planning new connections.** Each candidate is a resolved IP address of the host. Failed
+ *    routes are still postponed, and the remaining addresses are still attempted in order if the
+ *    chosen address can't be reached.
+ *
+ *  * **When reusing pooled connections.** Each candidate is a pooled connection to the call's
+ *    [Address] that can carry another call.
+ *
+ * In both cases the strategy receives the number of calls currently carried by each candidate. For
+ * IP addresses that's the number of calls on pooled connections to that address.
+ *
+ * [FIRST] is the default and always chooses the first candidate. Implementations of this interface
+ * must be safe for concurrent use.
+ */
+fun interface AddressSelectionStrategy {
+  /**
+   * Returns the index of the candidate to use for [address]. There are always at least two
+   * candidates.
+   *
+   * @param activeCalls the number of calls currently carried by each candidate.
+   */
+  fun select(
+    address: Address,
+    activeCalls: IntArray,
+  ): Int
+
+  companion object {
+    /** Always use the first candidate. This is OkHttp's historical behavior. */
+    @JvmField
+    val FIRST: AddressSelectionStrategy = AddressSelectionStrategy { _, _ -> 0 }
+
+    /** Rotate through the candidates so that each is used first in turn. */
+    @JvmField
+    val ROUND_ROBIN: AddressSelectionStrategy = RoundRobin()
+
+    /** Choose a candidate uniformly at random. */
+    @JvmField
+    val RANDOM: AddressSelectionStrategy =
+      AddressSelectionStrategy { _, activeCalls -> Random.nextInt(activeCalls.size) }
+
+    /**
+     * Choose two candidates at random and use the one carrying fewer calls. This balances load
+     * almost as well as always choosing the least-loaded candidate, without sending every client
+     * to the same one.
+     */
+    @JvmField
+    val POWER_OF_TWO_CHOICES: AddressSelectionStrategy =
+      AddressSelectionStrategy { _, activeCalls ->
+        val a = Random.nextInt(activeCalls.size)
+        val b = (a + 1 + Random.nextInt(activeCalls.size - 1)) % activeCalls.size
+        if (activeCalls[b] < activeCalls[a]) b else a
+      }
+
+    private class RoundRobin : AddressSelectionStrategy {
+      private val next = AtomicInteger()
+
+      override fun select(
+        address: Address,
+        activeCalls: IntArray,
+      ): Int = (next.getAndIncrement() and Int.MAX_VALUE) % activeCalls.size
+    }
+  }
+}
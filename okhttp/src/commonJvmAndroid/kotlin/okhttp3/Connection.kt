@@ -89,4 +89,14 @@ interface Connection {
    * [Protocol.HTTP_1_0].
    */
   fun protocol(): Protocol
+
+  /**
+   * Returns the size of the header names and values that this connection has sent, divided by the
+   * size of the HPACK header blocks that encoded them. This is 4.0 if headers were compressed to a
+   * quarter of their size. It is 1.0 if this connection isn't HTTP/2, or if it hasn't sent headers.
+   *
+   * Use this to tune [OkHttpClient.Builder.http2HeaderIndexingStrategy] and
+   * [OkHttpClient.Builder.http2HeaderTableSize].
+   */
+  fun headerCompressionRatio(): Double = 1.0
 }
@@ -199,6 +199,23 @@ abstract class EventListener {
   ) {
   }
 
+  /**
+   * Invoked immediately after a TLS connection was attempted. [resumed] is true if the handshake
+   * resumed an earlier TLS session rather than performing a full handshake.
+   *
+   * This method is invoked after [secureConnectStart]. The default implementation calls
+   * [secureConnectEnd] without the resumption flag.
+   *
+   * @see TlsSessionCache
+   */
+  open fun secureConnectEnd(
+    call: Call,
+    handshake: Handshake?,
+    resumed: Boolean,
+  ) {
+    secureConnectEnd(call, handshake)
+  }
+
   /**
    * Invoked immediately after a socket connection was attempted.
    *
@@ -663,6 +680,16 @@ abstract class EventListener {
       }
     }
 
+    override fun secureConnectEnd(
+      call: Call,
+      handshake: Handshake?,
+      resumed: Boolean,
+    ) {
+      for (delegate in eventListeners) {
+        delegate.secureConnectEnd(call, handshake, resumed)
+      }
+    }
+
     override fun connectEnd(
       call: Call,
       inetSocketAddress: InetSocketAddress,
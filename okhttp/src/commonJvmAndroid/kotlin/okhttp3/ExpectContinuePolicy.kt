@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+import java.io.IOException
+
+/**
+ * Decides which requests are sent with an `Expect: 100-continue` header.
+ *
+ * A request with this header sends its headers and waits for the server's `100 Continue` interim
+ * response before it sends its body. If the server rejects the request instead, such as when it
+ * requires authentication, exceeds a quota, or redirects elsewhere, the body is never transmitted.
+ * This saves the bandwidth of large uploads at the cost of a round trip.
+ *
+ * Many servers ignore the header. OkHttp waits at most
+ * [OkHttpClient.expectContinueTimeoutMillis] for the server to respond before it sends the body
+ * anyway, and then doesn't add the header to requests to that origin for a while. If the server
+ * responds with `417 Expectation Failed`, the request is retried without the header unless its
+ * body is [one-shot][RequestBody.isOneShot].
+ *
+ * This policy only applies to HTTP/1.1 requests that have a body, that aren't duplex, and that
+ * don't already have an `Expect` header. HTTP/2 servers can reject a request while its body is
+ * being sent, so it isn't necessary there.
+ *
+ * Implementations of this interface must be safe for concurrent use.
+ */
+fun interface ExpectContinuePolicy {
+  /** Returns true to send [request], which has a body, with `Expect: 100-continue`. */
+  @Throws(IOException::class)
+  fun expectContinue(request: Request): Boolean
+
+  companion object {
+    /** Don't add `Expect: 100-continue` to requests. This is OkHttp's historical behavior. */
+    @JvmField
+    val NONE: ExpectContinuePolicy = ExpectContinuePolicy { false }
+
+    /**
+     * Returns a policy that expects `100 Continue` for request bodies of at least [byteCount]
+     * bytes, and for request bodies of unknown length.
+     */
+    @JvmStatic
+    fun minimumContentLength(byteCount: Long): ExpectContinuePolicy {
+      require(byteCount >= 0L) { "byteCount < 0: $byteCount" }
+      return ExpectContinuePolicy { request ->
+        val contentLength = request.body?.contentLength() ?: 0L
+        contentLength == -1L || contentLength >= byteCount
+      }
+    }
+  }
+}
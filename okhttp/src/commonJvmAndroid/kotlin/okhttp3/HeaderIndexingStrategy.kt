@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+/**
+ * Decides which request headers HTTP/2 connections add to the HPACK dynamic table.
+ *
+ * HPACK compresses a header by storing it in a table shared with the peer; later requests on the
+ * same connection refer to it by its index. This is very effective for headers that repeat, like
+ * `user-agent` and long-lived credentials. Headers whose values change on every request, like
+ * request IDs and trace IDs, gain nothing from the table and evict the entries that do.
+ *
+ * Sensitive headers may be sent as [never indexed][Indexing.NEVER_INDEXED] literals. This prevents
+ * attacks that guess a secret by observing the size of compressed headers, and asks intermediaries
+ * to also never index the header when they forward it.
+ *
+ * Pseudo-headers like `:path` are encoded by OkHttp's own policy and are not passed to this
+ * strategy. Implementations of this interface must be safe for concurrent use.
+ */
+fun interface HeaderIndexingStrategy {
+  /**
+   * Returns how to encode the header named [name] with [value]. The name is always lowercase.
+   */
+  fun indexing(
+    name: String,
+    value: String,
+  ): Indexing
+
+  enum class Indexing {
+    /** Add the header to the dynamic table so later requests can refer to it. */
+    INDEXED,
+
+    /** Send the header as a literal, and don't add it to the dynamic table. */
+    NOT_INDEXED,
+
+    /** Send the header as a literal that intermediaries must not add to their tables either. */
+    NEVER_INDEXED,
+  }
+
+  companion object {
+    /** Index every header. This is OkHttp's historical behavior. */
+    @JvmField
+    val INDEX_ALL: HeaderIndexingStrategy = HeaderIndexingStrategy { _, _ -> Indexing.INDEXED }
+
+    /**
+     * Returns a strategy that sends headers named in [neverIndexed] as never indexed literals,
+     * headers named in [notIndexed] as literals, and indexes all other headers. Names are
+     * case-insensitive.
+     */
+    @JvmStatic
+    fun create(
+      neverIndexed: Collection<String>,
+      notIndexed: Collection<String>,
+    ): HeaderIndexingStrategy {
+      val neverIndexedNames = neverIndexed.map { it.lowercase() }.toSet()
+      val notIndexedNames = notIndexed.map { it.lowercase() }.toSet()
+      return HeaderIndexingStrategy { name, _ ->
+        when (name) {
+          in neverIndexedNames -> Indexing.NEVER_INDEXED
+          in notIndexedNames -> Indexing.NOT_INDEXED
+          else -> Indexing.INDEXED
+        }
+      }
+    }
+  }
+}
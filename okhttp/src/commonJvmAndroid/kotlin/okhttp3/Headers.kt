@@ -22,6 +22,8 @@ import java.util.Date
 import java.util.Locale
 import java.util.TreeMap
 import java.util.TreeSet
+import okhttp3.internal.HeadersCaches
+import okhttp3.internal.HeadersPrefix
 import okhttp3.internal.commonAdd
 import okhttp3.internal.commonAddAll
 import okhttp3.internal.commonAddLenient
@@ -29,7 +31,6 @@ import okhttp3.internal.commonBuild
 import okhttp3.internal.commonEquals
 import okhttp3.internal.commonGet
 import okhttp3.internal.commonHashCode
-import okhttp3.internal.commonHeadersGet
 import okhttp3.internal.commonHeadersOf
 import okhttp3.internal.commonIterator
 import okhttp3.internal.commonName
@@ -65,9 +66,11 @@ import org.codehaus.mojo.animal_sniffer.IgnoreJRERequirement
 @Suppress("NAME_SHADOWING")
 class Headers internal constructor(
   internal val namesAndValues: Array<String>,
+  /** Values computed from these headers, or null until any are needed. */
+  @Volatile internal var caches: HeadersCaches? = null,
 ) : Iterable<Pair<String, String>> {
   /** Returns the last value corresponding to the specified field, or null. */
-  operator fun get(name: String): String? = commonHeadersGet(namesAndValues, name)
+  operator fun get(name: String): String? = commonGet(name)
 
   /**
    * Returns the last value corresponding to the specified field parsed as an HTTP date, or null if
@@ -205,6 +208,9 @@ class Headers internal constructor(
   class Builder {
     internal val namesAndValues: MutableList<String> = ArrayList(20)
 
+    /** The template that [namesAndValues] begins with, or null if it doesn't begin with one. */
+    internal var prefix: HeadersPrefix? = null
+
     /**
      * Add a header line without any validation. Only appropriate for headers from the remote peer
      * or cache.
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+/**
+ * Decides how many HTTP/1.1 requests may be pipelined on each connection to an address.
+ *
+ * HTTP/1.1 connections carry one response at a time, in the order the requests were sent.
+ * Pipelining writes several requests back-to-back without waiting for the earlier responses, which
+ * permits high request rates over few connections. Only `GET` and `HEAD` requests without a body
+ * are pipelined, because they are safe to retry if the server closes the connection before
+ * answering them.
+ *
+ * Many servers and intermediaries don't support pipelining correctly. Only enable it for servers
+ * that are known to. HTTP/2 connections are multiplexed and aren't affected by this policy.
+ *
+ * Implementations of this interface must be safe for concurrent use.
+ */
+fun interface Http1PipeliningPolicy {
+  /**
+   * Returns the maximum number of requests in flight on each HTTP/1.1 connection to [address]. A
+   * depth of 1 sends each request only after the previous response is complete.
+   */
+  fun maxDepth(address: Address): Int
+
+  companion object {
+    /** Don't pipeline requests. This is OkHttp's historical behavior. */
+    @JvmField
+    val NONE: Http1PipeliningPolicy = Http1PipeliningPolicy { 1 }
+
+    /** Returns a policy that pipelines up to [maxDepth] requests to every address. */
+    @JvmStatic
+    fun fixedDepth(maxDepth: Int): Http1PipeliningPolicy {
+      require(maxDepth >= 1) { "maxDepth < 1: $maxDepth" }
+      return Http1PipeliningPolicy { maxDepth }
+    }
+  }
+}
@@ -33,8 +33,16 @@ import okhttp3.Protocol.HTTP_2
 import okhttp3.internal.asFactory
 import okhttp3.internal.checkDuration
 import okhttp3.internal.concurrent.TaskRunner
+import okhttp3.internal.connection.AltSvcDatabase
+import okhttp3.internal.connection.ConnectTimeDatabase
+import okhttp3.internal.connection.ConnectionSpecDatabase
 import okhttp3.internal.connection.RealCall
 import okhttp3.internal.connection.RouteDatabase
+import okhttp3.internal.connection.TlsSessionIdDatabase
+import okhttp3.internal.http.ExpectContinueDatabase
+import okhttp3.internal.http2.ExtendedConnectDatabase
+import okhttp3.internal.http2.Hpack
+import okhttp3.internal.http2.flowcontrol.ReceiveBudget
 import okhttp3.internal.immutableListOf
 import okhttp3.internal.platform.Platform
 import okhttp3.internal.proxy.NullProxySelector
@@ -174,15 +182,24 @@ open class OkHttpClient internal constructor(
   @get:JvmName("followSslRedirects")
   val followSslRedirects: Boolean = builder.followSslRedirects
 
+  @get:JvmName("followAltSvc")
+  val followAltSvc: Boolean = builder.followAltSvc
+
   @get:JvmName("cookieJar")
   val cookieJar: CookieJar = builder.cookieJar
 
   @get:JvmName("cache")
   val cache: Cache? = builder.cache
 
+  @get:JvmName("tlsSessionCache")
+  val tlsSessionCache: TlsSessionCache? = builder.tlsSessionCache
+
   @get:JvmName("dns")
   val dns: Dns = builder.dns
 
+  @get:JvmName("addressSelectionStrategy")
+  val addressSelectionStrategy: AddressSelectionStrategy = builder.addressSelectionStrategy
+
   @get:JvmName("proxy")
   val proxy: Proxy? = builder.proxy
 
@@ -204,6 +221,9 @@ open class OkHttpClient internal constructor(
 
   internal val sslSocketFactoryOrNull: SSLSocketFactory?
 
+  /** True if [sslSocketFactoryOrNull] was built from the platform's defaults. */
+  internal val platformSslSocketFactory: Boolean
+
   @get:JvmName("sslSocketFactory")
   val sslSocketFactory: SSLSocketFactory
     get() = sslSocketFactoryOrNull ?: throw IllegalStateException("CLEARTEXT-only client")
@@ -252,6 +272,64 @@ open class OkHttpClient internal constructor(
   @get:JvmName("pingIntervalMillis")
   val pingIntervalMillis: Int = builder.pingInterval
 
+  /** True if HTTP/2 receive windows are sized to the connection's bandwidth-delay product. */
+  @get:JvmName("http2ReceiveWindowAutotuning")
+  val http2ReceiveWindowAutotuning: Boolean = builder.http2ReceiveWindowAutotuning
+
+  /** True if HTTP/2 control frames and flushes are queued and written in batches. */
+  @get:JvmName("http2FrameCoalescing")
+  val http2FrameCoalescing: Boolean = builder.http2FrameCoalescing
+
+  /** Bytes each HTTP/2 connection may buffer before it stops granting flow-control credit. */
+  @get:JvmName("http2ConnectionReceiveBudget")
+  val http2ConnectionReceiveBudget: Long = builder.http2ConnectionReceiveBudget
+
+  /** Bytes all HTTP/2 connections may buffer before they stop granting flow-control credit. */
+  @get:JvmName("http2ClientReceiveBudget")
+  val http2ClientReceiveBudget: Long = builder.http2ReceiveBudget?.maxByteCount ?: Long.MAX_VALUE
+
+  /**
+   * Bytes received on HTTP/2 connections and not yet consumed by the application. This is 0 unless
+   * a receive budget is configured.
+   */
+  @get:JvmName("http2ReceiveBufferedByteCount")
+  val http2ReceiveBufferedByteCount: Long
+    get() = http2ReceiveBudget?.bufferedByteCount ?: 0L
+
+  internal val http2ReceiveBudget: ReceiveBudget? = builder.http2ReceiveBudget
+
+  /** The size of the HPACK dynamic table that HTTP/2 connections advertise to servers. */
+  @get:JvmName("http2HeaderTableSize")
+  val http2HeaderTableSize: Int = builder.http2HeaderTableSize
+
+  /** Decides which request headers HTTP/2 connections add to the HPACK dynamic table. */
+  @get:JvmName("http2HeaderIndexingStrategy")
+  val http2HeaderIndexingStrategy: HeaderIndexingStrategy = builder.http2HeaderIndexingStrategy
+
+  /** True if idle HTTP/2 connections share a reader rather than each holding a thread. */
+  @get:JvmName("http2SharedReader")
+  val http2SharedReader: Boolean = builder.http2SharedReader
+
+  /** Decides how many `GET` and `HEAD` requests are pipelined on each HTTP/1.1 connection. */
+  @get:JvmName("http1PipeliningPolicy")
+  val http1PipeliningPolicy: Http1PipeliningPolicy = builder.http1PipeliningPolicy
+
+  /** The fewest bytes that chunked HTTP/1.1 request bodies buffer before they write a chunk. */
+  @get:JvmName("http1MinimumChunkSize")
+  val http1MinimumChunkSize: Long = builder.http1MinimumChunkSize
+
+  /** Decides which HTTP/1.1 requests are sent with `Expect: 100-continue`. */
+  @get:JvmName("expectContinuePolicy")
+  val expectContinuePolicy: ExpectContinuePolicy = builder.expectContinuePolicy
+
+  /** How long to wait for `100 Continue` before sending a request body anyway (in milliseconds). */
+  @get:JvmName("expectContinueTimeoutMillis")
+  val expectContinueTimeoutMillis: Int = builder.expectContinueTimeout
+
+  /** The largest one-shot request body that is copied so it can be replayed on another stream. */
+  @get:JvmName("http2ReplayBufferSize")
+  val http2ReplayBufferSize: Long = builder.http2ReplayBufferSize
+
   /** Web socket close timeout (in milliseconds). */
   @get:JvmName("webSocketCloseTimeout")
   val webSocketCloseTimeout: Int = builder.webSocketCloseTimeout
@@ -263,7 +341,23 @@ open class OkHttpClient internal constructor(
   @get:JvmName("minWebSocketMessageToCompress")
   val minWebSocketMessageToCompress: Long = builder.minWebSocketMessageToCompress
 
+  /** True if web sockets may be carried on streams of HTTP/2 connections. */
+  @get:JvmName("webSocketOverHttp2")
+  val webSocketOverHttp2: Boolean = builder.webSocketOverHttp2
+
   internal val routeDatabase: RouteDatabase = builder.routeDatabase ?: RouteDatabase()
+  internal val connectionSpecDatabase: ConnectionSpecDatabase =
+    builder.connectionSpecDatabase ?: ConnectionSpecDatabase()
+  internal val connectTimeDatabase: ConnectTimeDatabase =
+    builder.connectTimeDatabase ?: ConnectTimeDatabase()
+  internal val tlsSessionIdDatabase: TlsSessionIdDatabase =
+    builder.tlsSessionIdDatabase ?: TlsSessionIdDatabase()
+  internal val altSvcDatabase: AltSvcDatabase? =
+    if (followAltSvc) builder.altSvcDatabase ?: AltSvcDatabase() else null
+  internal val expectContinueDatabase: ExpectContinueDatabase =
+    builder.expectContinueDatabase ?: ExpectContinueDatabase()
+  internal val extendedConnectDatabase: ExtendedConnectDatabase =
+    builder.extendedConnectDatabase ?: ExtendedConnectDatabase()
   internal val taskRunner: TaskRunner = builder.taskRunner ?: TaskRunner.INSTANCE
 
   @get:JvmName("connectionPool")
@@ -277,11 +371,13 @@ open class OkHttpClient internal constructor(
 
   init {
     if (connectionSpecs.none { it.isTls }) {
+      this.platformSslSocketFactory = false
       this.sslSocketFactoryOrNull = null
       this.certificateChainCleaner = null
       this.x509TrustManager = null
       this.certificatePinner = CertificatePinner.DEFAULT
     } else if (builder.sslSocketFactoryOrNull != null) {
+      this.platformSslSocketFactory = builder.platformSslSocketFactory
       this.sslSocketFactoryOrNull = builder.sslSocketFactoryOrNull
       this.certificateChainCleaner = builder.certificateChainCleaner!!
       this.x509TrustManager = builder.x509TrustManagerOrNull!!
@@ -289,8 +385,13 @@ open class OkHttpClient internal constructor(
         builder.certificatePinner
           .withCertificateChainCleaner(certificateChainCleaner)
     } else {
+      this.platformSslSocketFactory = true
       this.x509TrustManager = Platform.get().platformTrustManager()
-      this.sslSocketFactoryOrNull = Platform.get().newSslSocketFactory(x509TrustManager)
+      this.sslSocketFactoryOrNull =
+        when (tlsSessionCache) {
+          null -> Platform.get().newSslSocketFactory(x509TrustManager)
+          else -> Platform.get().newSslSocketFactory(x509TrustManager, tlsSessionCache)
+        }
       this.certificateChainCleaner = CertificateChainCleaner.get(x509TrustManager)
       this.certificatePinner =
         builder.certificatePinner
@@ -595,15 +696,21 @@ open class OkHttpClient internal constructor(
     internal var authenticator: Authenticator = Authenticator.NONE
     internal var followRedirects = true
     internal var followSslRedirects = true
+    internal var followAltSvc = false
     internal var cookieJar: CookieJar = CookieJar.NO_COOKIES
     internal var cache: Cache? = null
+    internal var tlsSessionCache: TlsSessionCache? = null
     internal var dns: Dns = Dns.SYSTEM
+    internal var addressSelectionStrategy: AddressSelectionStrategy = AddressSelectionStrategy.FIRST
     internal var proxy: Proxy? = null
     internal var proxySelector: ProxySelector? = null
     internal var proxyAuthenticator: Authenticator = Authenticator.NONE
     internal var socketFactory: SocketFactory = SocketFactory.getDefault()
     internal var sslSocketFactoryOrNull: SSLSocketFactory? = null
     internal var x509TrustManagerOrNull: X509TrustManager? = null
+
+    /** True if [sslSocketFactoryOrNull] was built from the platform's defaults. */
+    internal var platformSslSocketFactory = false
     internal var connectionSpecs: List<ConnectionSpec> = DEFAULT_CONNECTION_SPECS
     internal var protocols: List<Protocol> = DEFAULT_PROTOCOLS
     internal var hostnameVerifier: HostnameVerifier = OkHostnameVerifier
@@ -614,9 +721,28 @@ open class OkHttpClient internal constructor(
     internal var readTimeout = 10_000
     internal var writeTimeout = 10_000
     internal var pingInterval = 0
+    internal var http2ReceiveWindowAutotuning = false
+    internal var http2FrameCoalescing = false
+    internal var http2ConnectionReceiveBudget = Long.MAX_VALUE
+    internal var http2ReceiveBudget: ReceiveBudget? = null
+    internal var http2HeaderTableSize = Hpack.SETTINGS_HEADER_TABLE_SIZE
+    internal var http2HeaderIndexingStrategy = HeaderIndexingStrategy.INDEX_ALL
+    internal var http2SharedReader = false
+    internal var http1PipeliningPolicy = Http1PipeliningPolicy.NONE
+    internal var http1MinimumChunkSize = 16_384L
+    internal var expectContinuePolicy = ExpectContinuePolicy.NONE
+    internal var expectContinueTimeout = 1_000
+    internal var http2ReplayBufferSize = 0L
     internal var webSocketCloseTimeout = RealWebSocket.CANCEL_AFTER_CLOSE_MILLIS.toInt()
     internal var minWebSocketMessageToCompress = RealWebSocket.DEFAULT_MINIMUM_DEFLATE_SIZE
+    internal var webSocketOverHttp2 = false
     internal var routeDatabase: RouteDatabase? = null
+    internal var connectionSpecDatabase: ConnectionSpecDatabase? = null
+    internal var connectTimeDatabase: ConnectTimeDatabase? = null
+    internal var tlsSessionIdDatabase: TlsSessionIdDatabase? = null
+    internal var altSvcDatabase: AltSvcDatabase? = null
+    internal var expectContinueDatabase: ExpectContinueDatabase? = null
+    internal var extendedConnectDatabase: ExtendedConnectDatabase? = null
     internal var taskRunner: TaskRunner? = null
 
     internal constructor(okHttpClient: OkHttpClient) : this() {
@@ -630,15 +756,19 @@ open class OkHttpClient internal constructor(
       this.authenticator = okHttpClient.authenticator
       this.followRedirects = okHttpClient.followRedirects
       this.followSslRedirects = okHttpClient.followSslRedirects
+      this.followAltSvc = okHttpClient.followAltSvc
       this.cookieJar = okHttpClient.cookieJar
       this.cache = okHttpClient.cache
+      this.tlsSessionCache = okHttpClient.tlsSessionCache
       this.dns = okHttpClient.dns
+      this.addressSelectionStrategy = okHttpClient.addressSelectionStrategy
       this.proxy = okHttpClient.proxy
       this.proxySelector = okHttpClient.proxySelector
       this.proxyAuthenticator = okHttpClient.proxyAuthenticator
       this.socketFactory = okHttpClient.socketFactory
       this.sslSocketFactoryOrNull = okHttpClient.sslSocketFactoryOrNull
       this.x509TrustManagerOrNull = okHttpClient.x509TrustManager
+      this.platformSslSocketFactory = okHttpClient.platformSslSocketFactory
       this.connectionSpecs = okHttpClient.connectionSpecs
       this.protocols = okHttpClient.protocols
       this.hostnameVerifier = okHttpClient.hostnameVerifier
@@ -649,9 +779,28 @@ open class OkHttpClient internal constructor(
       this.readTimeout = okHttpClient.readTimeoutMillis
       this.writeTimeout = okHttpClient.writeTimeoutMillis
       this.pingInterval = okHttpClient.pingIntervalMillis
+      this.http2ReceiveWindowAutotuning = okHttpClient.http2ReceiveWindowAutotuning
+      this.http2FrameCoalescing = okHttpClient.http2FrameCoalescing
+      this.http2ConnectionReceiveBudget = okHttpClient.http2ConnectionReceiveBudget
+      this.http2ReceiveBudget = okHttpClient.http2ReceiveBudget
+      this.http2HeaderTableSize = okHttpClient.http2HeaderTableSize
+      this.http2HeaderIndexingStrategy = okHttpClient.http2HeaderIndexingStrategy
+      this.http2SharedReader = okHttpClient.http2SharedReader
+      this.http1PipeliningPolicy = okHttpClient.http1PipeliningPolicy
+      this.http1MinimumChunkSize = okHttpClient.http1MinimumChunkSize
+      this.expectContinuePolicy = okHttpClient.expectContinuePolicy
+      this.expectContinueTimeout = okHttpClient.expectContinueTimeoutMillis
+      this.http2ReplayBufferSize = okHttpClient.http2ReplayBufferSize
       this.webSocketCloseTimeout = okHttpClient.webSocketCloseTimeout
       this.minWebSocketMessageToCompress = okHttpClient.minWebSocketMessageToCompress
+      this.webSocketOverHttp2 = okHttpClient.webSocketOverHttp2
       this.routeDatabase = okHttpClient.routeDatabase
+      this.connectionSpecDatabase = okHttpClient.connectionSpecDatabase
+      this.connectTimeDatabase = okHttpClient.connectTimeDatabase
+      this.tlsSessionIdDatabase = okHttpClient.tlsSessionIdDatabase
+      this.altSvcDatabase = okHttpClient.altSvcDatabase
+      this.expectContinueDatabase = okHttpClient.expectContinueDatabase
+      this.extendedConnectDatabase = okHttpClient.extendedConnectDatabase
       this.taskRunner = okHttpClient.taskRunner
     }
 
@@ -794,6 +943,24 @@ open class OkHttpClient internal constructor(
         this.followSslRedirects = followProtocolRedirects
       }
 
+    /**
+     * Configure this client to connect to alternative services advertised by HTTPS origins. Servers
+     * advertise alternatives with the `Alt-Svc` response header and HTTP/2 `ALTSVC` frames, for
+     * example to direct clients to a closer edge or to a port that supports HTTP/2.
+     *
+     * When enabled, new connections to an origin first attempt its most recently advertised
+     * alternative, until the alternative's max age elapses. If that fails the origin itself is
+     * attempted. Alternatives must present a certificate that is valid for the origin. Only `h2`
+     * and `http/1.1` alternatives are supported. Alternatives are not used for connections
+     * through HTTP proxies.
+     *
+     * Defaults to false.
+     */
+    fun followAltSvc(followAltSvc: Boolean) =
+      apply {
+        this.followAltSvc = followAltSvc
+      }
+
     /**
      * Sets the handler that can accept cookies from incoming HTTP responses and provides cookies to
      * outgoing HTTP requests.
@@ -811,6 +978,26 @@ open class OkHttpClient internal constructor(
         this.cache = cache
       }
 
+    /**
+     * Sets the cache used to resume TLS sessions on new connections. Resumed sessions skip the
+     * certificate exchange, which makes connecting faster.
+     *
+     * This has no effect on the TLS handshake if a custom [sslSocketFactory] is configured.
+     */
+    fun tlsSessionCache(tlsSessionCache: TlsSessionCache?) =
+      apply {
+        if (tlsSessionCache != this.tlsSessionCache && platformSslSocketFactory) {
+          // Build a new platform socket factory that uses this cache.
+          this.routeDatabase = null
+          this.sslSocketFactoryOrNull = null
+          this.x509TrustManagerOrNull = null
+          this.certificateChainCleaner = null
+          this.platformSslSocketFactory = false
+        }
+
+        this.tlsSessionCache = tlsSessionCache
+      }
+
     internal fun taskRunner(taskRunner: TaskRunner) =
       apply {
         this.taskRunner = taskRunner
@@ -829,6 +1016,18 @@ open class OkHttpClient internal constructor(
         this.dns = dns
       }
 
+    /**
+     * Sets the strategy that chooses which IP address new connections try first, and which pooled
+     * connection carries each call when several are eligible. Use this to spread load across the
+     * servers of a host that resolves to many IP addresses.
+     *
+     * If unset, the [first][AddressSelectionStrategy.FIRST] candidate is always chosen.
+     */
+    fun addressSelectionStrategy(addressSelectionStrategy: AddressSelectionStrategy) =
+      apply {
+        this.addressSelectionStrategy = addressSelectionStrategy
+      }
+
     /**
      * Sets the HTTP proxy that will be used by connections created by this client. This takes
      * precedence over [proxySelector], which is only honored when this proxy is null (which it is
@@ -911,6 +1110,7 @@ open class OkHttpClient internal constructor(
         }
 
         this.sslSocketFactoryOrNull = sslSocketFactory
+        this.platformSslSocketFactory = false
         this.x509TrustManagerOrNull =
           Platform.get().trustManager(sslSocketFactory) ?: throw IllegalStateException(
             "Unable to extract the trust manager on ${Platform.get()}, " +
@@ -974,6 +1174,7 @@ open class OkHttpClient internal constructor(
       }
 
       this.sslSocketFactoryOrNull = sslSocketFactory
+      this.platformSslSocketFactory = false
       this.certificateChainCleaner = CertificateChainCleaner.get(trustManager)
       this.x509TrustManagerOrNull = trustManager
     }
@@ -1320,6 +1521,281 @@ open class OkHttpClient internal constructor(
         pingInterval = checkDuration("duration", duration)
       }
 
+    /**
+     * Configure this client to size the receive windows of HTTP/2 connections dynamically.
+     *
+     * By default each HTTP/2 connection and stream has a fixed 16 MiB receive window. This may limit
+     * throughput on links with high bandwidth and high latency, and lets servers buffer far more
+     * data than the application consumes.
+     *
+     * When enabled, this client estimates each connection's bandwidth-delay product by measuring
+     * how many bytes arrive during a ping's round trip. Receive windows grow while throughput is
+     * limited by the window, up to 64 MiB, and shrink when the application doesn't consume the data
+     * it receives.
+     *
+     * Defaults to disabled.
+     */
+    fun http2ReceiveWindowAutotuning(http2ReceiveWindowAutotuning: Boolean) =
+      apply {
+        this.http2ReceiveWindowAutotuning = http2ReceiveWindowAutotuning
+      }
+
+    /**
+     * Configure this client to coalesce the frames it writes on HTTP/2 connections.
+     *
+     * By default each window update, ping reply, and stream reset is written and flushed by its own
+     * task, and each stream flushes the connection when it flushes its request body. With many
+     * concurrent streams this makes many small writes to the socket.
+     *
+     * When enabled, these frames are queued and written by a single task per connection. Window
+     * updates for the same stream are merged, and each batch of frames is written with a single
+     * flush. When a stream flushes the connection it writes the queued frames too.
+     *
+     * Defaults to disabled.
+     */
+    fun http2FrameCoalescing(http2FrameCoalescing: Boolean) =
+      apply {
+        this.http2FrameCoalescing = http2FrameCoalescing
+      }
+
+    /**
+     * Limits the bytes that each HTTP/2 connection receives and buffers before the application
+     * consumes them.
+     *
+     * Each HTTP/2 stream buffers up to its receive window. With large windows and many streams that
+     * the application reads slowly, a single connection may hold a lot of memory.
+     *
+     * When a connection has buffered [byteCount] bytes, it stops sending `WINDOW_UPDATE` frames
+     * until the application consumes some data. Streams share the budget evenly, so a slow stream
+     * doesn't take credit from the others. Because the peer may already be permitted to send,
+     * buffered data may exceed the budget by up to one receive window.
+     *
+     * Use [OkHttpClient.http2ReceiveBufferedByteCount] to monitor how much data is buffered.
+     *
+     * By default HTTP/2 connections have no receive budget.
+     */
+    fun http2ConnectionReceiveBudget(byteCount: Long) =
+      apply {
+        require(byteCount > 0L) { "byteCount <= 0: $byteCount" }
+        this.http2ConnectionReceiveBudget = byteCount
+        if (http2ReceiveBudget == null) {
+          // Count the bytes of all connections, without limiting them.
+          this.http2ReceiveBudget = ReceiveBudget(Long.MAX_VALUE)
+        }
+      }
+
+    /**
+     * Limits the bytes that all of this client's HTTP/2 connections receive and buffer before the
+     * application consumes them.
+     *
+     * When the connections have buffered [byteCount] bytes in total, they stop sending
+     * `WINDOW_UPDATE` frames until the application consumes some data. This works like
+     * [http2ConnectionReceiveBudget], and a connection stops when either budget is used up.
+     *
+     * Clients derived from this one with [newBuilder] share this budget. Use
+     * [OkHttpClient.http2ReceiveBufferedByteCount] to monitor how much data is buffered.
+     *
+     * By default HTTP/2 connections have no receive budget.
+     */
+    fun http2ClientReceiveBudget(byteCount: Long) =
+      apply {
+        require(byteCount > 0L) { "byteCount <= 0: $byteCount" }
+        this.http2ReceiveBudget = ReceiveBudget(byteCount)
+      }
+
+    /**
+     * Sets the size of the HPACK dynamic tables that HTTP/2 connections use to compress headers.
+     *
+     * HTTP/2 compresses headers by storing them in tables shared by the client and server. Both
+     * tables default to 4,096 bytes, which is too small to hold the large authorization, cookie,
+     * and tracing headers that some applications send on every request. Headers that don't fit are
+     * sent in full each time.
+     *
+     * This size is advertised to servers with `SETTINGS_HEADER_TABLE_SIZE` for the response
+     * headers they send. OkHttp also uses a table of up to this size for the request headers it
+     * sends, if the server permits it. Each connection holds up to two tables of this size.
+     *
+     * Defaults to 4,096 bytes.
+     */
+    fun http2HeaderTableSize(byteCount: Int) =
+      apply {
+        require(byteCount >= 0) { "byteCount < 0: $byteCount" }
+        this.http2HeaderTableSize = byteCount
+      }
+
+    /**
+     * Sets the strategy that decides which request headers HTTP/2 connections add to the HPACK
+     * dynamic table.
+     *
+     * Use this to keep headers whose values change on every request, like request IDs, from
+     * evicting headers that repeat. Sensitive headers may be sent as never indexed literals so that
+     * intermediaries don't index them either. See [HeaderIndexingStrategy.create].
+     *
+     * Defaults to [HeaderIndexingStrategy.INDEX_ALL].
+     */
+    fun http2HeaderIndexingStrategy(http2HeaderIndexingStrategy: HeaderIndexingStrategy) =
+      apply {
+        this.http2HeaderIndexingStrategy = http2HeaderIndexingStrategy
+      }
+
+    /**
+     * Configure this client to read idle HTTP/2 connections with a shared reader.
+     *
+     * By default each HTTP/2 connection has a reader that occupies a thread for as long as the
+     * connection is open, even while it's idle in the connection pool. Applications that keep many
+     * connections open hold many threads that are mostly blocked.
+     *
+     * When enabled, a connection's reader returns its thread when the connection has no streams and
+     * no bytes arrive promptly. A single task per connection pool periodically checks the sockets
+     * of these idle connections and restarts a reader when its socket has bytes to read. Readers
+     * also restart immediately when a stream is created or a ping is sent. Frames that arrive on an
+     * idle connection, like pings and `GOAWAY`, may be processed up to 100 milliseconds late.
+     *
+     * Idle connections aren't free. The task checks each parked socket every 100 milliseconds while
+     * any are parked. Polling can't notice that the peer closed a socket, so each parked reader
+     * also restarts to read its socket itself, first after 1 second and then at intervals that
+     * double up to the connection pool's keep alive duration. A connection that the peer closed may
+     * not be noticed until then.
+     *
+     * Defaults to disabled.
+     */
+    fun http2SharedReader(http2SharedReader: Boolean) =
+      apply {
+        this.http2SharedReader = http2SharedReader
+      }
+
+    /**
+     * Sets the policy that decides how many requests may be pipelined on each HTTP/1.1 connection.
+     *
+     * With pipelining, `GET` and `HEAD` requests without a body are written to a busy connection
+     * without waiting for the responses to earlier requests. The server returns responses in the
+     * order it received the requests. This permits high request rates to HTTP/1.1 servers over few
+     * connections, but a slow response delays all of the responses behind it.
+     *
+     * If the server closes the connection before it answers every pipelined request, the
+     * unanswered requests are retried on another connection without pipelining. This requires
+     * [retryOnConnectionFailure].
+     *
+     * Only enable pipelining for servers that are known to support it. See
+     * [Http1PipeliningPolicy.fixedDepth].
+     *
+     * Defaults to [Http1PipeliningPolicy.NONE].
+     */
+    fun http1PipeliningPolicy(http1PipeliningPolicy: Http1PipeliningPolicy) =
+      apply {
+        this.http1PipeliningPolicy = http1PipeliningPolicy
+      }
+
+    /**
+     * Sets the fewest bytes that a chunked HTTP/1.1 request body buffers before it writes a chunk.
+     *
+     * Request bodies of unknown length are sent with chunked transfer encoding. Each chunk costs a
+     * size line on the wire, so bodies that write many small pieces are buffered until at least
+     * [byteCount] bytes are ready. Buffered bytes are always written when the body is flushed or
+     * closed, so bodies that stream data interactively should flush after each piece.
+     *
+     * Set this to 0 to write a chunk for every write to the request body.
+     *
+     * Defaults to 16 KiB.
+     */
+    fun http1MinimumChunkSize(byteCount: Long) =
+      apply {
+        require(byteCount >= 0L) { "byteCount < 0: $byteCount" }
+        this.http1MinimumChunkSize = byteCount
+      }
+
+    /**
+     * Sets the policy that decides which HTTP/1.1 requests are sent with `Expect: 100-continue`.
+     *
+     * With this header the server can reject a request, such as when it requires authentication or
+     * redirects elsewhere, before the client transmits the request body. This saves the bandwidth
+     * of large uploads that servers often reject, at the cost of a round trip for those they
+     * accept. Servers that don't answer the header are given [expectContinueTimeout] to respond.
+     *
+     * Requests that already have an `Expect` header are sent as-is. See
+     * [ExpectContinuePolicy.minimumContentLength].
+     *
+     * Defaults to [ExpectContinuePolicy.NONE].
+     */
+    fun expectContinuePolicy(expectContinuePolicy: ExpectContinuePolicy) =
+      apply {
+        this.expectContinuePolicy = expectContinuePolicy
+      }
+
+    /**
+     * Sets how long to wait for a `100 Continue` response to a request that [expectContinuePolicy]
+     * sent with `Expect: 100-continue`. If the server doesn't respond in time, the request body is
+     * sent anyway and the server's origin isn't sent the header again for a while. A value of 0
+     * waits for the server's response until the [readTimeout], otherwise values must be between 1
+     * and [Integer.MAX_VALUE] when converted to milliseconds.
+     *
+     * This timeout doesn't apply to requests that the application sent with an `Expect` header.
+     *
+     * The default value is 1 second.
+     */
+    fun expectContinueTimeout(
+      timeout: Long,
+      unit: TimeUnit,
+    ) = apply {
+      expectContinueTimeout = checkDuration("timeout", timeout, unit)
+    }
+
+    /**
+     * Sets how long to wait for a `100 Continue` response to a request that [expectContinuePolicy]
+     * sent with `Expect: 100-continue`. If the server doesn't respond in time, the request body is
+     * sent anyway and the server's origin isn't sent the header again for a while. A value of 0
+     * waits for the server's response until the [readTimeout], otherwise values must be between 1
+     * and [Integer.MAX_VALUE] when converted to milliseconds.
+     *
+     * This timeout doesn't apply to requests that the application sent with an `Expect` header.
+     *
+     * The default value is 1 second.
+     */
+    @Suppress("NewApi")
+    @IgnoreJRERequirement
+    fun expectContinueTimeout(duration: Duration) =
+      apply {
+        expectContinueTimeout(duration.toMillis(), MILLISECONDS)
+      }
+
+    /**
+     * Sets how long to wait for a `100 Continue` response to a request that [expectContinuePolicy]
+     * sent with `Expect: 100-continue`. If the server doesn't respond in time, the request body is
+     * sent anyway and the server's origin isn't sent the header again for a while. A value of 0
+     * waits for the server's response until the [readTimeout], otherwise values must be between 1
+     * and [Integer.MAX_VALUE] when converted to milliseconds.
+     *
+     * This timeout doesn't apply to requests that the application sent with an `Expect` header.
+     *
+     * The default value is 1 second.
+     */
+    fun expectContinueTimeout(duration: KotlinDuration) =
+      apply {
+        expectContinueTimeout = checkDuration("duration", duration)
+      }
+
+    /**
+     * Sets the largest one-shot request body that is buffered so it can be sent again on another
+     * HTTP/2 stream.
+     *
+     * When an HTTP/2 server shuts down a connection with `GOAWAY`, or otherwise refuses a stream
+     * with `REFUSED_STREAM`, it promises that it didn't process the refused requests. OkHttp
+     * retries these requests on another connection if [retryOnConnectionFailure] is enabled. That
+     * isn't possible for [one-shot][RequestBody.isOneShot] request bodies because their content
+     * can only be written once.
+     *
+     * When this is set, one-shot request bodies with a known length of at most [byteCount] bytes
+     * are copied into memory before they're sent on an HTTP/2 stream. If the stream is refused, the
+     * copy is sent instead.
+     *
+     * Defaults to 0, which never copies one-shot request bodies.
+     */
+    fun http2ReplayBufferSize(byteCount: Long) =
+      apply {
+        require(byteCount >= 0L) { "byteCount < 0: $byteCount" }
+        this.http2ReplayBufferSize = byteCount
+      }
+
     /**
      * Sets the close timeout for web socket connections. A value of 0 means no timeout, otherwise
      * values must be between 1 and [Integer.MAX_VALUE] when converted to milliseconds.
@@ -1379,6 +1855,25 @@ open class OkHttpClient internal constructor(
         this.minWebSocketMessageToCompress = bytes
       }
 
+    /**
+     * Configure whether web sockets may be carried on HTTP/2 connections. When enabled, a web
+     * socket to an HTTP/2 server is bootstrapped with an extended CONNECT request as specified by
+     * [RFC 8441][rfc_8441]. It is carried on a single stream of a pooled connection, which remains
+     * available to other calls and web sockets.
+     *
+     * If the server doesn't accept extended CONNECT requests, the web socket is retried using an
+     * HTTP/1.1 upgrade on a connection of its own. The client remembers this, and later web sockets
+     * to the same origin use HTTP/1.1 immediately.
+     *
+     * Defaults to false, which always uses HTTP/1.1 for web sockets.
+     *
+     * [rfc_8441]: https://datatracker.ietf.org/doc/html/rfc8441
+     */
+    fun webSocketOverHttp2(webSocketOverHttp2: Boolean) =
+      apply {
+        this.webSocketOverHttp2 = webSocketOverHttp2
+      }
+
     fun build(): OkHttpClient = OkHttpClient(this)
   }
 
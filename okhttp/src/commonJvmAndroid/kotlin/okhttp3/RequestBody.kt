@@ -19,6 +19,7 @@ import java.io.File
 import java.io.FileDescriptor
 import java.io.FileInputStream
 import java.io.IOException
+import okhttp3.internal.FileRequestBody
 import okhttp3.internal.checkOffsetAndCount
 import okhttp3.internal.chooseCharset
 import okio.BufferedSink
@@ -177,19 +178,18 @@ abstract class RequestBody {
       }
     }
 
-    /** Returns a new request body that transmits the content of this. */
+    /**
+     * Returns a new request body that transmits the content of this.
+     *
+     * On plaintext HTTP/1.1 connections the file is sent directly from the file system to the
+     * socket with [FileChannel.transferTo][java.nio.channels.FileChannel.transferTo], rather than
+     * copied through memory. This requires sockets that have a channel, such as those created by
+     * a [SocketFactory][javax.net.SocketFactory] that returns `SocketChannel.open().socket()`.
+     */
     @JvmStatic
     @JvmName("create")
     fun File.asRequestBody(contentType: MediaType? = null): RequestBody =
-      object : RequestBody() {
-        override fun contentType() = contentType
-
-        override fun contentLength() = length()
-
-        override fun writeTo(sink: BufferedSink) {
-          source().use { source -> sink.writeAll(source) }
-        }
-      }
+      FileRequestBody(this, contentType)
 
     /** Returns a new request body that transmits the content of this. */
     @JvmStatic
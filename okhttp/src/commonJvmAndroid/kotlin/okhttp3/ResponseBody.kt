@@ -16,18 +16,25 @@
 package okhttp3
 
 import java.io.Closeable
+import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStream
 import java.io.InputStreamReader
 import java.io.Reader
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
 import java.nio.charset.Charset
 import okhttp3.internal.charsetOrUtf8
 import okhttp3.internal.chooseCharset
 import okhttp3.internal.closeQuietly
+import okhttp3.internal.http.FileTransferSource
+import okhttp3.internal.http.RealResponseBody
 import okhttp3.internal.readBomAsCharset
 import okio.Buffer
 import okio.BufferedSource
 import okio.ByteString
+import okio.FileSystem
+import okio.Path
 import okio.use
 
 /**
@@ -52,6 +59,7 @@ import okio.use
  * * `Response.body().byteStream().close()`
  * * `Response.body().bytes()`
  * * `Response.body().string()`
+ * * `Response.body().writeTo()`
  *
  * There is no benefit to invoking multiple `close()` methods for the same response body.
  *
@@ -97,6 +105,7 @@ import okio.use
  * Because this class does not buffer the full response in memory, the application may not
  * re-read the bytes of the response. Use this one shot to read the entire response into memory with
  * [bytes] or [string]. Or stream the response with either [source], [byteStream], or [charStream].
+ * Or save the response to a file with `writeTo`.
  */
 abstract class ResponseBody : Closeable {
   /** Multiple calls to [charStream] must return the same instance. */
@@ -190,6 +199,116 @@ abstract class ResponseBody : Closeable {
       source.readString(charset = source.readBomAsCharset(charset()))
     }
 
+  /**
+   * Writes the response to [path], replacing its content if it exists, and closes this body.
+   * Returns the number of bytes written.
+   *
+   * Files on [FileSystem.SYSTEM] are written with a [FileChannel]. See `writeTo(FileChannel)`.
+   */
+  @Throws(IOException::class)
+  @JvmOverloads
+  fun writeTo(
+    path: Path,
+    fileSystem: FileSystem = FileSystem.SYSTEM,
+  ): Long {
+    if (fileSystem !== FileSystem.SYSTEM) {
+      return source().use { source ->
+        fileSystem.write(path) { writeAll(source) }
+      }
+    }
+
+    return FileOutputStream(path.toFile()).use { outputStream ->
+      writeTo(outputStream.channel)
+    }
+  }
+
+  /**
+   * Writes the response to [channel] at its current position, advances the position past the
+   * written bytes, and closes this body. Returns the number of bytes written.
+   *
+   * If the response's length is known, the file is first extended to hold it. Plaintext HTTP/1.1
+   * responses of a known length are written directly from the socket with
+   * [FileChannel.transferFrom], without copying them through memory. This requires sockets that
+   * have a channel, such as those created by a [SocketFactory][javax.net.SocketFactory] that
+   * returns `SocketChannel.open().socket()`. Other responses are copied in large blocks.
+   */
+  @Throws(IOException::class)
+  fun writeTo(channel: FileChannel): Long =
+    source().use { source ->
+      val position = channel.position()
+      val contentLength = contentLength()
+      if (contentLength > 0L && channel.size() < position + contentLength) {
+        // Allocate the file's size once rather than growing it with each write.
+        channel.write(ByteBuffer.allocate(1), position + contentLength - 1L)
+      }
+
+      val fileTransferSource = (this as? RealResponseBody)?.fileTransferSource
+      val byteCount =
+        if (fileTransferSource?.supportsFileTransfer == true) {
+          transfer(source, fileTransferSource, channel, position)
+        } else {
+          copy(source, channel, position, contentLength)
+        }
+      channel.position(position + byteCount)
+      byteCount
+    }
+
+  /** Writes [source] to [channel], taking bytes from [fileTransferSource] once it's unbuffered. */
+  private fun transfer(
+    source: BufferedSource,
+    fileTransferSource: FileTransferSource,
+    channel: FileChannel,
+    position: Long,
+  ): Long {
+    var byteCount = 0L
+    while (source.buffer.size > 0L) {
+      byteCount += channel.transferFrom(source.buffer, position + byteCount, source.buffer.size)
+    }
+    while (true) {
+      val transferred = fileTransferSource.transferTo(channel, position + byteCount, Long.MAX_VALUE)
+      if (transferred == -1L) return byteCount
+      byteCount += transferred
+    }
+  }
+
+  /**
+   * Writes [source] to [channel] through a buffer no larger than the body. Large bodies use a
+   * direct buffer, which the channel needn't copy.
+   */
+  private fun copy(
+    source: BufferedSource,
+    channel: FileChannel,
+    position: Long,
+    contentLength: Long,
+  ): Long {
+    var byteCount = 0L
+    val bufferSize =
+      when (contentLength) {
+        -1L -> COPY_BUFFER_SIZE
+        else -> contentLength.coerceIn(1L, COPY_BUFFER_SIZE.toLong()).toInt()
+      }
+    val byteBuffer =
+      when {
+        bufferSize < DIRECT_BUFFER_MIN_SIZE -> ByteBuffer.allocate(bufferSize)
+        else -> ByteBuffer.allocateDirect(bufferSize)
+      }
+    var exhausted = false
+    while (!exhausted) {
+      while (byteBuffer.hasRemaining()) {
+        if (source.read(byteBuffer) == -1) {
+          exhausted = true
+          break
+        }
+      }
+      byteBuffer.flip()
+      while (byteBuffer.hasRemaining()) {
+        byteCount += channel.write(byteBuffer, position + byteCount)
+      }
+      byteBuffer.clear()
+    }
+    return byteCount
+  }
+
   private fun charset() = contentType().charsetOrUtf8()
 
   override fun close() = source().closeQuietly()
@@ -227,6 +346,12 @@ abstract class ResponseBody : Closeable {
   }
 
   companion object {
+    /** The number of bytes to copy at a time when writing a response to a file. */
+    private const val COPY_BUFFER_SIZE = 256 * 1024
+
+    /** Smaller copies use a heap buffer, which is cheaper to allocate than a direct buffer. */
+    private const val DIRECT_BUFFER_MIN_SIZE = 8 * 1024
+
     /** Empty response body with no content-type. Closing this response body does nothing. */
     @JvmField
     val EMPTY: ResponseBody = ByteString.EMPTY.toResponseBody()
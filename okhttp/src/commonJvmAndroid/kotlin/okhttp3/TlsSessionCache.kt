@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+import java.io.Closeable
+import java.io.Flushable
+import java.io.IOException
+import okhttp3.internal.cache.DiskLruCache
+import okhttp3.internal.concurrent.TaskRunner
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import okio.FileSystem
+import okio.Path
+import okio.buffer
+
+/**
+ * Stores TLS sessions so that new connections to a previously-visited server can resume a session
+ * with an abbreviated handshake. Resumed handshakes skip the certificate exchange and its
+ * verification, which is most of the cost of connecting to a nearby server.
+ *
+ * Sessions are keyed by the host and port of the [Address] they were negotiated with. That's the
+ * same key the TLS provider uses to look up sessions to resume.
+ *
+ * ## Platform Support
+ *
+ * Session data is opaque and specific to the TLS provider. Only providers that can export and
+ * import sessions write to the [Store]; currently that's Conscrypt. Other providers resume sessions
+ * from the in-memory cache of the client's `SSLContext` only. On every platform this class tracks
+ * how many handshakes were [resumed][resumedCount].
+ *
+ * The cache is installed on the client's default `SSLSocketFactory`. Clients configured with a
+ * custom [OkHttpClient.Builder.sslSocketFactory] track statistics but don't read or write sessions.
+ *
+ * ## Persistence
+ *
+ * Sessions in a memory-backed cache are lost when the process exits. Use the [FileSystem]
+ * constructor to resume sessions after a restart. Like [Cache], the cache must have exclusive access
+ * to its directory.
+ */
+class TlsSessionCache(
+  private val store: Store,
+) : Closeable,
+  Flushable {
+  /** Create a cache that retains sessions for at most [maxEntries] servers in memory. */
+  constructor(maxEntries: Int = 256) : this(MemoryStore(maxEntries))
+
+  /** Create a cache of at most [maxSize] bytes in [directory]. */
+  constructor(
+    fileSystem: FileSystem,
+    directory: Path,
+    maxSize: Long,
+  ) : this(DiskStore(fileSystem, directory, maxSize, TaskRunner.INSTANCE))
+
+  // Lookup and handshake statistics, all guarded by 'this'.
+  private var requestCount = 0
+  private var hitCount = 0
+  private var handshakeCount = 0
+  private var resumedCount = 0
+
+  internal fun get(
+    host: String,
+    port: Int,
+  ): ByteString? {
+    val result =
+      try {
+        store[key(host, port)]
+      } catch (_: IOException) {
+        null // Give up because the store cannot be read.
+      }
+
+    synchronized(this) {
+      requestCount++
+      if (result != null) hitCount++
+    }
+    return result
+  }
+
+  internal fun put(
+    host: String,
+    port: Int,
+    session: ByteString,
+  ) {
+    try {
+      store.put(key(host, port), session)
+    } catch (_: IOException) {
+      // The store cannot be written.
+    }
+  }
+
+  @Synchronized internal fun trackHandshake(resumed: Boolean) {
+    handshakeCount++
+    if (resumed) resumedCount++
+  }
+
+  /** Deletes all sessions stored in the cache. */
+  @Throws(IOException::class)
+  fun evictAll() {
+    store.evictAll()
+  }
+
+  /** Returns the number of times the TLS provider asked this cache for a session. */
+  @Synchronized fun requestCount(): Int = requestCount
+
+  /** Returns the number of times this cache returned a session to the TLS provider. */
+  @Synchronized fun hitCount(): Int = hitCount
+
+  /** Returns the number of successful TLS handshakes made by clients using this cache. */
+  @Synchronized fun handshakeCount(): Int = handshakeCount
+
+  /** Returns the number of successful TLS handshakes that resumed an earlier session. */
+  @Synchronized fun resumedCount(): Int = resumedCount
+
+  @Throws(IOException::class)
+  override fun flush() {
+    store.flush()
+  }
+
+  @Throws(IOException::class)
+  override fun close() {
+    store.close()
+  }
+
+  /**
+   * Storage for opaque session data. Implementations must be safe for concurrent use and should
+   * bound how much they retain.
+   */
+  interface Store :
+    Closeable,
+    Flushable {
+    /** Returns the session stored for [key], or null if there is none. */
+    @Throws(IOException::class)
+    operator fun get(key: String): ByteString?
+
+    /** Stores [session] for [key], replacing any session already stored. */
+    @Throws(IOException::class)
+    fun put(
+      key: String,
+      session: ByteString,
+    )
+
+    /** Deletes all stored sessions. */
+    @Throws(IOException::class)
+    fun evictAll()
+
+    @Throws(IOException::class)
+    override fun flush() {
+    }
+
+    @Throws(IOException::class)
+    override fun close() {
+    }
+  }
+
+  /** Retains the most recently used sessions in memory. */
+  private class MemoryStore(
+    private val maxEntries: Int,
+  ) : Store {
+    private val sessions =
+      object : LinkedHashMap<String, ByteString>(0, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, ByteString>) = size > maxEntries
+      }
+
+    init {
+      require(maxEntries > 0) { "maxEntries <= 0: $maxEntries" }
+    }
+
+    @Synchronized override fun get(key: String): ByteString? = sessions[key]
+
+    @Synchronized override fun put(
+      key: String,
+      session: ByteString,
+    ) {
+      sessions[key] = session
+    }
+
+    @Synchronized override fun evictAll() {
+      sessions.clear()
+    }
+  }
+
+  /** Retains sessions on the file system so they survive process restarts. */
+  private class DiskStore(
+    fileSystem: FileSystem,
+    directory: Path,
+    maxSize: Long,
+    taskRunner: TaskRunner,
+  ) : Store {
+    private val cache =
+      DiskLruCache(
+        fileSystem = fileSystem,
+        directory = directory,
+        appVersion = VERSION,
+        valueCount = 1,
+        maxSize = maxSize,
+        taskRunner = taskRunner,
+      )
+
+    override fun get(key: String): ByteString? {
+      val snapshot = cache[key] ?: return null
+      return snapshot.use {
+        it.getSource(0).buffer().readByteString()
+      }
+    }
+
+    override fun put(
+      key: String,
+      session: ByteString,
+    ) {
+      val editor = cache.edit(key) ?: return
+      try {
+        editor.newSink(0).buffer().use { it.write(session) }
+        editor.commit()
+      } catch (e: IOException) {
+        editor.abort()
+        throw e
+      }
+    }
+
+    override fun evictAll() {
+      cache.evictAll()
+    }
+
+    override fun flush() {
+      cache.flush()
+    }
+
+    override fun close() {
+      cache.close()
+    }
+  }
+
+  companion object {
+    private const val VERSION = 202610
+
+    /** Returns the store key for sessions negotiated with [address]. */
+    @JvmStatic
+    fun key(address: Address): String = key(address.url.host, address.url.port)
+
+    internal fun key(
+      host: String,
+      port: Int,
+    ): String = "$host:$port".encodeUtf8().sha256().hex()
+  }
+}
@@ -29,6 +29,19 @@ internal fun Headers.commonValue(index: Int): String =
   namesAndValues.getOrNull(index * 2 + 1) ?: throw IndexOutOfBoundsException("value[$index]")
 
 internal fun Headers.commonValues(name: String): List<String> {
+  val index = commonIndex()
+  if (index != null) {
+    var i = index.lastIndexOf(name)
+    if (i == -1) return emptyList()
+    val result = ArrayList<String>(2)
+    while (i != -1) {
+      result.add(value(i))
+      i = index.previousIndexOf(i)
+    }
+    result.reverse()
+    return result.unmodifiable()
+  }
+
   var result: MutableList<String>? = null
   for (i in 0 until size) {
     if (name.equals(name(i), ignoreCase = true)) {
@@ -44,9 +57,19 @@ internal fun Headers.commonIterator(): Iterator<Pair<String, String>> = Array(si
 internal fun Headers.commonNewBuilder(): Headers.Builder {
   val result = Headers.Builder()
   result.namesAndValues += namesAndValues
+  if (size > 0) result.prefix = commonTemplatePrefix()
   return result
 }
 
+/**
+ * Returns the prefix shared by headers built from these headers. If these headers were themselves
+ * built from a template, that template's prefix is shared instead.
+ */
+private fun Headers.commonTemplatePrefix(): HeadersPrefix {
+  val caches = commonCaches()
+  return caches.prefix ?: HeadersPrefix(size).also { caches.prefix = it }
+}
+
 internal fun Headers.commonEquals(other: Any?): Boolean = other is Headers && namesAndValues.contentEquals(other.namesAndValues)
 
 internal fun Headers.commonHashCode(): Int = namesAndValues.contentHashCode()
@@ -63,10 +86,22 @@ internal fun Headers.commonToString(): String =
     }
   }
 
-internal fun commonHeadersGet(
-  namesAndValues: Array<String>,
-  name: String,
-): String? {
+/** Returns an index of these headers' names, or null if they're too few to be worth indexing. */
+internal fun Headers.commonIndex(): HeadersIndex? {
+  if (size < HEADERS_INDEX_MIN_SIZE) return null
+  val caches = commonCaches()
+  return caches.index ?: HeadersIndex(namesAndValues).also { caches.index = it }
+}
+
+private fun Headers.commonCaches(): HeadersCaches = caches ?: HeadersCaches().also { caches = it }
+
+internal fun Headers.commonGet(name: String): String? {
+  val index = commonIndex()
+  if (index != null) {
+    val i = index.lastIndexOf(name)
+    return if (i != -1) value(i) else null
+  }
+
   for (i in namesAndValues.size - 2 downTo 0 step 2) {
     if (name.equals(namesAndValues[i], ignoreCase = true)) {
       return namesAndValues[i + 1]
@@ -106,6 +141,7 @@ internal fun Headers.Builder.commonRemoveAll(name: String) =
       if (name.equals(namesAndValues[i], ignoreCase = true)) {
         namesAndValues.removeAt(i) // name
         namesAndValues.removeAt(i) // value
+        if (i < (prefix?.size ?: 0) * 2) prefix = null
         i -= 2
       }
       i += 2
@@ -136,7 +172,8 @@ internal fun Headers.Builder.commonGet(name: String): String? {
   return null
 }
 
-internal fun Headers.Builder.commonBuild(): Headers = Headers(namesAndValues.toTypedArray())
+internal fun Headers.Builder.commonBuild(): Headers =
+  Headers(namesAndValues.toTypedArray(), prefix?.let { HeadersCaches(prefix = it) })
 
 internal fun headersCheckName(name: String) {
   require(name.isNotEmpty()) { "name is empty" }
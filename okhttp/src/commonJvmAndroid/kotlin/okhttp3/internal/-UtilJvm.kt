@@ -127,11 +127,15 @@ internal fun checkDuration(
 }
 
 internal fun List<Header>.toHeaders(): Headers {
-  val builder = Headers.Builder()
-  for ((name, value) in this) {
-    builder.addLenient(name.utf8(), value.utf8())
-  }
-  return builder.build()
+  val namesAndValues =
+    Array(size * 2) { i ->
+      val header = this[i / 2]
+      when {
+        i % 2 == 0 -> header.name.utf8()
+        else -> header.value.utf8().trim()
+      }
+    }
+  return Headers(namesAndValues)
 }
 
 internal fun Headers.toHeaderList(): List<Header> =
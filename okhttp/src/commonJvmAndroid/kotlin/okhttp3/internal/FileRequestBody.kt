@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal
+
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import okhttp3.MediaType
+import okhttp3.RequestBody
+import okhttp3.internal.http.FileTransferSink
+import okio.BufferedSink
+import okio.source
+
+/**
+ * A request body that transmits the content of [file]. It may be sent more than once.
+ *
+ * When the connection supports it, this is sent directly from the file system to the socket.
+ * Otherwise it is copied like any other request body.
+ */
+internal class FileRequestBody(
+  private val file: File,
+  private val contentType: MediaType?,
+) : RequestBody() {
+  override fun contentType() = contentType
+
+  override fun contentLength() = file.length()
+
+  override fun writeTo(sink: BufferedSink) {
+    file.source().use { source -> sink.writeAll(source) }
+  }
+
+  /** Sends the file to [sink] without copying it into memory. */
+  @Throws(IOException::class)
+  fun transferTo(sink: FileTransferSink) {
+    FileInputStream(file).use { inputStream ->
+      val channel = inputStream.channel
+      sink.transferFrom(channel, 0L, channel.size())
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal
+
+import okhttp3.Headers
+import okhttp3.internal.http2.Header
+import okio.ByteString
+
+/**
+ * Values computed from a [Headers] instance and kept for reuse. Most headers are encoded once and
+ * discarded, so these are only allocated for headers that need them.
+ */
+internal class HeadersCaches(
+  /** Encodings of the fields that the headers begin with, if they were built from a template. */
+  @Volatile var prefix: HeadersPrefix? = null,
+) {
+  /** An index of the headers' names, built when large headers are first searched. */
+  @Volatile var index: HeadersIndex? = null
+}
+
+/**
+ * Encodings of the first [size] fields of headers built from a template. Requests often start with
+ * the same template of headers. The template and all headers built from it share one instance of
+ * this, so the template's fields are encoded once.
+ *
+ * This doesn't hold the template itself. The fields are encoded from the first headers that need
+ * them, which begin with the same fields as the template.
+ */
+internal class HeadersPrefix(
+  val size: Int,
+) {
+  /**
+   * True once the prefix was encoded without caching the result. Encodings are cached the second
+   * time they're needed, so templates that are only used once aren't cached.
+   *
+   * This and the caches below aren't updated atomically. Concurrent encoders may each decline to
+   * cache, or each cache an encoding and overwrite the other's. These races only cost an extra
+   * encoding, and every encoding is equal.
+   */
+  @Volatile var encoded = false
+
+  /** The prefix encoded for HTTP/1. */
+  @Volatile var http1Encoding: ByteString? = null
+
+  /** The prefix as HTTP/2 header fields. */
+  @Volatile var http2HeaderList: List<Header>? = null
+}
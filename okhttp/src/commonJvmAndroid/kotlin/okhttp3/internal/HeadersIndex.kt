@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal
+
+/** Headers with fewer fields than this are searched linearly rather than indexed. */
+internal const val HEADERS_INDEX_MIN_SIZE = 32
+
+/**
+ * A case-insensitive hash index of the field names in large headers. This finds the fields with a
+ * name without comparing it to the name of every field.
+ *
+ * This is an open-addressing hash table of the last field with each distinct name. Each field also
+ * links to the previous field with the same name, so all of a name's values can be found in order.
+ * Lookups don't allocate.
+ */
+internal class HeadersIndex(
+  private val namesAndValues: Array<String>,
+) {
+  /** Slots hold the index of a field plus one, or 0 if they're empty. */
+  private val table = IntArray(Integer.highestOneBit(namesAndValues.size - 1) shl 1)
+
+  /** For each field, the index of the previous field with the same name, or -1 if there is none. */
+  private val previous = IntArray(namesAndValues.size / 2)
+
+  init {
+    val mask = table.size - 1
+    for (i in previous.indices) {
+      val name = namesAndValues[i * 2]
+      var slot = name.caseInsensitiveHash() and mask
+      while (true) {
+        val entry = table[slot]
+        if (entry == 0 || name.equals(namesAndValues[(entry - 1) * 2], ignoreCase = true)) {
+          previous[i] = entry - 1
+          table[slot] = i + 1
+          break
+        }
+        slot = (slot + 1) and mask
+      }
+    }
+  }
+
+  /** Returns the index of the last field named [name], or -1 if there is none. */
+  fun lastIndexOf(name: String): Int {
+    val mask = table.size - 1
+    var slot = name.caseInsensitiveHash() and mask
+    while (true) {
+      val entry = table[slot]
+      if (entry == 0) return -1
+      if (name.equals(namesAndValues[(entry - 1) * 2], ignoreCase = true)) return entry - 1
+      slot = (slot + 1) and mask
+    }
+  }
+
+  /** Returns the index of the field before [index] with the same name, or -1 if there is none. */
+  fun previousIndexOf(index: Int): Int = previous[index]
+
+  /**
+   * Returns a hash of this string that is consistent with `equals(ignoreCase = true)`. That folds
+   * each character to the lowercase of its uppercase, which is the identity for most characters.
+   */
+  private fun String.caseInsensitiveHash(): Int {
+    var result = 0
+    for (c in this) {
+      val folded =
+        when (c) {
+          in 'A'..'Z' -> c + ('a' - 'A')
+          in '\u0000'..'\u007f' -> c
+          else -> Character.toLowerCase(Character.toUpperCase(c))
+        }
+      result = 31 * result + folded.code
+    }
+    return result xor (result ushr 16)
+  }
+}
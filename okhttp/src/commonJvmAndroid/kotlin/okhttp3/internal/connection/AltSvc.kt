@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import okhttp3.internal.url.percentDecode
+
+/**
+ * An alternative service advertised by an origin server, as in `h2="alt.example.com:8443"; ma=60`.
+ * See [RFC 7838][rfc_7838].
+ *
+ * [rfc_7838]: https://datatracker.ietf.org/doc/html/rfc7838
+ */
+data class AltSvc(
+  /** An ALPN protocol ID like `h2`. */
+  val protocol: String,
+  /** The alternative's host, or an empty string if it is the origin's host. */
+  val host: String,
+  val port: Int,
+  /** How long this alternative may be used for, in seconds. */
+  val maxAgeSeconds: Long = DEFAULT_MAX_AGE_SECONDS,
+) {
+  companion object {
+    const val DEFAULT_MAX_AGE_SECONDS = 24L * 60L * 60L
+
+    /**
+     * Returns the alternatives in [value], an `Alt-Svc` field value. This returns an empty list if
+     * the value is `clear`, which invalidates all alternatives. Malformed alternatives are skipped.
+     */
+    fun parse(value: String): List<AltSvc> {
+      val result = mutableListOf<AltSvc>()
+      if (value.trim() == "clear") return result
+
+      for (member in value.split(',')) {
+        val parameters = member.split(';')
+
+        // Parse the alternative, like `h2="alt.example.com:8443"`.
+        val alternative = parameters[0].trim()
+        val protocol = alternative.substringBefore('=', missingDelimiterValue = "").percentDecode()
+        val authority = alternative.substringAfter('=').removeSurrounding("\"")
+        val port = authority.substringAfterLast(':', missingDelimiterValue = "").toIntOrNull()
+        if (protocol.isEmpty() || port == null || port !in 1..65535) continue
+        val host = authority.substringBeforeLast(':').removeSurrounding("[", "]")
+
+        // Parse parameters, like `ma=60`. Others like `persist` are ignored.
+        var maxAgeSeconds = DEFAULT_MAX_AGE_SECONDS
+        for (i in 1 until parameters.size) {
+          val parameter = parameters[i].trim()
+          if (parameter.substringBefore('=') != "ma") continue
+          val ma = parameter.substringAfter('=').toLongOrNull()
+          if (ma != null && ma >= 0L) maxAgeSeconds = ma
+        }
+
+        result += AltSvc(protocol, host, port, maxAgeSeconds)
+      }
+
+      return result
+    }
+  }
+}
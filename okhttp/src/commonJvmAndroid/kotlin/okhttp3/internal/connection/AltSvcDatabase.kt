@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import kotlin.time.ComparableTimeMark as Time
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TimeSource
+import okhttp3.Address
+import okhttp3.Headers
+import okhttp3.HttpUrl
+import okhttp3.Protocol
+import okhttp3.internal.dns.MemoryCache
+
+/**
+ * Remembers the alternative services that origin servers advertise with `Alt-Svc` headers and
+ * `ALTSVC` frames, so that new connections to an origin go to the alternative instead. This lets
+ * servers steer clients to a closer edge or to a port that supports HTTP/2.
+ *
+ * Alternatives are only used for HTTPS origins. Connections to an alternative still verify the
+ * origin's certificate, so an alternative can't impersonate its origin. Each alternative expires
+ * after the max age advertised by the server.
+ */
+class AltSvcDatabase(
+  timeSource: TimeSource.WithComparableMarks = TimeSource.Monotonic,
+  maxEntryCount: Int = 256,
+) {
+  private val cache =
+    object : MemoryCache<String, Entry>(
+      timeSource = timeSource,
+      maxSize = maxEntryCount,
+    ) {
+      override fun lastRequestedAt(
+        now: Time,
+        value: Entry,
+      ): Time? {
+        // Evict immediately if every alternative has expired.
+        if (value.alternatives.none { now < it.expireAt }) return null
+        return value.lastRequestedAt
+      }
+    }
+
+  /**
+   * Returns the alternative service to connect to for [address], or null to connect to the origin
+   * itself.
+   */
+  fun alternative(address: Address): AltSvc? {
+    if (!address.url.isHttps) return null
+
+    val now = cache.timeSource.markNow()
+    val entry = entry(address.url, now)
+    for (alternative in entry.alternatives) {
+      if (now >= alternative.expireAt) continue
+      if (alternative.protocol !in address.protocols) continue
+      val altSvc = alternative.altSvc
+      if (altSvc.host == address.url.host && altSvc.port == address.url.port) continue
+      return altSvc
+    }
+    return null
+  }
+
+  /** Records the `Alt-Svc` headers in a response from [origin]. */
+  fun receiveHeaders(
+    origin: HttpUrl,
+    headers: Headers,
+  ) {
+    val values = headers.values("Alt-Svc")
+    if (values.isEmpty()) return
+    put(origin, values.joinToString(","))
+  }
+
+  /**
+   * Replaces the alternatives for [origin] with those in [value], an `Alt-Svc` field value. Only
+   * alternatives for protocols that we support are retained.
+   */
+  fun put(
+    origin: HttpUrl,
+    value: String,
+  ) {
+    if (!origin.isHttps) return
+
+    val now = cache.timeSource.markNow()
+    val alternatives =
+      AltSvc.parse(value).mapNotNull { altSvc ->
+        val protocol =
+          when (altSvc.protocol) {
+            Protocol.HTTP_2.toString() -> Protocol.HTTP_2
+            Protocol.HTTP_1_1.toString() -> Protocol.HTTP_1_1
+            else -> return@mapNotNull null
+          }
+        Alternative(
+          altSvc = altSvc.copy(host = altSvc.host.ifEmpty { origin.host }),
+          protocol = protocol,
+          expireAt = now + altSvc.maxAgeSeconds.seconds,
+        )
+      }
+    entry(origin, now).alternatives = alternatives
+  }
+
+  private fun entry(
+    origin: HttpUrl,
+    now: Time,
+  ): Entry {
+    val key = "${origin.scheme}://${origin.host}:${origin.port}"
+    return cache.computeIfAbsent(key) { Entry(now) }.also { it.lastRequestedAt = now }
+  }
+
+  private class Entry(
+    @Volatile var lastRequestedAt: Time,
+  ) {
+    @Volatile var alternatives: List<Alternative> = listOf()
+  }
+
+  private class Alternative(
+    /** The advertised alternative, with the origin's host if it didn't specify one. */
+    val altSvc: AltSvc,
+    val protocol: Protocol,
+    val expireAt: Time,
+  )
+}
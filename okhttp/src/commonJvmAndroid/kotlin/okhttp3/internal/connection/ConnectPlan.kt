@@ -43,6 +43,8 @@ import okhttp3.internal.http1.Http1ExchangeCodec
 import okhttp3.internal.platform.Platform
 import okhttp3.internal.tls.OkHostnameVerifier
 import okhttp3.internal.toHostHeader
+import okio.ByteString
+import okio.ByteString.Companion.toByteString
 
 /**
  * A single attempt to connect to a remote server, including these steps:
@@ -89,6 +91,8 @@ class ConnectPlan internal constructor(
    */
   internal var javaNetSocket: JavaNetSocket? = null
   private var handshake: Handshake? = null
+  private var tlsSessionResumed = false
+  private var tlsSessionId: ByteString? = null
   private var protocol: Protocol? = null
   private lateinit var socket: BufferedSocket
   private var connection: RealConnection? = null
@@ -161,6 +165,7 @@ class ConnectPlan internal constructor(
     check(!isReady) { "already connected" }
 
     val connectionSpecs = route.address.connectionSpecs
+    var tlsConnectionSpecIndex = -1
     var retryTlsConnection: ConnectPlan? = null
     var success = false
 
@@ -198,14 +203,24 @@ class ConnectPlan internal constructor(
           ) as SSLSocket
 
         val tlsEquipPlan = planWithCurrentOrInitialConnectionSpec(connectionSpecs, sslSocket)
-        val connectionSpec = connectionSpecs[tlsEquipPlan.connectionSpecIndex]
+        tlsConnectionSpecIndex = tlsEquipPlan.connectionSpecIndex
+        val connectionSpec = connectionSpecs[tlsConnectionSpecIndex]
 
         // Figure out the next connection spec in case we need a retry.
         retryTlsConnection = tlsEquipPlan.nextConnectionSpec(connectionSpecs, sslSocket)
 
         connectionSpec.apply(sslSocket, isFallback = tlsEquipPlan.isTlsFallback)
         connectTls(sslSocket, connectionSpec)
-        call.eventListener.secureConnectEnd(call, handshake)
+        // Remember a fallback once its handshake succeeds, so later connections skip the
+        // connection specs that this server rejects.
+        call.client.connectionSpecDatabase.connected(
+          address = route.address,
+          connectionSpecIndex = if (tlsEquipPlan.isTlsFallback) tlsConnectionSpecIndex else 0,
+          protocol = protocol!!,
+        )
+        call.client.tlsSessionIdDatabase.connected(route.address, tlsSessionId)
+        call.client.tlsSessionCache?.trackHandshake(tlsSessionResumed)
+        call.eventListener.secureConnectEnd(call, handshake, tlsSessionResumed)
       } else {
         javaNetSocket = rawSocket
         protocol =
@@ -226,6 +241,15 @@ class ConnectPlan internal constructor(
           protocol = protocol!!,
           socket = socket,
           pingIntervalMillis = pingIntervalMillis,
+          http2ReceiveWindowAutotuning = call.client.http2ReceiveWindowAutotuning,
+          http2FrameCoalescing = call.client.http2FrameCoalescing,
+          http2ConnectionReceiveBudget = call.client.http2ConnectionReceiveBudget,
+          http2ClientReceiveBudget = call.client.http2ReceiveBudget,
+          altSvcDatabase = call.client.altSvcDatabase,
+          http2HeaderTableSize = call.client.http2HeaderTableSize,
+          http2HeaderIndexingStrategy = call.client.http2HeaderIndexingStrategy,
+          http2SharedReader =
+            if (call.client.http2SharedReader) connectionPool.http2SharedReader else null,
           connectionListener = connectionPool.connectionListener,
         )
       this.connection = connection
@@ -239,7 +263,13 @@ class ConnectPlan internal constructor(
       call.eventListener.connectFailed(call, route.socketAddress, route.proxy, null, e)
       connectionPool.connectionListener.connectFailed(route, call, e)
 
-      if (!retryOnConnectionFailure || !retryTlsHandshake(e)) {
+      val retryTls = retryTlsHandshake(e)
+      if (retryTls && tlsConnectionSpecIndex != -1 && handshake == null) {
+        // Skip this connection spec on future connections if the server keeps rejecting it.
+        call.client.connectionSpecDatabase.failed(route.address, tlsConnectionSpecIndex)
+      }
+
+      if (!retryOnConnectionFailure || !retryTls) {
         retryTlsConnection = null
       }
 
@@ -273,8 +303,18 @@ class ConnectPlan internal constructor(
     }
 
     rawSocket.soTimeout = socketReadTimeoutMillis
+
+    // Adapt the connect timeout to the round-trip time to the socket address, which is the proxy's
+    // address if there is one. We can't measure it through SOCKS, which does its own handshake.
+    val connectTimeDatabase =
+      call.client.connectTimeDatabase.takeIf { route.proxy.type() != Proxy.Type.SOCKS }
+    val connectTimeoutMillis =
+      connectTimeDatabase?.connectTimeoutMillis(route, socketConnectTimeoutMillis)
+        ?: socketConnectTimeoutMillis
     try {
-      Platform.get().connectSocket(rawSocket, route.socketAddress, socketConnectTimeoutMillis)
+      val connectStartNanos = System.nanoTime()
+      Platform.get().connectSocket(rawSocket, route.socketAddress, connectTimeoutMillis)
+      connectTimeDatabase?.connected(route, System.nanoTime() - connectStartNanos)
     } catch (e: ConnectException) {
       throw ConnectException("Failed to connect to ${route.socketAddress}").apply {
         initCause(e)
@@ -355,9 +395,18 @@ class ConnectPlan internal constructor(
       }
 
       // Force handshake. This can throw!
+      val handshakeStartedAtMillis = System.currentTimeMillis()
       sslSocket.startHandshake()
       // block for session establishment
       val sslSocketSession = sslSocket.session
+
+      // A resumed session has the ID of the session it resumes. Sessions resumed from tickets may
+      // get a new ID, but they keep the creation time of the handshake that issued the ticket.
+      tlsSessionId = sslSocketSession.id?.takeIf { it.isNotEmpty() }?.toByteString()
+      val previousSessionId = call.client.tlsSessionIdDatabase.sessionId(address)
+      tlsSessionResumed =
+        (tlsSessionId != null && tlsSessionId == previousSessionId) ||
+          sslSocketSession.creationTime < handshakeStartedAtMillis
       val unverifiedHandshake = sslSocketSession.handshake()
 
       // Verify that the socket's certificates are acceptable for the target host.
@@ -471,7 +520,7 @@ class ConnectPlan internal constructor(
 
   /**
    * Returns this if its [connectionSpecIndex] is defined, or a new connection with it defined
-   * otherwise.
+   * otherwise. New connections skip connection specs that the server is known to reject.
    */
   @Throws(IOException::class)
   internal fun planWithCurrentOrInitialConnectionSpec(
@@ -479,6 +528,23 @@ class ConnectPlan internal constructor(
     sslSocket: SSLSocket,
   ): ConnectPlan {
     if (connectionSpecIndex != -1) return this
+
+    // Start where the previous connection to this address succeeded. This is still a fallback, so
+    // only do it if fallbacks are permitted.
+    val knownGoodIndex =
+      when {
+        retryOnConnectionFailure ->
+          call.client.connectionSpecDatabase.connectionSpecIndex(route.address)
+        else -> -1
+      }
+    if (knownGoodIndex > 0) {
+      for (i in knownGoodIndex until connectionSpecs.size) {
+        if (connectionSpecs[i].isCompatible(sslSocket)) {
+          return copy(connectionSpecIndex = i, isTlsFallback = true)
+        }
+      }
+    }
+
     return nextConnectionSpec(connectionSpecs, sslSocket)
       ?: throw UnknownServiceException(
         "Unable to find acceptable protocols." +
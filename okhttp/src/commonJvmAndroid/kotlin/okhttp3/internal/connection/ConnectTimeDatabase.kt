@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import java.net.Proxy
+import java.util.concurrent.TimeUnit
+import kotlin.time.ComparableTimeMark as Time
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TimeSource
+import okhttp3.Route
+import okhttp3.internal.dns.MemoryCache
+
+/**
+ * Estimates the round-trip time to each socket address from the duration of its TCP handshakes,
+ * and uses that to decide how long connection attempts should take. Estimates are keyed by the
+ * address OkHttp connects to, which is the proxy's address for routes through an HTTP proxy.
+ *
+ * Each sample also updates an estimate for the route's host, or for its proxy if it has one. This
+ * is used for socket addresses that have no estimate of their own, such as an unreachable IP
+ * address that never completes a handshake.
+ *
+ * Estimates are smoothed like TCP's retransmission timer ([RFC 6298][rfc_6298]): each address has a
+ * smoothed RTT and an RTT variance, and the retransmission timeout (RTO) is the smoothed RTT plus
+ * four times its variance.
+ *
+ *  * The connect timeout is a multiple of the RTO, but never less than [MINIMUM_CONNECT_TIMEOUT]
+ *    so that a lost SYN can be retransmitted. It is never more than the configured timeout.
+ *
+ *  * The fast fallback delay between racing connection attempts is the RTO, bounded as recommended
+ *    by [RFC 8305][rfc_8305].
+ *
+ * Routes without any estimate use the configured connect timeout and the default fallback delay.
+ * Estimates expire after [timeToLive] without a new sample, because routes change.
+ *
+ * [rfc_6298]: https://datatracker.ietf.org/doc/html/rfc6298
+ * [rfc_8305]: https://datatracker.ietf.org/doc/html/rfc8305#section-5
+ */
+class ConnectTimeDatabase(
+  timeSource: TimeSource.WithComparableMarks = TimeSource.Monotonic,
+  private val timeToLive: Duration = 10.minutes,
+  maxEntryCount: Int = 256,
+) {
+  private val cache =
+    object : MemoryCache<Any, Entry>(
+      timeSource = timeSource,
+      maxSize = maxEntryCount,
+    ) {
+      override fun lastRequestedAt(
+        now: Time,
+        value: Entry,
+      ): Time? = value.sampledAt?.takeIf { it + timeToLive > now }
+    }
+
+  /** Records that a TCP handshake on [route] took [rttNanos]. */
+  fun connected(
+    route: Route,
+    rttNanos: Long,
+  ) {
+    val now = cache.timeSource.markNow()
+    sample(route.socketAddress, now, rttNanos)
+    sample(route.fallbackKey, now, rttNanos)
+  }
+
+  private fun sample(
+    key: Any,
+    now: Time,
+    rttNanos: Long,
+  ) {
+    val entry = cache.computeIfAbsent(key) { Entry() }
+    synchronized(entry) {
+      val sampledAt = entry.sampledAt
+      if (sampledAt == null || sampledAt + timeToLive <= now) {
+        entry.smoothedRttNanos = rttNanos
+        entry.rttVarianceNanos = rttNanos / 2
+      } else {
+        val error = Math.abs(entry.smoothedRttNanos - rttNanos)
+        entry.rttVarianceNanos = (3 * entry.rttVarianceNanos + error) / 4
+        entry.smoothedRttNanos = (7 * entry.smoothedRttNanos + rttNanos) / 8
+      }
+      entry.sampledAt = now
+    }
+  }
+
+  /**
+   * Returns the connect timeout for [route], which is at most [maxConnectTimeoutMillis]. A timeout
+   * of 0 means no timeout, and is not adapted.
+   */
+  fun connectTimeoutMillis(
+    route: Route,
+    maxConnectTimeoutMillis: Int,
+  ): Int {
+    if (maxConnectTimeoutMillis == 0) return 0
+    val rtoNanos = rtoNanos(route) ?: return maxConnectTimeoutMillis
+    val timeoutMillis =
+      TimeUnit.NANOSECONDS
+        .toMillis(rtoNanos * CONNECT_TIMEOUT_RTO_MULTIPLE)
+        .coerceAtLeast(MINIMUM_CONNECT_TIMEOUT.inWholeMilliseconds)
+    return minOf(timeoutMillis, maxConnectTimeoutMillis.toLong()).toInt()
+  }
+
+  /** Returns how long to wait for [route] to connect before racing another connection attempt. */
+  fun connectDelayNanos(route: Route): Long {
+    val rtoNanos = rtoNanos(route) ?: return DEFAULT_CONNECT_DELAY.inWholeNanoseconds
+    return rtoNanos.coerceIn(
+      MINIMUM_CONNECT_DELAY.inWholeNanoseconds,
+      MAXIMUM_CONNECT_DELAY.inWholeNanoseconds,
+    )
+  }
+
+  private fun rtoNanos(route: Route): Long? {
+    val now = cache.timeSource.markNow()
+    return rtoNanos(route.socketAddress, now) ?: rtoNanos(route.fallbackKey, now)
+  }
+
+  private fun rtoNanos(
+    key: Any,
+    now: Time,
+  ): Long? {
+    val entry = cache[key] ?: return null
+    synchronized(entry) {
+      val sampledAt = entry.sampledAt ?: return null
+      if (sampledAt + timeToLive <= now) return null
+      return entry.smoothedRttNanos + 4 * entry.rttVarianceNanos
+    }
+  }
+
+  /** The route's host if it's direct, or the unresolved address of its proxy otherwise. */
+  private val Route.fallbackKey: Any
+    get() =
+      when (proxy.type()) {
+        Proxy.Type.DIRECT -> address.url.host
+        else -> proxy.address()
+      }
+
+  private class Entry {
+    @Volatile var sampledAt: Time? = null
+    var smoothedRttNanos = 0L
+    var rttVarianceNanos = 0L
+  }
+
+  companion object {
+    const val CONNECT_TIMEOUT_RTO_MULTIPLE = 4
+    val MINIMUM_CONNECT_TIMEOUT = 2.seconds
+    val DEFAULT_CONNECT_DELAY = 250.milliseconds
+    val MINIMUM_CONNECT_DELAY = 100.milliseconds
+    val MAXIMUM_CONNECT_DELAY = 2.seconds
+  }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import kotlin.time.ComparableTimeMark as Time
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.TimeSource
+import okhttp3.Address
+import okhttp3.ConnectionSpec
+import okhttp3.Protocol
+import okhttp3.internal.dns.MemoryCache
+
+/**
+ * Remembers the outcome of TLS handshakes with each address so that new connections start with a
+ * configuration that is known to work. Without this, every new connection to a server that rejects
+ * our preferred [ConnectionSpec] pays for a failed handshake before falling back.
+ *
+ * A connection spec is skipped by subsequent connections after a fallback to a later spec succeeds,
+ * or after [failureThreshold] consecutive handshakes with it fail. A single transient failure never
+ * pins an address to a weaker spec. Each outcome expires after [timeToLive] so that upgraded
+ * servers are eventually offered our preferred connection spec again.
+ *
+ * The protocol negotiated with ALPN is remembered with each successful outcome.
+ *
+ * Connection specs are identified by their index in [Address.connectionSpecs]. Addresses with
+ * different connection specs are not equal, so indexes are never confused.
+ */
+class ConnectionSpecDatabase(
+  timeSource: TimeSource.WithComparableMarks = TimeSource.Monotonic,
+  private val timeToLive: Duration = 10.minutes,
+  private val failureThreshold: Int = 3,
+  maxEntryCount: Int = 256,
+) {
+  private val cache =
+    object : MemoryCache<Address, Entry>(
+      timeSource = timeSource,
+      maxSize = maxEntryCount,
+    ) {
+      override fun lastRequestedAt(
+        now: Time,
+        value: Entry,
+      ): Time? {
+        // Evict immediately if there's nothing to remember.
+        val outcome = value.outcome ?: return null
+        if (outcome.expireAt <= now) return null
+        return value.lastRequestedAt
+      }
+    }
+
+  init {
+    require(failureThreshold > 0)
+  }
+
+  /**
+   * Returns the index of the first connection spec worth attempting for [address], or -1 if
+   * nothing is known about it.
+   */
+  fun connectionSpecIndex(address: Address): Int = outcome(address)?.connectionSpecIndex ?: -1
+
+  /**
+   * Returns the protocol negotiated by the most recent successful handshake with [address], or
+   * null if nothing is known about it.
+   */
+  fun protocol(address: Address): Protocol? = outcome(address)?.protocol
+
+  /**
+   * Records a successful handshake with [address]. Pass 0 for [connectionSpecIndex] unless the
+   * handshake was a fallback, so subsequent connections start with the preferred connection spec.
+   */
+  fun connected(
+    address: Address,
+    connectionSpecIndex: Int,
+    protocol: Protocol,
+  ) {
+    val now = cache.timeSource.markNow()
+    val entry = entry(address, now)
+    synchronized(entry) {
+      entry.outcome = Outcome(connectionSpecIndex, protocol, 0, now + timeToLive)
+    }
+  }
+
+  /**
+   * Records that [address] rejected the connection spec at [connectionSpecIndex]. The spec is
+   * skipped once this happens [failureThreshold] times in a row.
+   */
+  fun failed(
+    address: Address,
+    connectionSpecIndex: Int,
+  ) {
+    val now = cache.timeSource.markNow()
+    val entry = entry(address, now)
+    synchronized(entry) {
+      val previous = entry.outcome?.takeIf { now < it.expireAt }
+
+      // Don't undo an outcome that has already skipped past this connection spec.
+      if (previous != null && previous.connectionSpecIndex > connectionSpecIndex) return
+
+      val failureCount =
+        when (previous?.connectionSpecIndex) {
+          connectionSpecIndex -> previous.failureCount + 1
+          else -> 1
+        }
+      entry.outcome =
+        when {
+          failureCount >= failureThreshold -> {
+            Outcome(connectionSpecIndex + 1, null, 0, now + timeToLive)
+          }
+
+          else -> {
+            Outcome(connectionSpecIndex, previous?.protocol, failureCount, now + timeToLive)
+          }
+        }
+    }
+  }
+
+  private fun outcome(address: Address): Outcome? {
+    val now = cache.timeSource.markNow()
+    val entry = cache[address] ?: return null
+    val outcome = entry.outcome ?: return null
+    if (outcome.expireAt <= now) return null
+    entry.lastRequestedAt = now
+    return outcome
+  }
+
+  private fun entry(
+    address: Address,
+    now: Time,
+  ): Entry = cache.computeIfAbsent(address) { Entry(now) }.also { it.lastRequestedAt = now }
+
+  private class Entry(
+    @Volatile var lastRequestedAt: Time,
+  ) {
+    @Volatile var outcome: Outcome? = null
+  }
+
+  private class Outcome(
+    /** The first connection spec worth attempting. */
+    val connectionSpecIndex: Int,
+    /** The negotiated protocol, or null if no handshake with this connection spec succeeded. */
+    val protocol: Protocol?,
+    /** Consecutive handshakes that failed with this connection spec. */
+    val failureCount: Int,
+    val expireAt: Time,
+  )
+}
@@ -17,12 +17,15 @@ package okhttp3.internal.connection
 
 import java.io.IOException
 import java.net.ProtocolException
+import java.nio.channels.FileChannel
 import okhttp3.EventListener
 import okhttp3.Headers
 import okhttp3.Request
 import okhttp3.Response
 import okhttp3.ResponseBody
 import okhttp3.internal.http.ExchangeCodec
+import okhttp3.internal.http.FileTransferSink
+import okhttp3.internal.http.FileTransferSource
 import okhttp3.internal.http.RealResponseBody
 import okio.Buffer
 import okio.ForwardingSink
@@ -139,7 +142,7 @@ class Exchange(
           contentLength = contentLength,
           isSocket = false,
         )
-      return RealResponseBody(contentType, contentLength, source.buffer())
+      return RealResponseBody(contentType, contentLength, source.buffer(), source)
     } catch (e: IOException) {
       call.eventListener.responseFailed(call, e)
       trackFailure(e)
@@ -152,7 +155,10 @@ class Exchange(
 
   fun upgradeToSocket(): Socket {
     call.upgradeToSocket()
-    (codec.carrier as RealConnection).useAsSocket()
+    val connection = codec.carrier as RealConnection
+    if (!connection.isMultiplexed) {
+      connection.useAsSocket()
+    }
 
     return object : Socket {
       override fun cancel() {
@@ -252,12 +258,16 @@ class Exchange(
     /** The exact number of bytes to be written, or -1L if that is unknown. */
     private val contentLength: Long,
     private val isSocket: Boolean,
-  ) : ForwardingSink(delegate) {
+  ) : ForwardingSink(delegate),
+    FileTransferSink {
     private var completed = false
     private var bytesReceived = 0L
     private var invokeStartEvent = isSocket
     private var closed = false
 
+    override val supportsFileTransfer: Boolean
+      get() = (delegate as? FileTransferSink)?.supportsFileTransfer == true
+
     @Throws(IOException::class)
     override fun write(
       source: Buffer,
@@ -281,6 +291,26 @@ class Exchange(
       }
     }
 
+    @Throws(IOException::class)
+    override fun transferFrom(
+      file: FileChannel,
+      position: Long,
+      byteCount: Long,
+    ) {
+      check(!closed) { "closed" }
+      if (contentLength != -1L && bytesReceived + byteCount > contentLength) {
+        throw ProtocolException(
+          "expected $contentLength bytes but received ${bytesReceived + byteCount}",
+        )
+      }
+      try {
+        (delegate as FileTransferSink).transferFrom(file, position, byteCount)
+        this.bytesReceived += byteCount
+      } catch (e: IOException) {
+        throw complete(e)!!
+      }
+    }
+
     @Throws(IOException::class)
     override fun flush() {
       try {
@@ -323,12 +353,16 @@ class Exchange(
     delegate: Source,
     private val contentLength: Long,
     private val isSocket: Boolean,
-  ) : ForwardingSource(delegate) {
+  ) : ForwardingSource(delegate),
+    FileTransferSource {
     private var bytesReceived = 0L
     private var invokeStartEvent = true
     private var completed = false
     private var closed = false
 
+    override val supportsFileTransfer: Boolean
+      get() = (delegate as? FileTransferSource)?.supportsFileTransfer == true
+
     init {
       if (contentLength == 0L) {
         complete(null)
@@ -342,32 +376,49 @@ class Exchange(
     ): Long {
       check(!closed) { "closed" }
       try {
-        val read = delegate.read(sink, byteCount)
+        return received(delegate.read(sink, byteCount))
+      } catch (e: IOException) {
+        throw complete(e)!!
+      }
+    }
 
-        if (invokeStartEvent) {
-          invokeStartEvent = false
-          call.eventListener.responseBodyStart(call)
-        }
+    @Throws(IOException::class)
+    override fun transferTo(
+      file: FileChannel,
+      position: Long,
+      byteCount: Long,
+    ): Long {
+      check(!closed) { "closed" }
+      try {
+        return received((delegate as FileTransferSource).transferTo(file, position, byteCount))
+      } catch (e: IOException) {
+        throw complete(e)!!
+      }
+    }
 
-        if (read == -1L) {
-          complete(null)
-          return -1L
-        }
+    /** Counts [read] bytes taken from the delegate, or completes if it is -1. Returns [read]. */
+    private fun received(read: Long): Long {
+      if (invokeStartEvent) {
+        invokeStartEvent = false
+        call.eventListener.responseBodyStart(call)
+      }
 
-        val newBytesReceived = bytesReceived + read
-        if (contentLength != -1L && newBytesReceived > contentLength) {
-          throw ProtocolException("expected $contentLength bytes but received $newBytesReceived")
-        }
+      if (read == -1L) {
+        complete(null)
+        return -1L
+      }
 
-        bytesReceived = newBytesReceived
-        if (codec.isResponseComplete) {
-          complete(null)
-        }
+      val newBytesReceived = bytesReceived + read
+      if (contentLength != -1L && newBytesReceived > contentLength) {
+        throw ProtocolException("expected $contentLength bytes but received $newBytesReceived")
+      }
 
-        return read
-      } catch (e: IOException) {
-        throw complete(e)!!
+      bytesReceived = newBytesReceived
+      if (codec.isResponseComplete) {
+        complete(null)
       }
+
+      return read
     }
 
     @Throws(IOException::class)
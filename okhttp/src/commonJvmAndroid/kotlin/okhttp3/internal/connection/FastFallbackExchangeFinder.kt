@@ -27,11 +27,14 @@ import okhttp3.internal.okHttpName
 
 /**
  * Speculatively connects to each IP address of a target address, returning as soon as one of them
- * connects successfully. This kicks off new attempts every 250 ms until a connect succeeds.
+ * connects successfully. This kicks off new attempts every 250 ms until a connect succeeds. The
+ * delay is adapted to the round-trip time to the latest attempt's route if [connectTimeDatabase]
+ * knows it.
  */
 internal class FastFallbackExchangeFinder(
   override val routePlanner: RoutePlanner,
   private val taskRunner: TaskRunner,
+  private val connectTimeDatabase: ConnectTimeDatabase? = null,
 ) : ExchangeFinder {
   private val connectDelayNanos = TimeUnit.MILLISECONDS.toNanos(250L)
   private var nextTcpConnectAtNanos = Long.MIN_VALUE
@@ -60,6 +63,7 @@ internal class FastFallbackExchangeFinder(
         var connectResult: ConnectResult? = null
         if (tcpConnectsInFlight.isEmpty() || awaitTimeoutNanos <= 0) {
           connectResult = launchTcpConnect()
+          val connectDelayNanos = connectDelayNanos(tcpConnectsInFlight.lastOrNull())
           nextTcpConnectAtNanos = now + connectDelayNanos
           awaitTimeoutNanos = connectDelayNanos
         }
@@ -156,6 +160,13 @@ internal class FastFallbackExchangeFinder(
     return null
   }
 
+  /** Returns how long to wait for [plan] to connect before racing another attempt. */
+  private fun connectDelayNanos(plan: Plan?): Long {
+    val connectTimeDatabase = connectTimeDatabase ?: return connectDelayNanos
+    val route = (plan as? ConnectPlan)?.route ?: return connectDelayNanos
+    return connectTimeDatabase.connectDelayNanos(route)
+  }
+
   private fun awaitTcpConnect(
     timeout: Long,
     unit: TimeUnit,
@@ -34,6 +34,7 @@ import okhttp3.EventListener
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
 import okhttp3.Request
+import okhttp3.RequestBody
 import okhttp3.Response
 import okhttp3.internal.assertLockNotHeld
 import okhttp3.internal.cache.CacheInterceptor
@@ -105,6 +106,26 @@ class RealCall(
   internal var interceptorScopedExchange: Exchange? = null
     private set
 
+  /**
+   * A copy of the current exchange's one-shot request body, or null if it wasn't copied. This is
+   * used to replay the request if the server refuses it without processing it. If this is non-null
+   * when an exchange starts, that exchange writes the copy instead of the request's body.
+   */
+  internal var replayRequestBody: RequestBody? = null
+
+  /**
+   * True if OkHttp added `Expect: 100-continue` to the current exchange's request. Such requests
+   * are retried without the header if the server responds `417 Expectation Failed`.
+   */
+  internal var autoExpectContinue = false
+
+  /**
+   * The maximum number of requests in flight on the HTTP/1.1 connection that carries the current
+   * request, including this one. This is 1 unless the request may be pipelined. Other calls read
+   * this when they consider sharing this call's connection.
+   */
+  @Volatile internal var http1PipeliningDepth = 1
+
   // These properties are guarded by `this`. They are typically only accessed by the thread executing
   // the call, but they may be accessed by other threads for duplex requests.
 
@@ -287,10 +308,28 @@ class RealCall(
         )
       this.exchangeFinder =
         when {
-          client.fastFallback -> FastFallbackExchangeFinder(routePlanner, client.taskRunner)
-          else -> SequentialExchangeFinder(routePlanner)
+          client.fastFallback -> {
+            FastFallbackExchangeFinder(
+              routePlanner = routePlanner,
+              taskRunner = client.taskRunner,
+              connectTimeDatabase = client.connectTimeDatabase,
+            )
+          }
+
+          else -> {
+            SequentialExchangeFinder(routePlanner)
+          }
         }
     }
+
+    // Only pipeline idempotent requests that have no body. Retries aren't pipelined in case the
+    // server doesn't support it.
+    http1PipeliningDepth =
+      when {
+        !newRoutePlanner || forWebSocket || request.body != null -> 1
+        request.method != "GET" && request.method != "HEAD" -> 1
+        else -> client.http1PipeliningPolicy.maxDepth(exchangeFinder!!.routePlanner.address)
+      }
   }
 
   /** Finds a new or pooled connection to carry a forthcoming request and response. */
@@ -301,7 +340,12 @@ class RealCall(
     }
 
     val exchangeFinder = this.exchangeFinder!!
-    val connection = exchangeFinder.find()
+    val connection =
+      try {
+        exchangeFinder.find()
+      } finally {
+        (exchangeFinder.routePlanner as? RealRoutePlanner)?.endMigration()
+      }
     val codec = connection.newCodec(client, chain)
     val result = Exchange(this, exchangeFinder, codec)
     this.interceptorScopedExchange = result
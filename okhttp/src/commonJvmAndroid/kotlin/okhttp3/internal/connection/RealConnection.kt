@@ -28,7 +28,9 @@ import javax.net.ssl.SSLSocket
 import okhttp3.Address
 import okhttp3.Connection
 import okhttp3.Handshake
+import okhttp3.HeaderIndexingStrategy
 import okhttp3.HttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import okhttp3.OkHttpClient
 import okhttp3.Protocol
 import okhttp3.Route
@@ -41,14 +43,18 @@ import okhttp3.internal.concurrent.withLock
 import okhttp3.internal.http.ExchangeCodec
 import okhttp3.internal.http.RealInterceptorChain
 import okhttp3.internal.http1.Http1ExchangeCodec
+import okhttp3.internal.http1.Http1Pipeline
 import okhttp3.internal.http2.ConnectionShutdownException
 import okhttp3.internal.http2.ErrorCode
 import okhttp3.internal.http2.FlowControlListener
+import okhttp3.internal.http2.Hpack
 import okhttp3.internal.http2.Http2Connection
 import okhttp3.internal.http2.Http2ExchangeCodec
 import okhttp3.internal.http2.Http2Stream
 import okhttp3.internal.http2.Settings
+import okhttp3.internal.http2.SharedReader
 import okhttp3.internal.http2.StreamResetException
+import okhttp3.internal.http2.flowcontrol.ReceiveBudget
 import okhttp3.internal.isHealthy
 import okhttp3.internal.tls.OkHostnameVerifier
 import okio.Buffer
@@ -74,6 +80,14 @@ class RealConnection internal constructor(
   private val protocol: Protocol,
   private val socket: BufferedSocket,
   private val pingIntervalMillis: Int,
+  private val http2ReceiveWindowAutotuning: Boolean,
+  private val http2FrameCoalescing: Boolean,
+  private val http2ConnectionReceiveBudget: Long,
+  private val http2ClientReceiveBudget: ReceiveBudget?,
+  private val altSvcDatabase: AltSvcDatabase?,
+  private val http2HeaderTableSize: Int,
+  private val http2HeaderIndexingStrategy: HeaderIndexingStrategy,
+  private val http2SharedReader: SharedReader?,
   internal val connectionListener: ConnectionListener,
 ) : Http2Connection.Listener(),
   Connection,
@@ -81,6 +95,11 @@ class RealConnection internal constructor(
   Lockable {
   private var http2Connection: Http2Connection? = null
 
+  private val socketProbe = SocketProbe(rawSocket, javaNetSocket, socket)
+
+  /** Orders the exchanges of this connection if it is HTTP/1. */
+  private val http1Pipeline = Http1Pipeline()
+
   // These properties are guarded by `this`.
 
   /**
@@ -108,6 +127,13 @@ class RealConnection internal constructor(
   private var successCount = 0
   private var refusedStreamCount = 0
 
+  /**
+   * True if the peer sent GOAWAY. Streams it refused weren't processed and may be retried. Guarded
+   * by this.
+   */
+  internal var goAwayReceived = false
+    private set
+
   /**
    * The maximum number of concurrent streams that can be carried by this connection. If
    * `allocations.size() < allocationLimit` then new streams can be created on this connection.
@@ -133,6 +159,7 @@ class RealConnection internal constructor(
     withLock {
       noNewExchanges = true
     }
+    http1Pipeline.fail()
     connectionListener.noNewExchanges(this)
   }
 
@@ -167,7 +194,15 @@ class RealConnection internal constructor(
         .socket(socket, route.address.url.host)
         .listener(this)
         .pingIntervalMillis(pingIntervalMillis)
+        .receiveWindowAutotuning(http2ReceiveWindowAutotuning)
+        .frameCoalescing(http2FrameCoalescing)
+        .receiveBudget(
+          http2ClientReceiveBudget?.let { ReceiveBudget(http2ConnectionReceiveBudget, it) },
+        )
         .flowControlListener(flowControlListener)
+        .headerTableSize(http2HeaderTableSize)
+        .headerIndexingStrategy(http2HeaderIndexingStrategy)
+        .sharedReader(http2SharedReader, socketProbe)
         .build()
     this.http2Connection = http2Connection
     this.allocationLimit = Http2Connection.DEFAULT_SETTINGS.getMaxConcurrentStreams()
@@ -181,11 +216,13 @@ class RealConnection internal constructor(
   internal fun isEligible(
     address: Address,
     routes: List<Route>?,
+    http1PipeliningDepth: Int = 1,
   ): Boolean {
     assertLockHeld()
 
     // If this connection is not accepting new exchanges, we're done.
-    if (calls.size >= allocationLimit || noNewExchanges) return false
+    if (noNewExchanges) return false
+    if (calls.size >= allocationLimit && !canPipeline(http1PipeliningDepth)) return false
 
     // If the non-host fields of the address don't overlap, we're done.
     if (!this.route.address.equalsNonHost(address)) return false
@@ -224,6 +261,15 @@ class RealConnection internal constructor(
     return true // The caller's address can be carried by this connection.
   }
 
+  /**
+   * Returns true if this is an HTTP/1 connection and a request may be pipelined behind its current
+   * calls. That requires that each of those calls is also pipelining.
+   */
+  private fun canPipeline(http1PipeliningDepth: Int): Boolean {
+    if (http2Connection != null || calls.size >= http1PipeliningDepth) return false
+    return calls.all { (it.get()?.http1PipeliningDepth ?: 1) > 1 }
+  }
+
   /**
    * Returns true if this connection's route has the same address as any of [candidates]. This
    * requires us to have a DNS address for both hosts, which only happens after route planning. We
@@ -275,10 +321,22 @@ class RealConnection internal constructor(
     return if (http2Connection != null) {
       Http2ExchangeCodec(client, this, chain, http2Connection)
     } else {
-      javaNetSocket.soTimeout = chain.readTimeoutMillis()
-      okHttpSocket.source.timeout().timeout(chain.readTimeoutMillis.toLong(), MILLISECONDS)
       okHttpSocket.sink.timeout().timeout(chain.writeTimeoutMillis.toLong(), MILLISECONDS)
-      Http1ExchangeCodec(client, this, okHttpSocket)
+      // Files may be sent and received directly on a plaintext socket's channel. Non-blocking
+      // channels would need a selector, so they aren't used.
+      val fileTransferChannel =
+        rawSocket.channel?.takeIf { javaNetSocket === rawSocket && it.isBlocking }
+      Http1ExchangeCodec(
+        client = client,
+        carrier = this,
+        socket = okHttpSocket,
+        pipeline = http1Pipeline,
+        fileTransferChannel = fileTransferChannel,
+        applyReadTimeout = {
+          javaNetSocket.soTimeout = chain.readTimeoutMillis()
+          okHttpSocket.source.timeout().timeout(chain.readTimeoutMillis.toLong(), MILLISECONDS)
+        },
+      )
     }
   }
 
@@ -315,7 +373,12 @@ class RealConnection internal constructor(
       return http2Connection.isHealthy(nowNs)
     }
 
-    val idleDurationNs = withLock { nowNs - idleAtNs }
+    // Don't read the socket if it's carrying other calls' pipelined responses.
+    val idleDurationNs =
+      withLock {
+        if (calls.size > 1) return true
+        nowNs - idleAtNs
+      }
     if (idleDurationNs >= IDLE_CONNECTION_HEALTHY_NS && doExtensiveChecks) {
       return javaNetSocket.isHealthy(socket.source)
     }
@@ -323,6 +386,13 @@ class RealConnection internal constructor(
     return true
   }
 
+  /**
+   * Waits up to [timeoutMillis] for this connection's socket to have bytes to read, and returns
+   * true if it does. This also returns true if the socket is exhausted or fails, so that the next
+   * read observes that. The caller must be the socket's only reader.
+   */
+  fun awaitReadable(timeoutMillis: Int): Boolean = socketProbe.awaitReadable(timeoutMillis)
+
   /** Refuse incoming streams. */
   @Throws(IOException::class)
   override fun onStream(stream: Http2Stream) {
@@ -339,6 +409,32 @@ class RealConnection internal constructor(
     }
   }
 
+  /** Stop using this connection and start migrating calls to a replacement. */
+  override fun onGoAway(connection: Http2Connection) {
+    val noNewExchangesEvent: Boolean
+    withLock {
+      goAwayReceived = true
+      noNewExchangesEvent = !noNewExchanges
+      noNewExchanges = true
+    }
+    if (noNewExchangesEvent) {
+      connectionListener.noNewExchanges(this)
+    }
+    connectionPool.beginMigration(route.address)
+  }
+
+  /** Remember alternative services for origins that this connection is authoritative for. */
+  override fun onAlternateService(
+    connection: Http2Connection,
+    origin: String?,
+    altSvc: String,
+  ) {
+    if (altSvcDatabase == null) return
+    val url = if (origin == null) route.address.url else origin.toHttpUrlOrNull() ?: return
+    if (!withLock { supportsUrl(url) }) return
+    altSvcDatabase.put(url, altSvc)
+  }
+
   override fun handshake(): Handshake? = handshake
 
   /** Track a bad route in the route database. Other routes will be attempted first. */
@@ -372,6 +468,10 @@ class RealConnection internal constructor(
     withLock {
       if (e is StreamResetException) {
         when {
+          e.errorCode == ErrorCode.REFUSED_STREAM && goAwayReceived -> {
+            // The peer refused this stream when it sent GOAWAY. That's not the route's fault.
+          }
+
           e.errorCode == ErrorCode.REFUSED_STREAM -> {
             // Stop using this connection on the 2nd REFUSED_STREAM error.
             refusedStreamCount++
@@ -409,6 +509,10 @@ class RealConnection internal constructor(
       Unit
     }
 
+    if (!isMultiplexed) {
+      http1Pipeline.fail()
+    }
+
     if (noNewExchangesEvent) {
       connectionListener.noNewExchanges(this)
     }
@@ -416,6 +520,8 @@ class RealConnection internal constructor(
 
   override fun protocol(): Protocol = protocol
 
+  override fun headerCompressionRatio(): Double = http2Connection?.headerCompressionRatio ?: 1.0
+
   override fun toString(): String =
     "Connection{${route.address.url.host}:${route.address.url.port}," +
       " proxy=${route.proxy}" +
@@ -453,6 +559,14 @@ class RealConnection internal constructor(
           protocol = Protocol.HTTP_2,
           socket = bufferedSocket,
           pingIntervalMillis = 0,
+          http2ReceiveWindowAutotuning = false,
+          http2FrameCoalescing = false,
+          http2ConnectionReceiveBudget = Long.MAX_VALUE,
+          http2ClientReceiveBudget = null,
+          altSvcDatabase = null,
+          http2HeaderTableSize = Hpack.SETTINGS_HEADER_TABLE_SIZE,
+          http2HeaderIndexingStrategy = HeaderIndexingStrategy.INDEX_ALL,
+          http2SharedReader = null,
           connectionListener = ConnectionListener.NONE,
         )
       result.idleAtNs = idleAtNs
@@ -16,19 +16,28 @@
  */
 package okhttp3.internal.connection
 
+import java.io.InterruptedIOException
+import java.net.InetSocketAddress
 import java.net.Socket
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.TimeUnit
 import okhttp3.Address
+import okhttp3.AddressSelectionStrategy
 import okhttp3.ConnectionPool
 import okhttp3.Route
 import okhttp3.internal.closeQuietly
+import okhttp3.internal.concurrent.Lockable
 import okhttp3.internal.concurrent.Task
 import okhttp3.internal.concurrent.TaskQueue
 import okhttp3.internal.concurrent.TaskRunner
 import okhttp3.internal.concurrent.assertLockHeld
+import okhttp3.internal.concurrent.awaitNanos
+import okhttp3.internal.concurrent.notifyAll
+import okhttp3.internal.concurrent.wait
 import okhttp3.internal.concurrent.withLock
 import okhttp3.internal.connection.RealCall.CallReference
+import okhttp3.internal.http2.SharedReader
 import okhttp3.internal.okHttpName
 import okhttp3.internal.platform.Platform
 
@@ -55,6 +64,16 @@ class RealConnectionPool internal constructor(
    */
   private val connections = ConcurrentLinkedQueue<RealConnection>()
 
+  /**
+   * Addresses whose connections received GOAWAY. The first call to plan a connection to such an
+   * address connects a replacement, and the other calls wait to share it. Without this each call
+   * refused by the GOAWAY would race to connect its own replacement.
+   */
+  private val migrations = ConcurrentHashMap<Address, Migration>()
+
+  /** Watches idle HTTP/2 connections for clients that enable the shared reader. */
+  internal val http2SharedReader = SharedReader(taskRunner, maxParkNanos = keepAliveDurationNs)
+
   init {
     // Put a floor on the keep alive duration, otherwise cleanup will spin loop.
     require(keepAliveDuration > 0L) { "keepAliveDuration <= 0: $keepAliveDuration" }
@@ -78,6 +97,9 @@ class RealConnectionPool internal constructor(
    * If [routes] is non-null these are the resolved routes (ie. IP addresses) for the connection.
    * This is used to coalesce related domains to the same HTTP/2 connection, such as `square.com`
    * and `square.ca`.
+   *
+   * If several connections to [address] are eligible, [addressSelectionStrategy] chooses which one
+   * is attempted first.
    */
   internal fun callAcquirePooledConnection(
     doExtensiveHealthChecks: Boolean,
@@ -85,8 +107,9 @@ class RealConnectionPool internal constructor(
     call: RealCall,
     routes: List<Route>?,
     requireMultiplexed: Boolean,
+    addressSelectionStrategy: AddressSelectionStrategy = AddressSelectionStrategy.FIRST,
   ): RealConnection? {
-    for (connection in connections) {
+    for (connection in selectFirst(address, addressSelectionStrategy)) {
       // In the first synchronized block, acquire the connection if it can satisfy this call.
       val acquired =
         connection.withLock {
@@ -95,7 +118,7 @@ class RealConnectionPool internal constructor(
               false
             }
 
-            !connection.isEligible(address, routes) -> {
+            !connection.isEligible(address, routes, call.http1PipeliningDepth) -> {
               false
             }
 
@@ -129,6 +152,47 @@ class RealConnectionPool internal constructor(
     return null
   }
 
+  /**
+   * Returns the pooled connections, starting with the eligible connection to [address] chosen by
+   * [addressSelectionStrategy].
+   */
+  private fun selectFirst(
+    address: Address,
+    addressSelectionStrategy: AddressSelectionStrategy,
+  ): Collection<RealConnection> {
+    // Don't take each connection's lock to count its calls if the strategy ignores the counts.
+    if (addressSelectionStrategy === AddressSelectionStrategy.FIRST) return connections
+
+    val all = connections.toList()
+    val eligible = mutableListOf<RealConnection>()
+    val activeCalls = mutableListOf<Int>()
+    for (connection in all) {
+      connection.withLock {
+        if (connection.isEligible(address, null)) {
+          eligible += connection
+          activeCalls += connection.calls.size
+        }
+      }
+    }
+    if (eligible.size < 2) return all
+
+    val index = addressSelectionStrategy.select(address, activeCalls.toIntArray())
+    require(index in eligible.indices) {
+      "addressSelectionStrategy returned $index for ${eligible.size} connections"
+    }
+    val first = eligible[index]
+    return listOf(first) + all.filter { it !== first }
+  }
+
+  /** Returns the number of calls carried by pooled connections to [socketAddress]. */
+  fun activeCalls(socketAddress: InetSocketAddress): Int =
+    connections.sumOf {
+      when (it.route().socketAddress) {
+        socketAddress -> it.withLock { it.calls.size }
+        else -> 0
+      }
+    }
+
   fun put(connection: RealConnection) {
     connection.assertLockHeld()
 
@@ -321,10 +385,72 @@ class RealConnectionPool internal constructor(
     return references.size
   }
 
+  /** Starts migrating calls from a connection to [address] whose peer sent GOAWAY. */
+  internal fun beginMigration(address: Address) {
+    migrations.putIfAbsent(address, Migration())
+  }
+
+  /**
+   * Returns true if [call] should connect to [address] itself. If another call is already
+   * connecting a replacement for a connection that received GOAWAY, this waits up to
+   * [timeoutMillis] for that call to finish and returns false.
+   */
+  @Throws(InterruptedIOException::class)
+  internal fun awaitMigration(
+    address: Address,
+    call: RealCall,
+    timeoutMillis: Int,
+  ): Boolean {
+    val migration = migrations[address] ?: return true
+    migration.withLock {
+      val leader = migration.leader
+      if (leader == null) {
+        migration.leader = call
+        return true
+      }
+      if (leader === call) return true
+
+      val deadline = System.nanoTime() + timeoutMillis * 1_000_000L
+      try {
+        while (migrations[address] === migration) {
+          if (timeoutMillis == 0) {
+            migration.wait()
+          } else {
+            val remaining = deadline - System.nanoTime()
+            if (remaining <= 0L) break
+            migration.awaitNanos(remaining)
+          }
+        }
+      } catch (_: InterruptedException) {
+        Thread.currentThread().interrupt() // Retain interrupted status.
+        throw InterruptedIOException()
+      }
+      return false
+    }
+  }
+
+  /** Releases calls waiting on [call] to connect a replacement to [address]. */
+  internal fun endMigration(
+    address: Address,
+    call: RealCall,
+  ) {
+    val migration = migrations[address] ?: return
+    migration.withLock {
+      if (migration.leader !== call) return
+      migrations.remove(address, migration)
+      migration.notifyAll()
+    }
+  }
+
   fun scheduleCloser() {
     cleanupQueue.schedule(cleanupTask)
   }
 
+  private class Migration : Lockable {
+    /** The call that connects the replacement connection. Guarded by this. */
+    var leader: RealCall? = null
+  }
+
   companion object {
     fun get(connectionPool: ConnectionPool): RealConnectionPool = connectionPool.delegate
   }
@@ -54,6 +54,7 @@ class RealRoutePlanner internal constructor(
   private var routeSelection: RouteSelector.Selection? = null
   private var routeSelector: RouteSelector? = null
   private var nextRouteToTry: Route? = null
+  private var awaitedMigration = false
 
   override val deferredPlans = ArrayDeque<Plan>()
 
@@ -71,6 +72,15 @@ class RealRoutePlanner internal constructor(
     // Attempt a deferred plan before new routes.
     if (deferredPlans.isNotEmpty()) return deferredPlans.removeFirst()
 
+    // If another call is replacing a connection that received GOAWAY, wait to share its connection.
+    if (!awaitedMigration) {
+      awaitedMigration = true
+      if (!connectionPool.awaitMigration(address, call, socketConnectTimeoutMillis)) {
+        val pooled = planReusePooledConnection()
+        if (pooled != null) return pooled
+      }
+    }
+
     // Do blocking calls to plan a route for a new connection.
     val connect = planConnect()
 
@@ -82,6 +92,11 @@ class RealRoutePlanner internal constructor(
     return connect
   }
 
+  /** Releases calls that are waiting for this call to connect a replacement connection. */
+  internal fun endMigration() {
+    connectionPool.endMigration(address, call)
+  }
+
   /**
    * Returns the connection already attached to the call if it's eligible for a new exchange.
    *
@@ -109,6 +124,13 @@ class RealRoutePlanner internal constructor(
             call.releaseConnectionNoEvents()
           }
 
+          // Don't write a request that can't be pipelined behind other calls' requests.
+          !candidate.isMultiplexed &&
+            candidate.calls.size > 1 &&
+            call.http1PipeliningDepth == 1 -> {
+            call.releaseConnectionNoEvents()
+          }
+
           else -> {
             null
           }
@@ -159,6 +181,9 @@ class RealRoutePlanner internal constructor(
           routeDatabase = routeDatabase,
           call = call,
           fastFallback = fastFallback,
+          addressSelectionStrategy = call.client.addressSelectionStrategy,
+          connectionPool = connectionPool,
+          altSvcDatabase = call.client.altSvcDatabase,
         )
       routeSelector = newRouteSelector
     }
@@ -191,6 +216,7 @@ class RealRoutePlanner internal constructor(
         call = call,
         routes = routes,
         requireMultiplexed = planToReplace != null && planToReplace.isReady,
+        addressSelectionStrategy = call.client.addressSelectionStrategy,
       ) ?: return null
 
     // If we coalesced our connection, remember the replaced connection's route. That way if the
@@ -304,6 +330,12 @@ class RealRoutePlanner internal constructor(
     }
 
     if (failedConnection != null) {
+      // Calls refused by GOAWAY wait to share a replacement connection, even if they already
+      // waited before connecting the connection that received GOAWAY.
+      if (failedConnection.withLock { failedConnection.goAwayReceived }) {
+        awaitedMigration = false
+      }
+
       val retryRoute = retryRoute(failedConnection)
       if (retryRoute != null) {
         // Lock in the route because retryRoute() is racy and we don't want to call it twice.
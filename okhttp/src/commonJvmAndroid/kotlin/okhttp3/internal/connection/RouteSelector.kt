@@ -22,6 +22,7 @@ import java.net.Proxy
 import java.net.SocketException
 import java.net.UnknownHostException
 import okhttp3.Address
+import okhttp3.AddressSelectionStrategy
 import okhttp3.Dns
 import okhttp3.HttpUrl
 import okhttp3.Route
@@ -40,6 +41,9 @@ class RouteSelector internal constructor(
   private val routeDatabase: RouteDatabase,
   private val call: RealCall,
   private val fastFallback: Boolean,
+  private val addressSelectionStrategy: AddressSelectionStrategy = AddressSelectionStrategy.FIRST,
+  private val connectionPool: RealConnectionPool = call.client.connectionPool.delegate,
+  private val altSvcDatabase: AltSvcDatabase? = null,
 ) {
   // State for negotiating the next proxy to use.
   private var proxies = emptyList<Proxy>()
@@ -155,6 +159,35 @@ class RouteSelector internal constructor(
       socketPort = proxyAddress.port
     }
 
+    val routes = routes(proxy, socketHost, socketPort)
+
+    // Try the origin's advertised alternative first, falling back to the origin itself. Tunnels
+    // through HTTP proxies always connect to the origin.
+    val altSvc =
+      when {
+        proxy.type() == Proxy.Type.DIRECT -> altSvcDatabase?.alternative(address)
+        else -> null
+      }
+    if (altSvc != null) {
+      val alternativeRoutes =
+        try {
+          routes(proxy, altSvc.host, altSvc.port)
+        } catch (_: IOException) {
+          return routes
+        }
+      return (alternativeRoutes + routes).distinct()
+    }
+
+    return routes
+  }
+
+  /** Returns the routes to attempt to reach [socketHost] via [proxy]. */
+  @Throws(IOException::class)
+  private fun routes(
+    proxy: Proxy,
+    socketHost: String,
+    socketPort: Int,
+  ): List<Route> {
     if (socketPort !in 1..65535) {
       throw SocketException("No route to $socketHost:$socketPort; port is out of range")
     }
@@ -179,15 +212,29 @@ class RouteSelector internal constructor(
       )
     }
 
-    val routes = dnsLookup(proxy, socketHost, socketPort)
+    val routes = selectFirst(dnsLookup(proxy, socketHost, socketPort))
 
-    // Try each address for best behavior in mixed IPv4/IPv6 environments.
+    // Try each address for best behavior in mixed IPv4/IPv6 environments. This preserves the order
+    // of addresses within each family.
     return when {
       fastFallback -> reorderForHappyEyeballs(routes)
       else -> routes
     }
   }
 
+  /** Returns [routes], starting with the route chosen by [addressSelectionStrategy]. */
+  private fun selectFirst(routes: List<Route>): List<Route> {
+    if (routes.size < 2 || addressSelectionStrategy === AddressSelectionStrategy.FIRST) return routes
+
+    val activeCalls = IntArray(routes.size) { connectionPool.activeCalls(routes[it].socketAddress) }
+    val index = addressSelectionStrategy.select(address, activeCalls)
+    require(index in routes.indices) {
+      "addressSelectionStrategy returned $index for ${routes.size} routes"
+    }
+    val first = routes[index]
+    return listOf(first) + routes.filter { it !== first }
+  }
+
   // TODO: switch RouteSelector to be async.
 
   /**
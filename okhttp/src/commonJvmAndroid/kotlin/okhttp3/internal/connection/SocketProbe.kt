@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import java.io.IOException
+import java.net.Socket as JavaNetSocket
+import java.net.SocketTimeoutException
+import okhttp3.internal.http2.SharedReader
+
+/**
+ * Checks a connection's socket for bytes to read. This checks the bytes available beneath TLS
+ * because SSL sockets often report none until a record is decrypted.
+ */
+internal class SocketProbe(
+  /** The low-level TCP socket. */
+  private val rawSocket: JavaNetSocket,
+  /** The application layer socket. Either an SSL socket layered over [rawSocket], or it. */
+  private val javaNetSocket: JavaNetSocket,
+  private val socket: BufferedSocket,
+) : SharedReader.Probe {
+  override fun isReadable(): Boolean =
+    try {
+      socket.source.buffer.size > 0L ||
+        javaNetSocket.getInputStream().available() > 0 ||
+        rawSocket.getInputStream().available() > 0
+    } catch (_: IOException) {
+      true // Let the reader observe the failure.
+    }
+
+  /** The caller must be the socket's only reader. */
+  override fun awaitReadable(timeoutMillis: Int): Boolean {
+    if (socket.source.buffer.size > 0L) return true
+
+    return try {
+      val readTimeout = javaNetSocket.soTimeout
+      try {
+        javaNetSocket.soTimeout = timeoutMillis
+        socket.source.request(1L)
+        true // Either bytes arrived or the socket is exhausted.
+      } finally {
+        javaNetSocket.soTimeout = readTimeout
+      }
+    } catch (_: SocketTimeoutException) {
+      false // Read timed out; nothing to read.
+    } catch (_: IOException) {
+      true // Let the reader observe the failure.
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import kotlin.time.ComparableTimeMark as Time
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.TimeSource
+import okhttp3.Address
+import okhttp3.internal.dns.MemoryCache
+import okio.ByteString
+
+/**
+ * Remembers the TLS session ID of the most recent handshake with each address. A handshake that
+ * gets the same ID again resumed that session, even if the TLS provider reports a new creation
+ * time for it.
+ *
+ * Each session ID is forgotten after [timeToLive], which is longer than most servers will resume a
+ * session for.
+ */
+class TlsSessionIdDatabase(
+  timeSource: TimeSource.WithComparableMarks = TimeSource.Monotonic,
+  private val timeToLive: Duration = 24.hours,
+  maxEntryCount: Int = 256,
+) {
+  private val cache =
+    object : MemoryCache<Address, Entry>(
+      timeSource = timeSource,
+      maxSize = maxEntryCount,
+    ) {
+      override fun lastRequestedAt(
+        now: Time,
+        value: Entry,
+      ): Time? {
+        // Evict immediately if the session ID has expired.
+        if (value.expireAt <= now) return null
+        return value.lastRequestedAt
+      }
+    }
+
+  /**
+   * Returns the session ID of the most recent handshake with [address], or null if nothing is
+   * known about it.
+   */
+  fun sessionId(address: Address): ByteString? {
+    val now = cache.timeSource.markNow()
+    val entry = cache[address] ?: return null
+    if (entry.expireAt <= now) return null
+    entry.lastRequestedAt = now
+    return entry.sessionId
+  }
+
+  /** Records that a handshake with [address] negotiated [sessionId]. */
+  fun connected(
+    address: Address,
+    sessionId: ByteString?,
+  ) {
+    val now = cache.timeSource.markNow()
+    val entry = cache.computeIfAbsent(address) { Entry(now) }
+    entry.lastRequestedAt = now
+    entry.sessionId = sessionId
+    entry.expireAt = now + timeToLive
+  }
+
+  private class Entry(
+    @Volatile var lastRequestedAt: Time,
+  ) {
+    /** The TLS session ID, or null if the session has no ID. */
+    @Volatile var sessionId: ByteString? = null
+
+    @Volatile var expireAt: Time = lastRequestedAt
+  }
+}
@@ -47,6 +47,9 @@ abstract class MemoryCache<K : Any, V : Any>(
     value: V,
   ): Time?
 
+  /** Returns the value for [key], or null if it isn't cached. This never grows the cache. */
+  operator fun get(key: K): V? = entries[key]
+
   /**
    * Similar to [ConcurrentHashMap.computeIfAbsent], but this will also prune the cache to size if
    * this function grows the cache to double [maxSize].
@@ -16,14 +16,22 @@
 package okhttp3.internal.http
 
 import java.io.IOException
+import java.net.HttpURLConnection.HTTP_OK
 import java.net.ProtocolException
+import okhttp3.ExpectContinuePolicy
 import okhttp3.Headers
 import okhttp3.Interceptor
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
 import okhttp3.Response
 import okhttp3.TrailersSource
+import okhttp3.internal.FileRequestBody
 import okhttp3.internal.UnreadableResponseBody
+import okhttp3.internal.connection.Exchange
 import okhttp3.internal.http2.ConnectionShutdownException
 import okhttp3.internal.skipAll
+import okio.Buffer
 import okio.buffer
 
 /** This is the last interceptor in the chain. It makes a network call to the server. */
@@ -32,7 +40,9 @@ object CallServerInterceptor : Interceptor {
   override fun intercept(chain: Interceptor.Chain): Response {
     val realChain = chain as RealInterceptorChain
     val exchange = realChain.exchange!!
-    val request = realChain.request
+    val request = expectContinueRequest(realChain, exchange)
+    val autoExpectContinue = request !== realChain.request
+    realChain.call.autoExpectContinue = autoExpectContinue
     val requestBody = request.body
     val sentRequestMillis = System.currentTimeMillis()
 
@@ -41,18 +51,22 @@ object CallServerInterceptor : Interceptor {
     var sendRequestException: IOException? = null
     val hasRequestBody = HttpMethod.permitsRequestBody(request.method) && requestBody != null
     val isUpgradeRequest = "upgrade".equals(request.header("Connection"), ignoreCase = true)
+    val isExtendedConnect = realChain.call.forWebSocket && exchange.connection.isMultiplexed
     try {
       exchange.writeRequestHeaders(request)
 
       if (hasRequestBody) {
         // If there's a "Expect: 100-continue" header on the request, wait for a "HTTP/1.1 100
         // Continue" response before transmitting the request body. If we don't get that, return
-        // what we did get (such as a 4xx response) without ever transmitting the request body.
+        // what we did get (such as a 4xx response) without ever transmitting the request body. If
+        // we added the header ourselves, only wait briefly in case the server ignores it.
         if ("100-continue".equals(request.header("Expect"), ignoreCase = true)) {
           exchange.flushRequest()
-          responseBuilder = exchange.readResponseHeaders(expectContinue = true)
-          exchange.responseHeadersStart()
-          invokeStartEvent = false
+          if (!autoExpectContinue || awaitExpectContinue(realChain, exchange, request)) {
+            responseBuilder = exchange.readResponseHeaders(expectContinue = true)
+            exchange.responseHeadersStart()
+            invokeStartEvent = false
+          }
         }
         if (responseBuilder == null) {
           if (requestBody.isDuplex()) {
@@ -61,10 +75,26 @@ object CallServerInterceptor : Interceptor {
             val bufferedRequestBody = exchange.createRequestBody(request, true).buffer()
             requestBody.writeTo(bufferedRequestBody)
           } else {
-            // Write the request body if the "Expect: 100-continue" expectation was met.
-            val bufferedRequestBody = exchange.createRequestBody(request, false).buffer()
-            requestBody.writeTo(bufferedRequestBody)
-            bufferedRequestBody.close()
+            // Write the request body if the "Expect: 100-continue" expectation was met. If this is
+            // a retry of a refused stream, write the copy that the refused stream sent instead.
+            val replayRequestBody =
+              realChain.call.replayRequestBody
+                ?: replayRequestBody(realChain, exchange, requestBody)
+            realChain.call.replayRequestBody = replayRequestBody
+            val requestBodySink = exchange.createRequestBody(request, false)
+            if (replayRequestBody == null &&
+              requestBody is FileRequestBody &&
+              requestBodySink is FileTransferSink &&
+              requestBodySink.supportsFileTransfer
+            ) {
+              // Send the file without copying it through memory.
+              requestBody.transferTo(requestBodySink)
+              requestBodySink.close()
+            } else {
+              val bufferedRequestBody = requestBodySink.buffer()
+              (replayRequestBody ?: requestBody).writeTo(bufferedRequestBody)
+              bufferedRequestBody.close()
+            }
           }
         } else {
           exchange.noRequestBody()
@@ -79,7 +109,10 @@ object CallServerInterceptor : Interceptor {
         exchange.noRequestBody()
       }
 
-      if (requestBody == null || !requestBody.isDuplex()) {
+      if (isExtendedConnect) {
+        // Send the headers but leave the stream open for the web socket to write to.
+        exchange.flushRequest()
+      } else if (requestBody == null || !requestBody.isDuplex()) {
         exchange.finishRequest()
       }
     } catch (e: IOException) {
@@ -125,6 +158,11 @@ object CallServerInterceptor : Interceptor {
       }
 
       exchange.responseHeadersEnd(response)
+      realChain.call.client.altSvcDatabase
+        ?.receiveHeaders(request.url, response.headers)
+      if (autoExpectContinue && code == HTTP_EXPECTATION_FAILED) {
+        realChain.call.client.expectContinueDatabase.unsupported(request.url)
+      }
 
       val isUpgradeCode = code == HTTP_SWITCHING_PROTOCOLS
       if (isUpgradeCode && exchange.connection.isMultiplexed) {
@@ -137,8 +175,8 @@ object CallServerInterceptor : Interceptor {
 
       response =
         when {
-          // This is an HTTP/1 upgrade. (This case includes web socket upgrades.)
-          isUpgradeRequest && isUpgradeResponse -> {
+          // This is an HTTP/1 upgrade (including web sockets), or a web socket on an HTTP/2 stream.
+          isUpgradeRequest && isUpgradeResponse || isExtendedConnect && code == HTTP_OK -> {
             response
               .newBuilder()
               .body(
@@ -152,6 +190,9 @@ object CallServerInterceptor : Interceptor {
 
           // This is not an upgrade response.
           else -> {
+            // A rejected web socket won't use its stream's request side. Close it so the stream
+            // closes once the response body is consumed.
+            if (isExtendedConnect) exchange.finishRequest()
             val responseBody = exchange.openResponseBody(response)
             response
               .newBuilder()
@@ -191,6 +232,67 @@ object CallServerInterceptor : Interceptor {
     }
   }
 
+  /**
+   * Returns the request to send, with an `Expect: 100-continue` header if the client's
+   * [expectContinuePolicy][okhttp3.OkHttpClient.expectContinuePolicy] wants one.
+   */
+  @Throws(IOException::class)
+  private fun expectContinueRequest(
+    chain: RealInterceptorChain,
+    exchange: Exchange,
+  ): Request {
+    val request = chain.request
+    val client = chain.call.client
+    val requestBody = request.body ?: return request
+    if (client.expectContinuePolicy === ExpectContinuePolicy.NONE) return request
+    if (!HttpMethod.permitsRequestBody(request.method) || requestBody.isDuplex()) return request
+    if (exchange.connection.isMultiplexed) return request
+    if (request.header("Expect") != null) return request
+    if (!client.expectContinuePolicy.expectContinue(request)) return request
+    if (!client.expectContinueDatabase.isSupported(request.url)) return request
+
+    return request
+      .newBuilder()
+      .header("Expect", "100-continue")
+      .build()
+  }
+
+  /**
+   * Returns true if the server starts its response to [request] within the client's
+   * [expectContinueTimeoutMillis][okhttp3.OkHttpClient.expectContinueTimeoutMillis]. Otherwise the
+   * server probably ignores `Expect: 100-continue`, so this records that and returns false.
+   */
+  private fun awaitExpectContinue(
+    chain: RealInterceptorChain,
+    exchange: Exchange,
+    request: Request,
+  ): Boolean {
+    val client = chain.call.client
+    if (client.expectContinueTimeoutMillis == 0) return true
+    if (exchange.connection.awaitReadable(client.expectContinueTimeoutMillis)) return true
+
+    client.expectContinueDatabase.unsupported(request.url)
+    return false
+  }
+
+  /**
+   * Returns a copy of [requestBody] if it's one-shot and small enough to replay on another HTTP/2
+   * stream. The copy is written instead of the original.
+   */
+  private fun replayRequestBody(
+    chain: RealInterceptorChain,
+    exchange: Exchange,
+    requestBody: RequestBody,
+  ): RequestBody? {
+    if (!requestBody.isOneShot() || !exchange.connection.isMultiplexed) return null
+    val contentLength = requestBody.contentLength()
+    if (contentLength !in 0L..chain.call.client.http2ReplayBufferSize) return null
+
+    val buffer = Buffer()
+    requestBody.writeTo(buffer)
+    return buffer.readByteString().toRequestBody(requestBody.contentType())
+  }
+
   private fun shouldIgnoreAndWaitForRealResponse(code: Int): Boolean =
     when {
       // Server sent a 100-continue even though we did not request one. Try again to read the
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http
+
+import java.io.IOException
+import java.nio.channels.FileChannel
+import okio.Sink
+
+/**
+ * A request body sink that can send a file's content to the network directly from the file system,
+ * without copying it through memory. On plaintext connections this uses `sendfile` where it's
+ * available.
+ */
+interface FileTransferSink : Sink {
+  /** True if [transferFrom] may be called. Otherwise files must be written like other content. */
+  val supportsFileTransfer: Boolean
+
+  /** Writes [byteCount] bytes of [file] to this sink, starting at [position]. */
+  @Throws(IOException::class)
+  fun transferFrom(
+    file: FileChannel,
+    position: Long,
+    byteCount: Long,
+  )
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http
+
+import java.io.IOException
+import java.nio.channels.FileChannel
+import okio.Source
+
+/**
+ * A response body source that can write its content from the network directly to a file, without
+ * copying it through memory.
+ */
+interface FileTransferSource : Source {
+  /** True if [transferTo] may be called. Otherwise this must be read like other sources. */
+  val supportsFileTransfer: Boolean
+
+  /**
+   * Writes at most [byteCount] bytes from this source to [file], starting at [position]. Returns
+   * the number of bytes written, or -1 if this source is exhausted.
+   *
+   * Bytes are written directly from the network and don't include any that were already read into
+   * a buffer, so callers must write those first.
+   */
+  @Throws(IOException::class)
+  fun transferTo(
+    file: FileChannel,
+    position: Long,
+    byteCount: Long,
+  ): Long
+}
@@ -50,5 +50,8 @@ const val HTTP_TEMP_REDIRECT = 307
 /** `308 Permanent Redirect` (HTTP/1.1 - RFC 7538)  */
 const val HTTP_PERM_REDIRECT = 308
 
+/** `417 Expectation Failed` (HTTP/1.1 - RFC 7231)  */
+const val HTTP_EXPECTATION_FAILED = 417
+
 /** `421 Misdirected Request` (HTTP/2 - RFC 7540)  */
 const val HTTP_MISDIRECTED_REQUEST = 421
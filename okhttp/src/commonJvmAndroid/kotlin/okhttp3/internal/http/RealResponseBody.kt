@@ -28,6 +28,8 @@ class RealResponseBody(
   private val contentTypeString: String?,
   private val contentLength: Long,
   private val source: BufferedSource,
+  /** The unbuffered source of [source] if it can write directly to files, or null. */
+  internal val fileTransferSource: FileTransferSource? = null,
 ) : ResponseBody() {
   override fun contentLength(): Long = contentLength
 
@@ -35,12 +35,15 @@ import javax.net.ssl.SSLPeerUnverifiedException
 import okhttp3.Interceptor
 import okhttp3.OkHttpClient
 import okhttp3.Request
+import okhttp3.RequestBody
 import okhttp3.Response
 import okhttp3.internal.canReuseConnectionFor
 import okhttp3.internal.closeQuietly
 import okhttp3.internal.connection.Exchange
 import okhttp3.internal.connection.RealCall
 import okhttp3.internal.http2.ConnectionShutdownException
+import okhttp3.internal.http2.ErrorCode
+import okhttp3.internal.http2.StreamResetException
 import okhttp3.internal.stripBody
 import okhttp3.internal.withSuppressed
 
@@ -58,6 +61,7 @@ class RetryAndFollowUpInterceptor : Interceptor {
     var priorResponse: Response? = null
     var newRoutePlanner = true
     var recoveredFailures = listOf<IOException>()
+    var replayRequestBody: RequestBody? = null
     while (true) {
       call.enterNetworkInterceptorExchange(request, newRoutePlanner, chain)
 
@@ -69,15 +73,20 @@ class RetryAndFollowUpInterceptor : Interceptor {
         }
 
         try {
+          call.replayRequestBody = replayRequestBody
+          replayRequestBody = null
+          call.autoExpectContinue = false
           response = realChain.proceed(request)
           newRoutePlanner = true
         } catch (e: IOException) {
           // An attempt to communicate with a server failed. The request may have been sent.
-          val isRecoverable = recover(e, call, chain, request)
+          val replay = replayRequestBody(e, call)
+          val isRecoverable = recover(e, call, chain, request, replay != null)
           call.eventListener.retryDecision(call, e, isRecoverable)
           if (!isRecoverable) throw e.withSuppressed(recoveredFailures)
           recoveredFailures += e
           newRoutePlanner = false
+          replayRequestBody = replay
           continue
         }
 
@@ -127,14 +136,15 @@ class RetryAndFollowUpInterceptor : Interceptor {
   /**
    * Report and attempt to recover from a failure to communicate with a server. Returns true if
    * `e` is recoverable, or false if the failure is permanent. Requests with a body can only
-   * be recovered if the body is buffered or if the failure occurred before the request has been
-   * sent.
+   * be recovered if the body is buffered, if it has a copy to replay, or if the failure occurred
+   * before the request has been sent.
    */
   private fun recover(
     e: IOException,
     call: RealCall,
     chain: Interceptor.Chain,
     userRequest: Request,
+    hasReplayRequestBody: Boolean,
   ): Boolean {
     val requestSendStarted = e !is ConnectionShutdownException
 
@@ -142,7 +152,9 @@ class RetryAndFollowUpInterceptor : Interceptor {
     if (!chain.retryOnConnectionFailure) return false
 
     // We can't send the request body again.
-    if (requestSendStarted && requestIsOneShot(e, userRequest)) return false
+    if (requestSendStarted && !hasReplayRequestBody && requestIsOneShot(e, userRequest)) {
+      return false
+    }
 
     // This exception is fatal.
     if (!isRecoverable(e, requestSendStarted)) return false
@@ -154,6 +166,23 @@ class RetryAndFollowUpInterceptor : Interceptor {
     return true
   }
 
+  /**
+   * Returns the copy of the request body that the network layer sent, or null if it has no copy.
+   * Copies are only replayed if the server refused the stream, which promises that it wasn't
+   * processed.
+   *
+   * The copy is replayed by [CallServerInterceptor] rather than by swapping it into the request,
+   * because it already has the encoding that the network interceptors applied.
+   */
+  private fun replayRequestBody(
+    e: IOException,
+    call: RealCall,
+  ): RequestBody? {
+    val replayRequestBody = call.replayRequestBody ?: return null
+    if (e !is StreamResetException || e.errorCode != ErrorCode.REFUSED_STREAM) return null
+    return replayRequestBody
+  }
+
   private fun requestIsOneShot(
     e: IOException,
     userRequest: Request,
@@ -270,6 +299,20 @@ class RetryAndFollowUpInterceptor : Interceptor {
         return null
       }
 
+      HTTP_EXPECTATION_FAILED -> {
+        // The server rejected an `Expect: 100-continue` header that OkHttp added. The request body
+        // wasn't sent, so we can repeat the request without the header.
+        if (exchange == null || !exchange.call.autoExpectContinue) return null
+
+        val priorResponse = userResponse.priorResponse
+        if (priorResponse != null && priorResponse.code == HTTP_EXPECTATION_FAILED) {
+          // We attempted to retry and failed again. Give up.
+          return null
+        }
+
+        return userResponse.request
+      }
+
       HTTP_MISDIRECTED_REQUEST -> {
         // OkHttp can coalesce HTTP/2 connections even if the domain names are different. See
         // RealConnection.isEligible(). If we attempted this and the server returned HTTP 421, then
@@ -17,15 +17,20 @@ package okhttp3.internal.http1
 
 import okhttp3.Headers
 import okhttp3.internal.HEADER_LIMIT
+import okio.Buffer
 import okio.BufferedSource
 
 /**
  * Parse all headers delimited by "\r\n" until an empty line. This throws if headers exceed 256 KiB.
+ *
+ * Header lines are parsed in the source's buffer: this scans for the line break and the colon, and
+ * decodes only the name and the trimmed value. Common header names are interned.
  */
 class HeadersReader(
   val source: BufferedSource,
 ) {
   private var headerLimit = HEADER_LIMIT
+  private val nameBytes = ByteArray(INTERN_MAX_BYTE_COUNT)
 
   /** Read a single line counted against the header size limit. */
   fun readLine(): String {
@@ -38,10 +43,193 @@ class HeadersReader(
   fun readHeaders(): Headers {
     val result = Headers.Builder()
     while (true) {
-      val line = readLine()
-      if (line.isEmpty()) break
-      result.addLenient(line)
+      val newline = source.indexOf('\n'.code.toByte(), 0L, headerLimit + 1L)
+      if (newline == -1L) {
+        // Let Okio find a line that ends just past the limit, or throw if there isn't one.
+        val line = readLine()
+        if (line.isEmpty()) break
+        result.addLenient(line)
+        continue
+      }
+
+      val buffer = source.buffer
+      val lineByteCount =
+        when {
+          newline > 0L && buffer[newline - 1L] == '\r'.code.toByte() -> newline - 1L
+          else -> newline
+        }
+      if (lineByteCount == 0L) {
+        buffer.skip(newline + 1L)
+        break
+      }
+      readHeaderLine(buffer, lineByteCount, result)
+      buffer.skip(newline + 1L - lineByteCount)
     }
     return result.build()
   }
+
+  /**
+   * Reads a header line of [lineByteCount] bytes from [buffer], excluding its line break. This is
+   * lenient like [Headers.Builder.addLenient].
+   */
+  private fun readHeaderLine(
+    buffer: Buffer,
+    lineByteCount: Long,
+    result: Headers.Builder,
+  ) {
+    val colon = buffer.indexOf(':'.code.toByte(), 1L, lineByteCount)
+    val name: String
+    val nameByteCount: Long
+    val valueEnd: Long
+    when {
+      colon != -1L -> {
+        nameByteCount = colon
+        name = readName(buffer, nameByteCount)
+        buffer.skip(1L)
+        valueEnd = lineByteCount - colon - 1L
+      }
+
+      buffer[0L] == ':'.code.toByte() -> {
+        // Work around empty header names and header names that start with a colon (created by old
+        // broken SPDY versions of the response cache).
+        nameByteCount = 0L
+        name = ""
+        buffer.skip(1L)
+        valueEnd = lineByteCount - 1L
+      }
+
+      else -> {
+        // No header name.
+        nameByteCount = 0L
+        name = ""
+        valueEnd = lineByteCount
+      }
+    }
+
+    // Trim the value's leading and trailing whitespace before decoding it.
+    var valueStart = 0L
+    while (valueStart < valueEnd && buffer[valueStart].isWhitespace()) valueStart++
+    var valueByteCount = valueEnd - valueStart
+    while (valueByteCount > 0L && buffer[valueStart + valueByteCount - 1L].isWhitespace()) {
+      valueByteCount--
+    }
+    buffer.skip(valueStart)
+    val value = buffer.readUtf8(valueByteCount)
+    buffer.skip(valueEnd - valueStart - valueByteCount)
+
+    result.addLenient(name, value)
+
+    // Count characters like readLine() does. Only the name and value may be multibyte.
+    headerLimit -= lineByteCount - nameByteCount - valueByteCount + name.length + value.length
+  }
+
+  private fun readName(
+    buffer: Buffer,
+    byteCount: Long,
+  ): String {
+    if (byteCount > INTERN_MAX_BYTE_COUNT) return buffer.readUtf8(byteCount)
+
+    val length = byteCount.toInt()
+    var offset = 0
+    while (offset < length) {
+      offset += buffer.read(nameBytes, offset, length - offset)
+    }
+
+    // Probe the hash table until we find the name or an empty slot.
+    var slot = internHash(nameBytes, length)
+    while (true) {
+      slot = slot and (INTERNED_NAMES.size - 1)
+      val interned = INTERNED_NAMES[slot] ?: break
+      if (interned.contentEquals(nameBytes, length)) return interned
+      slot++
+    }
+
+    return nameBytes.decodeToString(0, length)
+  }
+
+  private companion object {
+    /** Names longer than this aren't interned. */
+    const val INTERN_MAX_BYTE_COUNT = 64
+
+    /** Common response header names, as sent by HTTP/1 servers and by HTTP/2 gateways. */
+    val INTERNED_NAMES =
+      internedNames(
+        "Accept-Ranges",
+        "Access-Control-Allow-Origin",
+        "Age",
+        "Alt-Svc",
+        "Cache-Control",
+        "Connection",
+        "Content-Disposition",
+        "Content-Encoding",
+        "Content-Language",
+        "Content-Length",
+        "Content-Location",
+        "Content-Range",
+        "Content-Security-Policy",
+        "Content-Type",
+        "Date",
+        "ETag",
+        "Expires",
+        "Keep-Alive",
+        "Last-Modified",
+        "Link",
+        "Location",
+        "Pragma",
+        "Proxy-Authenticate",
+        "Retry-After",
+        "Server",
+        "Set-Cookie",
+        "Strict-Transport-Security",
+        "Trailer",
+        "Transfer-Encoding",
+        "Upgrade",
+        "Vary",
+        "Via",
+        "WWW-Authenticate",
+        "X-Content-Type-Options",
+        "X-Frame-Options",
+      )
+
+    /** Returns a hash table of [names] in their given and lowercase forms. */
+    fun internedNames(vararg names: String): Array<String?> {
+      val result = arrayOfNulls<String>(256)
+      for (name in names) {
+        for (form in arrayOf(name, name.lowercase())) {
+          val bytes = form.encodeToByteArray()
+          var slot = internHash(bytes, bytes.size) and (result.size - 1)
+          while (result[slot] != null) slot = (slot + 1) and (result.size - 1)
+          result[slot] = form
+        }
+      }
+      return result
+    }
+
+    fun internHash(
+      bytes: ByteArray,
+      byteCount: Int,
+    ): Int {
+      var result = byteCount
+      for (i in 0 until byteCount) {
+        result = 31 * result + bytes[i]
+      }
+      return result xor (result ushr 16)
+    }
+
+    /** Returns true if this ASCII string has the same characters as the first [byteCount] bytes. */
+    fun String.contentEquals(
+      bytes: ByteArray,
+      byteCount: Int,
+    ): Boolean {
+      if (length != byteCount) return false
+      for (i in 0 until byteCount) {
+        if (this[i].code != bytes[i].toInt()) return false
+      }
+      return true
+    }
+
+    /** Returns true if [String.trim] would remove this byte. */
+    fun Byte.isWhitespace(): Boolean =
+      this == ' '.code.toByte() || this in 0x09..0x0d || this in 0x1c..0x1f
+  }
 }
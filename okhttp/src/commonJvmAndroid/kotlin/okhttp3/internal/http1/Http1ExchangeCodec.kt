@@ -18,6 +18,8 @@ package okhttp3.internal.http1
 import java.io.EOFException
 import java.io.IOException
 import java.net.ProtocolException
+import java.nio.channels.FileChannel
+import java.nio.channels.SocketChannel
 import java.util.concurrent.TimeUnit.MILLISECONDS
 import okhttp3.Headers
 import okhttp3.Headers.Companion.headersOf
@@ -30,6 +32,8 @@ import okhttp3.internal.connection.BufferedSocket
 import okhttp3.internal.discard
 import okhttp3.internal.headersContentLength
 import okhttp3.internal.http.ExchangeCodec
+import okhttp3.internal.http.FileTransferSink
+import okhttp3.internal.http.FileTransferSource
 import okhttp3.internal.http.HTTP_CONTINUE
 import okhttp3.internal.http.RequestLine
 import okhttp3.internal.http.StatusLine
@@ -37,7 +41,10 @@ import okhttp3.internal.http.promisesBody
 import okhttp3.internal.http.receiveHeaders
 import okhttp3.internal.http1.Http1ExchangeCodec.Companion.TRAILERS_RESPONSE_BODY_TRUNCATED
 import okhttp3.internal.skipAll
+import okio.AsyncTimeout
 import okio.Buffer
+import okio.BufferedSink
+import okio.ByteString
 import okio.ForwardingTimeout
 import okio.Sink
 import okio.Source
@@ -59,14 +66,33 @@ import okio.Timeout
  * Exchanges that do not have a request body may skip creating and closing the request body.
  * Exchanges that do not have a response body can call
  * [newFixedLengthSource(0)][newFixedLengthSource] and may skip reading and closing that source.
+ *
+ * Exchanges on a connection that pipelines requests may write their request headers while earlier
+ * exchanges are still reading their responses. Each waits its turn in the [Http1Pipeline] before it
+ * reads its own response.
  */
 class Http1ExchangeCodec(
   /** The client that configures this stream. May be null for HTTPS proxy tunnels. */
   private val client: OkHttpClient?,
   override val carrier: ExchangeCodec.Carrier,
   override val socket: BufferedSocket,
+  /** Orders the exchanges on the connection. Null for HTTPS proxy tunnels. */
+  private val pipeline: Http1Pipeline? = null,
+  /**
+   * The plaintext socket's channel, used to send and receive files without copying them through
+   * memory. Null if the connection uses TLS or its socket has no channel.
+   */
+  private val fileTransferChannel: SocketChannel? = null,
+  /**
+   * Applies this exchange's read timeout to the socket. This is called when the exchange starts to
+   * read its response, so it doesn't change the timeout of an earlier pipelined exchange.
+   */
+  private val applyReadTimeout: () -> Unit = {},
 ) : ExchangeCodec {
   private var state = STATE_IDLE
+
+  /** The [pipeline] ticket of this exchange's response, or -1 if its request isn't written. */
+  private var ticket = -1L
   private val headersReader = HeadersReader(socket.source)
 
   private val Response.isChunked: Boolean
@@ -120,6 +146,7 @@ class Http1ExchangeCodec(
     }
 
   override fun cancel() {
+    pipeline?.fail()
     carrier.cancel()
   }
 
@@ -176,11 +203,19 @@ class Http1ExchangeCodec(
   }
 
   override fun flushRequest() {
-    socket.sink.flush()
+    flush()
   }
 
   override fun finishRequest() {
-    socket.sink.flush()
+    flush()
+  }
+
+  private fun flush() {
+    if (pipeline != null) {
+      pipeline.flush { socket.sink.flush() }
+    } else {
+      socket.sink.flush()
+    }
   }
 
   /** Returns bytes of a request header for sending on an HTTP transport. */
@@ -189,16 +224,27 @@ class Http1ExchangeCodec(
     requestLine: String,
   ) {
     check(state == STATE_IDLE) { "state: $state" }
+    if (pipeline != null) {
+      ticket = pipeline.writeRequest { writeRequestLineAndHeaders(headers, requestLine) }
+    } else {
+      writeRequestLineAndHeaders(headers, requestLine)
+    }
+    state = STATE_OPEN_REQUEST_BODY
+  }
+
+  private fun writeRequestLineAndHeaders(
+    headers: Headers,
+    requestLine: String,
+  ) {
     socket.sink.writeUtf8(requestLine).writeUtf8("\r\n")
-    for (i in 0 until headers.size) {
-      socket.sink
-        .writeUtf8(headers.name(i))
-        .writeUtf8(": ")
-        .writeUtf8(headers.value(i))
-        .writeUtf8("\r\n")
+    val prefixEncoding = prefixHttp1Encoding(headers)
+    if (prefixEncoding != null) {
+      socket.sink.write(prefixEncoding)
+      socket.sink.writeHeaders(headers, headers.caches!!.prefix!!.size, headers.size)
+    } else {
+      socket.sink.writeHeaders(headers, 0, headers.size)
     }
     socket.sink.writeUtf8("\r\n")
-    state = STATE_OPEN_REQUEST_BODY
   }
 
   override fun readResponseHeaders(expectContinue: Boolean): Response.Builder? {
@@ -211,6 +257,13 @@ class Http1ExchangeCodec(
       "state: $state"
     }
 
+    // Responses arrive in the order their requests were written. Wait for the earlier ones. This
+    // wait has no timeout of its own: the call timeout and cancel() fail the pipeline to end it.
+    if (pipeline != null && ticket != -1L) {
+      pipeline.awaitTurn(ticket, 0L)
+    }
+    applyReadTimeout()
+
     try {
       val statusLine = StatusLine.parse(headersReader.readLine())
 
@@ -256,7 +309,7 @@ class Http1ExchangeCodec(
   private fun newChunkedSink(): Sink {
     check(state == STATE_OPEN_REQUEST_BODY) { "state: $state" }
     state = STATE_WRITING_REQUEST_BODY
-    return ChunkedSink()
+    return ChunkedSink(client?.http1MinimumChunkSize ?: 0L)
   }
 
   private fun newKnownLengthSink(): Sink {
@@ -312,10 +365,13 @@ class Http1ExchangeCodec(
   }
 
   /** An HTTP request body. */
-  private inner class KnownLengthSink : Sink {
+  private inner class KnownLengthSink : FileTransferSink {
     private val timeout = ForwardingTimeout(socket.sink.timeout())
     private var closed: Boolean = false
 
+    override val supportsFileTransfer: Boolean
+      get() = fileTransferChannel != null
+
     override fun timeout(): Timeout = timeout
 
     override fun write(
@@ -327,6 +383,35 @@ class Http1ExchangeCodec(
       socket.sink.write(source, byteCount)
     }
 
+    override fun transferFrom(
+      file: FileChannel,
+      position: Long,
+      byteCount: Long,
+    ) {
+      check(!closed) { "closed" }
+      val channel = fileTransferChannel ?: throw IllegalStateException("file transfer unsupported")
+
+      // Send the buffered request headers before the file.
+      socket.sink.flush()
+
+      // Like the socket's sink, apply the write timeout to each bounded transfer.
+      val writeTimeout = socket.sink.timeout()
+      var transferred = 0L
+      while (transferred < byteCount) {
+        val transferByteCount = minOf(byteCount - transferred, FILE_TRANSFER_SIZE)
+        val result =
+          if (writeTimeout is AsyncTimeout) {
+            writeTimeout.withTimeout {
+              file.transferTo(position + transferred, transferByteCount, channel)
+            }
+          } else {
+            file.transferTo(position + transferred, transferByteCount, channel)
+          }
+        if (result <= 0L) throw ProtocolException("unexpected end of stream")
+        transferred += result
+      }
+    }
+
     override fun flush() {
       if (closed) return // Don't throw; this stream might have been closed on the caller's behalf.
       socket.sink.flush()
@@ -341,11 +426,14 @@ class Http1ExchangeCodec(
   }
 
   /**
-   * An HTTP body with alternating chunk sizes and chunk bodies. It is the caller's responsibility
-   * to buffer chunks; typically by using a buffered sink with this sink.
+   * An HTTP body with alternating chunk sizes and chunk bodies. Writes are buffered until at least
+   * [minimumChunkSize] bytes are ready, or until the body is flushed or closed.
    */
-  private inner class ChunkedSink : Sink {
+  private inner class ChunkedSink(
+    private val minimumChunkSize: Long,
+  ) : Sink {
     private val timeout = ForwardingTimeout(socket.sink.timeout())
+    private val buffer = Buffer()
     private var closed: Boolean = false
 
     override fun timeout(): Timeout = timeout
@@ -357,6 +445,23 @@ class Http1ExchangeCodec(
       check(!closed) { "closed" }
       if (byteCount == 0L) return
 
+      // Write large writes directly rather than moving them through the buffer.
+      if (buffer.size == 0L && byteCount >= minimumChunkSize) {
+        writeChunk(source, byteCount)
+        return
+      }
+
+      buffer.write(source, byteCount)
+      if (buffer.size >= minimumChunkSize) {
+        writeChunk(buffer, buffer.size)
+      }
+    }
+
+    private fun writeChunk(
+      source: Buffer,
+      byteCount: Long,
+    ) {
+      if (byteCount == 0L) return
       with(socket.sink) {
         writeHexadecimalUnsignedLong(byteCount)
         writeUtf8("\r\n")
@@ -368,6 +473,7 @@ class Http1ExchangeCodec(
     @Synchronized
     override fun flush() {
       if (closed) return // Don't throw; this stream might have been closed on the caller's behalf.
+      writeChunk(buffer, buffer.size)
       socket.sink.flush()
     }
 
@@ -375,6 +481,7 @@ class Http1ExchangeCodec(
     override fun close() {
       if (closed) return
       closed = true
+      writeChunk(buffer, buffer.size)
       socket.sink.writeUtf8("0\r\n\r\n")
       detachTimeout(timeout)
       state = STATE_READ_RESPONSE_HEADERS
@@ -413,6 +520,7 @@ class Http1ExchangeCodec(
 
       this@Http1ExchangeCodec.trailers = trailers
       state = STATE_CLOSED
+      if (ticket != -1L) pipeline?.responseComplete(ticket)
       if (trailers.size > 0) {
         client?.cookieJar?.receiveHeaders(url, trailers)
       }
@@ -423,13 +531,17 @@ class Http1ExchangeCodec(
   private inner class FixedLengthSource(
     url: HttpUrl,
     private var bytesRemaining: Long,
-  ) : AbstractSource(url) {
+  ) : AbstractSource(url),
+    FileTransferSource {
     init {
       if (bytesRemaining == 0L) {
         responseBodyComplete(trailers = Headers.EMPTY)
       }
     }
 
+    override val supportsFileTransfer: Boolean
+      get() = fileTransferChannel != null
+
     override fun read(
       sink: Buffer,
       byteCount: Long,
@@ -453,6 +565,52 @@ class Http1ExchangeCodec(
       return read
     }
 
+    override fun transferTo(
+      file: FileChannel,
+      position: Long,
+      byteCount: Long,
+    ): Long {
+      require(byteCount >= 0L) { "byteCount < 0: $byteCount" }
+      check(!closed) { "closed" }
+      if (bytesRemaining == 0L) return -1
+      val channel = fileTransferChannel ?: throw IllegalStateException("file transfer unsupported")
+
+      val transferByteCount = minOf(bytesRemaining, byteCount, FILE_TRANSFER_SIZE)
+      val transferred =
+        try {
+          val buffer = socket.source.buffer
+          if (buffer.size > 0L) {
+            // Take bytes that were already read from the socket before reading more.
+            file.transferFrom(buffer, position, minOf(transferByteCount, buffer.size))
+          } else {
+            // Like the socket's source, apply the read timeout to each bounded transfer.
+            val readTimeout = socket.source.timeout()
+            if (readTimeout is AsyncTimeout) {
+              readTimeout.withTimeout { file.transferFrom(channel, position, transferByteCount) }
+            } else {
+              file.transferFrom(channel, position, transferByteCount)
+            }
+          }
+        } catch (e: IOException) {
+          carrier.noNewExchanges()
+          responseBodyComplete(TRAILERS_RESPONSE_BODY_TRUNCATED)
+          throw e
+        }
+
+      if (transferred == 0L) {
+        carrier.noNewExchanges() // The server didn't supply the promised content length.
+        val e = ProtocolException("unexpected end of stream")
+        responseBodyComplete(TRAILERS_RESPONSE_BODY_TRUNCATED)
+        throw e
+      }
+
+      bytesRemaining -= transferred
+      if (bytesRemaining == 0L) {
+        responseBodyComplete(trailers = Headers.EMPTY)
+      }
+      return transferred
+    }
+
     override fun close() {
       if (closed) return
 
@@ -500,12 +658,12 @@ class Http1ExchangeCodec(
 
     private fun readChunkSize() {
       // Read the suffix of the previous chunk.
-      if (bytesRemainingInChunk != NO_CHUNK_YET) {
+      if (bytesRemainingInChunk != NO_CHUNK_YET && !skipCrlf()) {
         socket.source.readUtf8LineStrict()
       }
       try {
         bytesRemainingInChunk = socket.source.readHexadecimalUnsignedLong()
-        val extensions = socket.source.readUtf8LineStrict().trim()
+        val extensions = if (skipCrlf()) "" else socket.source.readUtf8LineStrict().trim()
         if ((bytesRemainingInChunk < 0L) || (extensions.isNotEmpty() && !extensions.startsWith(";"))) {
           throw ProtocolException(
             "expected chunk size and optional extensions" +
@@ -523,6 +681,18 @@ class Http1ExchangeCodec(
       }
     }
 
+    /**
+     * Skips a CRLF if it's next in the stream. This is the common case between chunks, and it
+     * doesn't need to decode a line of text.
+     */
+    private fun skipCrlf(): Boolean {
+      if (!socket.source.request(2L)) return false
+      val buffer = socket.source.buffer
+      if (buffer[0L] != '\r'.code.toByte() || buffer[1L] != '\n'.code.toByte()) return false
+      buffer.skip(2L)
+      return true
+    }
+
     override fun close() {
       if (closed) return
       if (hasMoreChunks &&
@@ -570,6 +740,9 @@ class Http1ExchangeCodec(
   companion object {
     private const val NO_CHUNK_YET = -1L
 
+    /** The most bytes to send or receive in one [FileChannel] transfer. */
+    private const val FILE_TRANSFER_SIZE = 65_536L
+
     private const val STATE_IDLE = 0 // Idle connections are ready to write request headers.
     private const val STATE_OPEN_REQUEST_BODY = 1
     private const val STATE_WRITING_REQUEST_BODY = 2
@@ -579,5 +752,37 @@ class Http1ExchangeCodec(
     private const val STATE_CLOSED = 6
 
     private val TRAILERS_RESPONSE_BODY_TRUNCATED = headersOf("OkHttp-Response-Body", "Truncated")
+
+    /**
+     * Returns the encoding of the headers that [headers] begin with, or null if they don't begin
+     * with reused headers. The encoding is cached the second time the prefix is encoded, so headers
+     * built from a template are written with one copy.
+     */
+    internal fun prefixHttp1Encoding(headers: Headers): ByteString? {
+      val prefix = headers.caches?.prefix ?: return null
+      val cached = prefix.http1Encoding
+      if (cached != null) return cached
+      if (!prefix.encoded) {
+        prefix.encoded = true
+        return null
+      }
+
+      val buffer = Buffer()
+      buffer.writeHeaders(headers, 0, prefix.size)
+      return buffer.readByteString().also { prefix.http1Encoding = it }
+    }
+
+    private fun BufferedSink.writeHeaders(
+      headers: Headers,
+      startIndex: Int,
+      endIndex: Int,
+    ) {
+      for (i in startIndex until endIndex) {
+        writeUtf8(headers.name(i))
+          .writeUtf8(": ")
+          .writeUtf8(headers.value(i))
+          .writeUtf8("\r\n")
+      }
+    }
   }
 }
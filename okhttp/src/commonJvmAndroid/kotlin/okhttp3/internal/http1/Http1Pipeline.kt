@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http1
+
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.net.SocketTimeoutException
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.awaitNanos
+import okhttp3.internal.concurrent.notifyAll
+import okhttp3.internal.concurrent.wait
+import okhttp3.internal.concurrent.withLock
+
+/**
+ * Orders the exchanges of an HTTP/1.1 connection so that its requests may be pipelined: written
+ * back-to-back without waiting for the earlier responses.
+ *
+ * Each request takes a ticket when it is written. The server responds in the same order, so each
+ * exchange waits for its ticket's turn before it reads its response, and passes the turn to the
+ * next ticket when its response is complete.
+ *
+ * If the connection can't carry more responses, such as when the server closes it or a response
+ * body is abandoned, the pipeline [fails][fail]. Exchanges behind the current response then fail
+ * with an [IOException] so their calls may be retried on another connection.
+ */
+class Http1Pipeline : Lockable {
+  /** Guards writing requests to the socket, and [nextTicket]. */
+  private val writeLock = object : Lockable {}
+
+  private var nextTicket = 0L
+
+  // These properties are guarded by this.
+
+  /** The ticket of the exchange that may read its response. */
+  private var readTicket = 0L
+
+  /** Exchanges with tickets after this can't read their responses. */
+  private var failedAfterTicket = Long.MAX_VALUE
+
+  /**
+   * Calls [writeRequest] to write a request, and returns the ticket of its response. Requests are
+   * written one at a time.
+   */
+  @Throws(IOException::class)
+  fun writeRequest(writeRequest: () -> Unit): Long =
+    writeLock.withLock {
+      val failed = withLock { failedAfterTicket != Long.MAX_VALUE }
+      if (failed) throw IOException("HTTP/1.1 pipeline failed")
+      writeRequest()
+      nextTicket++
+    }
+
+  /** Calls [flush] when no request is being written. */
+  fun flush(flush: () -> Unit) {
+    writeLock.withLock {
+      flush()
+    }
+  }
+
+  /**
+   * Waits until the response for [ticket] is the next to be read. This throws if the pipeline
+   * fails first, or if that takes longer than [timeoutNanos].
+   */
+  @Throws(IOException::class)
+  fun awaitTurn(
+    ticket: Long,
+    timeoutNanos: Long,
+  ) {
+    withLock {
+      val deadlineNs = System.nanoTime() + timeoutNanos
+      while (true) {
+        if (ticket > failedAfterTicket) throw IOException("HTTP/1.1 pipeline failed")
+        if (ticket == readTicket) return
+
+        try {
+          if (timeoutNanos == 0L) {
+            wait()
+          } else {
+            val remainingNs = deadlineNs - System.nanoTime()
+            if (remainingNs <= 0L) throw SocketTimeoutException("timeout")
+            awaitNanos(remainingNs)
+          }
+        } catch (_: InterruptedException) {
+          Thread.currentThread().interrupt() // Retain interrupted status.
+          throw InterruptedIOException()
+        }
+      }
+    }
+  }
+
+  /** Passes the turn to the next ticket. Call this when the response for [ticket] is complete. */
+  fun responseComplete(ticket: Long) {
+    withLock {
+      if (ticket != readTicket) return
+      readTicket++
+      notifyAll()
+    }
+  }
+
+  /**
+   * Fails the exchanges behind the current response, and refuses to write more requests. The
+   * exchange currently reading its response is not affected.
+   */
+  fun fail() {
+    withLock {
+      if (failedAfterTicket != Long.MAX_VALUE) return
+      failedAfterTicket = readTicket
+      notifyAll()
+    }
+  }
+}
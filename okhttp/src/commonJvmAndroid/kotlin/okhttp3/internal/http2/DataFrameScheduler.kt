@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import java.io.InterruptedIOException
+import java.util.PriorityQueue
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.notify
+import okhttp3.internal.concurrent.wait
+import okhttp3.internal.concurrent.withLock
+
+/**
+ * Decides which stream writes the next `DATA` frame when several are waiting, following the
+ * scheduling guidance of [RFC 9218][rfc_9218].
+ *
+ * One frame is written at a time. When a frame is complete, the turn passes to the most urgent
+ * waiting stream. Among streams of the same urgency, non-incremental streams go first in stream
+ * ID order, so each response completes before the next begins. Incremental streams share what's
+ * left round-robin, because each frame's writer rejoins the queue behind the others.
+ *
+ * [rfc_9218]: https://datatracker.ietf.org/doc/html/rfc9218#section-10
+ */
+class DataFrameScheduler : Lockable {
+  // All state is guarded by this.
+  private var busy = false
+  private var nextSequence = 0L
+  private val waiters =
+    PriorityQueue<Waiter>(
+      compareBy<Waiter>({ it.priority.urgency }, { it.priority.incremental }, { it.order }),
+    )
+
+  /** Blocks until it's [streamId]'s turn to write a frame. Callers must call [release] after. */
+  @Throws(InterruptedIOException::class)
+  fun acquire(
+    streamId: Int,
+    priority: Priority,
+  ) {
+    val waiter: Waiter
+    withLock {
+      if (!busy) {
+        busy = true
+        return
+      }
+      val order = if (priority.incremental) nextSequence++ else streamId.toLong()
+      waiter = Waiter(priority, order)
+      waiters.add(waiter)
+    }
+
+    try {
+      waiter.await()
+    } catch (e: InterruptedException) {
+      withLock {
+        // If we were given the turn, pass it on.
+        if (!waiters.remove(waiter)) release()
+      }
+      Thread.currentThread().interrupt() // Retain interrupted status.
+      throw InterruptedIOException()
+    }
+  }
+
+  /** Passes the turn to the next waiting stream. */
+  fun release() {
+    withLock {
+      val next = waiters.poll()
+      if (next == null) {
+        busy = false
+      } else {
+        next.grant()
+      }
+    }
+  }
+
+  private class Waiter(
+    val priority: Priority,
+    val order: Long,
+  ) : Lockable {
+    /** Guarded by this. */
+    private var granted = false
+
+    fun grant() {
+      withLock {
+        granted = true
+        notify()
+      }
+    }
+
+    @Throws(InterruptedException::class)
+    fun await() {
+      withLock {
+        while (!granted) {
+          wait()
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import kotlin.time.ComparableTimeMark as Time
+import kotlin.time.Duration
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.TimeSource
+import okhttp3.HttpUrl
+import okhttp3.internal.dns.MemoryCache
+
+/**
+ * Remembers origin servers that don't accept extended CONNECT requests on HTTP/2. Later web sockets
+ * to these origins use an HTTP/1.1 upgrade immediately, rather than first waiting for an HTTP/2
+ * connection's settings. Each origin is forgotten after [maxAge], in case the server is upgraded.
+ */
+class ExtendedConnectDatabase(
+  timeSource: TimeSource.WithComparableMarks = TimeSource.Monotonic,
+  maxEntryCount: Int = 256,
+  private val maxAge: Duration = 1.hours,
+) {
+  private val cache =
+    object : MemoryCache<String, Entry>(
+      timeSource = timeSource,
+      maxSize = maxEntryCount,
+    ) {
+      override fun lastRequestedAt(
+        now: Time,
+        value: Entry,
+      ): Time? {
+        // Evict immediately if the origin may be sent extended CONNECT requests again.
+        if (now >= value.unsupportedUntil) return null
+        return value.lastRequestedAt
+      }
+    }
+
+  /** Returns true if web sockets to [url] may be attempted over HTTP/2. */
+  fun isSupported(url: HttpUrl): Boolean {
+    val now = cache.timeSource.markNow()
+    val entry = cache[url.originKey()] ?: return true
+    if (now >= entry.unsupportedUntil) return true
+    entry.lastRequestedAt = now
+    return false
+  }
+
+  /** Records that the origin of [url] doesn't accept extended CONNECT requests. */
+  fun unsupported(url: HttpUrl) {
+    val now = cache.timeSource.markNow()
+    val entry = cache.computeIfAbsent(url.originKey()) { Entry(now, now + maxAge) }
+    entry.lastRequestedAt = now
+    entry.unsupportedUntil = now + maxAge
+  }
+
+  private fun HttpUrl.originKey() = "$scheme://$host:$port"
+
+  private class Entry(
+    @Volatile var lastRequestedAt: Time,
+    @Volatile var unsupportedUntil: Time,
+  )
+}
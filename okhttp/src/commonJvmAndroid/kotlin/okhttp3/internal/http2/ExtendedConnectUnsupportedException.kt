@@ -0,0 +1,24 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import java.net.ProtocolException
+
+/**
+ * Thrown when a web socket is attempted on an HTTP/2 connection whose peer doesn't accept extended
+ * CONNECT requests. The caller should retry the web socket over HTTP/1.1.
+ */
+class ExtendedConnectUnsupportedException : ProtocolException("extended CONNECT unsupported")
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import java.io.IOException
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.withLock
+
+/**
+ * Frames waiting to be written by a connection's writer task. Producers enqueue frames without
+ * waiting for the writer's lock, and the writer task writes everything that's queued with a single
+ * flush.
+ *
+ * Window updates for the same stream are merged into one frame. When a stream flushes the
+ * connection it writes the queued frames too, so they share its flush.
+ *
+ * Each enqueue function returns true if the caller must schedule a call to [writeTo]. This is the
+ * case when the queue was idle.
+ */
+class FrameQueue : Lockable {
+  // All state is guarded by this.
+  private val windowUpdates = LinkedHashMap<Int, Long>()
+  private val rstStreams = LinkedHashMap<Int, ErrorCode>()
+  private val pongs = ArrayDeque<Long>()
+  private var scheduled = false
+
+  fun windowUpdate(
+    streamId: Int,
+    windowSizeIncrement: Long,
+  ): Boolean =
+    enqueue {
+      windowUpdates[streamId] = (windowUpdates[streamId] ?: 0L) + windowSizeIncrement
+    }
+
+  fun rstStream(
+    streamId: Int,
+    errorCode: ErrorCode,
+  ): Boolean =
+    enqueue {
+      windowUpdates.remove(streamId) // A reset stream doesn't need more data.
+      rstStreams[streamId] = errorCode
+    }
+
+  fun pong(
+    payload1: Int,
+    payload2: Int,
+  ): Boolean =
+    enqueue {
+      pongs.addLast((payload1.toLong() shl 32) or (payload2.toLong() and 0xffffffffL))
+    }
+
+  private inline fun enqueue(block: () -> Unit): Boolean {
+    withLock {
+      block()
+      if (scheduled) return false
+      scheduled = true
+      return true
+    }
+  }
+
+  /** Writes and flushes all queued frames. */
+  @Throws(IOException::class)
+  fun writeTo(writer: Http2Writer) {
+    val windowUpdates: List<Map.Entry<Int, Long>>
+    val rstStreams: List<Map.Entry<Int, ErrorCode>>
+    val pongs: LongArray
+    withLock {
+      windowUpdates = this.windowUpdates.entries.toList()
+      rstStreams = this.rstStreams.entries.toList()
+      pongs = this.pongs.toLongArray()
+      this.windowUpdates.clear()
+      this.rstStreams.clear()
+      this.pongs.clear()
+      scheduled = false
+    }
+
+    writer.batch {
+      for (pong in pongs) {
+        writer.ping(true, (pong ushr 32).toInt(), pong.toInt())
+      }
+      for ((streamId, errorCode) in rstStreams) {
+        writer.rstStream(streamId, errorCode)
+      }
+      for ((streamId, windowSizeIncrement) in windowUpdates) {
+        // Merged increments may exceed the largest increment that fits in a frame.
+        var remaining = windowSizeIncrement
+        while (remaining > 0L) {
+          val increment = minOf(remaining, MAX_WINDOW_SIZE_INCREMENT)
+          writer.windowUpdate(streamId, increment)
+          remaining -= increment
+        }
+      }
+    }
+  }
+
+  companion object {
+    const val MAX_WINDOW_SIZE_INCREMENT = 0x7fffffffL
+  }
+}
@@ -43,6 +43,7 @@ data class Header(
     const val TARGET_PATH_UTF8 = ":path"
     const val TARGET_SCHEME_UTF8 = ":scheme"
     const val TARGET_AUTHORITY_UTF8 = ":authority"
+    const val TARGET_PROTOCOL_UTF8 = ":protocol"
 
     @JvmField val RESPONSE_STATUS: ByteString = RESPONSE_STATUS_UTF8.encodeUtf8()
 
@@ -53,5 +54,7 @@ data class Header(
     @JvmField val TARGET_SCHEME: ByteString = TARGET_SCHEME_UTF8.encodeUtf8()
 
     @JvmField val TARGET_AUTHORITY: ByteString = TARGET_AUTHORITY_UTF8.encodeUtf8()
+
+    @JvmField val TARGET_PROTOCOL: ByteString = TARGET_PROTOCOL_UTF8.encodeUtf8()
   }
 }
@@ -17,6 +17,8 @@ package okhttp3.internal.http2
 
 import java.io.IOException
 import java.util.Arrays
+import okhttp3.HeaderIndexingStrategy
+import okhttp3.HeaderIndexingStrategy.Indexing
 import okhttp3.internal.HEADER_LIMIT
 import okhttp3.internal.and
 import okhttp3.internal.http2.Header.Companion.RESPONSE_STATUS
@@ -28,6 +30,7 @@ import okhttp3.internal.unmodifiable
 import okio.Buffer
 import okio.BufferedSource
 import okio.ByteString
+import okio.ByteString.Companion.toByteString
 import okio.Source
 import okio.buffer
 
@@ -47,13 +50,14 @@ object Hpack {
   private const val PREFIX_6_BITS = 0x3f
   private const val PREFIX_7_BITS = 0x7f
 
-  private const val SETTINGS_HEADER_TABLE_SIZE = 4_096
+  const val SETTINGS_HEADER_TABLE_SIZE = 4_096
 
   /**
    * The decoder has ultimate control of the maximum size of the dynamic table but we can choose
-   * to use less. We'll put a cap at 16K. This is arbitrary but should be enough for most purposes.
+   * to use less. By default we put a cap at 16K. This is arbitrary but should be enough for most
+   * purposes.
    */
-  private const val SETTINGS_HEADER_TABLE_SIZE_LIMIT = 16_384
+  const val SETTINGS_HEADER_TABLE_SIZE_LIMIT = 16_384
 
   val STATIC_HEADER_TABLE =
     arrayOf(
@@ -122,6 +126,15 @@ object Hpack {
 
   val NAME_TO_FIRST_INDEX = nameToFirstIndex()
 
+  /** Literals longer than this aren't interned. */
+  private const val INTERN_MAX_BYTE_COUNT = 64
+
+  /** Slots in each reader's intern table. Must be a power of 2. */
+  private const val INTERN_TABLE_SIZE = 256
+
+  /** Names and values of the static table, to seed each reader's intern table. */
+  private val STATIC_INTERN_TABLE = staticInternTable()
+
   // http://tools.ietf.org/html/draft-ietf-httpbis-header-compression-12#section-3.1
   class Reader
     @JvmOverloads
@@ -134,6 +147,15 @@ object Hpack {
       private var headerListByteCount = 0L
       private val source: BufferedSource = source.buffer()
 
+      /**
+       * Recently read short literals, indexed by hash. Responses repeat the same names and values,
+       * like `content-type: application/json`. Sharing one instance per literal saves allocating it
+       * and decoding its string each time.
+       */
+      private val internTable = STATIC_INTERN_TABLE.copyOf()
+      private val internBytes = ByteArray(INTERN_MAX_BYTE_COUNT)
+      private val huffmanBuffer = Buffer()
+
       // Visible for testing.
       @JvmField var dynamicTable = arrayOfNulls<Header>(8)
 
@@ -399,12 +421,38 @@ object Hpack {
         }
 
         return if (huffmanDecode) {
-          val decodeBuffer = Buffer()
-          Huffman.decode(source, length, decodeBuffer)
-          decodeBuffer.readByteString()
+          huffmanBuffer.clear()
+          Huffman.decode(source, length, huffmanBuffer)
+          readInterned(huffmanBuffer, huffmanBuffer.size)
         } else {
-          source.readByteString(length)
+          readInterned(source, length)
+        }
+      }
+
+      /** Reads [byteCount] bytes, returning a previously read instance if it has the same bytes. */
+      private fun readInterned(
+        source: BufferedSource,
+        byteCount: Long,
+      ): ByteString {
+        if (byteCount > INTERN_MAX_BYTE_COUNT) return source.readByteString(byteCount)
+
+        val length = byteCount.toInt()
+        source.require(byteCount)
+        var offset = 0
+        while (offset < length) {
+          offset += source.buffer.read(internBytes, offset, length - offset)
+        }
+
+        val slot = internHash(internBytes, length) and (INTERN_TABLE_SIZE - 1)
+        val interned = internTable[slot]
+        if (interned != null &&
+          interned.size == length &&
+          interned.rangeEquals(0, internBytes, 0, length)
+        ) {
+          return interned
         }
+
+        return internBytes.toByteString(0, length).also { internTable[slot] = it }
       }
 
       @Throws(IOException::class)
@@ -420,6 +468,29 @@ object Hpack {
       }
     }
 
+  private fun staticInternTable(): Array<ByteString?> {
+    val result = arrayOfNulls<ByteString>(INTERN_TABLE_SIZE)
+    for (header in STATIC_HEADER_TABLE) {
+      for (byteString in arrayOf(header.name, header.value)) {
+        if (byteString.size == 0) continue
+        val bytes = byteString.toByteArray()
+        result[internHash(bytes, bytes.size) and (INTERN_TABLE_SIZE - 1)] = byteString
+      }
+    }
+    return result
+  }
+
+  private fun internHash(
+    bytes: ByteArray,
+    byteCount: Int,
+  ): Int {
+    var result = byteCount
+    for (i in 0 until byteCount) {
+      result = 31 * result + bytes[i]
+    }
+    return result xor (result ushr 16)
+  }
+
   private fun nameToFirstIndex(): Map<ByteString, Int> {
     val result = LinkedHashMap<ByteString, Int>(STATIC_HEADER_TABLE.size, 1.0F)
     for (i in STATIC_HEADER_TABLE.indices) {
@@ -436,6 +507,9 @@ object Hpack {
       @JvmField var headerTableSizeSetting: Int = SETTINGS_HEADER_TABLE_SIZE,
       private val useCompression: Boolean = true,
       private val out: Buffer,
+      /** The largest dynamic table to use, even if the decoder permits a larger one. */
+      private val headerTableSizeLimit: Int = SETTINGS_HEADER_TABLE_SIZE_LIMIT,
+      private val indexingStrategy: HeaderIndexingStrategy = HeaderIndexingStrategy.INDEX_ALL,
     ) {
       /**
        * In the scenario where the dynamic table size changes multiple times between transmission of
@@ -456,6 +530,14 @@ object Hpack {
 
       @JvmField var dynamicTableByteCount = 0
 
+      /** Bytes of header names and values passed to [writeHeaders]. */
+      var uncompressedByteCount = 0L
+        private set
+
+      /** Bytes of header blocks written by [writeHeaders]. */
+      var compressedByteCount = 0L
+        private set
+
       private fun clearDynamicTable() {
         dynamicTable.fill(null)
         nextHeaderIndex = dynamicTable.size - 1
@@ -516,12 +598,13 @@ object Hpack {
       }
 
       /**
-       * This does not use "never indexed" semantics for sensitive headers.
+       * Headers are indexed, or not, as decided by [indexingStrategy].
        *
        * http://tools.ietf.org/html/draft-ietf-httpbis-header-compression-12#section-6.2.3
        */
       @Throws(IOException::class)
       fun writeHeaders(headerBlock: List<Header>) {
+        val outSizeBefore = out.size
         if (emitDynamicTableSizeUpdate) {
           if (smallestHeaderTableSizeSetting < maxDynamicTableByteCount) {
             // Multiple dynamic table size updates!
@@ -536,6 +619,14 @@ object Hpack {
           val header = headerBlock[i]
           val name = header.name.toAsciiLowercase()
           val value = header.value
+          uncompressedByteCount += name.size + value.size
+          val indexing =
+            when {
+              // Don't decode headers for the default strategy, which indexes everything.
+              indexingStrategy === HeaderIndexingStrategy.INDEX_ALL -> Indexing.INDEXED
+              name.startsWith(Header.PSEUDO_PREFIX) -> Indexing.INDEXED
+              else -> indexingStrategy.indexing(name.utf8(), value.utf8())
+            }
           var headerIndex = -1
           var headerNameIndex = -1
 
@@ -569,11 +660,23 @@ object Hpack {
           }
 
           when {
-            headerIndex != -1 -> {
+            headerIndex != -1 && indexing != Indexing.NEVER_INDEXED -> {
               // Indexed Header Field.
               writeInt(headerIndex, PREFIX_7_BITS, 0x80)
             }
 
+            indexing != Indexing.INDEXED -> {
+              // Literal Header Field without Indexing, or Never Indexed.
+              val bits = if (indexing == Indexing.NEVER_INDEXED) 0x10 else 0
+              if (headerNameIndex == -1) {
+                out.writeByte(bits)
+                writeByteString(name)
+              } else {
+                writeInt(headerNameIndex, PREFIX_4_BITS, bits)
+              }
+              writeByteString(value)
+            }
+
             headerNameIndex == -1 -> {
               // Literal Header Field with Incremental Indexing - New Name.
               out.writeByte(0x40)
@@ -597,6 +700,8 @@ object Hpack {
             }
           }
         }
+
+        compressedByteCount += out.size - outSizeBefore
       }
 
       // http://tools.ietf.org/html/draft-ietf-httpbis-header-compression-12#section-4.1.1
@@ -641,7 +746,7 @@ object Hpack {
 
       fun resizeHeaderTable(headerTableSizeSetting: Int) {
         this.headerTableSizeSetting = headerTableSizeSetting
-        val effectiveHeaderTableSize = minOf(headerTableSizeSetting, SETTINGS_HEADER_TABLE_SIZE_LIMIT)
+        val effectiveHeaderTableSize = minOf(headerTableSizeSetting, headerTableSizeLimit)
 
         if (maxDynamicTableByteCount == effectiveHeaderTableSize) return // No change.
 
@@ -35,6 +35,8 @@ object Http2 {
   const val TYPE_GOAWAY = 0x7
   const val TYPE_WINDOW_UPDATE = 0x8
   const val TYPE_CONTINUATION = 0x9
+  const val TYPE_ALTSVC = 0xa // RFC 7838.
+  const val TYPE_PRIORITY_UPDATE = 0x10 // RFC 9218.
 
   const val FLAG_NONE = 0x0
   const val FLAG_ACK = 0x1 // Used for settings and ping.
@@ -58,6 +60,7 @@ object Http2 {
       "GOAWAY",
       "WINDOW_UPDATE",
       "CONTINUATION",
+      "ALTSVC",
     )
 
   /**
@@ -157,7 +160,12 @@ object Http2 {
     )
   }
 
-  internal fun formattedType(type: Int): String = if (type < FRAME_NAMES.size) FRAME_NAMES[type] else format("0x%02x", type)
+  internal fun formattedType(type: Int): String =
+    when {
+      type < FRAME_NAMES.size -> FRAME_NAMES[type]
+      type == TYPE_PRIORITY_UPDATE -> "PRIORITY_UPDATE"
+      else -> format("0x%02x", type)
+    }
 
   /**
    * Looks up valid string representing flags from the table. Invalid combinations are represented
@@ -172,7 +180,11 @@ object Http2 {
       // Special case types that have 0 or 1 flag.
       TYPE_SETTINGS, TYPE_PING -> return if (flags == FLAG_ACK) "ACK" else BINARY[flags]
 
-      TYPE_PRIORITY, TYPE_RST_STREAM, TYPE_GOAWAY, TYPE_WINDOW_UPDATE -> return BINARY[flags]
+      TYPE_PRIORITY, TYPE_RST_STREAM, TYPE_GOAWAY, TYPE_WINDOW_UPDATE, TYPE_ALTSVC,
+      TYPE_PRIORITY_UPDATE,
+      -> {
+        return BINARY[flags]
+      }
     }
     val result = if (flags < FLAGS.size) FLAGS[flags]!! else BINARY[flags]
     // Special case types that have overlap flag values.
@@ -19,19 +19,25 @@ import java.io.Closeable
 import java.io.IOException
 import java.io.InterruptedIOException
 import java.util.concurrent.TimeUnit
+import okhttp3.HeaderIndexingStrategy
 import okhttp3.Headers
 import okhttp3.internal.EMPTY_BYTE_ARRAY
 import okhttp3.internal.closeQuietly
 import okhttp3.internal.concurrent.Lockable
 import okhttp3.internal.concurrent.TaskRunner
+import okhttp3.internal.concurrent.assertLockHeld
 import okhttp3.internal.concurrent.assertLockNotHeld
+import okhttp3.internal.concurrent.awaitNanos
 import okhttp3.internal.concurrent.notifyAll
 import okhttp3.internal.concurrent.wait
 import okhttp3.internal.concurrent.withLock
 import okhttp3.internal.connection.BufferedSocket
 import okhttp3.internal.http2.ErrorCode.REFUSED_STREAM
 import okhttp3.internal.http2.Settings.Companion.DEFAULT_INITIAL_WINDOW_SIZE
+import okhttp3.internal.http2.flowcontrol.BdpEstimator
+import okhttp3.internal.http2.flowcontrol.ReceiveBudget
 import okhttp3.internal.http2.flowcontrol.WindowCounter
+import okhttp3.internal.http2.flowcontrol.WriteWindow
 import okhttp3.internal.ignoreIoExceptions
 import okhttp3.internal.okHttpName
 import okhttp3.internal.platform.Platform
@@ -64,6 +70,9 @@ class Http2Connection internal constructor(
   // Certain operations (like SYN_STREAM) need to synchronize on both the frameWriter (to do
   // blocking I/O) and this (to create streams). Such operations must synchronize on 'this' last.
   // This ensures that we never wait for a blocking operation while holding 'this'.
+  //
+  // The connection's write window is guarded by writeWindow. It may synchronize on 'this' to check
+  // whether a stream is open, so don't access writeWindow while holding 'this'.
 
   /** True if this peer initiated the connection. */
   internal val client: Boolean = builder.client
@@ -115,6 +124,10 @@ class Http2Connection internal constructor(
       // small enough to avoid blowing up the heap.
       if (builder.client) {
         set(Settings.INITIAL_WINDOW_SIZE, OKHTTP_CLIENT_WINDOW_SIZE)
+        set(Settings.NO_RFC7540_PRIORITIES, 1)
+      }
+      if (builder.headerTableSize != Hpack.SETTINGS_HEADER_TABLE_SIZE) {
+        set(Settings.HEADER_TABLE_SIZE, builder.headerTableSize)
       }
     }
 
@@ -124,22 +137,104 @@ class Http2Connection internal constructor(
    */
   var peerSettings = DEFAULT_SETTINGS
 
+  /** True once the peer's first SETTINGS frame has been applied. Guarded by this. */
+  private var peerSettingsReceived = false
+
   /** The bytes consumed and acknowledged by the application. */
   val readBytes: WindowCounter = WindowCounter(streamId = 0)
 
-  /** The total number of bytes produced by the application. */
-  var writeBytesTotal = 0L
+  /** Sizes the receive windows if autotuning is enabled. Guarded by this. */
+  private val bdpEstimator: BdpEstimator? =
+    when {
+      builder.receiveWindowAutotuning -> BdpEstimator()
+      else -> null
+    }
+
+  /**
+   * Bytes of the connection's receive window that we won't acknowledge because the window has
+   * shrunk. Guarded by this.
+   */
+  private var readWindowExcess = 0L
+
+  /** The number of SETTINGS frames sent to the peer. Guarded by this. */
+  private var settingsSent = 0L
+
+  /** The number of SETTINGS frames acknowledged by the peer. Guarded by this. */
+  private var settingsAcknowledged = 0L
+
+  /**
+   * Stream receive window reductions that the peer hasn't acknowledged yet. Until it does, the peer
+   * may send data as permitted by the larger window, so streams must continue to accept it.
+   * Guarded by this.
+   */
+  private val unacknowledgedWindowShrinks = ArrayDeque<WindowShrink>()
+
+  /**
+   * The sum of [unacknowledgedWindowShrinks]. New streams accept this many bytes more than the
+   * current window size. Guarded by this.
+   */
+  internal var unacknowledgedWindowShrinkByteCount = 0L
     private set
 
+  /**
+   * The current size of the receive window for this connection and each of its streams. This
+   * changes if receive window autotuning is enabled.
+   */
+  val readWindowSize: Int
+    get() = withLock { okHttpSettings.initialWindowSize }
+
+  /** Limits the bytes buffered by this connection's streams, or null for no limit. */
+  private val receiveBudget: ReceiveBudget? = builder.receiveBudget
+
+  /** The number of bytes received by this connection's streams and not yet consumed. */
+  val bufferedByteCount: Long
+    get() = receiveBudget?.bufferedByteCount ?: 0L
+
+  /** Bytes produced by the application, and the bytes permitted by `WINDOW_UPDATE` frames. */
+  private val writeWindow = WriteWindow(peerSettings.initialWindowSize.toLong())
+
+  /** The total number of bytes produced by the application. */
+  val writeBytesTotal: Long
+    get() = writeWindow.withLock { writeWindow.total }
+
   /** The total number of bytes permitted to be produced according to `WINDOW_UPDATE` frames. */
-  var writeBytesMaximum: Long = peerSettings.initialWindowSize.toLong()
-    private set
+  val writeBytesMaximum: Long
+    get() = writeWindow.withLock { writeWindow.maximum }
 
   internal val socket: BufferedSocket = builder.socket
-  val writer = Http2Writer(socket.sink, client)
+  val writer =
+    Http2Writer(
+      sink = socket.sink,
+      client = client,
+      headerTableSizeLimit = maxOf(builder.headerTableSize, Hpack.SETTINGS_HEADER_TABLE_SIZE_LIMIT),
+      headerIndexingStrategy = builder.headerIndexingStrategy,
+    )
+
+  /**
+   * The size of the header names and values written on this connection, divided by the size of
+   * the HPACK header blocks that encoded them. This is 4.0 if headers were compressed to a quarter
+   * of their size, and 1.0 if no headers have been written.
+   */
+  val headerCompressionRatio: Double
+    get() =
+      writer.withLock {
+        val hpackWriter = writer.hpackWriter
+        if (hpackWriter.compressedByteCount == 0L) return 1.0
+        hpackWriter.uncompressedByteCount.toDouble() / hpackWriter.compressedByteCount
+      }
+
+  /** Control frames and flushes waiting for the writer task, if frame coalescing is enabled. */
+  private val frameQueue: FrameQueue? = if (builder.frameCoalescing) FrameQueue() else null
+
+  /** Non-null if this connection's reader parks while the connection is idle. */
+  private val sharedReader: SharedReader? = builder.sharedReader
+  private val sharedReaderProbe: SharedReader.Probe? = builder.sharedReaderProbe
+
+  /** True if the reader's task returned and [sharedReader] watches the socket. Guarded by this. */
+  private var readerParked = false
 
   // Visible for testing
-  val readerRunnable = ReaderRunnable(Http2Reader(socket.source, client))
+  val readerRunnable = ReaderRunnable(Http2Reader(socket.source, client, builder.headerTableSize))
 
   // Guarded by this.
   private val currentPushRequests = mutableSetOf<Int>()
@@ -176,21 +271,34 @@ class Http2Connection internal constructor(
   fun getStream(id: Int): Http2Stream? = withLock { streams[id] }
 
   internal fun removeStream(streamId: Int): Http2Stream? {
-    withLock {
-      val stream = streams.remove(streamId)
+    val stream = withLock { streams.remove(streamId) }
 
-      // The removed stream may be blocked on a connection-wide window update.
-      notifyAll()
+    // The removed stream may be blocked on a connection-wide window update.
+    writeWindow.cancel(streamId)
 
-      return stream
-    }
+    return stream
   }
 
   internal fun updateConnectionFlowControl(read: Long) {
     withLock {
       readBytes.update(total = read)
+
+      // Shrink the window by withholding acknowledgements.
+      if (readWindowExcess > 0L) {
+        val withheld = minOf(readWindowExcess, readBytes.unacknowledged)
+        readBytes.update(acknowledged = withheld)
+        readWindowExcess -= withheld
+      }
+
+      // Stop the peer from sending more while we're over budget. If nothing is buffered here the
+      // budget must be exhausted by other connections, and withholding can't help.
+      val overBudget =
+        receiveBudget != null &&
+          receiveBudget.isExhausted &&
+          receiveBudget.bufferedByteCount > 0L
+
       val readBytesToAcknowledge = readBytes.unacknowledged
-      if (readBytesToAcknowledge >= okHttpSettings.initialWindowSize / 2) {
+      if (!overBudget && readBytesToAcknowledge >= okHttpSettings.initialWindowSize / 2) {
         writeWindowUpdateLater(0, readBytesToAcknowledge)
         readBytes.update(acknowledged = readBytesToAcknowledge)
       }
@@ -198,6 +306,28 @@ class Http2Connection internal constructor(
     }
   }
 
+  /** Counts [byteCount] bytes that a stream has buffered for the application. */
+  internal fun bytesBuffered(byteCount: Long) {
+    receiveBudget?.received(byteCount)
+  }
+
+  /** Releases [byteCount] bytes buffered by a stream, and acknowledges them if it was withheld. */
+  internal fun bytesConsumed(byteCount: Long) {
+    if (receiveBudget == null) return
+    receiveBudget.consumed(byteCount)
+    updateConnectionFlowControl(0L)
+  }
+
+  /**
+   * Returns the number of bytes each stream may buffer and still acknowledge consumed data. While
+   * the budget is exhausted streams share it evenly, and streams that are over their share wait
+   * for their buffers to drain before granting the peer more credit.
+   */
+  internal fun receiveBudgetShare(): Long {
+    if (receiveBudget == null || !receiveBudget.isExhausted) return Long.MAX_VALUE
+    return receiveBudget.effectiveMaxByteCount / maxOf(openStreamCount(), 1)
+  }
+
   /**
    * Returns a new server-initiated stream.
    *
@@ -250,13 +380,14 @@ class Http2Connection internal constructor(
         streamId = nextStreamId
         nextStreamId += 2
         stream = Http2Stream(streamId, this, outFinished, inFinished, null)
-        flushHeaders = !out ||
-          writeBytesTotal >= writeBytesMaximum ||
-          stream.writeBytesTotal >= stream.writeBytesMaximum
+        stream.priority = Priority.parse(requestHeaders)
         if (stream.isOpen) {
           streams[streamId] = stream
         }
       }
+      flushHeaders = !out ||
+        writeBytesTotal >= writeBytesMaximum ||
+        stream.writeBytesTotal >= stream.writeBytesMaximum
       if (associatedStreamId == 0) {
         writer.headers(outFinished, streamId, requestHeaders)
       } else {
@@ -266,8 +397,10 @@ class Http2Connection internal constructor(
       }
     }
 
+    resumeReading()
+
     if (flushHeaders) {
-      writer.flush()
+      flush()
     }
 
     return stream
@@ -293,6 +426,8 @@ class Http2Connection internal constructor(
    *
    * Zero [byteCount] writes are not subject to flow control and will not block. The only use case
    * for zero [byteCount] is closing a flushed output stream.
+   *
+   * When several streams are writing, frames are written in order of their [priority].
    */
   @Throws(IOException::class)
   fun writeData(
@@ -300,45 +435,47 @@ class Http2Connection internal constructor(
     outFinished: Boolean,
     buffer: Buffer?,
     byteCount: Long,
+    priority: Priority = Priority.DEFAULT,
   ) {
     // Empty data frames are not flow-controlled.
     if (byteCount == 0L) {
-      writer.data(outFinished, streamId, buffer, 0)
+      writer.data(outFinished, streamId, buffer, 0, priority)
       return
     }
 
     var byteCount = byteCount
     while (byteCount > 0L) {
-      var toWrite: Int
-      withLock {
-        try {
-          while (writeBytesTotal >= writeBytesMaximum) {
-            // Before blocking, confirm that the stream we're writing is still open. It's possible
-            // that the stream has since been closed (such as if this write timed out.)
-            if (!streams.containsKey(streamId)) {
-              throw IOException("stream closed")
-            }
-            wait() // Wait until we receive a WINDOW_UPDATE.
-          }
-        } catch (e: InterruptedException) {
-          Thread.currentThread().interrupt() // Retain interrupted status.
-          throw InterruptedIOException()
-        }
-
-        toWrite = minOf(byteCount, writeBytesMaximum - writeBytesTotal).toInt()
-        toWrite = minOf(toWrite, writer.maxDataLength())
-        writeBytesTotal += toWrite.toLong()
-      }
+      // Wait until the connection's window permits writing.
+      val toWrite =
+        writeWindow.acquire(
+          streamId = streamId,
+          byteCount = byteCount,
+          maxGrant = writer.maxDataLength(),
+          isOpen = { withLock { streams.containsKey(streamId) } },
+        )
 
       byteCount -= toWrite.toLong()
-      writer.data(outFinished && byteCount == 0L, streamId, buffer, toWrite)
+      writer.data(outFinished && byteCount == 0L, streamId, buffer, toWrite, priority)
     }
   }
 
+  @Throws(IOException::class)
+  internal fun writePriorityUpdate(
+    streamId: Int,
+    priority: Priority,
+  ) {
+    check(client) { "only clients send PRIORITY_UPDATE frames" }
+    writer.priorityUpdate(streamId, priority)
+  }
+
   internal fun writeSynResetLater(
     streamId: Int,
     errorCode: ErrorCode,
   ) {
+    if (frameQueue != null) {
+      if (frameQueue.rstStream(streamId, errorCode)) writeFrameQueueLater(frameQueue)
+      return
+    }
     writerQueue.execute("$connectionName[$streamId] writeSynReset") {
       try {
         writeSynReset(streamId, errorCode)
@@ -360,6 +497,12 @@ class Http2Connection internal constructor(
     streamId: Int,
     unacknowledgedBytesRead: Long,
   ) {
+    if (frameQueue != null) {
+      if (frameQueue.windowUpdate(streamId, unacknowledgedBytesRead)) {
+        writeFrameQueueLater(frameQueue)
+      }
+      return
+    }
     writerQueue.execute("$connectionName[$streamId] windowUpdate") {
       try {
         writer.windowUpdate(streamId, unacknowledgedBytesRead)
@@ -374,6 +517,7 @@ class Http2Connection internal constructor(
     payload1: Int,
     payload2: Int,
   ) {
+    if (!reply) resumeReading() // Read the pong.
     try {
       writer.ping(reply, payload1, payload2)
     } catch (e: IOException) {
@@ -409,8 +553,95 @@ class Http2Connection internal constructor(
     }
   }
 
+  /**
+   * Returns true if the peer accepts extended CONNECT requests, as used to bootstrap web sockets.
+   * See [RFC 8441][rfc_8441].
+   *
+   * The peer advertises support in its first SETTINGS frame, so this waits up to [timeoutNanos]
+   * for that frame. It returns false if the frame doesn't arrive in time.
+   *
+   * [rfc_8441]: https://datatracker.ietf.org/doc/html/rfc8441
+   */
+  @Throws(InterruptedIOException::class)
+  fun awaitExtendedConnect(timeoutNanos: Long): Boolean {
+    withLock {
+      val deadline = System.nanoTime() + timeoutNanos
+      while (!peerSettingsReceived && !isShutdown) {
+        val remaining = deadline - System.nanoTime()
+        if (remaining <= 0L) return false
+        try {
+          awaitNanos(remaining)
+        } catch (_: InterruptedException) {
+          Thread.currentThread().interrupt() // Retain interrupted status.
+          throw InterruptedIOException()
+        }
+      }
+      return peerSettingsReceived && peerSettings.getEnableConnectProtocol()
+    }
+  }
+
+  /**
+   * Returns true if the reader should return its thread because this connection is idle and no
+   * bytes arrived promptly. The shared reader resumes it when there's something to read.
+   */
+  private fun parkReaderIfIdle(emptyParkCount: Int): Boolean {
+    val sharedReader = sharedReader ?: return false
+    if (!withLock { isIdle() }) return false
+    if (sharedReaderProbe!!.awaitReadable(PARK_READER_TIMEOUT_MILLIS)) return false
+    withLock {
+      if (!isIdle()) return false
+      readerParked = true
+      sharedReader.park(this, emptyParkCount)
+    }
+    return true
+  }
+
+  /** Returns true if this connection has no streams and isn't awaiting any pongs. */
+  private fun isIdle(): Boolean {
+    assertLockHeld()
+    return streams.isEmpty() &&
+      intervalPongsReceived == intervalPingsSent &&
+      degradedPongsReceived == degradedPingsSent &&
+      awaitPongsReceived == awaitPingsSent
+  }
+
+  internal fun isReadableWhileParked(): Boolean = sharedReaderProbe!!.isReadable()
+
+  /** Restarts this connection's reader if it is parked. */
+  internal fun resumeReading() {
+    val sharedReader = sharedReader ?: return
+    withLock {
+      if (!readerParked) return
+      readerParked = false
+      sharedReader.unpark(this)
+    }
+    taskRunner.newQueue().execute(name = connectionName, block = readerRunnable)
+  }
+
+  /** Writes all queued frames with a single flush. */
+  private fun writeFrameQueueLater(frameQueue: FrameQueue) {
+    writerQueue.execute("$connectionName writeFrames") {
+      try {
+        frameQueue.writeTo(writer)
+      } catch (e: IOException) {
+        failConnection(e)
+      }
+    }
+  }
+
+  /**
+   * Flushes frames written to this connection. If frame coalescing is enabled this also writes the
+   * queued frames, so they share this flush.
+   *
+   * This always flushes on the calling thread, so the caller doesn't proceed until its frames are
+   * written and it sees any failure to write them.
+   */
   @Throws(IOException::class)
   fun flush() {
+    if (frameQueue != null) {
+      frameQueue.writeTo(writer)
+      return
+    }
     writer.flush()
   }
 
@@ -461,7 +692,11 @@ class Http2Connection internal constructor(
         streamsToClose = streams.values.toTypedArray()
         streams.clear()
       }
+      notifyAll() // Release threads awaiting the peer's settings.
     }
+    writeWindow.cancelAll()
+    receiveBudget?.close()
+    sharedReader?.unpark(this)
 
     streamsToClose?.forEach { stream ->
       ignoreIoExceptions {
@@ -502,6 +737,7 @@ class Http2Connection internal constructor(
   fun start(sendConnectionPreface: Boolean = true) {
     if (sendConnectionPreface) {
       writer.connectionPreface()
+      withLock { settingsSent++ }
       writer.settings(okHttpSettings)
       val windowSize = okHttpSettings.initialWindowSize
       if (windowSize != DEFAULT_INITIAL_WINDOW_SIZE) {
@@ -522,6 +758,7 @@ class Http2Connection internal constructor(
           throw ConnectionShutdownException()
         }
         okHttpSettings.merge(settings)
+        settingsSent++
       }
       writer.settings(settings)
     }
@@ -538,6 +775,77 @@ class Http2Connection internal constructor(
     }
   }
 
+  /**
+   * Completes the current BDP sample and resizes the receive windows if the estimate has changed.
+   * This is called by the reader thread when the BDP ping's pong is received.
+   */
+  private fun bdpPongReceived(bdpEstimator: BdpEstimator) {
+    // Don't hold this while taking the streams' locks.
+    val openStreams = withLock { streams.values.toTypedArray() }
+    val bufferedByteCount = openStreams.sumOf { it.withLock { it.source.readBuffer.size } }
+
+    val windowSize =
+      withLock {
+        bdpEstimator.pongReceived(
+          nowNs = System.nanoTime(),
+          windowSize = okHttpSettings.initialWindowSize,
+          bufferedByteCount = bufferedByteCount,
+        )
+      }
+    if (windowSize != -1) {
+      writerQueue.execute("$connectionName windowSize") {
+        try {
+          updateReadWindowSize(windowSize)
+        } catch (e: IOException) {
+          failConnection(e)
+        }
+      }
+    }
+  }
+
+  /**
+   * Changes the receive window of this connection and each of its streams to [windowSize].
+   *
+   * Stream windows change by sending `SETTINGS_INITIAL_WINDOW_SIZE`. Open streams accept more data
+   * immediately when their windows grow, and less data once the peer acknowledges that their
+   * windows shrank. The connection window grows with a `WINDOW_UPDATE` frame, and shrinks by
+   * withholding acknowledgements of received bytes.
+   */
+  @Throws(IOException::class)
+  internal fun updateReadWindowSize(windowSize: Int) {
+    writer.withLock {
+      val delta: Long
+      val connectionIncrement: Long
+      val streamsToUpdate: Array<Http2Stream>
+      withLock {
+        if (isShutdown) return
+        delta = windowSize.toLong() - okHttpSettings.initialWindowSize
+        okHttpSettings[Settings.INITIAL_WINDOW_SIZE] = windowSize
+        if (delta > 0L) {
+          connectionIncrement = maxOf(delta - readWindowExcess, 0L)
+          readWindowExcess = maxOf(readWindowExcess - delta, 0L)
+          streamsToUpdate = streams.values.toTypedArray()
+        } else {
+          connectionIncrement = 0L
+          readWindowExcess -= delta
+          streamsToUpdate = arrayOf()
+          unacknowledgedWindowShrinks.addLast(WindowShrink(settingsSent + 1, -delta))
+          unacknowledgedWindowShrinkByteCount -= delta
+        }
+        settingsSent++
+      }
+
+      // Streams must accept more data before the peer learns that it may send it.
+      for (stream in streamsToUpdate) {
+        stream.withLock { stream.source.maxByteCount += delta }
+      }
+      writer.settings(Settings().set(Settings.INITIAL_WINDOW_SIZE, windowSize))
+      if (connectionIncrement > 0L) {
+        writer.windowUpdate(0, connectionIncrement)
+      }
+    }
+  }
+
   /**
    * HTTP/2 can have both stream timeouts (due to a problem with a single stream) and connection
    * timeouts (due to a problem with the transport). When a stream times out we don't know whether
@@ -575,6 +883,13 @@ class Http2Connection internal constructor(
     internal var pushObserver = PushObserver.CANCEL
     internal var pingIntervalMillis: Int = 0
     internal var flowControlListener: FlowControlListener = FlowControlListener.None
+    internal var receiveWindowAutotuning = false
+    internal var frameCoalescing = false
+    internal var receiveBudget: ReceiveBudget? = null
+    internal var sharedReader: SharedReader? = null
+    internal var sharedReaderProbe: SharedReader.Probe? = null
+    internal var headerTableSize = Hpack.SETTINGS_HEADER_TABLE_SIZE
+    internal var headerIndexingStrategy = HeaderIndexingStrategy.INDEX_ALL
 
     @Throws(IOException::class)
     fun socket(
@@ -609,6 +924,57 @@ class Http2Connection internal constructor(
         this.flowControlListener = flowControlListener
       }
 
+    /** Sizes receive windows using the connection's estimated bandwidth-delay product. */
+    fun receiveWindowAutotuning(receiveWindowAutotuning: Boolean) =
+      apply {
+        this.receiveWindowAutotuning = receiveWindowAutotuning
+      }
+
+    /**
+     * Queues control frames and flushes for a single writer task, which merges window updates and
+     * writes each batch with a single flush.
+     */
+    fun frameCoalescing(frameCoalescing: Boolean) =
+      apply {
+        this.frameCoalescing = frameCoalescing
+      }
+
+    /**
+     * Limits the bytes that streams buffer before the application consumes them. When the budget
+     * is exhausted the connection withholds `WINDOW_UPDATE` frames until buffered data is consumed.
+     */
+    fun receiveBudget(receiveBudget: ReceiveBudget?) =
+      apply {
+        this.receiveBudget = receiveBudget
+      }
+
+    /**
+     * Park the reader while the connection is idle, and let [sharedReader] watch the socket with
+     * [probe] instead. If [sharedReader] is null the reader always runs on a thread of its own.
+     */
+    fun sharedReader(
+      sharedReader: SharedReader?,
+      probe: SharedReader.Probe?,
+    ) = apply {
+      this.sharedReader = sharedReader
+      this.sharedReaderProbe = probe
+    }
+
+    /**
+     * Advertises an HPACK dynamic table of [headerTableSize] bytes for the headers that the peer
+     * sends, and permits a table this large for the headers that we send.
+     */
+    fun headerTableSize(headerTableSize: Int) =
+      apply {
+        this.headerTableSize = headerTableSize
+      }
+
+    /** Decides which of the headers that we send are added to the HPACK dynamic table. */
+    fun headerIndexingStrategy(headerIndexingStrategy: HeaderIndexingStrategy) =
+      apply {
+        this.headerIndexingStrategy = headerIndexingStrategy
+      }
+
     fun build(): Http2Connection = Http2Connection(this)
   }
 
@@ -620,13 +986,33 @@ class Http2Connection internal constructor(
     internal val reader: Http2Reader,
   ) : Http2Reader.Handler,
     () -> Unit {
+    /** True once the peer's connection preface has been read. Only accessed by the reader. */
+    private var prefaceRead = false
+
+    /**
+     * The number of times in a row the reader parked without reading a frame in between. Only
+     * accessed by the reader.
+     */
+    private var emptyParkCount = 0
+
     override fun invoke() {
       var connectionErrorCode = ErrorCode.INTERNAL_ERROR
       var streamErrorCode = ErrorCode.INTERNAL_ERROR
       var errorException: IOException? = null
+      var parked = false
       try {
-        reader.readConnectionPreface(this)
-        while (reader.nextFrame(false, this)) {
+        if (!prefaceRead) {
+          reader.readConnectionPreface(this)
+          prefaceRead = true
+        }
+        while (true) {
+          if (parkReaderIfIdle(emptyParkCount)) {
+            emptyParkCount++
+            parked = true
+            return
+          }
+          if (!reader.nextFrame(false, this)) break
+          emptyParkCount = 0
         }
         connectionErrorCode = ErrorCode.NO_ERROR
         streamErrorCode = ErrorCode.CANCEL
@@ -635,8 +1021,10 @@ class Http2Connection internal constructor(
         connectionErrorCode = ErrorCode.PROTOCOL_ERROR
         streamErrorCode = ErrorCode.PROTOCOL_ERROR
       } finally {
-        close(connectionErrorCode, streamErrorCode, errorException)
-        reader.closeQuietly()
+        if (!parked) {
+          close(connectionErrorCode, streamErrorCode, errorException)
+          reader.closeQuietly()
+        }
       }
     }
 
@@ -658,6 +1046,13 @@ class Http2Connection internal constructor(
         source.skip(length.toLong())
         return
       }
+      val sendBdpPing = bdpEstimator != null && withLock { bdpEstimator.dataReceived(length.toLong()) }
+      if (sendBdpPing) {
+        writerQueue.execute("$connectionName ping") {
+          withLock { bdpEstimator!!.pingSent(System.nanoTime()) }
+          writePing(false, BDP_PING, 0)
+        }
+      }
       dataStream.receiveData(source, length)
       if (inFinished) {
         dataStream.receiveHeaders(Headers.EMPTY, true)
@@ -778,6 +1173,10 @@ class Http2Connection internal constructor(
             }
 
           peerSettings = newPeerSettings
+          if (!peerSettingsReceived) {
+            peerSettingsReceived = true
+            notifyAll()
+          }
 
           settingsListenerQueue.execute("$connectionName onSettings") {
             listener.onSettings(this@Http2Connection, newPeerSettings)
@@ -800,6 +1199,24 @@ class Http2Connection internal constructor(
 
     override fun ackSettings() {
       // TODO: If we don't get this callback after sending settings to the peer, SETTINGS_TIMEOUT.
+      var shrinkByteCount = 0L
+      val streamsToUpdate =
+        withLock {
+          settingsAcknowledged++
+          while (true) {
+            val shrink = unacknowledgedWindowShrinks.firstOrNull() ?: break
+            if (shrink.settingsCount > settingsAcknowledged) break
+            shrinkByteCount += unacknowledgedWindowShrinks.removeFirst().byteCount
+          }
+          if (shrinkByteCount == 0L) return
+          unacknowledgedWindowShrinkByteCount -= shrinkByteCount
+          streams.values.toTypedArray()
+        }
+
+      // The peer now sends data as permitted by the smaller stream windows.
+      for (stream in streamsToUpdate) {
+        stream.withLock { stream.source.maxByteCount -= shrinkByteCount }
+      }
     }
 
     override fun ping(
@@ -828,8 +1245,15 @@ class Http2Connection internal constructor(
             }
           }
         }
+        if (payload1 == BDP_PING && bdpEstimator != null) {
+          bdpPongReceived(bdpEstimator)
+        }
       } else {
         // Send a reply to a client ping if this is a server and vice versa.
+        if (frameQueue != null) {
+          if (frameQueue.pong(payload1, payload2)) writeFrameQueueLater(frameQueue)
+          return
+        }
         writerQueue.execute("$connectionName ping") {
           writePing(true, payload1, payload2)
         }
@@ -852,6 +1276,9 @@ class Http2Connection internal constructor(
         isShutdown = true
       }
 
+      // Let the listener prepare a replacement before the refused streams are retried.
+      listener.onGoAway(this@Http2Connection)
+
       // Fail all streams created after the last good stream ID.
       for (http2Stream in streamsCopy) {
         if (http2Stream.id > lastGoodStreamId && http2Stream.isLocallyInitiated) {
@@ -866,10 +1293,7 @@ class Http2Connection internal constructor(
       windowSizeIncrement: Long,
     ) {
       if (streamId == 0) {
-        withLock {
-          writeBytesMaximum += windowSizeIncrement
-          notifyAll()
-        }
+        writeWindow.increase(windowSizeIncrement)
       } else {
         val stream = getStream(streamId)
         if (stream != null) {
@@ -886,7 +1310,16 @@ class Http2Connection internal constructor(
       weight: Int,
       exclusive: Boolean,
     ) {
-      // TODO: honor priority.
+      // RFC 7540 priorities are deprecated. We use RFC 9218 priorities instead.
+    }
+
+    override fun priorityUpdate(
+      prioritizedStreamId: Int,
+      priorityFieldValue: String,
+    ) {
+      // Only clients send PRIORITY_UPDATE frames. Updates for streams that aren't open are ignored.
+      if (client) return
+      getStream(prioritizedStreamId)?.priority = Priority.parse(priorityFieldValue)
     }
 
     override fun pushPromise(
@@ -900,12 +1333,16 @@ class Http2Connection internal constructor(
     override fun alternateService(
       streamId: Int,
       origin: String,
-      protocol: ByteString,
-      host: String,
-      port: Int,
-      maxAge: Long,
+      altSvc: String,
     ) {
-      // TODO: register alternate service.
+      // Frames on stream 0 must name an origin, and frames on other streams must not.
+      val frameOrigin =
+        when {
+          streamId == 0 && origin.isNotEmpty() -> origin
+          streamId != 0 && origin.isEmpty() -> null
+          else -> return
+        }
+      listener.onAlternateService(this@Http2Connection, frameOrigin, altSvc)
     }
   }
 
@@ -1017,6 +1454,25 @@ class Http2Connection internal constructor(
       settings: Settings,
     ) {}
 
+    /**
+     * Notification that the peer sent a GOAWAY frame. No new streams may be created on this
+     * connection. This is called before streams that the peer didn't process are refused.
+     */
+    open fun onGoAway(connection: Http2Connection) {}
+
+    /**
+     * Notification that the peer advertised alternative services in an `ALTSVC` frame.
+     *
+     * @param origin the origin whose alternatives these are, like `https://example.com`. This is
+     *     null if the alternatives are for the origin of one of this connection's streams.
+     * @param altSvc the alternatives, formatted like the value of an `Alt-Svc` header.
+     */
+    open fun onAlternateService(
+      connection: Http2Connection,
+      origin: String?,
+      altSvc: String,
+    ) {}
+
     companion object {
       @JvmField
       val REFUSE_INCOMING_STREAMS: Listener =
@@ -1029,6 +1485,12 @@ class Http2Connection internal constructor(
     }
   }
 
+  /** Shrinks stream receive windows by [byteCount] when the peer acknowledges [settingsCount]. */
+  private class WindowShrink(
+    val settingsCount: Long,
+    val byteCount: Long,
+  )
+
   companion object {
     const val OKHTTP_CLIENT_WINDOW_SIZE = 16 * 1024 * 1024
 
@@ -1041,6 +1503,10 @@ class Http2Connection internal constructor(
     const val INTERVAL_PING = 1
     const val DEGRADED_PING = 2
     const val AWAIT_PING = 3
+    const val BDP_PING = 4
     const val DEGRADED_PONG_TIMEOUT_NS = 1_000_000_000 // 1 second.
+
+    /** How long an idle reader waits for bytes before it parks. */
+    const val PARK_READER_TIMEOUT_MILLIS = 1
   }
 }
@@ -16,6 +16,7 @@
 package okhttp3.internal.http2
 
 import java.io.IOException
+import java.net.HttpURLConnection.HTTP_OK
 import java.net.ProtocolException
 import java.util.Locale
 import java.util.concurrent.TimeUnit
@@ -39,9 +40,11 @@ import okhttp3.internal.http2.Header.Companion.TARGET_METHOD
 import okhttp3.internal.http2.Header.Companion.TARGET_METHOD_UTF8
 import okhttp3.internal.http2.Header.Companion.TARGET_PATH
 import okhttp3.internal.http2.Header.Companion.TARGET_PATH_UTF8
+import okhttp3.internal.http2.Header.Companion.TARGET_PROTOCOL
 import okhttp3.internal.http2.Header.Companion.TARGET_SCHEME
 import okhttp3.internal.http2.Header.Companion.TARGET_SCHEME_UTF8
 import okhttp3.internal.immutableListOf
+import okio.ByteString.Companion.encodeUtf8
 import okio.Sink
 import okio.Socket
 import okio.Source
@@ -79,8 +82,22 @@ class Http2ExchangeCodec(
   override fun writeRequestHeaders(request: Request) {
     if (stream != null) return
 
-    val hasRequestBody = request.body != null
-    val requestHeaders = http2HeadersList(request)
+    // Web sockets use an extended CONNECT stream that stays open in both directions.
+    val extendedConnect = chain.call.forWebSocket
+    if (extendedConnect) {
+      val timeoutMillis = chain.connectTimeoutMillis.toLong()
+      val timeoutNanos = if (timeoutMillis == 0L) Long.MAX_VALUE else timeoutMillis * 1_000_000L
+      if (!http2Connection.awaitExtendedConnect(timeoutNanos)) {
+        throw ExtendedConnectUnsupportedException()
+      }
+    }
+
+    val hasRequestBody = request.body != null || extendedConnect
+    val requestHeaders =
+      when {
+        extendedConnect -> extendedConnectHeadersList(request, protocol = "websocket")
+        else -> http2HeadersList(request)
+      }
     stream = http2Connection.newStream(requestHeaders, hasRequestBody)
     // We may have been asked to cancel while creating the new stream and sending the request
     // headers, but there was still no stream to close.
@@ -104,6 +121,11 @@ class Http2ExchangeCodec(
     val stream = stream ?: throw IOException("stream wasn't created")
     val headers = stream.takeHeaders(callerIsIdle = expectContinue)
     val responseBuilder = readHttp2HeadersList(headers, protocol)
+    if (chain.call.forWebSocket && responseBuilder.code == HTTP_OK) {
+      // Like an upgraded HTTP/1.1 socket, an established web socket stream has no timeouts.
+      stream.readTimeout().clearTimeout()
+      stream.writeTimeout().clearTimeout()
+    }
     return if (expectContinue && responseBuilder.code == HTTP_CONTINUE) {
       null
     } else {
@@ -135,6 +157,7 @@ class Http2ExchangeCodec(
     private const val TE = "te"
     private const val ENCODING = "encoding"
     private const val UPGRADE = "upgrade"
+    private val SEC_WEBSOCKET_KEY = "sec-websocket-key".encodeUtf8()
 
     /** See http://tools.ietf.org/html/draft-ietf-httpbis-http2-09#section-8.1.3. */
     private val HTTP_2_SKIPPED_REQUEST_HEADERS =
@@ -175,7 +198,42 @@ class Http2ExchangeCodec(
       }
       result.add(Header(TARGET_SCHEME, request.url.scheme))
 
-      for (i in 0 until headers.size) {
+      val prefixHeaderList = prefixHttp2HeaderList(headers)
+      if (prefixHeaderList != null) {
+        result.addAll(prefixHeaderList)
+        addHttp2Headers(result, headers, headers.caches!!.prefix!!.size, headers.size)
+      } else {
+        addHttp2Headers(result, headers, 0, headers.size)
+      }
+      return result
+    }
+
+    /**
+     * Returns the header fields of the headers that [headers] begin with, or null if they don't
+     * begin with reused headers. The fields are cached the second time the prefix is encoded, so
+     * headers built from a template share the same [Header] instances on every request.
+     */
+    internal fun prefixHttp2HeaderList(headers: Headers): List<Header>? {
+      val prefix = headers.caches?.prefix ?: return null
+      val cached = prefix.http2HeaderList
+      if (cached != null) return cached
+      if (!prefix.encoded) {
+        prefix.encoded = true
+        return null
+      }
+
+      val result = ArrayList<Header>(prefix.size)
+      addHttp2Headers(result, headers, 0, prefix.size)
+      return result.also { prefix.http2HeaderList = it }
+    }
+
+    private fun addHttp2Headers(
+      result: MutableList<Header>,
+      headers: Headers,
+      startIndex: Int,
+      endIndex: Int,
+    ) {
+      for (i in startIndex until endIndex) {
         // header names must be lowercase.
         val name = headers.name(i).lowercase(Locale.US)
         if (name !in HTTP_2_SKIPPED_REQUEST_HEADERS ||
@@ -185,6 +243,26 @@ class Http2ExchangeCodec(
           result.add(Header(name, headers.value(i)))
         }
       }
+    }
+
+    /**
+     * Returns the headers of an extended CONNECT request that bootstraps [protocol] on a stream.
+     * See [RFC 8441][rfc_8441].
+     *
+     * [rfc_8441]: https://datatracker.ietf.org/doc/html/rfc8441
+     */
+    fun extendedConnectHeadersList(
+      request: Request,
+      protocol: String,
+    ): List<Header> {
+      val result = ArrayList<Header>(request.headers.size + 5)
+      result.add(Header(TARGET_METHOD, "CONNECT"))
+      result.add(Header(TARGET_PROTOCOL, protocol))
+      for (header in http2HeadersList(request)) {
+        // The handshake's key and accept headers are replaced by the stream itself.
+        if (header.name == TARGET_METHOD || header.name == SEC_WEBSOCKET_KEY) continue
+        result.add(header)
+      }
       return result
     }
 
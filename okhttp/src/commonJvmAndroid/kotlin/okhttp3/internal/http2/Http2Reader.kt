@@ -30,12 +30,14 @@ import okhttp3.internal.http2.Http2.FLAG_END_STREAM
 import okhttp3.internal.http2.Http2.FLAG_PADDED
 import okhttp3.internal.http2.Http2.FLAG_PRIORITY
 import okhttp3.internal.http2.Http2.INITIAL_MAX_FRAME_SIZE
+import okhttp3.internal.http2.Http2.TYPE_ALTSVC
 import okhttp3.internal.http2.Http2.TYPE_CONTINUATION
 import okhttp3.internal.http2.Http2.TYPE_DATA
 import okhttp3.internal.http2.Http2.TYPE_GOAWAY
 import okhttp3.internal.http2.Http2.TYPE_HEADERS
 import okhttp3.internal.http2.Http2.TYPE_PING
 import okhttp3.internal.http2.Http2.TYPE_PRIORITY
+import okhttp3.internal.http2.Http2.TYPE_PRIORITY_UPDATE
 import okhttp3.internal.http2.Http2.TYPE_PUSH_PROMISE
 import okhttp3.internal.http2.Http2.TYPE_RST_STREAM
 import okhttp3.internal.http2.Http2.TYPE_SETTINGS
@@ -57,15 +59,16 @@ import okio.Timeout
  * peer. Hence, we expect all frames to have a max length of [Http2.INITIAL_MAX_FRAME_SIZE].
  */
 class Http2Reader(
-  /** Creates a frame reader with max header table size of 4096. */
   private val source: BufferedSource,
   private val client: Boolean,
+  /** The header table size that we advertise to the peer. */
+  headerTableSize: Int = Hpack.SETTINGS_HEADER_TABLE_SIZE,
 ) : Closeable {
   private val continuation: ContinuationSource = ContinuationSource(this.source)
   private val hpackReader: Hpack.Reader =
     Hpack.Reader(
       source = continuation,
-      headerTableSizeSetting = 4096,
+      headerTableSizeSetting = headerTableSize,
     )
 
   @Throws(IOException::class)
@@ -132,6 +135,8 @@ class Http2Reader(
       TYPE_PING -> readPing(handler, length, flags, streamId)
       TYPE_GOAWAY -> readGoAway(handler, length, flags, streamId)
       TYPE_WINDOW_UPDATE -> readWindowUpdate(handler, length, flags, streamId)
+      TYPE_ALTSVC -> readAlternateService(handler, length, flags, streamId)
+      TYPE_PRIORITY_UPDATE -> readPriorityUpdate(handler, length, flags, streamId)
       else -> source.skip(length.toLong()) // Implementations MUST discard frames of unknown types.
     }
 
@@ -226,6 +231,35 @@ class Http2Reader(
     handler.priority(streamId, streamDependency, weight, exclusive)
   }
 
+  @Throws(IOException::class)
+  private fun readPriorityUpdate(
+    handler: Handler,
+    length: Int,
+    flags: Int,
+    streamId: Int,
+  ) {
+    if (length < 4) throw IOException("TYPE_PRIORITY_UPDATE length < 4: $length")
+    if (streamId != 0) throw IOException("TYPE_PRIORITY_UPDATE streamId != 0")
+    val prioritizedStreamId = source.readInt() and 0x7fffffff
+    val priorityFieldValue = source.readUtf8(length - 4L)
+    handler.priorityUpdate(prioritizedStreamId, priorityFieldValue)
+  }
+
+  @Throws(IOException::class)
+  private fun readAlternateService(
+    handler: Handler,
+    length: Int,
+    flags: Int,
+    streamId: Int,
+  ) {
+    if (length < 2) throw IOException("TYPE_ALTSVC length < 2: $length")
+    val originLength = source.readShort() and 0xffff
+    if (originLength > length - 2) throw IOException("TYPE_ALTSVC origin length: $originLength")
+    val origin = source.readUtf8(originLength.toLong())
+    val altSvc = source.readUtf8(length - 2L - originLength)
+    handler.alternateService(streamId, origin, altSvc)
+  }
+
   @Throws(IOException::class)
   private fun readRstStream(
     handler: Handler,
@@ -537,6 +571,19 @@ class Http2Reader(
       exclusive: Boolean,
     )
 
+    /**
+     * Called when reading an [RFC 9218][rfc_9218] `PRIORITY_UPDATE` frame.
+     *
+     * [rfc_9218]: https://datatracker.ietf.org/doc/html/rfc9218#section-7.1
+     *
+     * @param prioritizedStreamId stream which has a priority change.
+     * @param priorityFieldValue the new priority, formatted like the `Priority` header.
+     */
+    fun priorityUpdate(
+      prioritizedStreamId: Int,
+      priorityFieldValue: String,
+    )
+
     /**
      * HTTP/2 only. Receive a push promise header block.
      *
@@ -559,9 +606,9 @@ class Http2Reader(
      * HTTP/2 only. Expresses that resources for the connection or a client- initiated stream are
      * available from a different network location or protocol configuration.
      *
-     * See [alt-svc][alt_svc].
+     * See [RFC 7838][rfc_7838].
      *
-     * [alt_svc]: http://tools.ietf.org/html/draft-ietf-httpbis-alt-svc-01
+     * [rfc_7838]: https://datatracker.ietf.org/doc/html/rfc7838#section-4
      *
      * @param streamId when a client-initiated stream ID (odd number), the origin of this alternate
      *     service is the origin of the stream. When zero, the origin is specified in the `origin`
@@ -569,18 +616,13 @@ class Http2Reader(
      * @param origin when present, the [origin](http://tools.ietf.org/html/rfc6454) is typically
      *     represented as a combination of scheme, host and port. When empty, the origin is that of
      *     the `streamId`.
-     * @param protocol an ALPN protocol, such as `h2`.
-     * @param host an IP address or hostname.
-     * @param port the IP port associated with the service.
-     * @param maxAge time in seconds that this alternative is considered fresh.
+     * @param altSvc the alternatives, formatted like the value of an `Alt-Svc` header, such as
+     *     `h2="alt.example.com:8443"; ma=3600`.
      */
     fun alternateService(
       streamId: Int,
       origin: String,
-      protocol: ByteString,
-      host: String,
-      port: Int,
-      maxAge: Long,
+      altSvc: String,
     )
   }
 
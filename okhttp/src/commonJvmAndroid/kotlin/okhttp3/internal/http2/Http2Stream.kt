@@ -15,7 +15,6 @@
  */
 package okhttp3.internal.http2
 
-import java.io.EOFException
 import java.io.IOException
 import java.io.InterruptedIOException
 import java.net.SocketTimeoutException
@@ -60,6 +59,10 @@ class Http2Stream internal constructor(
   var writeBytesMaximum: Long = connection.peerSettings.initialWindowSize.toLong()
     internal set
 
+  /** This stream's RFC 9218 priority, used to schedule its outgoing `DATA` frames. */
+  @Volatile var priority: Priority = headers?.let { Priority.parse(it) } ?: Priority.DEFAULT
+    internal set
+
   /** Received headers yet to be [taken][takeHeaders]. */
   private val headersQueue = ArrayDeque<Headers>()
 
@@ -68,7 +71,9 @@ class Http2Stream internal constructor(
 
   override val source =
     FramingSource(
-      maxByteCount = connection.okHttpSettings.initialWindowSize.toLong(),
+      maxByteCount =
+        connection.okHttpSettings.initialWindowSize.toLong() +
+          connection.unacknowledgedWindowShrinkByteCount,
       finished = inFinished,
     )
   override val sink =
@@ -350,8 +355,11 @@ class Http2Stream internal constructor(
    * readers.
    */
   inner class FramingSource internal constructor(
-    /** Maximum number of bytes to buffer before reporting a flow control error. */
-    private val maxByteCount: Long,
+    /**
+     * Maximum number of bytes to buffer before reporting a flow control error. Guarded by
+     * Http2Stream.this.
+     */
+    internal var maxByteCount: Long,
     /**
      * True if either side has cleanly shut down this stream. We will receive no more bytes beyond
      * those already in the buffer.
@@ -384,45 +392,48 @@ class Http2Stream internal constructor(
         var tryAgain = false
         var readBytesDelivered = -1L
         var errorExceptionToDeliver: IOException? = null
+        val receiveBudgetShare = connection.receiveBudgetShare()
 
         // 1. Decide what to do in a synchronized block.
 
         withLock {
-          val doReadTimeout = doReadTimeout()
-          if (doReadTimeout) {
-            readTimeout.enter()
+          if (errorCode != null && !finished) {
+            // Prepare to deliver an error.
+            errorExceptionToDeliver = errorException ?: StreamResetException(errorCode!!)
           }
-          try {
-            if (errorCode != null && !finished) {
-              // Prepare to deliver an error.
-              errorExceptionToDeliver = errorException ?: StreamResetException(errorCode!!)
-            }
 
-            if (closed) {
-              throw IOException("stream closed")
-            } else if (readBuffer.size > 0L) {
-              // Prepare to read bytes. Start by moving them to the caller's buffer.
-              readBytesDelivered = readBuffer.read(sink, minOf(byteCount, readBuffer.size))
-              readBytes.update(total = readBytesDelivered)
-
-              val unacknowledgedBytesRead = readBytes.unacknowledged
-              if (errorExceptionToDeliver == null &&
-                unacknowledgedBytesRead >= connection.okHttpSettings.initialWindowSize / 2
-              ) {
-                // Flow control: notify the peer that we're ready for more data! Only send a
-                // WINDOW_UPDATE if the stream isn't in error.
-                connection.writeWindowUpdateLater(id, unacknowledgedBytesRead)
-                readBytes.update(acknowledged = unacknowledgedBytesRead)
-              }
-            } else if (!finished && errorExceptionToDeliver == null) {
-              // Nothing to do. Wait until that changes then try again.
-              waitForIo()
-              tryAgain = true
+          if (closed) {
+            throw IOException("stream closed")
+          } else if (readBuffer.size > 0L) {
+            // Prepare to read bytes. Start by moving them to the caller's buffer.
+            readBytesDelivered = readBuffer.read(sink, minOf(byteCount, readBuffer.size))
+            readBytes.update(total = readBytesDelivered)
+
+            val unacknowledgedBytesRead = readBytes.unacknowledged
+            if (errorExceptionToDeliver == null &&
+              unacknowledgedBytesRead >= connection.okHttpSettings.initialWindowSize / 2 &&
+              readBuffer.size <= receiveBudgetShare
+            ) {
+              // Flow control: notify the peer that we're ready for more data! Only send a
+              // WINDOW_UPDATE if the stream isn't in error.
+              connection.writeWindowUpdateLater(id, unacknowledgedBytesRead)
+              readBytes.update(acknowledged = unacknowledgedBytesRead)
             }
-          } finally {
+          } else if (!finished && errorExceptionToDeliver == null) {
+            // Nothing to do. Wait until that changes then try again. Only waiting is timed, so
+            // reads of buffered data don't schedule and cancel a timeout each time.
+            val doReadTimeout = doReadTimeout()
             if (doReadTimeout) {
-              readTimeout.exitAndThrowIfTimedOut()
+              readTimeout.enter()
             }
+            try {
+              waitForIo()
+            } finally {
+              if (doReadTimeout) {
+                readTimeout.exitAndThrowIfTimedOut()
+              }
+            }
+            tryAgain = true
           }
         }
         connection.flowControlListener.receivingStreamWindowChanged(id, readBytes, readBuffer.size)
@@ -434,6 +445,7 @@ class Http2Stream internal constructor(
         }
 
         if (readBytesDelivered != -1L) {
+          connection.bytesConsumed(readBytesDelivered)
           return readBytesDelivered
         }
 
@@ -466,46 +478,42 @@ class Http2Stream internal constructor(
     ) {
       assertLockNotHeld()
 
-      var remainingByteCount = byteCount
-
-      while (remainingByteCount > 0L) {
-        val finished: Boolean
-        val flowControlError: Boolean
-        withLock {
-          finished = this.finished
-          flowControlError = remainingByteCount + readBuffer.size > maxByteCount
-        }
+      val finished: Boolean
+      val flowControlError: Boolean
+      withLock {
+        finished = this.finished
+        flowControlError = byteCount + readBuffer.size > maxByteCount
+      }
 
-        // If the peer sends more data than we can handle, discard it and close the connection.
-        if (flowControlError) {
-          source.skip(remainingByteCount)
-          closeLater(ErrorCode.FLOW_CONTROL_ERROR)
-          return
-        }
+      // If the peer sends more data than we can handle, discard it and close the connection.
+      if (flowControlError) {
+        source.skip(byteCount)
+        closeLater(ErrorCode.FLOW_CONTROL_ERROR)
+        return
+      }
 
-        // Discard data received after the stream is finished. It's probably a benign race.
-        if (finished) {
-          source.skip(remainingByteCount)
-          return
-        }
+      // Discard data received after the stream is finished. It's probably a benign race.
+      if (finished) {
+        source.skip(byteCount)
+        return
+      }
 
-        // Fill the receive buffer without holding any locks.
-        val read = source.read(receiveBuffer, remainingByteCount)
-        if (read == -1L) throw EOFException()
-        remainingByteCount -= read
+      // Fill the receive buffer with the entire frame without holding any locks. This moves the
+      // source's segments into the receive buffer; it doesn't copy their bytes.
+      source.readFully(receiveBuffer, byteCount)
 
-        // Move the received data to the read buffer to the reader can read it. If this source has
-        // been closed since this read began we must discard the incoming data and tell the
-        // connection we've done so.
-        withLock {
-          if (closed) {
-            receiveBuffer.clear()
-          } else {
-            val wasEmpty = readBuffer.size == 0L
-            readBuffer.writeAll(receiveBuffer)
-            if (wasEmpty) {
-              notifyAll()
-            }
+      // Move the received data to the read buffer to the reader can read it. If this source has
+      // been closed since this read began we must discard the incoming data and tell the
+      // connection we've done so.
+      withLock {
+        if (closed) {
+          receiveBuffer.clear()
+        } else {
+          val wasEmpty = readBuffer.size == 0L
+          connection.bytesBuffered(byteCount)
+          readBuffer.writeAll(receiveBuffer)
+          if (wasEmpty) {
+            notifyAll()
           }
         }
       }
@@ -532,6 +540,7 @@ class Http2Stream internal constructor(
         notifyAll() // TODO(jwilson): Unnecessary?
       }
       if (bytesDiscarded > 0L) {
+        connection.bytesConsumed(bytesDiscarded)
         updateConnectionFlowControl(bytesDiscarded)
       }
       cancelStreamIfNecessary()
@@ -617,7 +626,7 @@ class Http2Stream internal constructor(
 
       writeTimeout.enter()
       try {
-        connection.writeData(id, outFinished, sendBuffer, toWrite)
+        connection.writeData(id, outFinished, sendBuffer, toWrite, priority)
       } finally {
         writeTimeout.exitAndThrowIfTimedOut()
       }
@@ -694,6 +703,13 @@ class Http2Stream internal constructor(
     }
   }
 
+  /** Changes this stream's priority and sends it to the peer. Only clients may do this. */
+  @Throws(IOException::class)
+  fun updatePriority(priority: Priority) {
+    this.priority = priority
+    connection.writePriorityUpdate(id, priority)
+  }
+
   @Throws(IOException::class)
   internal fun checkOutNotClosed() {
     when {
@@ -19,6 +19,7 @@ import java.io.Closeable
 import java.io.IOException
 import java.util.logging.Level.FINE
 import java.util.logging.Logger
+import okhttp3.HeaderIndexingStrategy
 import okhttp3.internal.concurrent.Lockable
 import okhttp3.internal.concurrent.withLock
 import okhttp3.internal.format
@@ -28,11 +29,13 @@ import okhttp3.internal.http2.Http2.FLAG_END_HEADERS
 import okhttp3.internal.http2.Http2.FLAG_END_STREAM
 import okhttp3.internal.http2.Http2.FLAG_NONE
 import okhttp3.internal.http2.Http2.INITIAL_MAX_FRAME_SIZE
+import okhttp3.internal.http2.Http2.TYPE_ALTSVC
 import okhttp3.internal.http2.Http2.TYPE_CONTINUATION
 import okhttp3.internal.http2.Http2.TYPE_DATA
 import okhttp3.internal.http2.Http2.TYPE_GOAWAY
 import okhttp3.internal.http2.Http2.TYPE_HEADERS
 import okhttp3.internal.http2.Http2.TYPE_PING
+import okhttp3.internal.http2.Http2.TYPE_PRIORITY_UPDATE
 import okhttp3.internal.http2.Http2.TYPE_PUSH_PROMISE
 import okhttp3.internal.http2.Http2.TYPE_RST_STREAM
 import okhttp3.internal.http2.Http2.TYPE_SETTINGS
@@ -42,18 +45,32 @@ import okhttp3.internal.http2.Http2.frameLogWindowUpdate
 import okhttp3.internal.writeMedium
 import okio.Buffer
 import okio.BufferedSink
+import okio.ByteString.Companion.encodeUtf8
 
 /** Writes HTTP/2 transport frames. */
 @Suppress("NAME_SHADOWING")
 class Http2Writer(
   private val sink: BufferedSink,
   private val client: Boolean,
+  headerTableSizeLimit: Int = Hpack.SETTINGS_HEADER_TABLE_SIZE_LIMIT,
+  headerIndexingStrategy: HeaderIndexingStrategy = HeaderIndexingStrategy.INDEX_ALL,
 ) : Closeable,
   Lockable {
   private val hpackBuffer: Buffer = Buffer()
   private var maxFrameSize: Int = INITIAL_MAX_FRAME_SIZE
   private var closed: Boolean = false
-  val hpackWriter: Hpack.Writer = Hpack.Writer(out = hpackBuffer)
+
+  /** True while writing a [batch]. Frames written in a batch are flushed once at its end. */
+  private var batching: Boolean = false
+  val hpackWriter: Hpack.Writer =
+    Hpack.Writer(
+      out = hpackBuffer,
+      headerTableSizeLimit = headerTableSizeLimit,
+      indexingStrategy = headerIndexingStrategy,
+    )
+
+  /** Orders `DATA` frames from different streams by their priority. */
+  private val dataFrameScheduler = DataFrameScheduler()
 
   @Throws(IOException::class)
   fun connectionPreface() {
@@ -132,6 +149,25 @@ class Http2Writer(
     }
   }
 
+  /** Writes the frames in [block] with a single flush, rather than flushing after each frame. */
+  @Throws(IOException::class)
+  fun batch(block: () -> Unit) {
+    withLock {
+      batching = true
+      try {
+        block()
+      } finally {
+        batching = false
+      }
+      if (closed) throw IOException("closed")
+      sink.flush()
+    }
+  }
+
+  private fun flushUnlessBatching() {
+    if (!batching) sink.flush()
+  }
+
   @Throws(IOException::class)
   fun rstStream(
     streamId: Int,
@@ -148,7 +184,7 @@ class Http2Writer(
         flags = FLAG_NONE,
       )
       sink.writeInt(errorCode.httpCode)
-      sink.flush()
+      flushUnlessBatching()
     }
   }
 
@@ -168,12 +204,19 @@ class Http2Writer(
     streamId: Int,
     source: Buffer?,
     byteCount: Int,
+    priority: Priority = Priority.DEFAULT,
   ) {
-    withLock {
-      if (closed) throw IOException("closed")
-      var flags = FLAG_NONE
-      if (outFinished) flags = flags or FLAG_END_STREAM
-      dataFrame(streamId, flags, source, byteCount)
+    // When several streams are writing, wait until this stream's priority gives it a turn.
+    dataFrameScheduler.acquire(streamId, priority)
+    try {
+      withLock {
+        if (closed) throw IOException("closed")
+        var flags = FLAG_NONE
+        if (outFinished) flags = flags or FLAG_END_STREAM
+        dataFrame(streamId, flags, source, byteCount)
+      }
+    } finally {
+      dataFrameScheduler.release()
     }
   }
 
@@ -235,7 +278,7 @@ class Http2Writer(
       )
       sink.writeInt(payload1)
       sink.writeInt(payload2)
-      sink.flush()
+      flushUnlessBatching()
     }
   }
 
@@ -271,6 +314,54 @@ class Http2Writer(
     }
   }
 
+  /** Changes the priority of [prioritizedStreamId]. This frame is sent by clients only. */
+  @Throws(IOException::class)
+  fun priorityUpdate(
+    prioritizedStreamId: Int,
+    priority: Priority,
+  ) {
+    withLock {
+      if (closed) throw IOException("closed")
+      val priorityFieldValue = priority.toString().encodeUtf8()
+      frameHeader(
+        streamId = 0,
+        length = 4 + priorityFieldValue.size,
+        type = TYPE_PRIORITY_UPDATE,
+        flags = FLAG_NONE,
+      )
+      sink.writeInt(prioritizedStreamId and 0x7fffffff)
+      sink.write(priorityFieldValue)
+      sink.flush()
+    }
+  }
+
+  /**
+   * Advertises alternative services for [origin], or for the origin of [streamId] if it is nonzero.
+   * This frame is sent by servers only.
+   */
+  @Throws(IOException::class)
+  fun alternateService(
+    streamId: Int,
+    origin: String,
+    altSvc: String,
+  ) {
+    withLock {
+      if (closed) throw IOException("closed")
+      val originBytes = origin.encodeUtf8()
+      val altSvcBytes = altSvc.encodeUtf8()
+      frameHeader(
+        streamId = streamId,
+        length = 2 + originBytes.size + altSvcBytes.size,
+        type = TYPE_ALTSVC,
+        flags = FLAG_NONE,
+      )
+      sink.writeShort(originBytes.size)
+      sink.write(originBytes)
+      sink.write(altSvcBytes)
+      sink.flush()
+    }
+  }
+
   /**
    * Inform peer that an additional `windowSizeIncrement` bytes can be sent on `streamId`, or the
    * connection if `streamId` is zero.
@@ -302,7 +393,7 @@ class Http2Writer(
         flags = FLAG_NONE,
       )
       sink.writeInt(windowSizeIncrement.toInt())
-      sink.flush()
+      flushUnlessBatching()
     }
   }
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import okhttp3.Headers
+import okio.ByteString.Companion.encodeUtf8
+
+/**
+ * An [RFC 9218][rfc_9218] priority, as carried by the `Priority` header and `PRIORITY_UPDATE`
+ * frames.
+ *
+ * [rfc_9218]: https://datatracker.ietf.org/doc/html/rfc9218
+ */
+data class Priority(
+  /** From 0 (most urgent) to 7 (least urgent). */
+  val urgency: Int = DEFAULT_URGENCY,
+  /** True if the response can be used before it is complete. */
+  val incremental: Boolean = false,
+) {
+  init {
+    require(urgency in 0..7) { "urgency out of range: $urgency" }
+  }
+
+  /** Returns this priority as a structured field value, like `u=1, i`. Defaults are omitted. */
+  override fun toString(): String =
+    when {
+      urgency == DEFAULT_URGENCY && incremental -> "i"
+      urgency == DEFAULT_URGENCY -> ""
+      incremental -> "u=$urgency, i"
+      else -> "u=$urgency"
+    }
+
+  companion object {
+    const val DEFAULT_URGENCY = 3
+
+    private val PRIORITY = "priority".encodeUtf8()
+
+    @JvmField
+    val DEFAULT = Priority()
+
+    /**
+     * Returns the priority in [value], a structured field dictionary like `u=5, i`. Unknown and
+     * malformed members are ignored.
+     */
+    fun parse(value: String?): Priority {
+      if (value.isNullOrEmpty()) return DEFAULT
+
+      var urgency = DEFAULT_URGENCY
+      var incremental = false
+      for (member in value.split(',')) {
+        val item = member.substringBefore(';').trim()
+        val key = item.substringBefore('=')
+        val itemValue = if (key.length < item.length) item.substring(key.length + 1) else null
+        when (key) {
+          "u" -> {
+            val u = itemValue?.toIntOrNull()
+            if (u != null && u in 0..7) urgency = u
+          }
+
+          "i" -> {
+            when (itemValue) {
+              null, "?1" -> incremental = true
+              "?0" -> incremental = false
+            }
+          }
+        }
+      }
+
+      return Priority(urgency, incremental)
+    }
+
+    /** Returns the priority in the `Priority` header of [headers]. */
+    fun parse(headers: Headers): Priority = parse(headers["Priority"])
+
+    /** Returns the priority in the `priority` header of [headerBlock]. */
+    fun parse(headerBlock: List<Header>): Priority {
+      for (header in headerBlock) {
+        if (header.name == PRIORITY) return parse(header.value.utf8())
+      }
+      return DEFAULT
+    }
+  }
+}
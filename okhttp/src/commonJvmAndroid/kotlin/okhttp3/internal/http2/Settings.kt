@@ -91,6 +91,12 @@ class Settings {
     return if (bit and set != 0) values[MAX_HEADER_LIST_SIZE] else defaultValue
   }
 
+  /** Returns true if the sender accepts extended CONNECT requests. */
+  fun getEnableConnectProtocol(): Boolean {
+    val bit = 1 shl ENABLE_CONNECT_PROTOCOL
+    return bit and set != 0 && values[ENABLE_CONNECT_PROTOCOL] == 1
+  }
+
   /**
    * Writes `other` into this. If any setting is populated by this and `other`, the
    * value and flags from `other` will be kept.
@@ -127,6 +133,12 @@ class Settings {
     /** HTTP/2: Advisory only. Size in bytes of the largest header list the sender will accept. */
     const val MAX_HEADER_LIST_SIZE = 6
 
+    /** RFC 8441: 1 if the sender accepts extended CONNECT requests, like for web sockets. */
+    const val ENABLE_CONNECT_PROTOCOL = 8
+
+    /** RFC 9218: 1 if the sender doesn't use the RFC 7540 priority scheme. */
+    const val NO_RFC7540_PRIORITIES = 9
+
     /** Total number of settings. */
     const val COUNT = 10
   }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import java.util.concurrent.TimeUnit
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.Task
+import okhttp3.internal.concurrent.TaskRunner
+import okhttp3.internal.concurrent.withLock
+import okhttp3.internal.okHttpName
+
+/**
+ * Watches the sockets of idle HTTP/2 connections so their readers don't each occupy a thread.
+ *
+ * A connection's reader runs on a thread of its own while the connection carries streams. Once it
+ * has no streams and no bytes arrive promptly, the reader parks: its task returns and this watches
+ * the socket on its behalf. The reader resumes when the socket is readable, or when the connection
+ * creates a stream or sends a ping.
+ *
+ * Polling can't tell whether the peer has closed the socket: an exhausted socket has no bytes
+ * available, just like an idle one. Readers that have been parked for [initialParkNanos] resume so
+ * they read the socket themselves, which observes end of stream. They park again if there's still
+ * nothing to read, and each time that happens the reader stays parked twice as long, up to
+ * [maxParkNanos]. Reading a frame resets this.
+ *
+ * Sockets are polled rather than registered with a selector, because the sockets that OkHttp
+ * connects with pluggable socket factories only offer blocking streams. Polling checks the bytes
+ * available beneath TLS too, so encrypted records are noticed before they're decrypted.
+ */
+class SharedReader(
+  taskRunner: TaskRunner,
+  private val pollIntervalNanos: Long = DEFAULT_POLL_INTERVAL_NANOS,
+  private val initialParkNanos: Long = DEFAULT_INITIAL_PARK_NANOS,
+  private val maxParkNanos: Long = DEFAULT_MAX_PARK_NANOS,
+) : Lockable {
+  private val backend = taskRunner.backend
+  private val taskQueue = taskRunner.newQueue()
+
+  private val pollTask =
+    object : Task("$okHttpName Http2 shared reader") {
+      override fun runOnce(): Long = poll()
+    }
+
+  /**
+   * Connections whose readers are parked, and when they resume regardless of whether there's
+   * anything to read. Guarded by this. Connections call
+   * [park] and [unpark] while holding their own lock, so this must not take a connection's lock
+   * while holding its own.
+   */
+  private val parked = LinkedHashMap<Http2Connection, Long>()
+
+  val parkedConnectionCount: Int
+    get() = withLock { parked.size }
+
+  /**
+   * Parks [connection]'s reader. [emptyParkCount] is the number of times in a row that the reader
+   * parked without reading a frame in between.
+   */
+  internal fun park(
+    connection: Http2Connection,
+    emptyParkCount: Int,
+  ) {
+    withLock {
+      parked[connection] = backend.nanoTime() + parkNanos(emptyParkCount)
+    }
+    taskQueue.schedule(pollTask, pollIntervalNanos)
+  }
+
+  private fun parkNanos(emptyParkCount: Int): Long {
+    var result = initialParkNanos
+    repeat(emptyParkCount) {
+      if (result >= maxParkNanos / 2) return maxParkNanos
+      result *= 2
+    }
+    return minOf(result, maxParkNanos)
+  }
+
+  internal fun unpark(connection: Http2Connection) {
+    withLock {
+      parked -= connection
+    }
+  }
+
+  /** Resumes the readers of connections with bytes to read, or that have been parked too long. */
+  private fun poll(): Long {
+    val connections = withLock { parked.toList() }
+    val now = backend.nanoTime()
+    for ((connection, resumeAtNanos) in connections) {
+      if (now - resumeAtNanos >= 0L || connection.isReadableWhileParked()) {
+        connection.resumeReading()
+      }
+    }
+    return withLock {
+      if (parked.isEmpty()) -1L else pollIntervalNanos
+    }
+  }
+
+  /** Checks whether a connection's socket has bytes to read. */
+  interface Probe {
+    /**
+     * Returns true if bytes are available to read now, or if the socket failed. This doesn't block,
+     * so it may not notice that the socket is exhausted.
+     */
+    fun isReadable(): Boolean
+
+    /**
+     * Returns true if bytes arrive within [timeoutMillis], or if the socket is exhausted or failed.
+     * This may read bytes into the connection's source buffer.
+     */
+    fun awaitReadable(timeoutMillis: Int): Boolean
+  }
+
+  companion object {
+    val DEFAULT_POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+    val DEFAULT_INITIAL_PARK_NANOS = TimeUnit.SECONDS.toNanos(1)
+    val DEFAULT_MAX_PARK_NANOS = TimeUnit.MINUTES.toNanos(5)
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+/**
+ * Estimates the bandwidth-delay product (BDP) of a connection to size its receive windows.
+ *
+ * When a `DATA` frame arrives and no estimate is underway, the connection sends a `PING`. The bytes
+ * received until its `PONG` arrives are a sample of the BDP, and the ping's round trip is a sample
+ * of the RTT. If a sample nearly fills the window while bandwidth is at its highest, throughput is
+ * limited by the window and it grows to twice the sample.
+ *
+ * If the application isn't keeping up, larger windows only let the peer fill our buffers. When the
+ * bytes buffered on a connection exceed the window, it shrinks by half.
+ *
+ * This is modeled on gRPC's BDP estimator. Instances are not thread-safe.
+ */
+class BdpEstimator(
+  private val minimumWindowSize: Int = MINIMUM_WINDOW_SIZE,
+  private val maximumWindowSize: Int = MAXIMUM_WINDOW_SIZE,
+) {
+  private var pingSentAtNs = 0L
+  private var pingInFlight = false
+
+  /** Bytes received since the current ping was requested. */
+  private var sample = 0L
+  private var sampleCount = 0
+  private var rttNs = 0.0
+  private var maxBandwidth = 0.0
+
+  /** Returns true if the caller should send a ping to start a new sample. */
+  fun dataReceived(byteCount: Long): Boolean {
+    sample += byteCount
+    if (pingInFlight) return false
+    pingInFlight = true
+    sample = byteCount
+    return true
+  }
+
+  /** Records that the ping requested by [dataReceived] was sent at [nowNs]. */
+  fun pingSent(nowNs: Long) {
+    pingSentAtNs = nowNs
+  }
+
+  /**
+   * Completes the current sample. Returns the new window size, or -1 if it is unchanged.
+   *
+   * @param windowSize the current receive window size.
+   * @param bufferedByteCount bytes received on the connection and not yet consumed.
+   */
+  fun pongReceived(
+    nowNs: Long,
+    windowSize: Int,
+    bufferedByteCount: Long,
+  ): Int {
+    if (!pingInFlight) return -1
+    pingInFlight = false
+
+    val rttSample = (nowNs - pingSentAtNs).coerceAtLeast(1L).toDouble()
+    sampleCount++
+    rttNs +=
+      when {
+        sampleCount < 10 -> (rttSample - rttNs) / sampleCount
+        else -> (rttSample - rttNs) * RTT_SMOOTHING
+      }
+
+    val bandwidth = sample / (rttNs * 1.5)
+    maxBandwidth = maxOf(maxBandwidth, bandwidth)
+
+    // The application isn't consuming what it receives. Shrink to limit what's buffered.
+    if (bufferedByteCount > windowSize) {
+      val newWindowSize = maxOf(windowSize / 2, minimumWindowSize)
+      return if (newWindowSize < windowSize) newWindowSize else -1
+    }
+
+    // Throughput is limited by the window. Grow it.
+    if (sample >= windowSize * WINDOW_LIMITED_FRACTION &&
+      bandwidth >= maxBandwidth &&
+      bufferedByteCount < windowSize / 2
+    ) {
+      val newWindowSize = minOf(sample * 2, maximumWindowSize.toLong()).toInt()
+      if (newWindowSize > windowSize) return newWindowSize
+    }
+
+    return -1
+  }
+
+  companion object {
+    const val MINIMUM_WINDOW_SIZE = 64 * 1024
+    const val MAXIMUM_WINDOW_SIZE = 64 * 1024 * 1024
+
+    /** A sample this fraction of the window means throughput is limited by the window. */
+    const val WINDOW_LIMITED_FRACTION = 2.0 / 3.0
+
+    /** Weight of each new RTT sample once the estimate is established. */
+    const val RTT_SMOOTHING = 0.9
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.withLock
+
+/**
+ * Counts bytes that were received from the peer but not yet consumed by the application.
+ *
+ * Budgets nest: each connection has its own budget whose [parent] is shared by all connections of
+ * a client. Bytes counted by a budget are also counted by its parent.
+ *
+ * This doesn't refuse bytes. Instead the connection stops acknowledging received data when its
+ * budget is [exhausted][isExhausted], and the peer stops sending when its window is used up.
+ */
+class ReceiveBudget(
+  val maxByteCount: Long,
+  private val parent: ReceiveBudget? = null,
+) : Lockable {
+  init {
+    require(maxByteCount > 0L) { "maxByteCount <= 0: $maxByteCount" }
+  }
+
+  // All state is guarded by this.
+
+  /** Bytes received and not yet consumed. */
+  var bufferedByteCount = 0L
+    get() = withLock { field }
+    private set
+
+  private var closed = false
+
+  /** The smaller of this budget's limit and its parent's. */
+  val effectiveMaxByteCount: Long
+    get() = minOf(maxByteCount, parent?.effectiveMaxByteCount ?: Long.MAX_VALUE)
+
+  /** True if this budget or its parent is used up. */
+  val isExhausted: Boolean
+    get() = bufferedByteCount >= maxByteCount || parent?.isExhausted == true
+
+  fun received(byteCount: Long) {
+    withLock {
+      if (closed) return
+      bufferedByteCount += byteCount
+    }
+    parent?.received(byteCount)
+  }
+
+  fun consumed(byteCount: Long) {
+    withLock {
+      if (closed) return
+      bufferedByteCount -= byteCount
+    }
+    parent?.consumed(byteCount)
+  }
+
+  /** Returns everything counted by this budget to its parent. Later calls have no effect. */
+  fun close() {
+    val byteCount =
+      withLock {
+        if (closed) return
+        closed = true
+        bufferedByteCount.also { bufferedByteCount = 0L }
+      }
+    parent?.consumed(byteCount)
+  }
+}
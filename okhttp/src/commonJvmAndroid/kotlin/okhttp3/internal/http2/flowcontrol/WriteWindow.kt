@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+import java.io.IOException
+import java.io.InterruptedIOException
+import okhttp3.internal.concurrent.Lockable
+import okhttp3.internal.concurrent.notify
+import okhttp3.internal.concurrent.wait
+import okhttp3.internal.concurrent.withLock
+
+/**
+ * A connection's outbound flow-control window, shared by all of its streams.
+ *
+ * Writers that find the window exhausted wait in a FIFO queue. When the peer grows the window,
+ * credit is handed to waiters in order and only the writers that received credit are woken. Each
+ * grant is at most one frame, so a writer that needs more rejoins the back of the queue. This
+ * shares the window round-robin between streams.
+ *
+ * Each waiter blocks on its own monitor, so many blocked writers don't contend for a single lock.
+ */
+class WriteWindow(
+  initialWindowSize: Long,
+) : Lockable {
+  // All state is guarded by this.
+
+  /** The total number of bytes granted to writers. */
+  var total: Long = 0L
+    private set
+
+  /** The total number of bytes permitted to be written according to `WINDOW_UPDATE` frames. */
+  var maximum: Long = initialWindowSize
+    private set
+
+  private val waiters = ArrayDeque<Waiter>()
+
+  /**
+   * Returns the number of bytes that [streamId] may write, between 1 and [byteCount] and at most
+   * [maxGrant]. This blocks until the window has room for at least one byte.
+   *
+   * @param isOpen returns true if [streamId] is open. This is checked before waiting, and waiters
+   *     are released by [cancel] when the stream is closed.
+   */
+  @Throws(IOException::class)
+  fun acquire(
+    streamId: Int,
+    byteCount: Long,
+    maxGrant: Int,
+    isOpen: () -> Boolean,
+  ): Int {
+    val waiter: Waiter
+    withLock {
+      // Don't barge ahead of writers that are already waiting.
+      if (waiters.isEmpty() && total < maximum) {
+        val grant = minOf(byteCount, maximum - total, maxGrant.toLong()).toInt()
+        total += grant
+        return grant
+      }
+
+      // Before blocking, confirm that the stream we're writing is still open. It's possible that
+      // the stream has since been closed (such as if this write timed out.)
+      if (!isOpen()) throw IOException("stream closed")
+
+      waiter = Waiter(streamId, byteCount, maxGrant)
+      waiters.addLast(waiter)
+    }
+
+    try {
+      return waiter.await()
+    } catch (e: InterruptedException) {
+      withdraw(waiter)
+      Thread.currentThread().interrupt() // Retain interrupted status.
+      throw InterruptedIOException()
+    }
+  }
+
+  /** Grows the window by [delta] bytes and hands the new credit to waiting writers. */
+  fun increase(delta: Long) {
+    withLock {
+      maximum += delta
+      grantToWaiters()
+    }
+  }
+
+  /** Releases the writers waiting to write on [streamId]. They'll throw an [IOException]. */
+  fun cancel(streamId: Int) {
+    withLock {
+      val i = waiters.iterator()
+      while (i.hasNext()) {
+        val waiter = i.next()
+        if (waiter.streamId == streamId) {
+          i.remove()
+          waiter.cancel()
+        }
+      }
+    }
+  }
+
+  /** Releases all waiting writers. They'll throw an [IOException]. */
+  fun cancelAll() {
+    withLock {
+      for (waiter in waiters) {
+        waiter.cancel()
+      }
+      waiters.clear()
+    }
+  }
+
+  private fun grantToWaiters() {
+    while (waiters.isNotEmpty() && total < maximum) {
+      val waiter = waiters.removeFirst()
+      val grant = minOf(waiter.byteCount, maximum - total, waiter.maxGrant.toLong()).toInt()
+      total += grant
+      waiter.grant(grant)
+    }
+  }
+
+  /** Removes an interrupted [waiter], returning its credit if it was granted any. */
+  private fun withdraw(waiter: Waiter) {
+    withLock {
+      if (waiters.remove(waiter)) return
+      val granted = waiter.withLock { waiter.granted }
+      if (granted > 0) {
+        total -= granted
+        grantToWaiters()
+      }
+    }
+  }
+
+  private class Waiter(
+    val streamId: Int,
+    val byteCount: Long,
+    val maxGrant: Int,
+  ) : Lockable {
+    /** Guarded by this. */
+    var granted = 0
+    private var canceled = false
+
+    fun grant(byteCount: Int) {
+      withLock {
+        granted = byteCount
+        notify()
+      }
+    }
+
+    fun cancel() {
+      withLock {
+        canceled = true
+        notify()
+      }
+    }
+
+    @Throws(IOException::class, InterruptedException::class)
+    fun await(): Int {
+      withLock {
+        while (granted == 0 && !canceled) {
+          wait()
+        }
+        if (granted == 0) throw IOException("stream closed")
+        return granted
+      }
+    }
+  }
+}
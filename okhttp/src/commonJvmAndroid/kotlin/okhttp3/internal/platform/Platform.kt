@@ -33,6 +33,7 @@ import javax.net.ssl.TrustManagerFactory
 import javax.net.ssl.X509TrustManager
 import okhttp3.OkHttpClient
 import okhttp3.Protocol
+import okhttp3.TlsSessionCache
 import okhttp3.internal.publicsuffix.PublicSuffixDatabase
 import okhttp3.internal.readFieldOrNull
 import okhttp3.internal.tls.BasicCertificateChainCleaner
@@ -203,6 +204,16 @@ open class Platform {
     }
   }
 
+  /**
+   * Returns a socket factory that also reads and writes client sessions to [tlsSessionCache], so
+   * they can be resumed after the process restarts. Platforms that can't export sessions return a
+   * socket factory that resumes sessions from its in-memory cache only.
+   */
+  open fun newSslSocketFactory(
+    trustManager: X509TrustManager,
+    tlsSessionCache: TlsSessionCache,
+  ): SSLSocketFactory = newSslSocketFactory(trustManager)
+
   override fun toString(): String = javaClass.simpleName
 
   companion object {
@@ -39,6 +39,7 @@ import okhttp3.internal.concurrent.assertLockHeld
 import okhttp3.internal.connection.BufferedSocket
 import okhttp3.internal.connection.RealCall
 import okhttp3.internal.connection.asBufferedSocket
+import okhttp3.internal.http2.ExtendedConnectUnsupportedException
 import okhttp3.internal.okHttpName
 import okhttp3.internal.ws.WebSocketProtocol.CLOSE_CLIENT_GOING_AWAY
 import okhttp3.internal.ws.WebSocketProtocol.CLOSE_MESSAGE_MAX
@@ -154,8 +155,13 @@ class RealWebSocket(
       client
         .newBuilder()
         .eventListener(EventListener.NONE)
-        .protocols(ONLY_HTTP1)
-        .build()
+        .apply {
+          if (!client.webSocketOverHttp2 ||
+            !client.extendedConnectDatabase.isSupported(originalRequest.url)
+          ) {
+            protocols(ONLY_HTTP1)
+          }
+        }.build()
     val request =
       originalRequest
         .newBuilder()
@@ -165,6 +171,13 @@ class RealWebSocket(
         .header("Sec-WebSocket-Version", "13")
         .header("Sec-WebSocket-Extensions", "permessage-deflate")
         .build()
+    connect(webSocketClient, request)
+  }
+
+  private fun connect(
+    webSocketClient: OkHttpClient,
+    request: Request,
+  ) {
     call = RealCall(webSocketClient, request, forWebSocket = true)
     call!!.enqueue(
       object : Callback {
@@ -208,6 +221,12 @@ class RealWebSocket(
           call: Call,
           e: IOException,
         ) {
+          if (e is ExtendedConnectUnsupportedException && !call.isCanceled()) {
+            // The HTTP/2 server doesn't accept web sockets. Retry with an HTTP/1.1 upgrade.
+            webSocketClient.extendedConnectDatabase.unsupported(request.url)
+            connect(webSocketClient.newBuilder().protocols(ONLY_HTTP1).build(), request)
+            return
+          }
           failWebSocket(e)
         }
       },
@@ -230,6 +249,17 @@ class RealWebSocket(
 
   @Throws(IOException::class)
   internal fun checkUpgradeSuccess(response: Response): Socket {
+    if (response.protocol == Protocol.HTTP_2 || response.protocol == Protocol.H2_PRIOR_KNOWLEDGE) {
+      // An extended CONNECT stream is established by a 200 response. There's no key to check.
+      if (response.code != 200) {
+        throw ProtocolException(
+          "Expected HTTP 200 response but was '${response.code} ${response.message}'",
+        )
+      }
+      return response.socket
+        ?: throw ProtocolException("Web Socket socket missing: bad interceptor?")
+    }
+
     if (response.code != 101) {
       throw ProtocolException(
         "Expected HTTP 101 response but was '${response.code} ${response.message}'",
@@ -26,9 +26,12 @@ import javax.net.ssl.TrustManager
 import javax.net.ssl.TrustManagerFactory
 import javax.net.ssl.X509TrustManager
 import okhttp3.Protocol
+import okhttp3.TlsSessionCache
 import okio.ByteString
+import okio.ByteString.Companion.toByteString
 import org.conscrypt.Conscrypt
 import org.conscrypt.ConscryptHostnameVerifier
+import org.conscrypt.SSLClientSessionCache
 
 /**
  * Platform using Conscrypt (conscrypt.org) if installed as the first Security Provider.
@@ -106,6 +109,34 @@ class ConscryptPlatform private constructor() : Platform() {
         init(null, arrayOf<TrustManager>(trustManager), null)
       }.socketFactory
 
+  override fun newSslSocketFactory(
+    trustManager: X509TrustManager,
+    tlsSessionCache: TlsSessionCache,
+  ): SSLSocketFactory =
+    newSSLContext()
+      .apply {
+        init(null, arrayOf<TrustManager>(trustManager), null)
+        Conscrypt.setClientSessionCache(this, TlsSessionCacheAdapter(tlsSessionCache))
+      }.socketFactory
+
+  /** Conscrypt looks up sessions by the peer's host and port, which is how our cache is keyed. */
+  internal class TlsSessionCacheAdapter(
+    private val tlsSessionCache: TlsSessionCache,
+  ) : SSLClientSessionCache {
+    override fun getSessionData(
+      host: String,
+      port: Int,
+    ): ByteArray? = tlsSessionCache.get(host, port)?.toByteArray()
+
+    override fun putSessionData(
+      session: SSLSession,
+      sessionData: ByteArray,
+    ) {
+      val host = session.peerHost ?: return
+      tlsSessionCache.put(host, session.peerPort, sessionData.toByteString())
+    }
+  }
+
   companion object {
     val isSupported: Boolean =
       try {
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isIn
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class AddressSelectionStrategyTest {
+  private val factory = TestValueFactory()
+  private val address = factory.newAddress()
+
+  @AfterEach fun tearDown() {
+    factory.close()
+  }
+
+  @Test fun first() {
+    assertThat(AddressSelectionStrategy.FIRST.select(address, intArrayOf(5, 0, 0))).isEqualTo(0)
+  }
+
+  @Test fun roundRobinVisitsEachCandidate() {
+    val strategy = AddressSelectionStrategy.ROUND_ROBIN
+    val start = strategy.select(address, IntArray(3))
+    val selected = List(6) { strategy.select(address, IntArray(3)) }
+    assertThat(selected).containsExactly(
+      (start + 1) % 3,
+      (start + 2) % 3,
+      start,
+      (start + 1) % 3,
+      (start + 2) % 3,
+      start,
+    )
+  }
+
+  @Test fun randomStaysInBounds() {
+    repeat(100) {
+      assertThat(AddressSelectionStrategy.RANDOM.select(address, IntArray(3))).isIn(0, 1, 2)
+    }
+  }
+
+  @Test fun powerOfTwoChoicesNeverChoosesMostLoaded() {
+    repeat(100) {
+      val selected = AddressSelectionStrategy.POWER_OF_TWO_CHOICES.select(address, intArrayOf(3, 9, 1))
+      assertThat(selected).isIn(0, 2)
+    }
+  }
+
+  @Test fun powerOfTwoChoicesWithTwoCandidatesChoosesLeastLoaded() {
+    repeat(100) {
+      val selected = AddressSelectionStrategy.POWER_OF_TWO_CHOICES.select(address, intArrayOf(4, 2))
+      assertThat(selected).isEqualTo(1)
+    }
+  }
+}
@@ -3618,6 +3618,185 @@ open class CallTest {
     assertThat(server.takeRequest().exchangeIndex).isEqualTo(1)
   }
 
+  @Test
+  fun automaticExpectContinue() {
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .add100Continue()
+        .build(),
+    )
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(3L))
+        .build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(200)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.headers["Expect"]).isEqualTo("100-continue")
+    assertThat(recordedRequest.body?.utf8()).isEqualTo("abc")
+  }
+
+  @Test
+  fun automaticExpectContinueSkipsSmallRequestBodies() {
+    server.enqueue(MockResponse())
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(4L))
+        .build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(200)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.headers["Expect"]).isNull()
+    assertThat(recordedRequest.body?.utf8()).isEqualTo("abc")
+  }
+
+  @Test
+  fun automaticExpectContinueRejectionDoesNotSendRequestBody() {
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .code(401)
+        .doNotReadRequestBody()
+        .build(),
+    )
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(0L))
+        .expectContinueTimeout(Duration.ofSeconds(10))
+        .build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(401)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.headers["Expect"]).isEqualTo("100-continue")
+    assertThat(recordedRequest.body).isIn(null, ByteString.EMPTY)
+  }
+
+  @Test
+  fun automaticExpectContinueTimesOutAndSendsRequestBody() {
+    server.enqueue(MockResponse())
+    server.enqueue(MockResponse())
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(0L))
+        .expectContinueTimeout(Duration.ofMillis(100))
+        .build()
+    val request =
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      )
+    executeSynchronously(request).assertCode(200)
+    executeSynchronously(request).assertCode(200)
+
+    // The server ignored the expectation, so it isn't sent again.
+    val recordedRequest1 = server.takeRequest()
+    assertThat(recordedRequest1.headers["Expect"]).isEqualTo("100-continue")
+    assertThat(recordedRequest1.body?.utf8()).isEqualTo("abc")
+    val recordedRequest2 = server.takeRequest()
+    assertThat(recordedRequest2.headers["Expect"]).isNull()
+    assertThat(recordedRequest2.body?.utf8()).isEqualTo("abc")
+    assertThat(recordedRequest2.exchangeIndex).isEqualTo(1)
+  }
+
+  @Test
+  fun automaticExpectContinueRetriedAfterExpectationFailed() {
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .code(417)
+        .doNotReadRequestBody()
+        .build(),
+    )
+    server.enqueue(MockResponse())
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(0L))
+        .expectContinueTimeout(Duration.ofSeconds(10))
+        .build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(200)
+    val recordedRequest1 = server.takeRequest()
+    assertThat(recordedRequest1.headers["Expect"]).isEqualTo("100-continue")
+    assertThat(recordedRequest1.body).isIn(null, ByteString.EMPTY)
+    val recordedRequest2 = server.takeRequest()
+    assertThat(recordedRequest2.headers["Expect"]).isNull()
+    assertThat(recordedRequest2.body?.utf8()).isEqualTo("abc")
+  }
+
+  @Test
+  fun expectationFailedNotRetriedForInterceptorExpectContinue() {
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .code(417)
+        .doNotReadRequestBody()
+        .build(),
+    )
+    client =
+      client
+        .newBuilder()
+        .addNetworkInterceptor { chain ->
+          chain.proceed(
+            chain
+              .request()
+              .newBuilder()
+              .header("Expect", "100-continue")
+              .build(),
+          )
+        }.build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(417)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.headers["Expect"]).isEqualTo("100-continue")
+    assertThat(server.requestCount).isEqualTo(1)
+  }
+
+  @Test
+  fun automaticExpectContinueNotAddedOnHttp2() {
+    enableProtocol(Protocol.HTTP_2)
+    server.enqueue(MockResponse())
+    client =
+      client
+        .newBuilder()
+        .expectContinuePolicy(ExpectContinuePolicy.minimumContentLength(0L))
+        .build()
+    executeSynchronously(
+      Request(
+        url = server.url("/"),
+        body = "abc".toRequestBody("text/plain".toMediaType()),
+      ),
+    ).assertCode(200)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.headers["Expect"]).isNull()
+    assertThat(recordedRequest.body?.utf8()).isEqualTo("abc")
+  }
+
   /** We forbid non-ASCII characters in outgoing request headers, but accept UTF-8.  */
   @Test
   fun responseHeaderParsingIsLenient() {
@@ -4300,6 +4479,44 @@ open class CallTest {
     assertThat(recordedRequest.chunkSizes).isNotNull()
   }
 
+  @Test
+  fun uploadBodyChunksAreCoalesced() {
+    client = client.newBuilder().http1MinimumChunkSize(16_384L).build()
+    upload(true, 1048576, 256)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.bodySize).isEqualTo(1048576)
+    assertThat(recordedRequest.chunkSizes).isEqualTo(List(64) { 16_384 })
+  }
+
+  @Test
+  fun uploadBodyChunksAreNotCoalescedWithZeroMinimumChunkSize() {
+    client = client.newBuilder().http1MinimumChunkSize(0L).build()
+    upload(true, 1048576, 256)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.bodySize).isEqualTo(1048576)
+    assertThat(recordedRequest.chunkSizes).isEqualTo(List(128) { 8_192 })
+  }
+
+  @Test
+  fun uploadBodyFlushWritesPartialChunk() {
+    server.enqueue(MockResponse())
+    val requestBody =
+      object : RequestBody() {
+        override fun contentType(): MediaType? = null
+
+        override fun writeTo(sink: BufferedSink) {
+          sink.writeUtf8("abc")
+          sink.flush()
+          sink.writeUtf8("defgh")
+        }
+      }
+    executeSynchronously(Request(url = server.url("/"), body = requestBody))
+      .assertCode(200)
+    val recordedRequest = server.takeRequest()
+    assertThat(recordedRequest.body?.utf8()).isEqualTo("abcdefgh")
+    assertThat(recordedRequest.chunkSizes).isEqualTo(listOf(3, 5))
+  }
+
   @Test
   fun uploadBodySmallFixedLength() {
     upload(false, 1048576, 256)
@@ -18,6 +18,7 @@ package okhttp3
 import assertk.assertThat
 import assertk.assertions.isEqualTo
 import java.io.IOException
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
 import javax.net.ssl.SSLException
 import kotlin.test.assertFailsWith
@@ -26,6 +27,7 @@ import mockwebserver3.MockWebServer
 import mockwebserver3.SocketEffect.CloseSocket
 import mockwebserver3.SocketEffect.ShutdownConnection
 import mockwebserver3.junit5.StartStop
+import okhttp3.CallEvent.ConnectionAcquired
 import okhttp3.Headers.Companion.headersOf
 import okhttp3.MediaType.Companion.toMediaType
 import okhttp3.RequestBody.Companion.toRequestBody
@@ -83,6 +85,102 @@ class ConnectionReuseTest {
     assertConnectionReused(request, request)
   }
 
+  @Test
+  fun pipelinedRequestsShareBusyConnection() {
+    client =
+      client
+        .newBuilder()
+        .http1PipeliningPolicy(Http1PipeliningPolicy.fixedDepth(2))
+        .build()
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .body("a")
+        .headersDelay(500, TimeUnit.MILLISECONDS)
+        .build(),
+    )
+    server.enqueue(MockResponse(body = "b"))
+
+    val responseA = executeAsync(Request(server.url("/a")))
+    val requestA = server.takeRequest()
+
+    // Request B is written while the response to request A is delayed.
+    client.newCall(Request(server.url("/b"))).execute().use { response ->
+      assertThat(response.body.string()).isEqualTo("b")
+    }
+    assertThat(responseA.get()).isEqualTo("a")
+
+    val requestB = server.takeRequest()
+    assertThat(requestB.connectionIndex).isEqualTo(requestA.connectionIndex)
+    assertThat(requestB.exchangeIndex).isEqualTo(1)
+  }
+
+  @Test
+  fun pipelinedReadTimeoutStartsWhenResponseIsRead() {
+    client =
+      client
+        .newBuilder()
+        .http1PipeliningPolicy(Http1PipeliningPolicy.fixedDepth(2))
+        .build()
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .body("a")
+        .headersDelay(1_000, TimeUnit.MILLISECONDS)
+        .build(),
+    )
+    server.enqueue(MockResponse(body = "b"))
+
+    val responseA = executeAsync(Request(server.url("/a")))
+    val requestA = server.takeRequest()
+
+    // Request B waits longer than its read timeout for the response to request A.
+    val clientB =
+      client
+        .newBuilder()
+        .readTimeout(500, TimeUnit.MILLISECONDS)
+        .build()
+    clientB.newCall(Request(server.url("/b"))).execute().use { response ->
+      assertThat(response.body.string()).isEqualTo("b")
+    }
+    assertThat(responseA.get()).isEqualTo("a")
+
+    val requestB = server.takeRequest()
+    assertThat(requestB.connectionIndex).isEqualTo(requestA.connectionIndex)
+  }
+
+  @Test
+  fun pipelinedRequestsAreRetriedWhenServerClosesConnection() {
+    client =
+      client
+        .newBuilder()
+        .http1PipeliningPolicy(Http1PipeliningPolicy.fixedDepth(2))
+        .build()
+    server.enqueue(
+      MockResponse
+        .Builder()
+        .body("a")
+        .addHeader("Connection", "close")
+        .headersDelay(500, TimeUnit.MILLISECONDS)
+        .onResponseEnd(ShutdownConnection)
+        .build(),
+    )
+    server.enqueue(MockResponse(body = "b"))
+
+    val responseA = executeAsync(Request(server.url("/a")))
+    val requestA = server.takeRequest()
+
+    // Request B is written to the first connection, but only answered on the second.
+    client.newCall(Request(server.url("/b"))).execute().use { response ->
+      assertThat(response.body.string()).isEqualTo("b")
+    }
+    assertThat(responseA.get()).isEqualTo("a")
+
+    val requestB = server.takeRequest()
+    assertThat(requestB.connectionIndex).isEqualTo(requestA.connectionIndex + 1)
+    assertThat(requestB.exchangeIndex).isEqualTo(0)
+  }
+
   @Test
   fun connectionsAreNotReusedWithRequestConnectionClose() {
     server.enqueue(MockResponse(body = "a"))
@@ -214,6 +312,42 @@ class ConnectionReuseTest {
     assertThat(server.takeRequest().exchangeIndex).isEqualTo(1)
   }
 
+  @Test
+  fun http2RedirectKeepsSharedConnection() {
+    enableHttp2()
+    val eventRecorder = EventRecorder()
+    client =
+      client
+        .newBuilder()
+        .eventListenerFactory(clientTestRule.wrap(eventRecorder))
+        .build()
+    server.enqueue(MockResponse(body = "a"))
+    server.enqueue(
+      MockResponse(
+        code = 301,
+        headers = headersOf("Location", "/c"),
+        body = "b",
+      ),
+    )
+    server.enqueue(MockResponse(body = "c"))
+
+    // Call B follows its redirect while call A is still carried by the same connection.
+    client.newCall(Request(server.url("/a"))).execute().use { responseA ->
+      client.newCall(Request(server.url("/b"))).execute().use { responseB ->
+        assertThat(responseB.body.string()).isEqualTo("c")
+      }
+      assertThat(responseA.body.string()).isEqualTo("a")
+    }
+    assertThat(server.takeRequest().exchangeIndex).isEqualTo(0)
+    assertThat(server.takeRequest().exchangeIndex).isEqualTo(1)
+    assertThat(server.takeRequest().exchangeIndex).isEqualTo(2)
+
+    // Call B kept its connection for the redirect rather than releasing and acquiring it again.
+    assertThat(
+      eventRecorder.recordedEventTypes().count { it == ConnectionAcquired::class },
+    ).isEqualTo(2)
+  }
+
   @Test
   fun connectionsAreEvicted() {
     server.enqueue(MockResponse(body = "a"))
@@ -370,6 +504,11 @@ class ConnectionReuseTest {
     server.protocols = client.protocols
   }
 
+  private fun executeAsync(request: Request): CompletableFuture<String> =
+    CompletableFuture.supplyAsync {
+      client.newCall(request).execute().use { it.body.string() }
+    }
+
   private fun assertConnectionReused(vararg requests: Request?) {
     for (i in requests.indices) {
       val response = client.newCall(requests[i]!!).execute()
@@ -17,8 +17,12 @@ package okhttp3
 
 import assertk.assertThat
 import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import okhttp3.Headers.Companion.headersOf
 import okhttp3.TestUtil.headerEntries
+import okhttp3.internal.http1.Http1ExchangeCodec.Companion.prefixHttp1Encoding
+import okhttp3.internal.http2.Http2ExchangeCodec.Companion.extendedConnectHeadersList
 import okhttp3.internal.http2.Http2ExchangeCodec.Companion.http2HeadersList
 import okhttp3.internal.http2.Http2ExchangeCodec.Companion.readHttp2HeadersList
 import org.junit.jupiter.api.Test
@@ -86,4 +90,114 @@ class HeadersRequestTest {
       )
     assertThat(http2HeadersList(request)).isEqualTo(expected)
   }
+
+  @Test fun extendedConnectHeadersListForWebSocket() {
+    val request =
+      Request
+        .Builder()
+        .url("https://square.com/chat")
+        .header("Host", "square.com")
+        .header("Upgrade", "websocket")
+        .header("Connection", "Upgrade")
+        .header("Sec-WebSocket-Key", "dGhlIHNhbXBsZSBub25jZQ==")
+        .header("Sec-WebSocket-Version", "13")
+        .build()
+    val expected =
+      headerEntries(
+        ":method",
+        "CONNECT",
+        ":protocol",
+        "websocket",
+        ":path",
+        "/chat",
+        ":authority",
+        "square.com",
+        ":scheme",
+        "https",
+        "sec-websocket-version",
+        "13",
+      )
+    assertThat(extendedConnectHeadersList(request, "websocket")).isEqualTo(expected)
+  }
+
+  @Test fun templateHeadersAreEncodedOnceForHttp1() {
+    val template = headersOf("User-Agent", "Test", "Accept", "*/*")
+    val request1 = templateRequest(template, "1")
+    val request2 = templateRequest(template, "2")
+    val request3 = templateRequest(template, "3")
+
+    // The prefix is cached the second time it's encoded.
+    assertThat(prefixHttp1Encoding(request1.headers)).isNull()
+    val encoding = prefixHttp1Encoding(request2.headers)
+    assertThat(encoding?.utf8()).isEqualTo("User-Agent: Test\r\nAccept: */*\r\n")
+    assertThat(prefixHttp1Encoding(request3.headers)).isSameInstanceAs(encoding)
+  }
+
+  @Test fun templateHeadersAreSharedForHttp2() {
+    val template = headersOf("User-Agent", "Test", "Connection", "close")
+    val request1 = templateRequest(template, "1")
+    val request2 = templateRequest(template, "2")
+    val request3 = templateRequest(template, "3")
+
+    val expected =
+      headerEntries(
+        ":method",
+        "GET",
+        ":path",
+        "/",
+        ":scheme",
+        "http",
+        "user-agent",
+        "Test",
+        "x-request-id",
+        "3",
+      )
+    http2HeadersList(request1)
+    val list2 = http2HeadersList(request2)
+    val list3 = http2HeadersList(request3)
+    assertThat(list3).isEqualTo(expected)
+    assertThat(list3[3]).isSameInstanceAs(list2[3])
+  }
+
+  @Test fun removingTemplateHeaderForgetsTemplate() {
+    val template = headersOf("User-Agent", "Test", "Accept", "*/*")
+    val headers =
+      template
+        .newBuilder()
+        .add("X-Request-Id", "1")
+        .build()
+        .newBuilder()
+        .removeAll("Accept")
+        .build()
+    assertThat(headers.caches?.prefix).isNull()
+    assertThat(
+      template
+        .newBuilder()
+        .removeAll("X-Request-Id")
+        .build()
+        .caches
+        ?.prefix,
+    ).isSameInstanceAs(template.caches?.prefix)
+  }
+
+  @Test fun onlyTemplatesAndHeadersBuiltFromThemHaveCaches() {
+    val template = headersOf("User-Agent", "Test")
+    assertThat(template.caches).isNull()
+
+    val headers = template.newBuilder().add("X-Request-Id", "1").build()
+    assertThat(template.caches?.prefix?.size).isEqualTo(1)
+    assertThat(headers.caches?.prefix).isSameInstanceAs(template.caches?.prefix)
+    assertThat(Headers.Builder().add("User-Agent", "Test").build().caches).isNull()
+  }
+
+  private fun templateRequest(
+    template: Headers,
+    requestId: String,
+  ): Request =
+    Request
+      .Builder()
+      .url("http://square.com/")
+      .headers(template)
+      .header("X-Request-Id", requestId)
+      .build()
 }
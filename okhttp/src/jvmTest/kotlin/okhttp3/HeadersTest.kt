@@ -16,8 +16,12 @@
 package okhttp3
 
 import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
 import kotlin.test.Test
 import kotlin.test.assertFailsWith
 import okhttp3.Headers.Companion.headersOf
@@ -301,4 +305,66 @@ class HeadersTest {
       headers.value(2)
     }
   }
+
+  @Test fun largeHeadersGetIsCaseInsensitive() {
+    val headers = largeHeaders()
+    assertThat(headers["x-trace-7"]).isEqualTo("7")
+    assertThat(headers["X-TRACE-7"]).isEqualTo("7")
+    assertThat(headers["Content-Type"]).isEqualTo("text/html")
+    assertThat(headers["x-trace-100"]).isNull()
+  }
+
+  @Test fun largeHeadersGetReturnsLastValue() {
+    val headers =
+      largeHeaders()
+        .newBuilder()
+        .add("x-trace-3", "three")
+        .build()
+    assertThat(headers["X-Trace-3"]).isEqualTo("three")
+  }
+
+  @Test fun largeHeadersValuesAreInOrder() {
+    val headers =
+      largeHeaders()
+        .newBuilder()
+        .add("CONTENT-TYPE", "text/plain")
+        .add("content-type", "image/png")
+        .build()
+    assertThat(headers.values("Content-Type"))
+      .containsExactly("text/html", "text/plain", "image/png")
+    assertThat(headers.values("X-Trace-0")).containsExactly("0")
+    assertThat(headers.values("Missing")).isEmpty()
+  }
+
+  @Test fun largeHeadersMatchNonAsciiNamesLikeEqualsIgnoreCase() {
+    // The Kelvin sign lowercases to 'k', so it equals "k" ignoring case.
+    val headers =
+      largeHeaders()
+        .newBuilder()
+        .add("K", "ascii")
+        .apply { addLenient("\u212a", "kelvin") }
+        .build()
+    assertThat(headers["k"]).isEqualTo("kelvin")
+    assertThat(headers.values("\u212a")).containsExactly("ascii", "kelvin")
+  }
+
+  @Test fun onlyLargeHeadersAllocateAnIndex() {
+    val small = headersOf("Content-Type", "text/html")
+    assertThat(small["Content-Type"]).isEqualTo("text/html")
+    assertThat(small.caches).isNull()
+
+    val large = largeHeaders()
+    assertThat(large["Content-Type"]).isEqualTo("text/html")
+    assertThat(large.caches?.index).isNotNull()
+  }
+
+  /** Returns headers with enough fields to be indexed. */
+  private fun largeHeaders(): Headers {
+    val builder = Headers.Builder()
+    builder.add("Content-Type", "text/html")
+    for (i in 0 until 40) {
+      builder.add("X-Trace-$i", "$i")
+    }
+    return builder.build()
+  }
 }
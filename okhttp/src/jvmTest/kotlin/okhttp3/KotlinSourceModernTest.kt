@@ -292,6 +292,8 @@ class KotlinSourceModernTest {
         override fun handshake(): Handshake? = TODO()
 
         override fun protocol(): Protocol = TODO()
+
+        override fun headerCompressionRatio(): Double = TODO()
       }
   }
 
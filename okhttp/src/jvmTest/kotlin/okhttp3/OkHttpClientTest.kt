@@ -459,6 +459,20 @@ class OkHttpClientTest {
     }
   }
 
+  @Test fun http2ReceiveBudgetsAreIndependent() {
+    val defaults = OkHttpClient()
+    assertThat(defaults.http2ConnectionReceiveBudget).isEqualTo(Long.MAX_VALUE)
+    assertThat(defaults.http2ClientReceiveBudget).isEqualTo(Long.MAX_VALUE)
+
+    val connectionOnly = OkHttpClient.Builder().http2ConnectionReceiveBudget(1_000L).build()
+    assertThat(connectionOnly.http2ConnectionReceiveBudget).isEqualTo(1_000L)
+    assertThat(connectionOnly.http2ClientReceiveBudget).isEqualTo(Long.MAX_VALUE)
+
+    val clientOnly = OkHttpClient.Builder().http2ClientReceiveBudget(2_000L).build()
+    assertThat(clientOnly.http2ConnectionReceiveBudget).isEqualTo(Long.MAX_VALUE)
+    assertThat(clientOnly.http2ClientReceiveBudget).isEqualTo(2_000L)
+  }
+
   companion object {
     private val DEFAULT_PROXY_SELECTOR = ProxySelector.getDefault()
     private val DEFAULT_COOKIE_HANDLER = CookieManager.getDefault()
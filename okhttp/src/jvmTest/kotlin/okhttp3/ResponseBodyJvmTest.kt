@@ -18,24 +18,34 @@ package okhttp3
 import assertk.assertThat
 import assertk.assertions.isEqualTo
 import assertk.assertions.isTrue
+import java.io.File
+import java.io.FileOutputStream
 import java.io.IOException
 import java.io.InputStreamReader
+import java.io.RandomAccessFile
 import java.io.Reader
 import java.nio.charset.StandardCharsets
 import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.test.assertFailsWith
 import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.ResponseBody.Companion.asResponseBody
 import okhttp3.ResponseBody.Companion.toResponseBody
 import okhttp3.internal.and
 import okio.Buffer
 import okio.BufferedSource
 import okio.ByteString
 import okio.ByteString.Companion.decodeHex
+import okio.ByteString.Companion.toByteString
 import okio.ForwardingSource
+import okio.Path.Companion.toOkioPath
 import okio.buffer
 import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
 
 class ResponseBodyJvmTest {
+  @TempDir
+  lateinit var tempDir: File
+
   @Test
   fun stringEmpty() {
     val body = body("")
@@ -429,6 +439,63 @@ class ResponseBodyJvmTest {
     assertThat(closed.get()).isTrue()
   }
 
+  @Test
+  fun writeToPath() {
+    val content = ByteArray(600_000) { (it % 251).toByte() }.toByteString()
+    val file = tempDir.resolve("body.bin")
+    file.writeText("stale content")
+    val body = content.toResponseBody()
+    assertThat(body.writeTo(file.toOkioPath())).isEqualTo(content.size.toLong())
+    assertThat(file.readBytes().toByteString()).isEqualTo(content)
+  }
+
+  @Test
+  fun writeToFileChannelAtPosition() {
+    val file = tempDir.resolve("body.bin")
+    RandomAccessFile(file, "rw").use { randomAccessFile ->
+      randomAccessFile.write("abc".toByteArray())
+      val body = "defgh".toResponseBody()
+      assertThat(body.writeTo(randomAccessFile.channel)).isEqualTo(5L)
+      assertThat(randomAccessFile.channel.position()).isEqualTo(8L)
+    }
+    assertThat(file.readText()).isEqualTo("abcdefgh")
+  }
+
+  @Test
+  fun writeToFileChannelWithUnknownLength() {
+    val file = tempDir.resolve("body.bin")
+    val body = Buffer().writeUtf8("hello").asResponseBody(contentLength = -1L)
+    FileOutputStream(file).use { outputStream ->
+      assertThat(body.writeTo(outputStream.channel)).isEqualTo(5L)
+    }
+    assertThat(file.readText()).isEqualTo("hello")
+  }
+
+  @Test
+  fun writeToFileChannelWithEmptyBody() {
+    val file = tempDir.resolve("body.bin")
+    val body = "".toResponseBody()
+    FileOutputStream(file).use { outputStream ->
+      assertThat(body.writeTo(outputStream.channel)).isEqualTo(0L)
+    }
+    assertThat(file.readText()).isEqualTo("")
+  }
+
+  @Test
+  fun writeToClosesUnderlyingSource() {
+    val closed = AtomicBoolean()
+    val source = Buffer().writeUtf8("hello")
+    val body =
+      object : ForwardingSource(source) {
+        override fun close() {
+          closed.set(true)
+          super.close()
+        }
+      }.buffer().asResponseBody()
+    body.writeTo(tempDir.resolve("body.bin").toOkioPath())
+    assertThat(closed.get()).isTrue()
+  }
+
   @Test
   fun unicodeTextWithUnsupportedEncoding() {
     val text = "eile oli oliiviõli"
@@ -32,6 +32,7 @@ import mockwebserver3.junit5.StartStop
 import okhttp3.internal.http.RecordingProxySelector
 import okhttp3.internal.http2.ErrorCode
 import okhttp3.testing.PlatformRule
+import okio.BufferedSink
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.RepeatedTest
 import org.junit.jupiter.api.Test
@@ -380,6 +381,107 @@ class RouteFailureTest {
       .assertCode(200)
   }
 
+  @Test
+  fun http2OneShotRequestBodyReplayedAfterRefusedStream() {
+    enableProtocol(Protocol.HTTP_2)
+
+    server1.enqueue(refusedStream)
+    server1.enqueue(bodyResponse)
+
+    // Refused streams are retried on another route.
+    dns[server1.hostName] = listOf(ipv6, ipv4)
+    socketFactory[ipv6] = server1.socketAddress
+    socketFactory[ipv4] = server1.socketAddress
+
+    client =
+      client
+        .newBuilder()
+        .http2ReplayBufferSize(1024L)
+        .build()
+
+    val request =
+      Request(
+        url = server1.url("/"),
+        body =
+          object : RequestBody() {
+            var attempt = 0
+
+            override fun contentType(): MediaType? = null
+
+            override fun contentLength() = 9L
+
+            override fun writeTo(sink: BufferedSink) {
+              sink.writeUtf8("attempt " + attempt++)
+            }
+
+            override fun isOneShot(): Boolean = true
+          },
+      )
+    executeSynchronously(request)
+      .assertBody("body")
+
+    server1.takeRequest()
+    assertThat(server1.takeRequest().body?.utf8()).isEqualTo("attempt 0")
+    assertThat(server1.requestCount).isEqualTo(2)
+  }
+
+  @Test
+  fun http2ReplayedRequestBodyIsNotEncodedTwice() {
+    enableProtocol(Protocol.HTTP_2)
+
+    server1.enqueue(refusedStream)
+    server1.enqueue(bodyResponse)
+
+    // Refused streams are retried on another route.
+    dns[server1.hostName] = listOf(ipv6, ipv4)
+    socketFactory[ipv6] = server1.socketAddress
+    socketFactory[ipv4] = server1.socketAddress
+
+    client =
+      client
+        .newBuilder()
+        .http2ReplayBufferSize(1024L)
+        .addNetworkInterceptor { chain ->
+          val body = chain.request().body!!
+          val encodedBody =
+            object : RequestBody() {
+              override fun contentType() = body.contentType()
+
+              override fun contentLength() = body.contentLength() + 8L
+
+              override fun writeTo(sink: BufferedSink) {
+                sink.writeUtf8("encoded ")
+                body.writeTo(sink)
+              }
+
+              override fun isOneShot() = body.isOneShot()
+            }
+          chain.proceed(chain.request().newBuilder().post(encodedBody).build())
+        }.build()
+
+    val request =
+      Request(
+        url = server1.url("/"),
+        body =
+          object : RequestBody() {
+            override fun contentType(): MediaType? = null
+
+            override fun contentLength() = 4L
+
+            override fun writeTo(sink: BufferedSink) {
+              sink.writeUtf8("body")
+            }
+
+            override fun isOneShot(): Boolean = true
+          },
+      )
+    executeSynchronously(request)
+      .assertBody("body")
+
+    server1.takeRequest()
+    assertThat(server1.takeRequest().body?.utf8()).isEqualTo("encoded body")
+  }
+
   private fun enableProtocol(protocol: Protocol) {
     enableTls()
     client =
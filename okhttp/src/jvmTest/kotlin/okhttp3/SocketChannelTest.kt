@@ -21,6 +21,7 @@ import assertk.assertThat
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotEmpty
 import assertk.assertions.isNotNull
+import java.io.File
 import java.io.IOException
 import java.net.InetAddress
 import java.util.concurrent.CompletableFuture
@@ -33,15 +34,20 @@ import javax.net.ssl.StandardConstants
 import mockwebserver3.MockResponse
 import mockwebserver3.MockWebServer
 import mockwebserver3.junit5.StartStop
+import okhttp3.HttpUrl.Companion.toHttpUrl
 import okhttp3.Protocol.HTTP_1_1
 import okhttp3.Protocol.HTTP_2
 import okhttp3.Provider.CONSCRYPT
+import okhttp3.RequestBody.Companion.asRequestBody
 import okhttp3.TlsExtensionMode.STANDARD
 import okhttp3.TlsVersion.TLS_1_2
 import okhttp3.TlsVersion.TLS_1_3
 import okhttp3.testing.PlatformRule
 import okhttp3.tls.HandshakeCertificates
 import okhttp3.tls.HeldCertificate
+import okio.Buffer
+import okio.ByteString.Companion.toByteString
+import okio.Path.Companion.toOkioPath
 import org.junit.jupiter.api.Assumptions.assumeFalse
 import org.junit.jupiter.api.Assumptions.assumeTrue
 import org.junit.jupiter.api.BeforeEach
@@ -49,6 +55,7 @@ import org.junit.jupiter.api.Tag
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Timeout
 import org.junit.jupiter.api.extension.RegisterExtension
+import org.junit.jupiter.api.io.TempDir
 
 @Suppress("UsePropertyAccessSyntax")
 @Timeout(6)
@@ -84,6 +91,9 @@ class SocketChannelTest {
     }
   private var acceptedHostName: String? = null
 
+  @TempDir
+  lateinit var tempDir: File
+
   @StartStop
   private val server = MockWebServer()
 
@@ -109,6 +119,77 @@ class SocketChannelTest {
     testConnection(TlsInstance(provider, protocol, tlsVersion, socketMode, tlsExtensionMode))
   }
 
+  @Test
+  fun testFileUpload(socketMode: SocketMode = burstValues(Channel, Standard)) {
+    // Larger than one transfer, and not a multiple of its size.
+    val content = ByteArray(200_000) { (it % 251).toByte() }.toByteString()
+    val file = tempDir.resolve("upload.bin")
+    file.writeBytes(content.toByteArray())
+
+    val client =
+      clientTestRule
+        .newClientBuilder()
+        .dns { listOf(InetAddress.getByName("localhost")) }
+        .writeTimeout(2, SECONDS)
+        .readTimeout(2, SECONDS)
+        .apply {
+          if (socketMode == Channel) {
+            socketFactory(ChannelSocketFactory())
+          }
+        }.build()
+
+    server.enqueue(MockResponse(body = "abc"))
+    server.enqueue(MockResponse(body = "def"))
+
+    // Send the file twice on the same connection.
+    for ((exchangeIndex, expectedBody) in listOf("abc", "def").withIndex()) {
+      val request =
+        Request(
+          url = "http://$hostname:${server.port}/upload".toHttpUrl(),
+          body = file.asRequestBody(),
+        )
+      client.newCall(request).execute().use { response ->
+        assertThat(response.body.string()).isEqualTo(expectedBody)
+      }
+
+      val recordedRequest = server.takeRequest()
+      assertThat(recordedRequest.body).isEqualTo(content)
+      assertThat(recordedRequest.exchangeIndex).isEqualTo(exchangeIndex)
+    }
+  }
+
+  @Test
+  fun testFileDownload(socketMode: SocketMode = burstValues(Channel, Standard)) {
+    // Larger than one transfer, and not a multiple of its size.
+    val content = ByteArray(200_000) { (it % 251).toByte() }.toByteString()
+    val file = tempDir.resolve("download.bin")
+
+    val client =
+      clientTestRule
+        .newClientBuilder()
+        .dns { listOf(InetAddress.getByName("localhost")) }
+        .writeTimeout(2, SECONDS)
+        .readTimeout(2, SECONDS)
+        .apply {
+          if (socketMode == Channel) {
+            socketFactory(ChannelSocketFactory())
+          }
+        }.build()
+
+    server.enqueue(MockResponse.Builder().body(Buffer().write(content)).build())
+    server.enqueue(MockResponse.Builder().body(Buffer().write(content)).build())
+
+    // Receive the file twice on the same connection.
+    for (exchangeIndex in 0 until 2) {
+      val request = Request("http://$hostname:${server.port}/download".toHttpUrl())
+      client.newCall(request).execute().use { response ->
+        assertThat(response.body.writeTo(file.toOkioPath())).isEqualTo(content.size.toLong())
+      }
+      assertThat(file.readBytes().toByteString()).isEqualTo(content)
+      assertThat(server.takeRequest().exchangeIndex).isEqualTo(exchangeIndex)
+    }
+  }
+
   private fun testConnection(socketMode: SocketMode) {
     // https://github.com/lysine-dev/okhttp/pull/6554
     assumeFalse(
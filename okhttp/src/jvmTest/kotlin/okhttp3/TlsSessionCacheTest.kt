@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotEqualTo
+import assertk.assertions.isNotSameAs
+import assertk.assertions.isNull
+import assertk.assertions.isSameAs
+import okio.ByteString.Companion.encodeUtf8
+import okio.Path.Companion.toPath
+import okio.fakefilesystem.FakeFileSystem
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class TlsSessionCacheTest {
+  private val fileSystem = FakeFileSystem()
+  private val session1 = "session 1".encodeUtf8()
+  private val session2 = "session 2".encodeUtf8()
+
+  @AfterEach
+  fun tearDown() {
+    fileSystem.checkNoOpenFiles()
+  }
+
+  @Test
+  fun memoryCacheReturnsStoredSessions() {
+    val cache = TlsSessionCache()
+    assertThat(cache.get("a.com", 443)).isNull()
+
+    cache.put("a.com", 443, session1)
+    assertThat(cache.get("a.com", 443)).isEqualTo(session1)
+    assertThat(cache.get("a.com", 8443)).isNull()
+
+    assertThat(cache.requestCount()).isEqualTo(3)
+    assertThat(cache.hitCount()).isEqualTo(1)
+  }
+
+  @Test
+  fun memoryCacheEvictsLeastRecentlyUsed() {
+    val cache = TlsSessionCache(maxEntries = 2)
+    cache.put("a.com", 443, session1)
+    cache.put("b.com", 443, session2)
+    cache.get("a.com", 443)
+    cache.put("c.com", 443, session2)
+
+    assertThat(cache.get("a.com", 443)).isEqualTo(session1)
+    assertThat(cache.get("b.com", 443)).isNull()
+    assertThat(cache.get("c.com", 443)).isEqualTo(session2)
+  }
+
+  @Test
+  fun diskCacheSurvivesRestart() {
+    fileSystem.emulateUnix()
+    val cache1 = TlsSessionCache(fileSystem, "/tls".toPath(), Long.MAX_VALUE)
+    cache1.put("a.com", 443, session1)
+    cache1.put("a.com", 443, session2)
+    cache1.close()
+
+    val cache2 = TlsSessionCache(fileSystem, "/tls".toPath(), Long.MAX_VALUE)
+    assertThat(cache2.get("a.com", 443)).isEqualTo(session2)
+    assertThat(cache2.hitCount()).isEqualTo(1)
+
+    cache2.evictAll()
+    assertThat(cache2.get("a.com", 443)).isNull()
+    cache2.close()
+  }
+
+  @Test
+  fun handshakeStatistics() {
+    val cache = TlsSessionCache()
+    cache.trackHandshake(resumed = false)
+    cache.trackHandshake(resumed = true)
+    cache.trackHandshake(resumed = true)
+
+    assertThat(cache.handshakeCount()).isEqualTo(3)
+    assertThat(cache.resumedCount()).isEqualTo(2)
+  }
+
+  @Test
+  fun keyUsesHostAndPort() {
+    TestValueFactory().use { factory ->
+      val address = factory.newAddress("a.com", 443)
+      assertThat(TlsSessionCache.key(address))
+        .isEqualTo(TlsSessionCache.key(factory.newAddress("a.com", 443)))
+      assertThat(TlsSessionCache.key(address))
+        .isNotEqualTo(TlsSessionCache.key(factory.newAddress("a.com", 8443)))
+    }
+  }
+
+  @Test
+  fun newBuilderRebuildsPlatformSocketFactoryForNewCache() {
+    val client = OkHttpClient()
+    val withCache = client.newBuilder().tlsSessionCache(TlsSessionCache()).build()
+    assertThat(withCache.sslSocketFactory).isNotSameAs(client.sslSocketFactory)
+    assertThat(withCache.newBuilder().build().sslSocketFactory)
+      .isSameAs(withCache.sslSocketFactory)
+
+    val withoutCache = withCache.newBuilder().tlsSessionCache(null).build()
+    assertThat(withoutCache.tlsSessionCache).isNull()
+    assertThat(withoutCache.sslSocketFactory).isNotSameAs(withCache.sslSocketFactory)
+  }
+
+  @Test
+  fun newBuilderKeepsCustomSocketFactory() {
+    val platformClient = OkHttpClient()
+    val client =
+      OkHttpClient
+        .Builder()
+        .sslSocketFactory(platformClient.sslSocketFactory, platformClient.x509TrustManager!!)
+        .build()
+    val withCache = client.newBuilder().tlsSessionCache(TlsSessionCache()).build()
+    assertThat(withCache.sslSocketFactory).isSameAs(client.sslSocketFactory)
+  }
+}
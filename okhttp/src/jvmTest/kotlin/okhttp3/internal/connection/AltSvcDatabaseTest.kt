@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TestTimeSource
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.TestValueFactory
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class AltSvcDatabaseTest {
+  private val factory = TestValueFactory()
+  private val timeSource = TestTimeSource()
+  private val database = AltSvcDatabase(timeSource)
+  private val address = factory.newHttpsAddress("a.com", 443)
+  private val origin = "https://a.com/".toHttpUrl()
+
+  @AfterEach fun tearDown() {
+    factory.close()
+  }
+
+  @Test fun unknownOrigin() {
+    assertThat(database.alternative(address)).isNull()
+  }
+
+  @Test fun alternativeForOrigin() {
+    database.put(origin, "http/1.1=\"b.com:8443\"")
+    assertThat(database.alternative(address)).isEqualTo(AltSvc("http/1.1", "b.com", 8443))
+    assertThat(database.alternative(factory.newHttpsAddress("b.com", 443))).isNull()
+  }
+
+  @Test fun emptyHostIsOriginHost() {
+    database.put(origin, "http/1.1=\":8443\"")
+    assertThat(database.alternative(address)).isEqualTo(AltSvc("http/1.1", "a.com", 8443))
+  }
+
+  @Test fun originItselfIsNotAnAlternative() {
+    database.put(origin, "http/1.1=\":443\"")
+    assertThat(database.alternative(address)).isNull()
+  }
+
+  @Test fun unsupportedProtocolsAreSkipped() {
+    // The address doesn't support HTTP/2, and HTTP/3 isn't supported at all.
+    database.put(origin, "h3=\":8443\", h2=\":8444\", http/1.1=\":8445\"")
+    assertThat(database.alternative(address)).isEqualTo(AltSvc("http/1.1", "a.com", 8445))
+  }
+
+  @Test fun alternativeExpires() {
+    database.put(origin, "http/1.1=\":8443\"; ma=60")
+    timeSource += 59.seconds
+    assertThat(database.alternative(address)).isEqualTo(AltSvc("http/1.1", "a.com", 8443, 60L))
+    timeSource += 1.seconds
+    assertThat(database.alternative(address)).isNull()
+  }
+
+  @Test fun clearRemovesAlternatives() {
+    database.put(origin, "http/1.1=\":8443\"")
+    database.put(origin, "clear")
+    assertThat(database.alternative(address)).isNull()
+  }
+
+  @Test fun cleartextOriginsAreIgnored() {
+    database.put("http://a.com/".toHttpUrl(), "http/1.1=\":8443\"")
+    assertThat(database.alternative(factory.newAddress("a.com", 80))).isNull()
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEmpty
+import org.junit.jupiter.api.Test
+
+class AltSvcTest {
+  @Test fun parseSingle() {
+    assertThat(AltSvc.parse("h2=\"alt.example.com:8443\""))
+      .containsExactly(AltSvc("h2", "alt.example.com", 8443))
+  }
+
+  @Test fun parseMaxAge() {
+    assertThat(AltSvc.parse("h2=\":443\"; ma=60; persist=1"))
+      .containsExactly(AltSvc("h2", "", 443, maxAgeSeconds = 60L))
+  }
+
+  @Test fun parseMultiple() {
+    assertThat(AltSvc.parse("h3=\":443\"; ma=60, http%2F1.1=\"[::1]:8080\""))
+      .containsExactly(
+        AltSvc("h3", "", 443, maxAgeSeconds = 60L),
+        AltSvc("http/1.1", "::1", 8080),
+      )
+  }
+
+  @Test fun parseClear() {
+    assertThat(AltSvc.parse("clear")).isEmpty()
+  }
+
+  @Test fun malformedAlternativesAreSkipped() {
+    assertThat(AltSvc.parse("h2, h2=\"example.com\", h2=\":99999\", =\":443\", h2=\":443\"; ma=x"))
+      .containsExactly(AltSvc("h2", "", 443))
+  }
+}
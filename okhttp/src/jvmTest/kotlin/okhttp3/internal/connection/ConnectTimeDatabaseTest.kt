@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import kotlin.time.Duration.Companion.milliseconds
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.TestTimeSource
+import okhttp3.Route
+import okhttp3.TestValueFactory
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class ConnectTimeDatabaseTest {
+  private val factory = TestValueFactory()
+  private val timeSource = TestTimeSource()
+  private val database = ConnectTimeDatabase(timeSource, timeToLive = 10.minutes)
+  private val ipA = InetAddress.getByAddress(byteArrayOf(10, 0, 0, 1))
+  private val ipB = InetAddress.getByAddress(byteArrayOf(10, 0, 0, 2))
+  private val routeA = route("a.com", InetSocketAddress(ipA, 443))
+  private val routeB = route("a.com", InetSocketAddress(ipB, 443))
+  private val routeC = route("c.com", InetSocketAddress(ipB, 443))
+
+  @AfterEach fun tearDown() {
+    factory.close()
+  }
+
+  @Test fun unknownAddressUsesDefaults() {
+    assertThat(database.connectTimeoutMillis(routeA, 10_000)).isEqualTo(10_000)
+    assertThat(database.connectDelayNanos(routeA)).isEqualTo(250.milliseconds.inWholeNanoseconds)
+  }
+
+  @Test fun fastAddressGetsMinimums() {
+    database.connected(routeA, 1.milliseconds.inWholeNanoseconds)
+
+    // RTO is 1 ms + 4 * 0.5 ms = 3 ms.
+    assertThat(database.connectTimeoutMillis(routeA, 10_000)).isEqualTo(2_000)
+    assertThat(database.connectDelayNanos(routeA)).isEqualTo(100.milliseconds.inWholeNanoseconds)
+    assertThat(database.connectTimeoutMillis(routeC, 10_000)).isEqualTo(10_000)
+  }
+
+  @Test fun addressWithoutEstimateUsesHostEstimate() {
+    database.connected(routeA, 400.milliseconds.inWholeNanoseconds)
+
+    // RTO is 400 ms + 4 * 200 ms = 1200 ms.
+    assertThat(database.connectTimeoutMillis(routeB, 10_000)).isEqualTo(4_800)
+    assertThat(database.connectDelayNanos(routeB))
+      .isEqualTo(1_200.milliseconds.inWholeNanoseconds)
+
+    // The address's own estimate is preferred once it has one.
+    database.connected(routeB, 1.milliseconds.inWholeNanoseconds)
+    assertThat(database.connectTimeoutMillis(routeB, 10_000)).isEqualTo(2_000)
+  }
+
+  @Test fun addressWithoutEstimateUsesProxyEstimate() {
+    val proxy = Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy.com", 8080))
+    val proxyRouteA = route("a.com", InetSocketAddress(ipA, 8080), proxy)
+    val proxyRouteB = route("c.com", InetSocketAddress(ipB, 8080), proxy)
+    database.connected(proxyRouteA, 400.milliseconds.inWholeNanoseconds)
+
+    assertThat(database.connectTimeoutMillis(proxyRouteB, 10_000)).isEqualTo(4_800)
+
+    // Direct routes to the same host don't use the proxy's estimate.
+    assertThat(database.connectTimeoutMillis(routeB, 10_000)).isEqualTo(10_000)
+  }
+
+  @Test fun slowAddressGetsLongerDelayBoundedByConfiguredTimeout() {
+    database.connected(routeA, 400.milliseconds.inWholeNanoseconds)
+
+    // RTO is 400 ms + 4 * 200 ms = 1200 ms.
+    assertThat(database.connectDelayNanos(routeA))
+      .isEqualTo(1_200.milliseconds.inWholeNanoseconds)
+    assertThat(database.connectTimeoutMillis(routeA, 10_000)).isEqualTo(4_800)
+    assertThat(database.connectTimeoutMillis(routeA, 3_000)).isEqualTo(3_000)
+  }
+
+  @Test fun zeroTimeoutIsNotAdapted() {
+    database.connected(routeA, 1.milliseconds.inWholeNanoseconds)
+    assertThat(database.connectTimeoutMillis(routeA, 0)).isEqualTo(0)
+  }
+
+  @Test fun samplesAreSmoothed() {
+    database.connected(routeA, 400.milliseconds.inWholeNanoseconds)
+    database.connected(routeA, 800.milliseconds.inWholeNanoseconds)
+
+    // SRTT is (7 * 400 + 800) / 8 = 450 ms. RTTVAR is (3 * 200 + 400) / 4 = 250 ms.
+    assertThat(database.connectDelayNanos(routeA))
+      .isEqualTo(1_450.milliseconds.inWholeNanoseconds)
+  }
+
+  @Test fun estimatesExpire() {
+    database.connected(routeA, 400.milliseconds.inWholeNanoseconds)
+
+    timeSource += 10.minutes
+    assertThat(database.connectTimeoutMillis(routeA, 10_000)).isEqualTo(10_000)
+
+    // A sample after expiry starts a new estimate.
+    database.connected(routeA, 800.milliseconds.inWholeNanoseconds)
+    assertThat(database.connectDelayNanos(routeA))
+      .isEqualTo(2_000.milliseconds.inWholeNanoseconds)
+  }
+
+  private fun route(
+    host: String,
+    socketAddress: InetSocketAddress,
+    proxy: Proxy = Proxy.NO_PROXY,
+  ) = Route(factory.newAddress(host), proxy, socketAddress)
+}
@@ -21,6 +21,9 @@ import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isNotEmpty
 import assertk.assertions.isTrue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 import okhttp3.ConnectionPool
 import okhttp3.FakeRoutePlanner
 import okhttp3.OkHttpClient
@@ -81,6 +84,38 @@ class ConnectionPoolTest {
     assertThat(c1.socket().isClosed).isTrue()
   }
 
+  @Test fun migrationLeaderConnectsWhileOtherCallsWait() {
+    val pool = factory.newConnectionPool()
+    val client =
+      OkHttpClient
+        .Builder()
+        .connectionPool(ConnectionPool(pool))
+        .build()
+    val leader = client.newCall(Request(addressA.url)) as RealCall
+    val follower = client.newCall(Request(addressA.url)) as RealCall
+
+    // Without a GOAWAY, every call connects for itself.
+    assertThat(pool.awaitMigration(addressA, follower, 1_000)).isTrue()
+
+    pool.beginMigration(addressA)
+    assertThat(pool.awaitMigration(addressA, leader, 1_000)).isTrue()
+    assertThat(pool.awaitMigration(addressA, leader, 1_000)).isTrue()
+
+    // The follower gives up waiting once its timeout elapses.
+    assertThat(pool.awaitMigration(addressA, follower, 10)).isFalse()
+
+    // The follower is released when the leader finishes connecting.
+    val released = CountDownLatch(1)
+    thread {
+      pool.awaitMigration(addressA, follower, 0)
+      released.countDown()
+    }
+    pool.endMigration(addressA, follower) // Ignored: not the leader.
+    pool.endMigration(addressA, leader)
+    assertThat(released.await(5, TimeUnit.SECONDS)).isTrue()
+    assertThat(pool.awaitMigration(addressA, follower, 1_000)).isTrue()
+  }
+
   @Test fun inUseConnectionsNotEvicted() {
     val pool = factory.newConnectionPool()
     val poolApi = ConnectionPool(pool)
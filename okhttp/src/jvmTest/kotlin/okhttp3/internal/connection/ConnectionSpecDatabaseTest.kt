@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.Duration.Companion.seconds
+import kotlin.time.TestTimeSource
+import okhttp3.Protocol
+import okhttp3.TestValueFactory
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class ConnectionSpecDatabaseTest {
+  private val factory = TestValueFactory()
+  private val timeSource = TestTimeSource()
+  private val database = ConnectionSpecDatabase(timeSource, timeToLive = 10.minutes)
+  private val addressA = factory.newAddress("a.com")
+  private val addressB = factory.newAddress("b.com")
+
+  @AfterEach fun tearDown() {
+    factory.close()
+  }
+
+  @Test fun unknownAddress() {
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(-1)
+    assertThat(database.protocol(addressA)).isNull()
+  }
+
+  @Test fun rememberSuccess() {
+    database.connected(addressA, 1, Protocol.HTTP_2)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(1)
+    assertThat(database.protocol(addressA)).isEqualTo(Protocol.HTTP_2)
+    assertThat(database.connectionSpecIndex(addressB)).isEqualTo(-1)
+  }
+
+  @Test fun successReplacesFallback() {
+    database.connected(addressA, 1, Protocol.HTTP_2)
+    database.connected(addressA, 0, Protocol.HTTP_1_1)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(0)
+    assertThat(database.protocol(addressA)).isEqualTo(Protocol.HTTP_1_1)
+  }
+
+  @Test fun rememberConsecutiveFailures() {
+    database.failed(addressA, 0)
+    database.failed(addressA, 0)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(0)
+
+    database.failed(addressA, 0)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(1)
+    assertThat(database.protocol(addressA)).isNull()
+  }
+
+  @Test fun successResetsFailures() {
+    database.failed(addressA, 0)
+    database.failed(addressA, 0)
+    database.connected(addressA, 0, Protocol.HTTP_2)
+    database.failed(addressA, 0)
+    database.failed(addressA, 0)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(0)
+    assertThat(database.protocol(addressA)).isEqualTo(Protocol.HTTP_2)
+  }
+
+  @Test fun staleFailureDoesNotUndoFallback() {
+    database.connected(addressA, 1, Protocol.HTTP_2)
+    database.failed(addressA, 0)
+    database.failed(addressA, 0)
+    database.failed(addressA, 0)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(1)
+  }
+
+  @Test fun failuresOfFallbackSkipIt() {
+    database.connected(addressA, 1, Protocol.HTTP_2)
+    database.failed(addressA, 1)
+    database.failed(addressA, 1)
+    database.failed(addressA, 1)
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(2)
+  }
+
+  @Test fun outcomesExpire() {
+    database.connected(addressA, 1, Protocol.HTTP_2)
+
+    timeSource += 9.minutes
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(1)
+
+    timeSource += 1.minutes
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(-1)
+
+    // An expired outcome doesn't prevent recording a new one.
+    database.connected(addressA, 2, Protocol.HTTP_2)
+    timeSource += 1.seconds
+    assertThat(database.connectionSpecIndex(addressA)).isEqualTo(2)
+  }
+}
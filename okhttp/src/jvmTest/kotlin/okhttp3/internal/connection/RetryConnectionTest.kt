@@ -17,6 +17,7 @@ package okhttp3.internal.connection
 
 import assertk.assertThat
 import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
@@ -27,6 +28,7 @@ import javax.net.ssl.SSLHandshakeException
 import javax.net.ssl.SSLSocket
 import okhttp3.ConnectionSpec
 import okhttp3.OkHttpClientTestRule
+import okhttp3.Protocol
 import okhttp3.TestValueFactory
 import okhttp3.TlsVersion
 import okhttp3.tls.internal.TlsUtil.localhost
@@ -106,6 +108,59 @@ class RetryConnectionTest {
     // sslV3 is not used because SSLv3 is not enabled on the socket.
   }
 
+  @Test fun rememberedFallbackIsUsedFirst() {
+    val routePlanner = factory.newRoutePlanner(client)
+    val route = factory.newRoute()
+    val connectionSpecs = route.address.connectionSpecs
+    client.connectionSpecDatabase.connected(route.address, 1, Protocol.HTTP_1_1)
+
+    // COMPATIBLE_TLS is used first because a fallback to it already succeeded.
+    val socket = createSocketWithEnabledProtocols(TlsVersion.TLS_1_2, TlsVersion.TLS_1_0)
+    val attempt0 =
+      routePlanner
+        .planConnectToRoute(route)
+        .planWithCurrentOrInitialConnectionSpec(connectionSpecs, socket)
+    assertThat(attempt0.connectionSpecIndex).isEqualTo(1)
+    assertThat(attempt0.isTlsFallback).isTrue()
+    socket.close()
+  }
+
+  @Test fun repeatedlyRejectedConnectionSpecIsSkipped() {
+    val routePlanner = factory.newRoutePlanner(client)
+    val route = factory.newRoute()
+    val connectionSpecs = route.address.connectionSpecs
+    repeat(3) {
+      client.connectionSpecDatabase.failed(route.address, 0)
+    }
+
+    // COMPATIBLE_TLS is used first because MODERN_TLS failed repeatedly.
+    val socket = createSocketWithEnabledProtocols(TlsVersion.TLS_1_2, TlsVersion.TLS_1_0)
+    val attempt0 =
+      routePlanner
+        .planConnectToRoute(route)
+        .planWithCurrentOrInitialConnectionSpec(connectionSpecs, socket)
+    assertThat(attempt0.connectionSpecIndex).isEqualTo(1)
+    assertThat(attempt0.isTlsFallback).isTrue()
+    socket.close()
+  }
+
+  @Test fun rememberedFallbackIsNotUsedWhenRetriesAreDisabled() {
+    client = client.newBuilder().retryOnConnectionFailure(false).build()
+    val routePlanner = factory.newRoutePlanner(client)
+    val route = factory.newRoute()
+    val connectionSpecs = route.address.connectionSpecs
+    client.connectionSpecDatabase.connected(route.address, 1, Protocol.HTTP_1_1)
+
+    val socket = createSocketWithEnabledProtocols(TlsVersion.TLS_1_2, TlsVersion.TLS_1_0)
+    val attempt0 =
+      routePlanner
+        .planConnectToRoute(route)
+        .planWithCurrentOrInitialConnectionSpec(connectionSpecs, socket)
+    assertThat(attempt0.connectionSpecIndex).isEqualTo(0)
+    assertThat(attempt0.isTlsFallback).isFalse()
+    socket.close()
+  }
+
   private fun createSocketWithEnabledProtocols(vararg tlsVersions: TlsVersion): SSLSocket =
     (handshakeCertificates.sslSocketFactory().createSocket() as SSLSocket).apply {
       enabledProtocols = javaNames(*tlsVersions)
@@ -18,6 +18,7 @@ package okhttp3.internal.connection
 import app.cash.burst.Burst
 import assertk.assertThat
 import assertk.assertions.containsExactly
+import assertk.assertions.endsWith
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isSameInstanceAs
@@ -32,6 +33,7 @@ import java.net.URI
 import java.net.UnknownHostException
 import kotlin.test.assertFailsWith
 import okhttp3.Address
+import okhttp3.AddressSelectionStrategy
 import okhttp3.FakeDns
 import okhttp3.OkHttpClientTestRule
 import okhttp3.Request
@@ -188,6 +190,64 @@ class RouteSelectorTest(
     proxySelector.assertRequests() // No proxy selector requests!
   }
 
+  @Test fun addressSelectionStrategyChoosesFirstRoute() {
+    val address =
+      factory.newAddress(
+        proxy = Proxy.NO_PROXY,
+      )
+    dns[uriHost] = dns.allocate(3)
+    val lastAddress = AddressSelectionStrategy { _, activeCalls -> activeCalls.size - 1 }
+    val routeSelector = newRouteSelector(address, addressSelectionStrategy = lastAddress)
+    val selection = routeSelector.next()
+    assertRoute(selection.next(), address, Proxy.NO_PROXY, dns[uriHost][2], uriPort)
+    assertRoute(selection.next(), address, Proxy.NO_PROXY, dns[uriHost][0], uriPort)
+    assertRoute(selection.next(), address, Proxy.NO_PROXY, dns[uriHost][1], uriPort)
+    assertThat(selection.hasNext()).isFalse()
+  }
+
+  @Test fun addressSelectionStrategyIndexOutOfBounds() {
+    val address =
+      factory.newAddress(
+        proxy = Proxy.NO_PROXY,
+      )
+    dns[uriHost] = dns.allocate(3)
+    val outOfBounds = AddressSelectionStrategy { _, activeCalls -> activeCalls.size }
+    val routeSelector = newRouteSelector(address, addressSelectionStrategy = outOfBounds)
+    val e = assertFailsWith<IllegalArgumentException> { routeSelector.next() }
+    assertThat(e.message!!).endsWith("returned 3 for 3 routes")
+  }
+
+  @Test fun alternativeServiceIsAttemptedFirst() {
+    val address =
+      factory.newHttpsAddress(
+        proxy = Proxy.NO_PROXY,
+      )
+    val altSvcDatabase = AltSvcDatabase()
+    altSvcDatabase.put(address.url, "http/1.1=\"hostb:2000\"")
+    dns[uriHost] = dns.allocate(1)
+    dns["hostb"] = dns.allocate(1)
+    val routeSelector = newRouteSelector(address, altSvcDatabase = altSvcDatabase)
+    val selection = routeSelector.next()
+    assertRoute(selection.next(), address, Proxy.NO_PROXY, dns["hostb"][0], 2000)
+    assertRoute(selection.next(), address, Proxy.NO_PROXY, dns[uriHost][0], uriPort)
+    assertThat(selection.hasNext()).isFalse()
+  }
+
+  @Test fun alternativeServiceNotUsedWithHttpProxy() {
+    val address =
+      factory.newHttpsAddress(
+        proxy = proxyA,
+      )
+    val altSvcDatabase = AltSvcDatabase()
+    altSvcDatabase.put(address.url, "http/1.1=\"hostb:2000\"")
+    dns[PROXY_A_HOST] = dns.allocate(1)
+    val routeSelector = newRouteSelector(address, altSvcDatabase = altSvcDatabase)
+    val selection = routeSelector.next()
+    assertRoute(selection.next(), address, proxyA, dns[PROXY_A_HOST][0], PROXY_A_PORT)
+    assertThat(selection.hasNext()).isFalse()
+    dns.assertRequests(PROXY_A_HOST)
+  }
+
   /**
    * Don't call through to the proxy selector if we don't have a host name.
    * https://github.com/lysine-dev/okhttp/issues/5770
@@ -622,12 +682,16 @@ class RouteSelectorTest(
     routeDatabase: RouteDatabase = this.routeDatabase,
     fastFallback: Boolean = false,
     call: RealCall = this.call,
+    addressSelectionStrategy: AddressSelectionStrategy = AddressSelectionStrategy.FIRST,
+    altSvcDatabase: AltSvcDatabase? = null,
   ): RouteSelector =
     RouteSelector(
       address = address,
       routeDatabase = routeDatabase,
       fastFallback = fastFallback,
       call = call,
+      addressSelectionStrategy = addressSelectionStrategy,
+      altSvcDatabase = altSvcDatabase,
     )
 
   companion object {
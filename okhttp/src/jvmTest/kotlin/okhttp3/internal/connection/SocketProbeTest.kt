@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import java.io.Closeable
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.util.concurrent.TimeUnit
+import javax.net.ssl.SSLSocket
+import kotlin.concurrent.thread
+import okhttp3.internal.closeQuietly
+import okhttp3.tls.internal.TlsUtil.localhost
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class SocketProbeTest {
+  private val handshakeCertificates = localhost()
+  private val closeables = mutableListOf<Closeable>()
+
+  @AfterEach fun tearDown() {
+    for (closeable in closeables) {
+      closeable.closeQuietly()
+    }
+  }
+
+  @Test fun plaintext() {
+    val serverSocket = ServerSocket(0, 1, InetAddress.getByName("localhost")).also(closeables::add)
+    val client = Socket(serverSocket.inetAddress, serverSocket.localPort).also(closeables::add)
+    val server = serverSocket.accept().also(closeables::add)
+    val bufferedSocket = client.asBufferedSocket()
+    val probe = SocketProbe(client, client, bufferedSocket)
+
+    assertThat(probe.isReadable()).isFalse()
+    assertThat(probe.awaitReadable(1)).isFalse()
+
+    server.getOutputStream().write('a'.code)
+    awaitReadable(probe)
+    assertThat(probe.awaitReadable(1)).isTrue()
+    assertThat(bufferedSocket.source.readByte()).isEqualTo('a'.code.toByte())
+
+    assertThat(probe.isReadable()).isFalse()
+    assertThat(probe.awaitReadable(1)).isFalse()
+  }
+
+  @Test fun tls() {
+    val serverSocket =
+      handshakeCertificates
+        .sslContext()
+        .serverSocketFactory
+        .createServerSocket(0, 1, InetAddress.getByName("localhost"))
+        .also(closeables::add)
+    val rawSocket = Socket(serverSocket.inetAddress, serverSocket.localPort).also(closeables::add)
+    val serverThread =
+      thread {
+        val server = serverSocket.accept() as SSLSocket
+        closeables += server
+        server.startHandshake()
+        server.getOutputStream().write('a'.code)
+        server.getOutputStream().flush()
+      }
+    val client =
+      handshakeCertificates
+        .sslSocketFactory()
+        .createSocket(rawSocket, "localhost", serverSocket.localPort, true) as SSLSocket
+    client.startHandshake()
+    serverThread.join()
+    val bufferedSocket = client.asBufferedSocket()
+    val probe = SocketProbe(rawSocket, client, bufferedSocket)
+
+    // The SSL socket reports no bytes available until it decrypts a record, so this relies on the
+    // bytes available on the raw socket. These may be post-handshake messages ahead of the data.
+    awaitReadable(probe)
+    assertThat(probe.awaitReadable(1_000)).isTrue()
+    assertThat(bufferedSocket.source.readByte()).isEqualTo('a'.code.toByte())
+
+    assertThat(probe.isReadable()).isFalse()
+    assertThat(probe.awaitReadable(1)).isFalse()
+  }
+
+  @Test fun peerClosed() {
+    val serverSocket = ServerSocket(0, 1, InetAddress.getByName("localhost")).also(closeables::add)
+    val client = Socket(serverSocket.inetAddress, serverSocket.localPort).also(closeables::add)
+    val server = serverSocket.accept()
+    val bufferedSocket = client.asBufferedSocket()
+    val probe = SocketProbe(client, client, bufferedSocket)
+
+    server.close()
+
+    // Only a blocking read notices that the socket is exhausted.
+    assertThat(probe.awaitReadable(1_000)).isTrue()
+    assertThat(bufferedSocket.source.exhausted()).isTrue()
+  }
+
+  private fun awaitReadable(probe: SocketProbe) {
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+    while (!probe.isReadable()) {
+      if (System.nanoTime() > deadline) throw AssertionError("not readable")
+      Thread.sleep(10)
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.connection
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import kotlin.time.Duration.Companion.hours
+import kotlin.time.TestTimeSource
+import okhttp3.TestValueFactory
+import okio.ByteString.Companion.encodeUtf8
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+
+class TlsSessionIdDatabaseTest {
+  private val factory = TestValueFactory()
+  private val timeSource = TestTimeSource()
+  private val database = TlsSessionIdDatabase(timeSource, timeToLive = 1.hours)
+  private val addressA = factory.newAddress("a.com")
+  private val addressB = factory.newAddress("b.com")
+
+  @AfterEach fun tearDown() {
+    factory.close()
+  }
+
+  @Test fun unknownAddress() {
+    assertThat(database.sessionId(addressA)).isNull()
+  }
+
+  @Test fun rememberSessionId() {
+    database.connected(addressA, "abc".encodeUtf8())
+    assertThat(database.sessionId(addressA)).isEqualTo("abc".encodeUtf8())
+    assertThat(database.sessionId(addressB)).isNull()
+
+    database.connected(addressA, null)
+    assertThat(database.sessionId(addressA)).isNull()
+  }
+
+  @Test fun sessionIdsExpire() {
+    database.connected(addressA, "abc".encodeUtf8())
+
+    timeSource += 1.hours
+    assertThat(database.sessionId(addressA)).isNull()
+
+    // An expired session ID doesn't prevent recording a new one.
+    database.connected(addressA, "def".encodeUtf8())
+    assertThat(database.sessionId(addressA)).isEqualTo("def".encodeUtf8())
+  }
+}
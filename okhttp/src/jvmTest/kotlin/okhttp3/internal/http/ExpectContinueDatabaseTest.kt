@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http
+
+import assertk.assertThat
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import kotlin.time.Duration.Companion.minutes
+import kotlin.time.TestTimeSource
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import org.junit.jupiter.api.Test
+
+class ExpectContinueDatabaseTest {
+  private val timeSource = TestTimeSource()
+  private val database = ExpectContinueDatabase(timeSource, maxEntryCount = 1, maxAge = 10.minutes)
+  private val urlA = "https://a.com/".toHttpUrl()
+  private val urlB = "https://b.com/".toHttpUrl()
+
+  @Test fun unknownOriginIsSupported() {
+    assertThat(database.isSupported(urlA)).isTrue()
+  }
+
+  @Test fun rememberUnsupportedOrigin() {
+    database.unsupported(urlA)
+    assertThat(database.isSupported("https://a.com/other/path".toHttpUrl())).isFalse()
+    assertThat(database.isSupported("http://a.com/".toHttpUrl())).isTrue()
+  }
+
+  @Test fun unsupportedOriginExpires() {
+    database.unsupported(urlA)
+
+    timeSource += 9.minutes
+    assertThat(database.isSupported(urlA)).isFalse()
+
+    timeSource += 1.minutes
+    assertThat(database.isSupported(urlA)).isTrue()
+  }
+
+  @Test fun lookupsDoNotDisplaceUnsupportedOrigins() {
+    database.unsupported(urlA)
+
+    // Checking other origins doesn't add entries, so the database's only entry is kept.
+    assertThat(database.isSupported(urlB)).isTrue()
+    assertThat(database.isSupported(urlB)).isTrue()
+    assertThat(database.isSupported(urlA)).isFalse()
+
+    // Recording another origin evicts the least recently used one.
+    timeSource += 1.minutes
+    database.unsupported(urlB)
+    assertThat(database.isSupported(urlA)).isTrue()
+    assertThat(database.isSupported(urlB)).isFalse()
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http1
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import java.io.EOFException
+import kotlin.test.assertFailsWith
+import okhttp3.Headers
+import okhttp3.Headers.Companion.headersOf
+import okhttp3.internal.HEADER_LIMIT
+import okio.Buffer
+import org.junit.jupiter.api.Test
+
+class HeadersReaderTest {
+  @Test fun readHeaders() {
+    val headers = readHeaders("Content-Type: text/plain\r\nContent-Length: 3\r\n\r\nabc")
+    assertThat(headers).isEqualTo(
+      headersOf(
+        "Content-Type",
+        "text/plain",
+        "Content-Length",
+        "3",
+      ),
+    )
+  }
+
+  @Test fun bareLineFeeds() {
+    val source = Buffer().writeUtf8("A: 1\nB: 2\n\nabc")
+    assertThat(HeadersReader(source).readHeaders()).isEqualTo(headersOf("A", "1", "B", "2"))
+    assertThat(source.readUtf8()).isEqualTo("abc")
+  }
+
+  @Test fun valuesAreTrimmed() {
+    val headers = readHeaders("A:  1 \t\r\nB:2\r\r\nC:\r\nD:  x \r\n\r\n")
+    assertThat(headers).isEqualTo(
+      headersOf(
+        "A",
+        "1",
+        "B",
+        "2",
+        "C",
+        "",
+        "D",
+        "x",
+      ),
+    )
+  }
+
+  @Test fun lenientLines() {
+    val headers = readHeaders(":a: b\r\n:c\r\nno colon\r\n\r\n")
+    assertThat(headers.toList()).containsExactly(
+      ":a" to "b",
+      "" to "c",
+      "" to "no colon",
+    )
+  }
+
+  @Test fun utf8NamesAndValues() {
+    val headers = readHeaders("Café: naïve\r\nX: 😀\r\n\r\n")
+    assertThat(headers.toList()).containsExactly(
+      "Café" to "naïve",
+      "X" to "😀",
+    )
+  }
+
+  @Test fun commonNamesAreInterned() {
+    val a = readHeaders("Content-Length: 1\r\ncontent-type: text/plain\r\n\r\n")
+    val b = readHeaders("Content-Length: 2\r\ncontent-type: text/html\r\n\r\n")
+    assertThat(a.name(0)).isSameInstanceAs(b.name(0))
+    assertThat(a.name(1)).isSameInstanceAs(b.name(1))
+  }
+
+  @Test fun matchesLineReader() {
+    val inputs =
+      listOf(
+        "A: 1\r\n\r\n",
+        "A:1\r\nA: 2\r\n\r\n",
+        "Transfer-Encoding: chunked\r\nETag: \"x\"\r\n\r\n",
+        "Long-Name-That-Is-Longer-Than-The-Intern-Limit-Of-Sixty-Four-Bytes-Long: y\r\n\r\n",
+        " A : 1 \r\n\r\n",
+        "A\u0000: \u0001\r\n\r\n",
+        "A: \r\n\r\n",
+        "\u001f: \u001fx\u001f\r\n\r\n",
+      )
+    for (input in inputs) {
+      assertThat(readHeaders(input)).isEqualTo(readHeadersByLine(input))
+    }
+  }
+
+  @Test fun headerLimitIsEnforced() {
+    val value = "a".repeat(HEADER_LIMIT.toInt() - 3)
+    assertThat(readHeaders("A: $value\r\n\r\n")["A"]).isEqualTo(value)
+
+    assertFailsWith<EOFException> {
+      readHeaders("A: ${value}a\r\n\r\n")
+    }
+  }
+
+  @Test fun headerLimitCountsCharacters() {
+    // 3 bytes per character, but the limit counts characters.
+    val value = "€".repeat(HEADER_LIMIT.toInt() / 6)
+    val headers = readHeaders("A: $value\r\nB: $value\r\n\r\n")
+    assertThat(headers["B"]).isEqualTo(value)
+  }
+
+  private fun readHeaders(input: String): Headers =
+    HeadersReader(Buffer().writeUtf8(input)).readHeaders()
+
+  /** Reads headers a line at a time, as this class did before it parsed bytes. */
+  private fun readHeadersByLine(input: String): Headers {
+    val source = Buffer().writeUtf8(input)
+    val result = Headers.Builder()
+    while (true) {
+      val line = source.readUtf8LineStrict()
+      if (line.isEmpty()) break
+      result.addLenient(line)
+    }
+    return result.build()
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http1
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import java.io.IOException
+import java.net.SocketTimeoutException
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+import kotlin.test.assertFailsWith
+import org.junit.jupiter.api.Test
+
+class Http1PipelineTest {
+  private val pipeline = Http1Pipeline()
+  private val log = mutableListOf<String>()
+
+  @Test fun requestsAreWrittenInTicketOrder() {
+    assertThat(pipeline.writeRequest { log += "a" }).isEqualTo(0L)
+    assertThat(pipeline.writeRequest { log += "b" }).isEqualTo(1L)
+    assertThat(pipeline.writeRequest { log += "c" }).isEqualTo(2L)
+    assertThat(log).containsExactly("a", "b", "c")
+  }
+
+  @Test fun responsesAreReadInTicketOrder() {
+    val ticketA = pipeline.writeRequest {}
+    val ticketB = pipeline.writeRequest {}
+
+    pipeline.awaitTurn(ticketA, TimeUnit.SECONDS.toNanos(1))
+    assertFailsWith<SocketTimeoutException> {
+      pipeline.awaitTurn(ticketB, TimeUnit.MILLISECONDS.toNanos(100))
+    }
+
+    pipeline.responseComplete(ticketA)
+    pipeline.awaitTurn(ticketB, TimeUnit.SECONDS.toNanos(1))
+  }
+
+  @Test fun waitingExchangeResumesWhenEarlierResponseCompletes() {
+    val ticketA = pipeline.writeRequest {}
+    val ticketB = pipeline.writeRequest {}
+
+    val readerB =
+      thread {
+        pipeline.awaitTurn(ticketB, 0L)
+        synchronized(log) { log += "b" }
+      }
+
+    Thread.sleep(100)
+    synchronized(log) { log += "a" }
+    pipeline.responseComplete(ticketA)
+    readerB.join(TimeUnit.SECONDS.toMillis(5))
+    assertThat(log).containsExactly("a", "b")
+  }
+
+  @Test fun failureFailsExchangesBehindCurrentResponse() {
+    val ticketA = pipeline.writeRequest {}
+    val ticketB = pipeline.writeRequest {}
+    val ticketC = pipeline.writeRequest {}
+
+    pipeline.fail()
+
+    pipeline.awaitTurn(ticketA, TimeUnit.SECONDS.toNanos(1))
+    pipeline.responseComplete(ticketA)
+    assertFailsWith<IOException> {
+      pipeline.awaitTurn(ticketB, TimeUnit.SECONDS.toNanos(1))
+    }
+    assertFailsWith<IOException> {
+      pipeline.awaitTurn(ticketC, TimeUnit.SECONDS.toNanos(1))
+    }
+  }
+
+  @Test fun failureWakesWaitingExchange() {
+    pipeline.writeRequest {}
+    val ticketB = pipeline.writeRequest {}
+
+    var failure: IOException? = null
+    val readerB =
+      thread {
+        failure = assertFailsWith<IOException> { pipeline.awaitTurn(ticketB, 0L) }
+      }
+
+    Thread.sleep(100)
+    pipeline.fail()
+    readerB.join(TimeUnit.SECONDS.toMillis(5))
+    assertThat(failure?.message).isEqualTo("HTTP/1.1 pipeline failed")
+  }
+
+  @Test fun failedPipelineRefusesRequests() {
+    pipeline.writeRequest {}
+    pipeline.fail()
+
+    assertFailsWith<IOException> {
+      pipeline.writeRequest { log += "b" }
+    }
+    assertThat(log).containsExactly()
+  }
+}
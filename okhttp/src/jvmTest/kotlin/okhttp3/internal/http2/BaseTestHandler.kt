@@ -88,6 +88,13 @@ internal open class BaseTestHandler : Http2Reader.Handler {
     fail("")
   }
 
+  override fun priorityUpdate(
+    prioritizedStreamId: Int,
+    priorityFieldValue: String,
+  ) {
+    fail("")
+  }
+
   override fun pushPromise(
     streamId: Int,
     associatedStreamId: Int,
@@ -99,10 +106,7 @@ internal open class BaseTestHandler : Http2Reader.Handler {
   override fun alternateService(
     streamId: Int,
     origin: String,
-    protocol: ByteString,
-    host: String,
-    port: Int,
-    maxAge: Long,
+    altSvc: String,
   ) {
     fail("")
   }
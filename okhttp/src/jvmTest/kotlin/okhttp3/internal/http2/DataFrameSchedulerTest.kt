@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import java.io.InterruptedIOException
+import java.util.concurrent.LinkedBlockingQueue
+import org.junit.jupiter.api.Test
+
+class DataFrameSchedulerTest {
+  private val scheduler = DataFrameScheduler()
+  private val turns = LinkedBlockingQueue<String>()
+
+  @Test fun uncontended() {
+    scheduler.acquire(1, Priority.DEFAULT)
+    scheduler.release()
+    scheduler.acquire(3, Priority.DEFAULT)
+    scheduler.release()
+  }
+
+  @Test fun mostUrgentGoesFirst() {
+    scheduler.acquire(1, Priority.DEFAULT)
+    val threads =
+      listOf(
+        startWriter(3, Priority(urgency = 5)),
+        startWriter(5, Priority(urgency = 0)),
+        startWriter(7, Priority(urgency = 3)),
+      )
+    scheduler.release()
+    threads.forEach { it.join() }
+
+    assertThat(turns.toList()).containsExactly("5", "7", "3")
+  }
+
+  @Test fun nonIncrementalStreamsGoInStreamIdOrder() {
+    scheduler.acquire(1, Priority.DEFAULT)
+    val threads =
+      listOf(
+        startWriter(9, Priority(incremental = true)),
+        startWriter(7, Priority.DEFAULT),
+        startWriter(5, Priority(incremental = true)),
+        startWriter(3, Priority.DEFAULT),
+      )
+    scheduler.release()
+    threads.forEach { it.join() }
+
+    assertThat(turns.toList()).containsExactly("3", "7", "9", "5")
+  }
+
+  @Test fun interruptedWaiterGivesUpItsTurn() {
+    scheduler.acquire(1, Priority.DEFAULT)
+    val a = startWriter(3, Priority(urgency = 0))
+    val b = startWriter(5, Priority(urgency = 1))
+    a.interrupt()
+    a.join()
+    scheduler.release()
+    b.join()
+
+    assertThat(turns.toList()).containsExactly("3 interrupted", "5")
+  }
+
+  private fun startWriter(
+    streamId: Int,
+    priority: Priority,
+  ): Thread {
+    val thread =
+      Thread {
+        try {
+          scheduler.acquire(streamId, priority)
+        } catch (e: InterruptedIOException) {
+          turns.add("$streamId interrupted")
+          return@Thread
+        }
+        turns.add("$streamId")
+        scheduler.release()
+      }
+    thread.start()
+
+    // Wait until the writer is queued.
+    while (thread.state != Thread.State.WAITING) {
+      Thread.sleep(1)
+    }
+    assertThat(turns.size).isEqualTo(0)
+    return thread
+  }
+}
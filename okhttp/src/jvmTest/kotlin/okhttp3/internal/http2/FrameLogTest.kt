@@ -27,6 +27,7 @@ import okhttp3.internal.http2.Http2.TYPE_DATA
 import okhttp3.internal.http2.Http2.TYPE_GOAWAY
 import okhttp3.internal.http2.Http2.TYPE_HEADERS
 import okhttp3.internal.http2.Http2.TYPE_PING
+import okhttp3.internal.http2.Http2.TYPE_PRIORITY_UPDATE
 import okhttp3.internal.http2.Http2.TYPE_PUSH_PROMISE
 import okhttp3.internal.http2.Http2.TYPE_SETTINGS
 import okhttp3.internal.http2.Http2.formatFlags
@@ -56,6 +57,8 @@ class FrameLogTest {
       .isEqualTo("<< 0x00000003   226 DATA          END_STREAM")
     assertThat(frameLog(false, 0, 8, TYPE_GOAWAY, FLAG_NONE))
       .isEqualTo(">> 0x00000000     8 GOAWAY        ")
+    assertThat(frameLog(false, 0, 7, TYPE_PRIORITY_UPDATE, FLAG_NONE))
+      .isEqualTo(">> 0x00000000     7 PRIORITY_UPDATE ")
   }
 
   /** Window update frames have special formatting.  */
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import okio.Buffer
+import okio.ForwardingSink
+import okio.buffer
+import org.junit.jupiter.api.Test
+
+class FrameQueueTest {
+  private val frameQueue = FrameQueue()
+  private val frames = Buffer()
+  private var flushCount = 0
+  private val sink =
+    object : ForwardingSink(frames) {
+      override fun flush() {
+        flushCount++
+        super.flush()
+      }
+    }
+  private val writer = Http2Writer(sink.buffer(), true)
+
+  @Test fun onlyFirstEnqueueSchedulesWrite() {
+    assertThat(frameQueue.windowUpdate(3, 10L)).isTrue()
+    assertThat(frameQueue.windowUpdate(5, 10L)).isFalse()
+    assertThat(frameQueue.pong(1, 2)).isFalse()
+
+    frameQueue.writeTo(writer)
+    assertThat(frameQueue.pong(3, 4)).isTrue()
+  }
+
+  @Test fun windowUpdatesAreMerged() {
+    frameQueue.windowUpdate(3, 10L)
+    frameQueue.windowUpdate(0, 20L)
+    frameQueue.windowUpdate(3, 30L)
+    frameQueue.writeTo(writer)
+
+    assertThat(readFrames()).containsExactly(
+      "WINDOW_UPDATE 3 40",
+      "WINDOW_UPDATE 0 20",
+    )
+    assertThat(flushCount).isEqualTo(1)
+  }
+
+  @Test fun largeMergedWindowUpdateIsSplit() {
+    frameQueue.windowUpdate(0, 0x7fffffffL)
+    frameQueue.windowUpdate(0, 5L)
+    frameQueue.writeTo(writer)
+
+    assertThat(readFrames()).containsExactly(
+      "WINDOW_UPDATE 0 2147483647",
+      "WINDOW_UPDATE 0 5",
+    )
+  }
+
+  @Test fun resetDropsPendingWindowUpdate() {
+    frameQueue.windowUpdate(3, 10L)
+    frameQueue.windowUpdate(5, 10L)
+    frameQueue.rstStream(3, ErrorCode.CANCEL)
+    frameQueue.pong(1, 2)
+    frameQueue.writeTo(writer)
+
+    assertThat(readFrames()).containsExactly(
+      "PING 1 2",
+      "RST_STREAM 3 CANCEL",
+      "WINDOW_UPDATE 5 10",
+    )
+    assertThat(flushCount).isEqualTo(1)
+  }
+
+  @Test fun writeWithoutFrames() {
+    frameQueue.writeTo(writer)
+
+    assertThat(frames.size).isEqualTo(0L)
+    assertThat(flushCount).isEqualTo(1)
+  }
+
+  private fun readFrames(): List<String> {
+    val result = mutableListOf<String>()
+    val reader = Http2Reader(frames, false)
+    val handler =
+      object : BaseTestHandler() {
+        override fun windowUpdate(
+          streamId: Int,
+          windowSizeIncrement: Long,
+        ) {
+          result += "WINDOW_UPDATE $streamId $windowSizeIncrement"
+        }
+
+        override fun rstStream(
+          streamId: Int,
+          errorCode: ErrorCode,
+        ) {
+          result += "RST_STREAM $streamId $errorCode"
+        }
+
+        override fun ping(
+          ack: Boolean,
+          payload1: Int,
+          payload2: Int,
+        ) {
+          result += "PING $payload1 $payload2"
+        }
+      }
+    while (!frames.exhausted()) {
+      reader.nextFrame(false, handler)
+    }
+    return result
+  }
+}
@@ -19,9 +19,11 @@ import assertk.assertThat
 import assertk.assertions.containsExactly
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import java.io.IOException
 import java.util.Arrays
 import kotlin.test.assertFailsWith
+import okhttp3.HeaderIndexingStrategy
 import okhttp3.TestUtil.headerEntries
 import okio.Buffer
 import okio.ByteString
@@ -202,6 +204,44 @@ class HpackTest {
     checkEntry(entry, ":path", "www.example.com", 52)
   }
 
+  @Test
+  fun repeatedLiteralsAreInterned() {
+    repeat(2) {
+      bytesIn.writeByte(0x00) // Literal not indexed
+      bytesIn.writeByte(0x0a) // Literal name (len = 10)
+      bytesIn.writeUtf8("custom-key")
+      bytesIn.writeByte(0x8c) // Literal value Huffman encoded 12 bytes
+      bytesIn.write("f1e3c2e5f23a6ba0ab90f4ff".decodeHex())
+    }
+    hpackReader!!.readHeaders()
+
+    val headers = hpackReader!!.getAndResetHeaderList()
+    assertThat(headers).isEqualTo(
+      headerEntries("custom-key", "www.example.com", "custom-key", "www.example.com"),
+    )
+    assertThat(headers[1].name).isSameInstanceAs(headers[0].name)
+    assertThat(headers[1].value).isSameInstanceAs(headers[0].value)
+  }
+
+  @Test
+  fun staticTableNamesAndValuesAreInterned() {
+    bytesIn.writeByte(0x00) // Literal not indexed
+    bytesIn.writeByte(0x0d) // Literal name (len = 13)
+    bytesIn.writeUtf8("cache-control")
+    bytesIn.writeByte(0x0d) // Literal value (len = 13)
+    bytesIn.writeUtf8("gzip, deflate")
+    hpackReader!!.readHeaders()
+
+    val header = hpackReader!!.getAndResetHeaderList().single()
+    val staticEntries = Hpack.STATIC_HEADER_TABLE
+    assertThat(header.name).isSameInstanceAs(
+      staticEntries.first { it.name.utf8() == "cache-control" }.name,
+    )
+    assertThat(header.value).isSameInstanceAs(
+      staticEntries.first { it.value.utf8() == "gzip, deflate" }.value,
+    )
+  }
+
   /**
    * http://tools.ietf.org/html/draft-ietf-httpbis-header-compression-12#appendix-C.2.1
    */
@@ -1209,6 +1249,64 @@ class HpackTest {
     assertThat(hpackWriter!!.headerCount).isEqualTo(2)
   }
 
+  @Test
+  fun indexingStrategyChoosesLiteralRepresentation() {
+    val strategy =
+      HeaderIndexingStrategy.create(
+        neverIndexed = listOf("Authorization"),
+        notIndexed = listOf("x-request-id"),
+      )
+    hpackWriter = Hpack.Writer(4096, false, bytesOut, indexingStrategy = strategy)
+    val headerBlock =
+      headerEntries(
+        "x-request-id",
+        "abc",
+        "authorization",
+        "secret",
+        "user-agent",
+        "ok",
+      )
+
+    bytesIn.writeByte(0x00) // Literal not indexed
+    bytesIn.writeByte(0x0c) // Literal name (len = 12)
+    bytesIn.writeUtf8("x-request-id")
+    bytesIn.writeByte(0x03) // Literal value (len = 3)
+    bytesIn.writeUtf8("abc")
+    bytesIn.writeByte(0x1f) // Literal never indexed
+    bytesIn.writeByte(0x08) // Indexed name (idx = 15 + 8) -> authorization
+    bytesIn.writeByte(0x06) // Literal value (len = 6)
+    bytesIn.writeUtf8("secret")
+    bytesIn.writeByte(0x7a) // Literal indexed, indexed name (idx = 58) -> user-agent
+    bytesIn.writeByte(0x02) // Literal value (len = 2)
+    bytesIn.writeUtf8("ok")
+
+    hpackWriter!!.writeHeaders(headerBlock)
+    assertThat(bytesOut).isEqualTo(bytesIn)
+    assertThat(hpackWriter!!.headerCount).isEqualTo(1)
+
+    hpackReader!!.readHeaders()
+    assertThat(hpackReader!!.headerCount).isEqualTo(1)
+    assertThat(hpackReader!!.getAndResetHeaderList()).isEqualTo(headerBlock)
+  }
+
+  @Test
+  fun headerTableSizeLimit() {
+    hpackWriter!!.resizeHeaderTable(65536)
+    assertThat(hpackWriter!!.maxDynamicTableByteCount).isEqualTo(16384)
+
+    val writer = Hpack.Writer(4096, false, bytesOut, headerTableSizeLimit = 65536)
+    writer.resizeHeaderTable(65536)
+    assertThat(writer.maxDynamicTableByteCount).isEqualTo(65536)
+  }
+
+  @Test
+  fun compressedAndUncompressedByteCounts() {
+    hpackWriter!!.writeHeaders(headerEntries("foo", "bar"))
+    hpackWriter!!.writeHeaders(headerEntries("foo", "bar"))
+    assertThat(hpackWriter!!.uncompressedByteCount).isEqualTo(12L)
+    assertThat(hpackWriter!!.compressedByteCount).isEqualTo(10L)
+  }
+
   private fun newReader(source: Buffer): Hpack.Reader = Hpack.Reader(source, 4096)
 
   private fun byteStream(vararg bytes: Int): Buffer = Buffer().write(intArrayToByteArray(bytes))
@@ -29,6 +29,7 @@ import java.io.EOFException
 import java.io.IOException
 import java.io.InterruptedIOException
 import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
 import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicInteger
 import kotlin.test.assertFailsWith
@@ -43,7 +44,9 @@ import okhttp3.internal.concurrent.TaskRunner
 import okhttp3.internal.concurrent.notifyAll
 import okhttp3.internal.concurrent.wait
 import okhttp3.internal.concurrent.withLock
+import okhttp3.internal.connection.SocketProbe
 import okhttp3.internal.connection.asBufferedSocket
+import okhttp3.internal.http2.flowcontrol.ReceiveBudget
 import okio.AsyncTimeout
 import okio.Buffer
 import okio.BufferedSource
@@ -113,6 +116,49 @@ class Http2ConnectionTest {
     assertThat(stream.writeBytesMaximum).isEqualTo(3368L)
   }
 
+  @Test fun peerAcceptsExtendedConnect() {
+    val settings = Settings()
+    settings[Settings.ENABLE_CONNECT_PROTOCOL] = 1
+    val connection = connectWithSettings(false, settings)
+    assertThat(connection.awaitExtendedConnect(TimeUnit.SECONDS.toNanos(5))).isTrue()
+  }
+
+  @Test fun peerDoesNotAcceptExtendedConnect() {
+    val connection = connectWithSettings(false, Settings())
+    assertThat(connection.awaitExtendedConnect(TimeUnit.SECONDS.toNanos(5))).isFalse()
+  }
+
+  @Test fun awaitExtendedConnectTimesOutWithoutSettings() {
+    peer.play()
+    val connection =
+      Http2Connection
+        .Builder(true, TaskRunner.INSTANCE)
+        .socket(peer.openSocket().asBufferedSocket(), "peer")
+        .build()
+    connection.start(sendConnectionPreface = false)
+    assertThat(connection.awaitExtendedConnect(TimeUnit.MILLISECONDS.toNanos(100))).isFalse()
+  }
+
+  @Test fun largerHeaderTableSizeIsAdvertisedAndUsed() {
+    val settings = Settings()
+    settings[Settings.HEADER_TABLE_SIZE] = 65536
+    peer.sendFrame().settings(settings)
+    peer.acceptFrame() // ACK
+    peer.play()
+
+    val connection =
+      Http2Connection
+        .Builder(true, TaskRunner.INSTANCE)
+        .socket(peer.openSocket().asBufferedSocket(), "peer")
+        .headerTableSize(65536)
+        .build()
+    connection.start(sendConnectionPreface = false)
+    assertThat(peer.takeFrame().ack).isTrue()
+    assertThat(connection.okHttpSettings.headerTableSize).isEqualTo(65536)
+    assertThat(connection.writer.hpackWriter.maxDynamicTableByteCount).isEqualTo(65536)
+    assertThat(connection.headerCompressionRatio).isEqualTo(1.0)
+  }
+
   @Test fun peerHttp2ServerZerosCompressionTable() {
     val client = false // Peer is server, so we are client.
     val settings = Settings()
@@ -318,6 +364,158 @@ class Http2ConnectionTest {
     }
   }
 
+  @Test fun receiveWindowAutotuningGrowsWindow() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.sendFrame().headers(false, 3, headerEntries("a", "android"))
+    peer.sendFrame().data(false, 3, data(80), 80)
+    peer.acceptFrame() // PING
+    peer.acceptFrame() // connection WINDOW UPDATE
+    peer.acceptFrame() // stream WINDOW UPDATE
+    peer.sendFrame().ping(true, Http2Connection.BDP_PING, 0)
+    peer.acceptFrame() // SETTINGS
+    peer.acceptFrame() // connection WINDOW UPDATE
+    peer.play()
+
+    // Play it back.
+    val connection =
+      Http2Connection
+        .Builder(true, TaskRunner.INSTANCE)
+        .socket(peer.openSocket().asBufferedSocket(), "peer")
+        .receiveWindowAutotuning(true)
+        .build()
+    connection.start(sendConnectionPreface = false)
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_SETTINGS) // ACK
+    connection.okHttpSettings[Settings.INITIAL_WINDOW_SIZE] = 100
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+    val buffer = Buffer()
+    while (buffer.size < 80L) {
+      stream.source.read(buffer, 80L - buffer.size)
+    }
+
+    // Verify the peer received what was expected.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+    val ping = peer.takeFrame()
+    assertThat(ping.type).isEqualTo(Http2.TYPE_PING)
+    assertThat(ping.payload1).isEqualTo(Http2Connection.BDP_PING)
+    assertThat(peer.takeFrame().windowSizeIncrement).isEqualTo(80L)
+    assertThat(peer.takeFrame().windowSizeIncrement).isEqualTo(80L)
+    val settings = peer.takeFrame()
+    assertThat(settings.type).isEqualTo(Http2.TYPE_SETTINGS)
+    assertThat(settings.settings!!.initialWindowSize).isEqualTo(160)
+    val windowUpdate = peer.takeFrame()
+    assertThat(windowUpdate.streamId).isEqualTo(0)
+    assertThat(windowUpdate.windowSizeIncrement).isEqualTo(60L)
+    assertThat(connection.readWindowSize).isEqualTo(160)
+  }
+
+  @Test fun streamReceiveWindowShrinksWhenPeerAcknowledgesSettings() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.acceptFrame() // SETTINGS
+    peer.sendFrame().headers(false, 3, headerEntries("a", "android"))
+    peer.sendFrame().data(false, 3, data(100), 100) // Permitted by the old window.
+    peer.acceptFrame() // connection WINDOW UPDATE
+    peer.sendFrame().applyAndAckSettings(Settings())
+    peer.sendFrame().ping(false, 2, 0)
+    peer.acceptFrame() // PING
+    peer.play()
+
+    // Play it back.
+    val connection = connect(peer)
+    connection.okHttpSettings[Settings.INITIAL_WINDOW_SIZE] = 100
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+    connection.updateReadWindowSize(50)
+    assertThat(stream.withLock { stream.source.maxByteCount }).isEqualTo(100L)
+
+    // Verify the peer received what was expected.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+    assertThat(peer.takeFrame().settings!!.initialWindowSize).isEqualTo(50)
+    val windowUpdate = peer.takeFrame()
+    assertThat(windowUpdate.streamId).isEqualTo(0)
+    assertThat(windowUpdate.windowSizeIncrement).isEqualTo(50L) // 50 bytes are withheld.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_PING)
+    assertThat(stream.errorCode).isNull()
+    assertThat(stream.withLock { stream.source.readBuffer.size }).isEqualTo(100L)
+    assertThat(stream.withLock { stream.source.maxByteCount }).isEqualTo(50L)
+  }
+
+  @Test fun receiveBudgetWithholdsConnectionWindowUpdate() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.sendFrame().headers(false, 3, headerEntries("a", "android"))
+    peer.sendFrame().data(false, 3, data(80), 80)
+    peer.sendFrame().ping(false, 2, 0)
+    peer.acceptFrame() // PING
+    peer.acceptFrame() // stream WINDOW UPDATE
+    peer.acceptFrame() // connection WINDOW UPDATE
+    peer.play()
+
+    // Play it back.
+    val clientBudget = ReceiveBudget(1_000)
+    val connection =
+      Http2Connection
+        .Builder(true, TaskRunner.INSTANCE)
+        .socket(peer.openSocket().asBufferedSocket(), "peer")
+        .receiveBudget(ReceiveBudget(50, clientBudget))
+        .build()
+    connection.start(sendConnectionPreface = false)
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_SETTINGS) // ACK
+    connection.okHttpSettings[Settings.INITIAL_WINDOW_SIZE] = 100
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+
+    // The data is received and buffered, but no WINDOW_UPDATE precedes the pong.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+    val pong = peer.takeFrame()
+    assertThat(pong.type).isEqualTo(Http2.TYPE_PING)
+    assertThat(pong.ack).isTrue()
+    assertThat(connection.bufferedByteCount).isEqualTo(80L)
+    assertThat(clientBudget.bufferedByteCount).isEqualTo(80L)
+
+    // Consuming the data releases the budget and updates both windows.
+    val buffer = Buffer()
+    while (buffer.size < 80L) {
+      stream.source.read(buffer, 80L - buffer.size)
+    }
+    val streamWindowUpdate = peer.takeFrame()
+    assertThat(streamWindowUpdate.streamId).isEqualTo(3)
+    assertThat(streamWindowUpdate.windowSizeIncrement).isEqualTo(80L)
+    val connectionWindowUpdate = peer.takeFrame()
+    assertThat(connectionWindowUpdate.streamId).isEqualTo(0)
+    assertThat(connectionWindowUpdate.windowSizeIncrement).isEqualTo(80L)
+    assertThat(connection.bufferedByteCount).isEqualTo(0L)
+    assertThat(clientBudget.bufferedByteCount).isEqualTo(0L)
+  }
+
+  @Test fun clientUpdatesPriority() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.acceptFrame() // PRIORITY_UPDATE
+    peer.play()
+
+    // Play it back.
+    val connection = connect(peer)
+    val stream = connection.newStream(headerEntries("priority", "u=1"), false)
+    assertThat(stream.priority).isEqualTo(Priority(urgency = 1))
+    stream.updatePriority(Priority(urgency = 5, incremental = true))
+    assertThat(stream.priority).isEqualTo(Priority(urgency = 5, incremental = true))
+
+    // Verify the peer received what was expected.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+    val priorityUpdate = peer.takeFrame()
+    assertThat(priorityUpdate.type).isEqualTo(Http2.TYPE_PRIORITY_UPDATE)
+    assertThat(priorityUpdate.streamId).isEqualTo(3)
+    assertThat(String(priorityUpdate.data!!)).isEqualTo("u=5, i")
+  }
+
   @Test fun serverSendsEmptyDataClientDoesntSendWindowUpdateHttp2() {
     // Write the mocking script.
     peer.sendFrame().settings(Settings())
@@ -1382,6 +1580,150 @@ class Http2ConnectionTest {
     assertArrayEquals("abcdef".toByteArray(), data1.data)
   }
 
+  @Test fun receiveGoAwayNotifiesListenerBeforeRefusingStreams() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM 3
+    peer.sendFrame().goAway(1, ErrorCode.NO_ERROR, EMPTY_BYTE_ARRAY)
+    peer.play()
+
+    // Play it back.
+    val openStreamCounts = LinkedBlockingQueue<Int>()
+    val listener =
+      object : Http2Connection.Listener() {
+        override fun onStream(stream: Http2Stream): Unit = throw AssertionError()
+
+        override fun onGoAway(connection: Http2Connection) {
+          openStreamCounts.add(connection.openStreamCount())
+        }
+      }
+    val connection = connect(peer, listener = listener)
+    val stream = connection.newStream(headerEntries("a", "android"), false)
+    assertFailsWith<StreamResetException> {
+      stream.takeHeaders()
+    }.also { expected ->
+      assertThat(expected.errorCode).isEqualTo(ErrorCode.REFUSED_STREAM)
+    }
+    assertThat(openStreamCounts.poll(5, TimeUnit.SECONDS)).isEqualTo(1)
+    assertThat(connection.openStreamCount()).isEqualTo(0)
+  }
+
+  @Test fun idleReaderParksAndResumesToReadPong() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // PING
+    peer.sendFrame().ping(true, Http2Connection.AWAIT_PING, 0)
+    peer.play()
+
+    // Play it back.
+    val sharedReader = SharedReader(TaskRunner.INSTANCE, TimeUnit.MILLISECONDS.toNanos(10))
+    val connection = connect(peer, sharedReader = sharedReader, probe = FakeProbe())
+    awaitParkedConnectionCount(sharedReader, 1)
+    connection.writePingAndAwaitPong()
+    awaitParkedConnectionCount(sharedReader, 1)
+    connection.close()
+    assertThat(sharedReader.parkedConnectionCount).isEqualTo(0)
+  }
+
+  @Test fun parkedReaderResumesWhenSocketIsReadable() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.sendFrame().ping(false, 2, 3)
+    peer.acceptFrame() // PING
+    peer.play()
+
+    // Play it back.
+    val sharedReader = SharedReader(TaskRunner.INSTANCE, TimeUnit.MILLISECONDS.toNanos(10))
+    val probe = FakeProbe()
+    connect(peer, sharedReader = sharedReader, probe = probe)
+    awaitParkedConnectionCount(sharedReader, 1)
+    probe.readable = true
+
+    // Verify the peer received the ping reply.
+    val ping = peer.takeFrame()
+    assertThat(ping.type).isEqualTo(Http2.TYPE_PING)
+    assertThat(ping.ack).isTrue()
+    assertThat(ping.payload1).isEqualTo(2)
+    assertThat(sharedReader.parkedConnectionCount).isEqualTo(0)
+  }
+
+  @Test fun parkedReaderResumesForNewStream() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM 3
+    peer.sendFrame().headers(true, 3, headerEntries("a", "android"))
+    peer.play()
+
+    // Play it back.
+    val sharedReader = SharedReader(TaskRunner.INSTANCE, TimeUnit.MILLISECONDS.toNanos(10))
+    val connection = connect(peer, sharedReader = sharedReader, probe = FakeProbe())
+    awaitParkedConnectionCount(sharedReader, 1)
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+    assertThat(stream.takeHeaders()).isEqualTo(headersOf("a", "android"))
+    awaitParkedConnectionCount(sharedReader, 1)
+  }
+
+  @Test fun parkedReaderObservesPeerClose() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.play()
+
+    // Play it back with a probe of the real socket.
+    val sharedReader =
+      SharedReader(
+        TaskRunner.INSTANCE,
+        pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(10),
+        initialParkNanos = TimeUnit.MILLISECONDS.toNanos(100),
+      )
+    val socket = peer.openSocket()
+    val bufferedSocket = socket.asBufferedSocket()
+    val connection =
+      Http2Connection
+        .Builder(true, TaskRunner.INSTANCE)
+        .socket(bufferedSocket, "peer")
+        .sharedReader(sharedReader, SocketProbe(socket, socket, bufferedSocket))
+        .build()
+    connection.start(sendConnectionPreface = false)
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_SETTINGS)
+    awaitParkedConnectionCount(sharedReader, 1)
+
+    // The peer closes without a GOAWAY. The reader resumes, observes that, and shuts down.
+    peer.close()
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+    while (connection.isHealthy(System.nanoTime())) {
+      if (System.nanoTime() > deadline) throw AssertionError("connection still healthy")
+      Thread.sleep(10)
+    }
+    assertThat(sharedReader.parkedConnectionCount).isEqualTo(0)
+  }
+
+  @Test fun parkedReaderBacksOffWhenThereIsNothingToRead() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.play()
+
+    // Play it back. Without backing off the reader would resume about 50 times.
+    val sharedReader =
+      SharedReader(
+        TaskRunner.INSTANCE,
+        pollIntervalNanos = TimeUnit.MILLISECONDS.toNanos(10),
+        initialParkNanos = TimeUnit.MILLISECONDS.toNanos(20),
+        maxParkNanos = TimeUnit.SECONDS.toNanos(10),
+      )
+    val probe = FakeProbe()
+    val connection = connect(peer, sharedReader = sharedReader, probe = probe)
+    awaitParkedConnectionCount(sharedReader, 1)
+    Thread.sleep(1_000)
+    assertThat(probe.awaitReadableCount).isLessThan(10)
+    connection.close()
+  }
+
   @Test fun sendGoAway() {
     // Write the mocking script.
     peer.sendFrame().settings(Settings())
@@ -1458,6 +1800,23 @@ class Http2ConnectionTest {
     assertThat(rstStream.streamId).isEqualTo(3)
   }
 
+  @Test fun coalescedFlushReportsFailureToCaller() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // GOAWAY
+    peer.play()
+
+    // Play it back.
+    val connection = connect(peer, frameCoalescing = true)
+    connection.close()
+    assertFailsWith<IOException> {
+      connection.flush()
+    }.also { expected ->
+      assertThat(expected.message).isEqualTo("closed")
+    }
+  }
+
   @Test fun getResponseHeadersTimesOut() {
     // Write the mocking script.
     peer.sendFrame().settings(Settings())
@@ -1486,6 +1845,67 @@ class Http2ConnectionTest {
     assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_RST_STREAM)
   }
 
+  @Test fun slowDataFrameIsDeliveredWhole() {
+    // Write the mocking script. The DATA frame spans several segments and arrives in small chunks.
+    val dataLength = 16_000
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.sendFrame().headers(false, 3, headerEntries("a", "android"))
+    peer.sendFrame().data(true, 3, Buffer().write(ByteArray(dataLength)), dataLength)
+    peer.writeLastFrameSlowly(chunkSize = 1_000, delayMillis = 10L)
+    peer.play()
+
+    // Play it back. The stream's reader gets the frame's data in one read.
+    val connection = connect(peer)
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+    assertThat(stream.takeHeaders()).isEqualTo(headersOf("a", "android"))
+    val buffer = Buffer()
+    assertThat(stream.source.read(buffer, Long.MAX_VALUE)).isEqualTo(dataLength.toLong())
+    assertThat(stream.source.read(buffer, Long.MAX_VALUE)).isEqualTo(-1L)
+
+    // Verify the peer received what was expected.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+  }
+
+  /** The read timeout only runs while a read is blocked, not while data waits to be read. */
+  @Test fun readTimeoutOnlyRunsWhileBlocked() {
+    // Write the mocking script.
+    peer.sendFrame().settings(Settings())
+    peer.acceptFrame() // ACK
+    peer.acceptFrame() // SYN_STREAM
+    peer.sendFrame().headers(false, 3, headerEntries("a", "android"))
+    peer.sendFrame().data(false, 3, Buffer().writeUtf8("abc"), 3)
+    peer.acceptFrame() // RST_STREAM
+    peer.play()
+
+    // Play it back.
+    val connection = connect(peer)
+    val stream = connection.newStream(headerEntries("b", "banana"), false)
+    stream.readTimeout().timeout(500, TimeUnit.MILLISECONDS)
+    assertThat(stream.takeHeaders()).isEqualTo(headersOf("a", "android"))
+    val source = stream.source.buffer()
+
+    // Waiting longer than the timeout doesn't time out reads of data that has arrived.
+    Thread.sleep(750)
+    assertThat(source.readUtf8(3)).isEqualTo("abc")
+
+    // A blocked read times out after the timeout.
+    val startNanos = System.nanoTime()
+    assertFailsWith<InterruptedIOException> {
+      source.require(1)
+    }
+    val elapsedNanos = System.nanoTime() - startNanos
+    awaitWatchdogIdle()
+    // 200ms delta
+    assertThat(TimeUnit.NANOSECONDS.toMillis(elapsedNanos).toDouble())
+      .isCloseTo(500.0, 200.0)
+
+    // Verify the peer received what was expected.
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_HEADERS)
+    assertThat(peer.takeFrame().type).isEqualTo(Http2.TYPE_RST_STREAM)
+  }
+
   /**
    * Confirm that the client times out if the server stalls after 3 bytes. After the timeout the
    * connection is still considered healthy while we await the degraded pong. When that doesn't
@@ -1952,6 +2372,31 @@ class Http2ConnectionTest {
     latch.await()
   }
 
+  private fun awaitParkedConnectionCount(
+    sharedReader: SharedReader,
+    count: Int,
+  ) {
+    val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+    while (sharedReader.parkedConnectionCount != count) {
+      if (System.nanoTime() > deadline) throw AssertionError("parked != $count")
+      Thread.sleep(10)
+    }
+  }
+
+  /** A probe that never reads the socket, so readers only resume when told to. */
+  private class FakeProbe : SharedReader.Probe {
+    @Volatile var readable = false
+
+    override fun isReadable() = readable
+
+    @Volatile var awaitReadableCount = 0
+
+    override fun awaitReadable(timeoutMillis: Int): Boolean {
+      awaitReadableCount++
+      return readable
+    }
+  }
+
   private fun connectWithSettings(
     client: Boolean,
     settings: Settings?,
@@ -1968,6 +2413,9 @@ class Http2ConnectionTest {
     peer: MockHttp2Peer,
     pushObserver: PushObserver = IGNORE,
     listener: Http2Connection.Listener = Http2Connection.Listener.REFUSE_INCOMING_STREAMS,
+    sharedReader: SharedReader? = null,
+    probe: SharedReader.Probe? = null,
+    frameCoalescing: Boolean = false,
   ): Http2Connection {
     val connection =
       Http2Connection
@@ -1975,6 +2423,8 @@ class Http2ConnectionTest {
         .socket(peer.openSocket().asBufferedSocket(), "peer")
         .pushObserver(pushObserver)
         .listener(listener)
+        .sharedReader(sharedReader, probe)
+        .frameCoalescing(frameCoalescing)
         .build()
     connection.start(sendConnectionPreface = false)
 
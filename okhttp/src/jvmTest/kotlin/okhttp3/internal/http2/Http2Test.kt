@@ -621,6 +621,74 @@ class Http2Test {
     )
   }
 
+  @Test fun priorityUpdateRoundTrip() {
+    writeMedium(frame, 10) // length
+    frame.writeByte(Http2.TYPE_PRIORITY_UPDATE)
+    frame.writeByte(FLAG_NONE)
+    frame.writeInt(0) // connection-scope
+    frame.writeInt(expectedStreamId)
+    frame.writeUtf8("u=1, i")
+
+    // Check writer sends the same bytes.
+    val out = Buffer()
+    Http2Writer(out, true).priorityUpdate(expectedStreamId, Priority(urgency = 1, incremental = true))
+    assertThat(out).isEqualTo(frame)
+    reader.nextFrame(
+      requireSettings = false,
+      object : BaseTestHandler() {
+        override fun priorityUpdate(
+          prioritizedStreamId: Int,
+          priorityFieldValue: String,
+        ) {
+          assertThat(prioritizedStreamId).isEqualTo(expectedStreamId)
+          assertThat(priorityFieldValue).isEqualTo("u=1, i")
+        }
+      },
+    )
+  }
+
+  @Test fun alternateServiceRoundTrip() {
+    writeMedium(frame, 38) // length
+    frame.writeByte(Http2.TYPE_ALTSVC)
+    frame.writeByte(FLAG_NONE)
+    frame.writeInt(0) // connection-scope
+    frame.writeShort(19) // origin length
+    frame.writeUtf8("https://example.com")
+    frame.writeUtf8("h2=\":8443\"; ma=60")
+
+    // Check writer sends the same bytes.
+    val out = Buffer()
+    Http2Writer(out, false).alternateService(0, "https://example.com", "h2=\":8443\"; ma=60")
+    assertThat(out).isEqualTo(frame)
+    reader.nextFrame(
+      requireSettings = false,
+      object : BaseTestHandler() {
+        override fun alternateService(
+          streamId: Int,
+          origin: String,
+          altSvc: String,
+        ) {
+          assertThat(streamId).isEqualTo(0)
+          assertThat(origin).isEqualTo("https://example.com")
+          assertThat(altSvc).isEqualTo("h2=\":8443\"; ma=60")
+        }
+      },
+    )
+  }
+
+  @Test fun priorityUpdateOnStream() {
+    writeMedium(frame, 4) // length
+    frame.writeByte(Http2.TYPE_PRIORITY_UPDATE)
+    frame.writeByte(FLAG_NONE)
+    frame.writeInt(expectedStreamId)
+    frame.writeInt(expectedStreamId)
+    assertFailsWith<IOException> {
+      reader.nextFrame(requireSettings = false, BaseTestHandler())
+    }.also { expected ->
+      assertThat(expected.message).isEqualTo("TYPE_PRIORITY_UPDATE streamId != 0")
+    }
+  }
+
   @Test fun badWindowSizeIncrement() {
     assertFailsWith<IllegalArgumentException> {
       windowUpdate(0)
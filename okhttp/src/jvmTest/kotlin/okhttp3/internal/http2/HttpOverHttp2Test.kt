@@ -23,7 +23,9 @@ import assertk.assertions.hasMessage
 import assertk.assertions.isCloseTo
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
+import assertk.assertions.isGreaterThan
 import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import assertk.fail
 import java.io.IOException
@@ -352,6 +354,29 @@ class HttpOverHttp2Test(
     response2.close()
   }
 
+  @Test
+  fun headerCompressionRatio() {
+    server.enqueue(MockResponse(body = "ABC"))
+    server.enqueue(MockResponse(body = "DEF"))
+    val connections = mutableListOf<Connection>()
+    val localClient =
+      client
+        .newBuilder()
+        .addNetworkInterceptor { chain ->
+          connections += chain.connection()!!
+          chain.proceed(chain.request())
+        }.build()
+    for (i in 0 until 2) {
+      localClient.newCall(Request(server.url("/"))).execute().use { response ->
+        response.body.string()
+      }
+    }
+
+    // The second request's headers refer to the first request's headers in the dynamic table.
+    assertThat(connections[1]).isSameInstanceAs(connections[0])
+    assertThat(connections[1].headerCompressionRatio()).isGreaterThan(1.0)
+  }
+
   @Test
   fun connectionWindowUpdateAfterCanceling() {
     server.enqueue(
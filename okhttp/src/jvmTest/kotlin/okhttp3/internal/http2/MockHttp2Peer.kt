@@ -85,6 +85,19 @@ class MockHttp2Peer : Closeable {
     return writer
   }
 
+  /**
+   * Writes the last frame [chunkSize] bytes at a time, pausing for [delayMillis] before each chunk
+   * after the first. This simulates a frame that arrives slowly over a network.
+   */
+  fun writeLastFrameSlowly(
+    chunkSize: Int,
+    delayMillis: Long,
+  ) {
+    val lastFrame = outFrames.removeAt(outFrames.size - 1)
+    outFrames +=
+      OutFrame(lastFrame.sequence, lastFrame.start, lastFrame.truncated, chunkSize, delayMillis)
+  }
+
   fun takeFrame(): InFrame = inFrames.take()
 
   fun play() {
@@ -127,7 +140,8 @@ class MockHttp2Peer : Closeable {
       }
 
       if (nextOutFrame != null && nextOutFrame.sequence == i) {
-        val start = nextOutFrame.start
+        val frame = nextOutFrame
+        val start = frame.start
         var truncated: Boolean
         var end: Long
         if (outFramesIterator.hasNext()) {
@@ -139,9 +153,14 @@ class MockHttp2Peer : Closeable {
           truncated = nextOutFrame.truncated
         }
 
-        // Write a frame.
-        val length = (end - start).toInt()
-        outputStream.write(outBytes, start.toInt(), length)
+        // Write a frame, in chunks if it's written slowly.
+        var offset = start.toInt()
+        while (offset < end) {
+          if (offset > start) Thread.sleep(frame.delayMillis)
+          val length = minOf(frame.chunkSize, end.toInt() - offset)
+          outputStream.write(outBytes, offset, length)
+          offset += length
+        }
 
         // If the last frame was truncated, immediately close the connection.
         if (truncated) {
@@ -170,6 +189,8 @@ class MockHttp2Peer : Closeable {
     val sequence: Int,
     val start: Long,
     val truncated: Boolean,
+    val chunkSize: Int = Int.MAX_VALUE,
+    val delayMillis: Long = 0L,
   )
 
   class InFrame(
@@ -297,6 +318,16 @@ class MockHttp2Peer : Closeable {
       exclusive: Boolean,
     ): Unit = throw UnsupportedOperationException()
 
+    override fun priorityUpdate(
+      prioritizedStreamId: Int,
+      priorityFieldValue: String,
+    ) {
+      check(type == -1)
+      this.type = Http2.TYPE_PRIORITY_UPDATE
+      this.streamId = prioritizedStreamId
+      this.data = priorityFieldValue.toByteArray()
+    }
+
     override fun pushPromise(
       streamId: Int,
       associatedStreamId: Int,
@@ -311,10 +342,7 @@ class MockHttp2Peer : Closeable {
     override fun alternateService(
       streamId: Int,
       origin: String,
-      protocol: ByteString,
-      host: String,
-      port: Int,
-      maxAge: Long,
+      altSvc: String,
     ): Unit = throw UnsupportedOperationException()
   }
 
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import okhttp3.Headers.Companion.headersOf
+import okhttp3.TestUtil.headerEntries
+import org.junit.jupiter.api.Test
+
+class PriorityTest {
+  @Test fun parse() {
+    assertThat(Priority.parse("u=1")).isEqualTo(Priority(urgency = 1))
+    assertThat(Priority.parse("i")).isEqualTo(Priority(incremental = true))
+    assertThat(Priority.parse("u=5, i")).isEqualTo(Priority(urgency = 5, incremental = true))
+    assertThat(Priority.parse("i=?1,u=0")).isEqualTo(Priority(urgency = 0, incremental = true))
+    assertThat(Priority.parse("u=2, i=?0")).isEqualTo(Priority(urgency = 2))
+  }
+
+  @Test fun parseIgnoresUnknownAndMalformedMembers() {
+    assertThat(Priority.parse(null)).isEqualTo(Priority.DEFAULT)
+    assertThat(Priority.parse("")).isEqualTo(Priority.DEFAULT)
+    assertThat(Priority.parse("u=8")).isEqualTo(Priority.DEFAULT)
+    assertThat(Priority.parse("u=a, i=1")).isEqualTo(Priority.DEFAULT)
+    assertThat(Priority.parse("x=1, u=6;y=2")).isEqualTo(Priority(urgency = 6))
+  }
+
+  @Test fun format() {
+    assertThat(Priority.DEFAULT.toString()).isEqualTo("")
+    assertThat(Priority(urgency = 1).toString()).isEqualTo("u=1")
+    assertThat(Priority(incremental = true).toString()).isEqualTo("i")
+    assertThat(Priority(urgency = 0, incremental = true).toString()).isEqualTo("u=0, i")
+  }
+
+  @Test fun parseHeaders() {
+    assertThat(Priority.parse(headersOf("Priority", "u=0"))).isEqualTo(Priority(urgency = 0))
+    assertThat(Priority.parse(headerEntries("a", "b", "priority", "u=7")))
+      .isEqualTo(Priority(urgency = 7))
+    assertThat(Priority.parse(headerEntries("a", "b"))).isEqualTo(Priority.DEFAULT)
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import org.junit.jupiter.api.Test
+
+class BdpEstimatorTest {
+  private val estimator = BdpEstimator(minimumWindowSize = 1_000, maximumWindowSize = 100_000)
+  private var nowNs = 0L
+
+  @Test fun onePingAtATime() {
+    assertThat(estimator.dataReceived(100L)).isTrue()
+    assertThat(estimator.dataReceived(100L)).isFalse()
+    estimator.pingSent(nowNs)
+    assertThat(estimator.dataReceived(100L)).isFalse()
+
+    nowNs += 1_000_000L
+    estimator.pongReceived(nowNs, windowSize = 10_000, bufferedByteCount = 0L)
+    assertThat(estimator.dataReceived(100L)).isTrue()
+  }
+
+  @Test fun growsWhenWindowLimited() {
+    assertThat(sample(byteCount = 8_000L, windowSize = 10_000)).isEqualTo(16_000)
+  }
+
+  @Test fun doesNotGrowWhenNotWindowLimited() {
+    assertThat(sample(byteCount = 5_000L, windowSize = 10_000)).isEqualTo(-1)
+  }
+
+  @Test fun doesNotGrowWhenApplicationIsBehind() {
+    assertThat(sample(byteCount = 8_000L, windowSize = 10_000, bufferedByteCount = 6_000L))
+      .isEqualTo(-1)
+  }
+
+  @Test fun doesNotGrowWhenBandwidthDrops() {
+    assertThat(sample(byteCount = 8_000L, windowSize = 10_000)).isEqualTo(16_000)
+    assertThat(sample(byteCount = 12_000L, windowSize = 16_000, rttNs = 10_000_000L))
+      .isEqualTo(-1)
+  }
+
+  @Test fun growthIsLimitedToMaximum() {
+    assertThat(sample(byteCount = 80_000L, windowSize = 90_000)).isEqualTo(100_000)
+    assertThat(sample(byteCount = 100_000L, windowSize = 100_000)).isEqualTo(-1)
+  }
+
+  @Test fun shrinksWhenApplicationIsBehind() {
+    assertThat(sample(byteCount = 100L, windowSize = 10_000, bufferedByteCount = 10_001L))
+      .isEqualTo(5_000)
+  }
+
+  @Test fun shrinkIsLimitedToMinimum() {
+    assertThat(sample(byteCount = 100L, windowSize = 1_500, bufferedByteCount = 2_000L))
+      .isEqualTo(1_000)
+    assertThat(sample(byteCount = 100L, windowSize = 1_000, bufferedByteCount = 2_000L))
+      .isEqualTo(-1)
+  }
+
+  private fun sample(
+    byteCount: Long,
+    windowSize: Int,
+    bufferedByteCount: Long = 0L,
+    rttNs: Long = 1_000_000L,
+  ): Int {
+    assertThat(estimator.dataReceived(byteCount)).isTrue()
+    estimator.pingSent(nowNs)
+    nowNs += rttNs
+    return estimator.pongReceived(nowNs, windowSize, bufferedByteCount)
+  }
+}
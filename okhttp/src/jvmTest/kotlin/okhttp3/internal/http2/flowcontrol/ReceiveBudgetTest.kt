@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import assertk.assertions.isTrue
+import org.junit.jupiter.api.Test
+
+class ReceiveBudgetTest {
+  private val client = ReceiveBudget(maxByteCount = 100L)
+  private val connectionA = ReceiveBudget(maxByteCount = 60L, parent = client)
+  private val connectionB = ReceiveBudget(maxByteCount = 60L, parent = client)
+
+  @Test fun exhaustedWhenLimitReached() {
+    connectionA.received(59L)
+    assertThat(connectionA.isExhausted).isFalse()
+    connectionA.received(1L)
+    assertThat(connectionA.isExhausted).isTrue()
+    connectionA.consumed(1L)
+    assertThat(connectionA.isExhausted).isFalse()
+  }
+
+  @Test fun parentCountsChildren() {
+    connectionA.received(40L)
+    connectionB.received(40L)
+    assertThat(client.bufferedByteCount).isEqualTo(80L)
+    assertThat(connectionB.isExhausted).isFalse()
+
+    connectionA.received(20L)
+    assertThat(connectionA.isExhausted).isTrue()
+    assertThat(connectionB.isExhausted).isTrue()
+
+    connectionA.consumed(60L)
+    assertThat(client.bufferedByteCount).isEqualTo(40L)
+    assertThat(connectionB.isExhausted).isFalse()
+  }
+
+  @Test fun closeReturnsBytesToParent() {
+    connectionA.received(30L)
+    connectionB.received(20L)
+    connectionA.close()
+    assertThat(connectionA.bufferedByteCount).isEqualTo(0L)
+    assertThat(client.bufferedByteCount).isEqualTo(20L)
+
+    // Bytes consumed after the connection is closed were already returned.
+    connectionA.consumed(30L)
+    assertThat(client.bufferedByteCount).isEqualTo(20L)
+  }
+
+  @Test fun effectiveMaxByteCountIsTheSmallerLimit() {
+    assertThat(connectionA.effectiveMaxByteCount).isEqualTo(60L)
+    val unlimitedConnection = ReceiveBudget(maxByteCount = Long.MAX_VALUE, parent = client)
+    assertThat(unlimitedConnection.effectiveMaxByteCount).isEqualTo(100L)
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.http2.flowcontrol
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNull
+import java.io.IOException
+import java.io.InterruptedIOException
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.assertThrows
+
+class WriteWindowTest {
+  private val window = WriteWindow(initialWindowSize = 100L)
+  private val results = LinkedBlockingQueue<String>()
+
+  @Test fun grantsImmediatelyWhenWindowHasRoom() {
+    assertThat(window.acquire(1, 30L, 16_384) { true }).isEqualTo(30)
+    assertThat(window.acquire(1, 300L, 16_384) { true }).isEqualTo(70)
+    assertThat(window.total).isEqualTo(100L)
+    assertThat(window.maximum).isEqualTo(100L)
+  }
+
+  @Test fun grantsAreLimitedToOneFrame() {
+    assertThat(window.acquire(1, 300L, 16) { true }).isEqualTo(16)
+  }
+
+  @Test fun throwsIfStreamIsClosedBeforeWaiting() {
+    window.acquire(1, 100L, 16_384) { true }
+    assertThrows<IOException> {
+      window.acquire(1, 1L, 16_384) { false }
+    }
+  }
+
+  @Test fun waitersAreGrantedInOrder() {
+    window.acquire(1, 100L, 16_384) { true }
+    val a = startWriter(streamId = 3, byteCount = 10L)
+    val b = startWriter(streamId = 5, byteCount = 10L)
+
+    // Only the first waiter is granted credit.
+    window.increase(10L)
+    assertThat(results.take()).isEqualTo("3: 10")
+    a.join()
+
+    // Without barging ahead of the second waiter.
+    val c = startWriter(streamId = 7, byteCount = 1L)
+
+    window.increase(15L)
+    assertThat(results.take()).isEqualTo("5: 10")
+    assertThat(results.take()).isEqualTo("7: 1")
+    b.join()
+    c.join()
+    assertThat(window.total).isEqualTo(121L)
+  }
+
+  @Test fun cancelReleasesOnlyThatStream() {
+    window.acquire(1, 100L, 16_384) { true }
+    val a = startWriter(streamId = 3, byteCount = 10L)
+    val b = startWriter(streamId = 5, byteCount = 10L)
+
+    window.cancel(3)
+    assertThat(results.take()).isEqualTo("3: stream closed")
+    a.join()
+
+    window.increase(10L)
+    assertThat(results.take()).isEqualTo("5: 10")
+    b.join()
+  }
+
+  @Test fun cancelAllReleasesAllStreams() {
+    window.acquire(1, 100L, 16_384) { true }
+    val a = startWriter(streamId = 3, byteCount = 10L)
+    val b = startWriter(streamId = 5, byteCount = 10L)
+
+    window.cancelAll()
+    assertThat(results.take()).isEqualTo("3: stream closed")
+    assertThat(results.take()).isEqualTo("5: stream closed")
+    a.join()
+    b.join()
+  }
+
+  @Test fun interruptedWaiterGivesUpItsPlace() {
+    window.acquire(1, 100L, 16_384) { true }
+    val a = startWriter(streamId = 3, byteCount = 10L)
+    val b = startWriter(streamId = 5, byteCount = 10L)
+
+    a.interrupt()
+    assertThat(results.take()).isEqualTo("3: interrupted")
+    a.join()
+
+    window.increase(10L)
+    assertThat(results.take()).isEqualTo("5: 10")
+    b.join()
+    assertThat(window.total).isEqualTo(110L)
+  }
+
+  private fun startWriter(
+    streamId: Int,
+    byteCount: Long,
+  ): Thread {
+    val thread =
+      Thread {
+        val result =
+          try {
+            window.acquire(streamId, byteCount, 16_384) { true }.toString()
+          } catch (e: IOException) {
+            if (e is InterruptedIOException) "interrupted" else e.message
+          }
+        results.add("$streamId: $result")
+      }
+    thread.start()
+
+    // Wait until the writer is queued.
+    while (thread.state != Thread.State.WAITING) {
+      Thread.sleep(1)
+    }
+    assertThat(results.poll(0, TimeUnit.SECONDS)).isNull()
+    return thread
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2026 Block, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package okhttp3.internal.ws
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isFalse
+import java.io.Closeable
+import java.net.InetAddress
+import java.net.ProtocolException
+import java.net.ServerSocket
+import java.util.Random
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+import okhttp3.HttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.OkHttpClientTestRule
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.internal.closeQuietly
+import okhttp3.internal.concurrent.TaskRunner
+import okhttp3.internal.connection.BufferedSocket
+import okhttp3.internal.connection.asBufferedSocket
+import okhttp3.internal.http2.Header
+import okhttp3.internal.http2.Http2Connection
+import okhttp3.internal.http2.Http2Stream
+import okhttp3.internal.http2.Settings
+import okhttp3.internal.ws.WebSocketProtocol.OPCODE_TEXT
+import okhttp3.internal.ws.WebSocketProtocol.acceptHeader
+import okio.BufferedSink
+import okio.BufferedSource
+import okio.ByteString.Companion.encodeUtf8
+import okio.buffer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.RegisterExtension
+
+/**
+ * Web sockets carried on HTTP/2 streams with extended CONNECT requests. The server here speaks
+ * HTTP/2 with prior knowledge, and HTTP/1.1 to clients that fall back to an upgrade.
+ */
+class WebSocketOverHttp2Test {
+  @RegisterExtension
+  val clientTestRule = OkHttpClientTestRule()
+
+  private val serverListener = WebSocketRecorder("server")
+  private val clientListener = WebSocketRecorder("client")
+  private val server = Server()
+  private val client =
+    clientTestRule
+      .newClientBuilder()
+      .protocols(listOf(Protocol.H2_PRIOR_KNOWLEDGE))
+      .webSocketOverHttp2(true)
+      .build()
+
+  @AfterEach fun tearDown() {
+    server.close()
+  }
+
+  @Test fun webSocketOnHttp2Stream() {
+    server.enableConnectProtocol = true
+    val webSocket = client.newWebSocket(Request(server.url), clientListener)
+
+    clientListener.assertOpen()
+    clientListener.assertTextMessage("hello")
+    webSocket.send("hi")
+    serverListener.assertTextMessage("hi")
+
+    // The web socket's connection remains available to other calls.
+    client.newCall(Request(server.url)).execute().use { response ->
+      assertThat(response.body.string()).isEqualTo("not a web socket")
+    }
+    assertThat(server.http2ConnectionCount.get()).isEqualTo(1)
+    assertThat(server.http1ConnectionCount.get()).isEqualTo(0)
+    webSocket.cancel()
+  }
+
+  @Test fun rejectedWebSocketOnHttp2StreamClosesRequestSide() {
+    server.enableConnectProtocol = true
+    server.webSocketResponseCode = 404
+    client.newWebSocket(Request(server.url), clientListener)
+
+    clientListener.assertFailure(
+      404,
+      "not found",
+      ProtocolException::class.java,
+      "Expected HTTP 200 response but was '404 '",
+    )
+
+    // The client finished the stream's request side though it didn't send a request body.
+    assertThat(server.requestSideFinished.poll(5, TimeUnit.SECONDS)).isEqualTo(true)
+  }
+
+  @Test fun fallBackToHttp1WhenExtendedConnectIsUnsupported() {
+    server.enableConnectProtocol = false
+    val webSocket1 = client.newWebSocket(Request(server.url), clientListener)
+    clientListener.assertOpen()
+    clientListener.assertTextMessage("hello")
+    assertThat(server.http2ConnectionCount.get()).isEqualTo(1)
+    assertThat(server.http1ConnectionCount.get()).isEqualTo(1)
+    assertThat(client.extendedConnectDatabase.isSupported(server.url)).isFalse()
+
+    // The next web socket uses HTTP/1.1 immediately, without connecting with HTTP/2 again.
+    client.connectionPool.evictAll()
+    val webSocket2 = client.newWebSocket(Request(server.url), clientListener)
+    clientListener.assertOpen()
+    clientListener.assertTextMessage("hello")
+    assertThat(server.http2ConnectionCount.get()).isEqualTo(1)
+    assertThat(server.http1ConnectionCount.get()).isEqualTo(2)
+
+    webSocket1.cancel()
+    webSocket2.cancel()
+  }
+
+  /**
+   * Accepts HTTP/2 connections with prior knowledge, and HTTP/1.1 web socket upgrades. Each web
+   * socket sends "hello" and forwards the messages it receives to [serverListener]. Other requests
+   * get a plain response.
+   */
+  private inner class Server : Closeable {
+    @Volatile var enableConnectProtocol = true
+
+    @Volatile var webSocketResponseCode = 200
+
+    val http2ConnectionCount = AtomicInteger()
+    val http1ConnectionCount = AtomicInteger()
+
+    /** Whether each rejected web socket's stream got its request side finished. */
+    val requestSideFinished = LinkedBlockingQueue<Boolean>()
+
+    private val serverSocket = ServerSocket(0, 50, InetAddress.getByName("localhost"))
+    private val closeables = mutableListOf<Closeable>(serverSocket)
+
+    val url: HttpUrl = "http://localhost:${serverSocket.localPort}/".toHttpUrl()
+
+    init {
+      thread(name = "WebSocketOverHttp2Test server", isDaemon = true) {
+        while (true) {
+          val socket =
+            try {
+              serverSocket.accept()
+            } catch (_: Exception) {
+              return@thread
+            }
+          synchronized(closeables) { closeables += socket }
+          val bufferedSocket = socket.asBufferedSocket()
+          if (bufferedSocket.source.peek().readUtf8LineStrict() == "PRI * HTTP/2.0") {
+            serveHttp2(bufferedSocket)
+          } else {
+            thread(isDaemon = true) { serveHttp1(bufferedSocket) }
+          }
+        }
+      }
+    }
+
+    private fun serveHttp2(bufferedSocket: BufferedSocket) {
+      http2ConnectionCount.incrementAndGet()
+      val connection =
+        Http2Connection
+          .Builder(false, TaskRunner.INSTANCE)
+          .socket(bufferedSocket, "server")
+          .listener(
+            object : Http2Connection.Listener() {
+              override fun onStream(stream: Http2Stream) {
+                serveHttp2Stream(stream)
+              }
+            },
+          ).build()
+      if (enableConnectProtocol) {
+        connection.okHttpSettings[Settings.ENABLE_CONNECT_PROTOCOL] = 1
+      }
+      connection.start()
+    }
+
+    private fun serveHttp2Stream(stream: Http2Stream) {
+      val requestHeaders = stream.takeHeaders()
+      if (requestHeaders[":method"] != "CONNECT" || requestHeaders[":protocol"] != "websocket") {
+        stream.writeHeaders(listOf(Header(":status", "200")), false, true)
+        stream.sink.buffer().use { it.writeUtf8("not a web socket") }
+        return
+      }
+
+      if (webSocketResponseCode != 200) {
+        stream.writeHeaders(listOf(Header(":status", "$webSocketResponseCode")), false, true)
+        stream.sink.buffer().use { it.writeUtf8("not found") }
+        stream.readTimeout().timeout(5, TimeUnit.SECONDS)
+        val exhausted = runCatching { stream.source.buffer().exhausted() }
+        requestSideFinished += exhausted.getOrDefault(false)
+        return
+      }
+
+      stream.writeHeaders(listOf(Header(":status", "200")), false, true)
+      serveWebSocket(stream.source.buffer(), stream.sink.buffer())
+    }
+
+    private fun serveHttp1(bufferedSocket: BufferedSocket) {
+      http1ConnectionCount.incrementAndGet()
+      val source = bufferedSocket.source
+      var key: String? = null
+      while (true) {
+        val line = source.readUtf8LineStrict()
+        if (line.isEmpty()) break
+        if (line.startsWith("Sec-WebSocket-Key:", ignoreCase = true)) {
+          key = line.substringAfter(':').trim()
+        }
+      }
+      bufferedSocket.sink
+        .writeUtf8("HTTP/1.1 101 Switching Protocols\r\n")
+        .writeUtf8("Upgrade: websocket\r\n")
+        .writeUtf8("Connection: Upgrade\r\n")
+        .writeUtf8("Sec-WebSocket-Accept: ${acceptHeader(key!!)}\r\n")
+        .writeUtf8("\r\n")
+        .flush()
+      serveWebSocket(source, bufferedSocket.sink)
+    }
+
+    private fun serveWebSocket(
+      source: BufferedSource,
+      sink: BufferedSink,
+    ) {
+      val writer = WebSocketWriter(false, sink, Random(0), false, false, 0L)
+      writer.writeMessageFrame(OPCODE_TEXT, "hello".encodeUtf8())
+      val reader = WebSocketReader(false, source, serverListener.asFrameCallback(), false, false)
+      try {
+        while (true) {
+          reader.processNextFrame()
+        }
+      } catch (_: Exception) {
+        // The client went away.
+      }
+    }
+
+    override fun close() {
+      synchronized(closeables) {
+        for (closeable in closeables) {
+          closeable.closeQuietly()
+        }
+      }
+    }
+  }
+}
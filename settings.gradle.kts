@@ -49,6 +49,7 @@ include(":okhttp-bom")
 include(":okhttp-brotli")
 include(":okhttp-coroutines")
 include(":okhttp-dnsoverhttps")
+include(":okhttp-download")
 include(":okhttp-hpacktests")
 include(":okhttp-idna-mapping-table")
 include(":okhttp-java-net-cookiejar")